@@ -20,7 +20,9 @@ public interface EventHandler extends PostInit {
   public void handleEvent(EventContext context) throws EventHandlerException;
 
   /**
-   * Handle multiple events at once in a batch. This can be more performant because it avoids context switching
+   * Handle multiple events at once in a batch. This can be more performant because it avoids context switching. Called
+   * by the workers of batching and work stealing stages, with the events in the order they were queued. The collection
+   * is reused by the worker and must not be held on to after the call returns.
    * 
    * @param context
    * @throws EventHandlerException
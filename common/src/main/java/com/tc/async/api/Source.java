@@ -3,6 +3,8 @@
  */
 package com.tc.async.api;
 
+import java.util.Collection;
+
 /**
  * This is used by the internals to manage the process of processing EventContexts in the manner that makes sense for
  * each one. Individual Stages SHOULD NOT HAVE TO EITHER USE OR IMPLEMENT THIS INTERFACE
@@ -13,6 +15,14 @@ public interface Source {
 
   public EventContext poll(long period) throws InterruptedException;
 
+  /**
+   * Moves up to <code>maxElements</code> contexts that are already queued into the given collection without blocking.
+   * Only called by the worker right after a successful {@link #poll(long)}.
+   * 
+   * @return the number of contexts moved
+   */
+  public int drainTo(Collection<EventContext> batch, int maxElements);
+
   public String getSourceName();
 
 }
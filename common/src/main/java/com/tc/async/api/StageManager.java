@@ -20,6 +20,21 @@ public interface StageManager extends PrettyPrintable, ClearableCallback {
 
   public Stage createStage(String name, EventHandler handler, int threads, int queueRatio, int maxSize);
 
+  /**
+   * Creates a stage whose workers drain up to <code>maxBatchSize</code> queued contexts at a time and hand them to
+   * {@link EventHandler#handleEvents(java.util.Collection)}. Multi threaded contexts are distributed over one queue per
+   * worker based on their key.
+   */
+  public Stage createBatchingStage(String name, EventHandler handler, int threads, int maxSize, int maxBatchSize);
+
+  /**
+   * Creates a batching stage that keeps the per key ordering of multi threaded contexts but lets idle workers take
+   * over queued keys from busy ones. The handler must not carry per thread state from one
+   * {@link EventHandler#handleEvents(java.util.Collection)} call to the next, as the next batch of a key may well run
+   * on another worker.
+   */
+  public Stage createWorkStealingStage(String name, EventHandler handler, int threads, int maxSize, int maxBatchSize);
+
   public void startStage(Stage stage, ConfigurationContext context);
 
   public void startAll(ConfigurationContext context, List<PostInit> toInit);
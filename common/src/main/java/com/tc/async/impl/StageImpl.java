@@ -21,6 +21,11 @@ import com.tc.text.PrettyPrinter;
 import com.tc.util.concurrent.QueueFactory;
 import com.tc.util.concurrent.ThreadUtil;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * The SEDA Stage
  */
@@ -29,12 +34,13 @@ public class StageImpl implements Stage {
                                                 // stage
   private final String         name;
   private final EventHandler   handler;
-  private final StageQueueImpl stageQueue;
+  private final StageQueue     stageQueue;
   private final WorkerThread[] threads;
   private final ThreadGroup    group;
   private final TCLogger       logger;
   private final int            sleepMs;
   private final boolean        pausable;
+  private final int            maxBatchSize;
 
   /**
    * The Constructor.
@@ -54,15 +60,37 @@ public class StageImpl implements Stage {
    */
   public StageImpl(TCLoggerProvider loggerProvider, String name, EventHandler handler, int threadCount,
                    int threadsToQueueRatio, ThreadGroup group, QueueFactory queueFactory, int queueSize) {
+    this(loggerProvider, name, handler, threadCount, group, 1, new StageQueueImpl(threadCount, threadsToQueueRatio,
+                                                                                  queueFactory, loggerProvider, name,
+                                                                                  queueSize));
+    if (threadsToQueueRatio > threadCount) {
+      logger.warn("Thread to Queue Ratio " + threadsToQueueRatio + " > Worker Threads " + threadCount);
+    }
+  }
+
+  /**
+   * The Constructor for a stage whose workers hand contexts to {@link EventHandler#handleEvents(java.util.Collection)}
+   * in batches of up to <code>maxBatchSize</code>.
+   * 
+   * @param workStealing : Whether idle workers may take over the key groups of busy ones, see
+   *        {@link WorkStealingStageQueueImpl}. If false multi threaded contexts are distributed over one queue per
+   *        worker based on the key they return.
+   */
+  public StageImpl(TCLoggerProvider loggerProvider, String name, EventHandler handler, int threadCount,
+                   ThreadGroup group, QueueFactory queueFactory, int queueSize, int maxBatchSize, boolean workStealing) {
+    this(loggerProvider, name, handler, threadCount, group, maxBatchSize,
+         workStealing ? new WorkStealingStageQueueImpl(threadCount, loggerProvider, name, queueSize)
+             : new StageQueueImpl(threadCount, 1, queueFactory, loggerProvider, name, queueSize));
+  }
+
+  private StageImpl(TCLoggerProvider loggerProvider, String name, EventHandler handler, int threadCount,
+                    ThreadGroup group, int maxBatchSize, StageQueue stageQueue) {
     this.logger = loggerProvider.getLogger(Stage.class.getName() + ": " + name);
     this.name = name;
     this.handler = handler;
     this.threads = new WorkerThread[threadCount];
-    if (threadsToQueueRatio > threadCount) {
-      logger.warn("Thread to Queue Ratio " + threadsToQueueRatio + " > Worker Threads " + threadCount);
-    }
-    this.stageQueue = new StageQueueImpl(threadCount, threadsToQueueRatio, queueFactory, loggerProvider, name,
-                                         queueSize);
+    this.stageQueue = stageQueue;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
     this.group = group;
     this.sleepMs = TCPropertiesImpl.getProperties().getInt("seda." + name + ".sleepMs", 0);
     if (this.sleepMs > 0) {
@@ -99,7 +127,7 @@ public class StageImpl implements Stage {
         threadName = threadName + ")";
       }
       threads[i] = new WorkerThread(threadName, this.stageQueue.getSource(i), handler, group, logger, sleepMs,
-                                    pausable, name);
+                                    pausable, name, maxBatchSize);
       threads[i].start();
     }
   }
@@ -123,16 +151,19 @@ public class StageImpl implements Stage {
   }
 
   private static class WorkerThread extends Thread {
-    private final Source       source;
-    private final EventHandler handler;
-    private volatile boolean   shutdownRequested = false;
-    private final TCLogger     tcLogger;
-    private final int          sleepMs;
-    private final boolean      pausable;
-    private final String       stageName;
+    private final Source             source;
+    private final EventHandler       handler;
+    private volatile boolean         shutdownRequested = false;
+    private final TCLogger           tcLogger;
+    private final int                sleepMs;
+    private final boolean            pausable;
+    private final String             stageName;
+    private final int                maxBatchSize;
+    private final List<EventContext> batch;
+    private final List<EventContext> pending;
 
     public WorkerThread(String name, Source source, EventHandler handler, ThreadGroup group, TCLogger logger,
-                        int sleepMs, boolean pausable, String stageName) {
+                        int sleepMs, boolean pausable, String stageName, int maxBatchSize) {
       super(group, name);
       tcLogger = logger;
       setDaemon(true);
@@ -141,6 +172,9 @@ public class StageImpl implements Stage {
       this.sleepMs = sleepMs;
       this.pausable = pausable;
       this.stageName = stageName;
+      this.maxBatchSize = maxBatchSize;
+      this.batch = maxBatchSize > 1 ? new ArrayList<EventContext>(maxBatchSize) : null;
+      this.pending = maxBatchSize > 1 ? new ArrayList<EventContext>(maxBatchSize) : null;
     }
 
     public void shutdown() {
@@ -169,7 +203,11 @@ public class StageImpl implements Stage {
           ctxt = source.poll(pollTime);
           if (ctxt != null) {
             handleStageDebugPauses();
-            if (ctxt instanceof SpecializedEventContext) {
+            if (maxBatchSize > 1) {
+              batch.add(ctxt);
+              source.drainTo(batch, maxBatchSize - 1);
+              handleBatch();
+            } else if (ctxt instanceof SpecializedEventContext) {
               ((SpecializedEventContext) ctxt).execute();
             } else {
               handler.handleEvent(ctxt);
@@ -202,8 +240,107 @@ public class StageImpl implements Stage {
           // to the context will exist until another context comes in. This can potentially keep many objects in memory
           // longer than necessary
           ctxt = null;
+          if (batch != null) {
+            batch.clear();
+            pending.clear();
+          }
+        }
+      }
+    }
+
+    /**
+     * Runs the specialized contexts of the batch in place and hands the contexts between them to the handler in one
+     * call each, so the handler sees everything in the order it was queued. A context failing because the client is
+     * shutting down or rejoining is skipped as it would be outside of a batch, and the rest of the batch still runs.
+     */
+    private void handleBatch() throws EventHandlerException {
+      for (EventContext context : batch) {
+        if (context instanceof SpecializedEventContext) {
+          flushPending();
+          try {
+            ((SpecializedEventContext) context).execute();
+          } catch (RuntimeException e) {
+            ignoreIfNotRunning(e, context);
+          }
+        } else {
+          pending.add(context);
+        }
+      }
+      flushPending();
+    }
+
+    /**
+     * After a failure the contexts the handler did not reach are handed to it again, the one it failed on is skipped.
+     */
+    private void flushPending() throws EventHandlerException {
+      int from = 0;
+      while (from < pending.size()) {
+        HandedOutContexts run = new HandedOutContexts(pending.subList(from, pending.size()));
+        try {
+          handler.handleEvents(run);
+          break;
+        } catch (RuntimeException e) {
+          int failed = from + Math.max(run.handedOut, 1) - 1;
+          ignoreIfNotRunning(e, pending.get(failed));
+          from = failed + 1;
         }
       }
+      pending.clear();
+    }
+
+    private void ignoreIfNotRunning(RuntimeException e, EventContext context) {
+      if (shutdownRequested()) { throw e; }
+      if (isTCNotRunningException(e)) {
+        tcLogger.info("Ignoring " + TCNotRunningException.class.getSimpleName() + " while handling context: "
+                      + context);
+      } else if (isRejoinInProgressException(e)) {
+        tcLogger.info("Ignoring " + PlatformRejoinException.class.getSimpleName() + " while handling context: "
+                      + context, e);
+      } else {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * The contexts of a handler call, counting how far the handler iterated them.
+   */
+  private static final class HandedOutContexts extends AbstractCollection<EventContext> {
+    private final List<EventContext> contexts;
+    private int                      handedOut;
+
+    HandedOutContexts(List<EventContext> contexts) {
+      this.contexts = contexts;
+    }
+
+    @Override
+    public Iterator<EventContext> iterator() {
+      final Iterator<EventContext> i = contexts.iterator();
+      return new Iterator<EventContext>() {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+          return i.hasNext();
+        }
+
+        @Override
+        public EventContext next() {
+          EventContext context = i.next();
+          handedOut = Math.max(handedOut, ++next);
+          return context;
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return contexts.size();
     }
   }
 
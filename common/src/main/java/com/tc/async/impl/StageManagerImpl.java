@@ -110,6 +110,31 @@ public class StageManagerImpl implements StageManager {
     return s;
   }
 
+  @Override
+  public synchronized Stage createBatchingStage(String name, EventHandler handler, int threads, int maxSize,
+                                                int maxBatchSize) {
+    return createStage(name, handler, threads, maxSize, maxBatchSize, false);
+  }
+
+  @Override
+  public synchronized Stage createWorkStealingStage(String name, EventHandler handler, int threads, int maxSize,
+                                                    int maxBatchSize) {
+    return createStage(name, handler, threads, maxSize, maxBatchSize, true);
+  }
+
+  private Stage createStage(String name, EventHandler handler, int threads, int maxSize, int maxBatchSize,
+                            boolean workStealing) {
+    if (started) {
+      throw new IllegalStateException("A new stage cannot be created, because StageManager is already started.");
+    }
+
+    int capacity = maxSize > 0 ? maxSize : Integer.MAX_VALUE;
+    Stage s = new StageImpl(loggerProvider, name, handler, threads, group, this.queueFactory, capacity, maxBatchSize,
+                            workStealing);
+    addStage(name, s);
+    return s;
+  }
+
   private synchronized void addStage(String name, Stage s) {
     Object prev = stages.put(name, s);
     Assert.assertNull(prev);
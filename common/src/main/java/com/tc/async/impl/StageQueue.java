@@ -0,0 +1,19 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.Sink;
+import com.tc.async.api.Source;
+
+/**
+ * The sink of a stage together with the sources its worker threads take their contexts from.
+ */
+interface StageQueue extends Sink {
+
+  /**
+   * @return the source the worker thread with the given index polls
+   */
+  Source getSource(int index);
+
+}
@@ -26,7 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * since our queues are locally processed. This class can be replaced with a distributed queue to enable processing
  * across process boundaries.
  */
-public class StageQueueImpl implements Sink {
+public class StageQueueImpl implements StageQueue {
 
   private final String            stageName;
   private final TCLogger          logger;
@@ -86,6 +86,7 @@ public class StageQueueImpl implements Sink {
     }
   }
 
+  @Override
   public Source getSource(int index) {
     return this.sourceQueues[index];
   }
@@ -289,6 +290,21 @@ public class StageQueueImpl implements Sink {
       return rv;
     }
 
+    @Override
+    public int drainTo(Collection<EventContext> batch, int maxElements) {
+      int drained = 0;
+      try {
+        EventContext context;
+        while (drained < maxElements && (context = poll(0)) != null) {
+          batch.add(context);
+          drained++;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return drained;
+    }
+
     public void put(Object obj) throws InterruptedException {
       this.queue.put(obj);
       this.statsCollector.contextAdded();
@@ -304,7 +320,7 @@ public class StageQueueImpl implements Sink {
     }
   }
 
-  private static abstract class StageQueueStatsCollector implements StageQueueStats {
+  static abstract class StageQueueStatsCollector implements StageQueueStats {
 
     @Override
     public void logDetails(TCLogger statsLogger) {
@@ -330,7 +346,7 @@ public class StageQueueImpl implements Sink {
     }
   }
 
-  private static class NullStageQueueStatsCollector extends StageQueueStatsCollector {
+  static class NullStageQueueStatsCollector extends StageQueueStatsCollector {
 
     private final String name;
     private final String trimmedName;
@@ -371,7 +387,7 @@ public class StageQueueImpl implements Sink {
     }
   }
 
-  private static class StageQueueStatsCollectorImpl extends StageQueueStatsCollector {
+  static class StageQueueStatsCollectorImpl extends StageQueueStatsCollector {
 
     private final AtomicInteger count = new AtomicInteger(0);
     private final String        name;
@@ -0,0 +1,347 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.AddPredicate;
+import com.tc.async.api.EventContext;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Sink;
+import com.tc.async.api.Source;
+import com.tc.async.impl.StageQueueImpl.NullStageQueueStatsCollector;
+import com.tc.async.impl.StageQueueImpl.StageQueueStatsCollector;
+import com.tc.async.impl.StageQueueImpl.StageQueueStatsCollectorImpl;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLoggerProvider;
+import com.tc.stats.Stats;
+import com.tc.util.Assert;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stage queue that keeps the per key ordering of {@link MultiThreadedEventContext}s without pinning a key to one
+ * worker thread.
+ * <p>
+ * Keys hash to one of a fixed number of key groups, several per worker. A group holding contexts is scheduled on the
+ * ready deque of its home worker and is owned by exactly one worker from the moment it is taken off a deque until that
+ * worker polls again, so contexts of a key are never handled concurrently or out of order. A worker with nothing ready
+ * on its own deque steals whole groups from the tail of the other workers' deques, so a hot key or an uneven hash no
+ * longer leaves the remaining workers idle. Contexts that are not multi threaded all share one group, which keeps them
+ * in the order they were added.
+ */
+public class WorkStealingStageQueueImpl implements StageQueue {
+
+  private static final int                  GROUPS_PER_WORKER = 16;
+
+  private final String                      stageName;
+  private final TCLogger                    logger;
+  private volatile AddPredicate             predicate         = DefaultAddPredicate.getInstance();
+  private volatile StageQueueStatsCollector statsCollector;
+  private final KeyGroup[]                  groups;
+  private final WorkerSource[]              sources;
+  // One permit per group sitting on some worker's ready deque
+  private final Semaphore                   readyGroups       = new Semaphore(0);
+  // Held while taking a group off the deques, so that a worker holding a permit always finds a group
+  private final Object                      takeLock          = new Object();
+  // One permit per free slot, null when the queue is unbounded
+  private final Semaphore                   capacity;
+  private final AtomicInteger               size              = new AtomicInteger();
+
+  /**
+   * @param threadCount : Number of threads working on this stage
+   * @param loggerProvider : logger
+   * @param stageName : The stage name
+   * @param queueSize : Max number of queued contexts allowed, over all keys
+   */
+  public WorkStealingStageQueueImpl(int threadCount, TCLoggerProvider loggerProvider, String stageName, int queueSize) {
+    Assert.eval(threadCount > 0);
+    Assert.eval(queueSize > 0);
+    this.logger = loggerProvider.getLogger(Sink.class.getName() + ": " + stageName);
+    this.stageName = stageName;
+    this.statsCollector = new NullStageQueueStatsCollector(stageName);
+    this.capacity = queueSize == Integer.MAX_VALUE ? null : new Semaphore(queueSize);
+
+    this.sources = new WorkerSource[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      this.sources[i] = new WorkerSource(i);
+    }
+    int groupCount = 1;
+    while (groupCount < threadCount * GROUPS_PER_WORKER) {
+      groupCount <<= 1;
+    }
+    this.groups = new KeyGroup[groupCount];
+    for (int i = 0; i < groupCount; i++) {
+      this.groups[i] = new KeyGroup(i % threadCount);
+    }
+  }
+
+  @Override
+  public Source getSource(int index) {
+    return this.sources[index];
+  }
+
+  private KeyGroup getGroupFor(EventContext context) {
+    if (!(context instanceof MultiThreadedEventContext)) { return this.groups[0]; }
+    int hash = ((MultiThreadedEventContext) context).getKey().hashCode();
+    hash ^= (hash >>> 16);
+    return this.groups[hash & (this.groups.length - 1)];
+  }
+
+  /**
+   * The context will be added if its key group was found to be empty (at some point during the call), see
+   * {@link StageQueueImpl#addLossy(EventContext)}.
+   */
+  @Override
+  public boolean addLossy(EventContext context) {
+    if (getGroupFor(context).isEmpty()) {
+      add(context);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public void addMany(Collection contexts) {
+    if (this.logger.isDebugEnabled()) {
+      this.logger.debug("Added many:" + contexts + " to:" + this.stageName);
+    }
+    for (Iterator i = contexts.iterator(); i.hasNext();) {
+      add((EventContext) i.next());
+    }
+  }
+
+  @Override
+  public void add(EventContext context) {
+    Assert.assertNotNull(context);
+    if (this.logger.isDebugEnabled()) {
+      this.logger.debug("Added:" + context + " to:" + this.stageName);
+    }
+    if (!this.predicate.accept(context)) {
+      if (this.logger.isDebugEnabled()) {
+        this.logger.debug("Predicate caused skip add for:" + context + " to:" + this.stageName);
+      }
+      return;
+    }
+
+    if (this.capacity != null) {
+      boolean interrupted = Thread.interrupted();
+      try {
+        while (true) {
+          try {
+            this.capacity.acquire();
+            break;
+          } catch (InterruptedException e) {
+            this.logger.debug("StageQueue Add: " + e);
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    KeyGroup group = getGroupFor(context);
+    this.size.incrementAndGet();
+    group.offer(context);
+    this.statsCollector.contextAdded();
+    if (group.trySchedule()) {
+      schedule(group, group.home);
+    }
+  }
+
+  private void schedule(KeyGroup group, int worker) {
+    this.sources[worker].ready.offerLast(group);
+    this.readyGroups.release();
+  }
+
+  private EventContext take(KeyGroup group) {
+    EventContext context = group.poll();
+    if (context != null) {
+      this.size.decrementAndGet();
+      if (this.capacity != null) {
+        this.capacity.release();
+      }
+      this.statsCollector.contextRemoved();
+    }
+    return context;
+  }
+
+  @Override
+  public int size() {
+    return this.size.get();
+  }
+
+  @Override
+  public void setAddPredicate(AddPredicate predicate) {
+    Assert.eval(predicate != null);
+    this.predicate = predicate;
+  }
+
+  @Override
+  public AddPredicate getPredicate() {
+    return this.predicate;
+  }
+
+  @Override
+  public String toString() {
+    return "WorkStealingStageQueue(" + this.stageName + ")";
+  }
+
+  @Override
+  public void clear() {
+    int clearCount = 0;
+    for (KeyGroup group : this.groups) {
+      while (take(group) != null) {
+        clearCount++;
+      }
+    }
+    this.logger.info("Cleared " + clearCount);
+  }
+
+  /*********************************************************************************************************************
+   * Monitorable Interface
+   */
+
+  @Override
+  public void enableStatsCollection(boolean enable) {
+    if (enable) {
+      this.statsCollector = new StageQueueStatsCollectorImpl(this.stageName);
+    } else {
+      this.statsCollector = new NullStageQueueStatsCollector(this.stageName);
+    }
+  }
+
+  @Override
+  public Stats getStats(long frequency) {
+    return this.statsCollector;
+  }
+
+  @Override
+  public Stats getStatsAndReset(long frequency) {
+    return getStats(frequency);
+  }
+
+  @Override
+  public boolean isStatsCollectionEnabled() {
+    return this.statsCollector instanceof StageQueueStatsCollectorImpl;
+  }
+
+  @Override
+  public void resetStats() {
+    this.statsCollector.reset();
+  }
+
+  private static final class KeyGroup {
+    private final int                 home;
+    private final Queue<EventContext> contexts  = new ConcurrentLinkedQueue<EventContext>();
+    // Set while the group is on a ready deque or owned by a worker
+    private final AtomicBoolean       scheduled = new AtomicBoolean();
+
+    KeyGroup(int home) {
+      this.home = home;
+    }
+
+    void offer(EventContext context) {
+      this.contexts.offer(context);
+    }
+
+    EventContext poll() {
+      return this.contexts.poll();
+    }
+
+    boolean isEmpty() {
+      return this.contexts.isEmpty();
+    }
+
+    boolean trySchedule() {
+      return this.scheduled.compareAndSet(false, true);
+    }
+
+    void unschedule() {
+      this.scheduled.set(false);
+    }
+  }
+
+  private final class WorkerSource implements Source {
+    private final int                           index;
+    private final LinkedBlockingDeque<KeyGroup> ready = new LinkedBlockingDeque<KeyGroup>();
+    // Only ever touched by the worker thread polling this source
+    private KeyGroup                            current;
+
+    WorkerSource(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public EventContext poll(long timeout) throws InterruptedException {
+      releaseCurrent();
+      if (!readyGroups.tryAcquire(timeout, TimeUnit.MILLISECONDS)) { return null; }
+      this.current = takeReadyGroup();
+      // null if the group was cleared in the meantime, the worker just polls again
+      return take(this.current);
+    }
+
+    @Override
+    public int drainTo(Collection<EventContext> batch, int maxElements) {
+      if (this.current == null) { return 0; }
+      int drained = 0;
+      EventContext context;
+      while (drained < maxElements && (context = take(this.current)) != null) {
+        batch.add(context);
+        drained++;
+      }
+      return drained;
+    }
+
+    /**
+     * Called once everything taken from the current group has been handled. A group that still has contexts goes to
+     * the back of this worker's deque, where it is the first thing an idle worker steals.
+     */
+    private void releaseCurrent() {
+      KeyGroup group = this.current;
+      if (group == null) { return; }
+      this.current = null;
+      if (!group.isEmpty()) {
+        schedule(group, this.index);
+        return;
+      }
+      group.unschedule();
+      // a context may have been added after the check above, while the group still looked scheduled
+      if (!group.isEmpty() && group.trySchedule()) {
+        schedule(group, this.index);
+      }
+    }
+
+    /**
+     * Only called holding a permit of readyGroups. Groups are put on a deque before their permit is released and only
+     * taken off under takeLock, so while this worker scans there is a group on some deque that nobody else can claim.
+     */
+    private KeyGroup takeReadyGroup() {
+      synchronized (takeLock) {
+        KeyGroup group = this.ready.pollFirst();
+        if (group != null) { return group; }
+        for (int i = 1; i < sources.length; i++) {
+          group = sources[(this.index + i) % sources.length].ready.pollLast();
+          if (group != null) { return group; }
+        }
+      }
+      throw new AssertionError("No ready group for a permit in " + stageName);
+    }
+
+    @Override
+    public String getSourceName() {
+      return String.valueOf(this.index);
+    }
+  }
+}
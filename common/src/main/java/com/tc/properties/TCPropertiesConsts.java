@@ -121,12 +121,18 @@ public interface TCPropertiesConsts {
    * request.logging.enabled        - Enables/Disables logging of ManagedObject requests from
    *                                  clients. If enabled, logs counts of requested instance types
    *                                  every 5 seconds.
+   * request.bulk.enabled           - Look up the maps of a server map get value message together,
+   *                                  request.bulk.maxSegments at a time, instead of one map at a time
+   * request.bulk.maxSegments       - Maximum number of maps checked out by one bulk lookup
+   * request.bulk.prefetch.batchSize - Number of keys answered in a bulk request after which the
+   *                                  values found so far are prefetched, while the other maps are answered
    * persistor.logging.enabled      - Enables/Disables logging of commits to disk while running
    *                                  in persistent mode.
    * passive.sync.batch.size        - Number of objects in each message that is sent from
    *                                  active to passive while synching
    * passive.sync.throttle.timeInMillis - Time to wait before sending the next batch of
    *                                  objects to the passive
+   * passive.sync.streams           - Number of batches dehydrated for a passive at the same time
    * dgc.throttle.timeInMillis     - Throttle time for dgc for each cycle for every requestsPerThrottle
    *                                 requests for references from object manager
    * dgc.throttle.requestsPerThrottle - Number of objects for which object references are requested
@@ -135,7 +141,12 @@ public interface TCPropertiesConsts {
    * dgc.inline.intervalInSeconds   - Interval in seconds at which to delete objects selected by inline dgc.
    * dgc.inline.maxObjects          - Maximum inline dgc batch size
    * dgc.inline.cleanup.delaySeconds - Seconds to delay the start of inline dgc cleanup after a server becomes active
+   * dgc.mark.threads              - Number of threads marking live objects, 1 marks on the DGC thread itself
+   * dgc.mark.sliceMillis          - Time each marking thread works before pausing, 0 marks without pauses
+   * dgc.mark.pauseMillis          - Time each marking thread pauses after every slice
    * l2.objectmanager.invalidate.strong.cache.enabled - Enable/disable invalidations for strong cache
+   * invalidation.coalesce.windowMillis - Time invalidations for a client are held back to merge with later ones,
+   *                                 0 sends them right away
    * </code>
    ********************************************************************************************************************/
 
@@ -144,18 +155,26 @@ public interface TCPropertiesConsts {
   public static final String L2_OBJECTMANAGER_OBJECT_REQUEST_LOGGING_ENABLED                = "l2.objectmanager.objectrequest.logging.enabled";
   public static final String L2_OBJECTMANAGER_REQUEST_LOGGING_ENABLED                       = "l2.objectmanager.request.logging.enabled";
   public static final String L2_OBJECTMANAGER_REQUEST_PREFETCH_ENABLED                      = "l2.objectmanager.request.prefetch.enabled";
+  public static final String L2_OBJECTMANAGER_REQUEST_BULK_ENABLED                          = "l2.objectmanager.request.bulk.enabled";
+  public static final String L2_OBJECTMANAGER_REQUEST_BULK_MAX_SEGMENTS                     = "l2.objectmanager.request.bulk.maxSegments";
+  public static final String L2_OBJECTMANAGER_REQUEST_BULK_PREFETCH_BATCH_SIZE              = "l2.objectmanager.request.bulk.prefetch.batchSize";
   public static final String L2_OBJECTMANAGER_PERSISTOR_LOGGING_ENABLED                     = "l2.objectmanager.persistor.logging.enabled";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_BATCH_SIZE                       = "l2.objectmanager.passive.sync.batch.size";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_MESSAGE_MAXSIZE_MB               = "l2.objectmanager.passive.sync.message.maxSizeInMegaBytes";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_TIME                    = "l2.objectmanager.passive.sync.throttle.timeInMillis";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_PENDING_MSGS            = "l2.objectmanager.passive.sync.throttle.maxPendingMessages";
+  public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_STREAMS                          = "l2.objectmanager.passive.sync.streams";
   public static final String L2_OBJECTMANAGER_DGC_THROTTLE_TIME                             = "l2.objectmanager.dgc.throttle.timeInMillis";
   public static final String L2_OBJECTMANAGER_DGC_REQUEST_PER_THROTTLE                      = "l2.objectmanager.dgc.throttle.requestsPerThrottle";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_ENABLED                            = "l2.objectmanager.dgc.inline.enabled";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_INTERVAL_SECONDS                   = "l2.objectmanager.dgc.inline.intervalInSeconds";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_MAX_OBJECTS                        = "l2.objectmanager.dgc.inline.maxObjects";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_CLEANUP_DELAY_SECONDS              = "l2.objectmanager.dgc.inline.cleanup.delaySeconds";
+  public static final String L2_OBJECTMANAGER_DGC_MARK_THREADS                             = "l2.objectmanager.dgc.mark.threads";
+  public static final String L2_OBJECTMANAGER_DGC_MARK_SLICE_MILLIS                        = "l2.objectmanager.dgc.mark.sliceMillis";
+  public static final String L2_OBJECTMANAGER_DGC_MARK_PAUSE_MILLIS                        = "l2.objectmanager.dgc.mark.pauseMillis";
   public static final String L2_OBJECTMANAGER_INVALIDATE_STRONG_CACHE_ENABLED               = "l2.objectmanager.invalidateStrongCache.enabled";
+  public static final String L2_OBJECTMANAGER_INVALIDATION_COALESCE_WINDOW_MILLIS          = "l2.objectmanager.invalidation.coalesce.windowMillis";
   public static final String L2_OBJECTMANAGER_OIDSET_TYPE                                   = "l2.objectmanager.oidset.type";
   public static final String L2_OBJECTMANAGER_CLIENT_STATE_VERBOSE_THRESHOLD                = "l2.objectmanager.client.state.verbose.threshold";
 
@@ -184,6 +203,21 @@ public interface TCPropertiesConsts {
   public static final String L2_FRS_COMPACTOR_SIZEBASED_AMOUNT                              = L2_FRS_PREFIX
                                                                                               + ".compactor.sizeBased.amount";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section : L2 Segment Log Properties
+   * Description : This section contains configuration for the restartable segment log store used by open source L2s
+   * segment.sizeInMB                   : Size of each memory-mapped log segment
+   * syncOnCommit                       : Force the log to disk on every commit (group commit across threads)
+   * compactor.intervalInMillis         : How often the compactor looks for segments to reclaim
+   * compactor.minLiveRatio             : Sealed segments with a smaller fraction of live data are compacted
+   * </code>
+   ********************************************************************************************************************/
+  public static final String L2_LOGSTORE_SEGMENT_SIZE_MB                                    = "l2.logstore.segment.sizeInMB";
+  public static final String L2_LOGSTORE_SYNC_ON_COMMIT                                     = "l2.logstore.syncOnCommit";
+  public static final String L2_LOGSTORE_COMPACTOR_INTERVAL                                 = "l2.logstore.compactor.intervalInMillis";
+  public static final String L2_LOGSTORE_COMPACTOR_MIN_LIVE_RATIO                           = "l2.logstore.compactor.minLiveRatio";
+
   /*********************************************************************************************************************
    * <code>
    * Section : L2 Seda stage properties
@@ -200,6 +234,11 @@ public interface TCPropertiesConsts {
    * </code>
    ********************************************************************************************************************/
   public static final String L2_SEDA_APPLY_STAGE_THREADS                                    = "l2.seda.apply.stage.threads";
+  public static final String L2_SEDA_APPLY_STAGE_WORK_STEALING                              = "l2.seda.apply.stage.workStealing";
+  public static final String L2_SEDA_APPLY_STAGE_MAX_BATCH_SIZE                             = "l2.seda.apply.stage.maxBatchSize";
+  public static final String L2_SEDA_PROCESS_TRANSACTION_STAGE_MAX_BATCH_SIZE               = "l2.seda.processtransaction.stage.maxBatchSize";
+  public static final String L2_SEDA_REQUEST_LOCK_STAGE_MAX_BATCH_SIZE                      = "l2.seda.requestlock.stage.maxBatchSize";
+  public static final String L2_SEDA_RESPOND_TO_LOCK_STAGE_MAX_BATCH_SIZE                   = "l2.seda.respondtolock.stage.maxBatchSize";
   public static final String L2_SEDA_MANAGEDOBJECTRESPONSESTAGE_THREADS                     = "l2.seda.managedobjectresponsestage.threads";
   public static final String L2_SEDA_MANAGEDOBJECTREQUESTSTAGE_THREADS                      = "l2.seda.managedobjectrequeststage.threads";
   public static final String L2_SEDA_STAGE_SINK_CAPACITY                                    = "l2.seda.stage.sink.capacity";
@@ -359,6 +398,9 @@ public interface TCPropertiesConsts {
    *                                 possible fold target
    *    folding.debug              - Enable debug logging for the transaction folder. Use with
    *                                 care -- This will cause *lots* of logging to occur
+   *    folding.servermap.enabled  - True/false whether a put or remove of a server map key replaces
+   *                                 an earlier remove or put of a literal value of the same key in
+   *                                 the same txn instead of both being sent to the server
    *    timeoutForAckOnExit        - Max wait time in seconds to wait for ACKs before exit.
    *                                 value 0 for infinite wait.
    * </code>
@@ -376,6 +418,7 @@ public interface TCPropertiesConsts {
   public static final String L1_TRANSACTIONMANAGER_FOLDING_OBJECT_LIMIT                     = "l1.transactionmanager.folding.object.limit";
   public static final String L1_TRANSACTIONMANAGER_FOLDING_LOCK_LIMIT                       = "l1.transactionmanager.folding.lock.limit";
   public static final String L1_TRANSACTIONMANAGER_FOLDING_DEBUG                            = "l1.transactionmanager.folding.debug";
+  public static final String L1_TRANSACTIONMANAGER_FOLDING_SERVERMAP_ENABLED                = "l1.transactionmanager.folding.servermap.enabled";
   public static final String L1_TRANSACTIONMANAGER_TIMEOUTFORACK_ONEXIT                     = "l1.transactionmanager.timeoutForAckOnExit";
 
   public static final String TC_TRANSPORT_HANDSHAKE_TIMEOUT                                 = "tc.transport.handshake.timeout";
@@ -470,10 +513,18 @@ public interface TCPropertiesConsts {
    *              : ServerMap Eviction Client Object References refresh interval in milliseconds
    * eviction.broadcast.maxkeys
    *              : ServerMap Eviction Broadcast Message contain max key count entries
+   * eviction.policy
+   *              : How eviction picks its victims, RANDOM or LFU. LFU keeps a frequency sketch per map
+   *                and evicts the least frequently read of a larger random sample. A single cache can
+   *                be given its own policy with l2.servermap.eviction.policy.&lt;cacheName&gt;
+   * eviction.lfu.sampleFactor
+   *              : How many candidates LFU samples for every entry it has to evict
    * </code>
    ********************************************************************************************************************/
   public static final String L2_SERVERMAP_EVICTION_CLIENTOBJECT_REFERENCES_REFRESH_INTERVAL = "l2.servermap.eviction.clientObjectReferences.refresh.interval";
   public static final String L2_SERVERMAP_EVICTION_BROADCAST_MAXKEYS                        = "l2.servermap.eviction.broadcast.maxkeys";
+  public static final String L2_SERVERMAP_EVICTION_POLICY                                   = "l2.servermap.eviction.policy";
+  public static final String L2_SERVERMAP_EVICTION_LFU_SAMPLE_FACTOR                        = "l2.servermap.eviction.lfu.sampleFactor";
 
   /*********************************************************************************************************************
    * <code>
@@ -496,6 +547,11 @@ public interface TCPropertiesConsts {
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
    * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
    * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * messages.grouping.adaptive.enabled   : Hold messages that land on an empty write queue of a busy connection a
+   *                                        little, sized from the observed message gap and batch sizes, so more of
+   *                                        them go out in one write
+   * messages.grouping.adaptive.maxDelayMicros
+   *                                      : Longest a message is held for that, in microseconds
    * </code>
    ********************************************************************************************************************/
   public static final String TC_STAGE_MONITOR_ENABLED                                       = "tc.stage.monitor.enabled";
@@ -506,6 +562,8 @@ public interface TCPropertiesConsts {
   public static final String TC_MESSAGE_GROUPING_ENABLED                                    = "tc.messages.grouping.enabled";
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
+  public static final String TC_MESSAGE_GROUPING_ADAPTIVE_ENABLED                           = "tc.messages.grouping.adaptive.enabled";
+  public static final String TC_MESSAGE_GROUPING_ADAPTIVE_MAX_DELAY_MICROS                  = "tc.messages.grouping.adaptive.maxDelayMicros";
 
   /*********************************************************************************************************************
    * <code>
@@ -640,21 +698,29 @@ public interface TCPropertiesConsts {
    * enabled            : Enable/disable greedy locks grant from L2
    * leaseTimeInMillis  : Time for which greedy locks are given to L1 if more than one of them
    *                      are contending for them
+   * timer.tickInMillis : Resolution of the timer expiring try lock and wait timeouts
+   * timer.wheelSize    : Number of slots of the timer wheel, a power of two. Timeouts further
+   *                      away than wheelSize ticks wait for more than one turn of the wheel
    * </code>
    ********************************************************************************************************************/
   public static final String L2_LOCKMANAGER_GREEDY_LOCKS_ENABLED                            = "l2.lockmanager.greedy.locks.enabled";
   public static final String L2_LOCKMANAGER_GREEDY_LEASE_ENABLED                            = "l2.lockmanager.greedy.lease.enabled";
   public static final String L2_LOCKMANAGER_GREEDY_LEASE_LEASETIME_INMILLS                  = "l2.lockmanager.greedy.lease.leaseTimeInMillis";
+  public static final String L2_LOCKMANAGER_TIMER_TICK_INMILLS                              = "l2.lockmanager.timer.tickInMillis";
+  public static final String L2_LOCKMANAGER_TIMER_WHEEL_SIZE                                = "l2.lockmanager.timer.wheelSize";
 
   /*********************************************************************************************************************
    * <code>
    * Section : TCP Settings
    * tcpnodelay : Enable/disable tcp packet batching
    * keepalive  : Enable/disable tcp probe for running/broken connections
+   * gatheringio.enabled : Use gathering writes and scattering reads between the message buffers and the socket
+   *                       instead of copying through per connection buffers (clear text connections only)
    * </code>
    ********************************************************************************************************************/
   public static final String NET_CORE_KEEPALIVE                                             = "net.core.keepalive";
   public static final String NET_CORE_TCP_NO_DELAY                                          = "net.core.tcpnodelay";
+  public static final String NET_CORE_GATHERING_IO_ENABLED                                  = "net.core.gatheringio.enabled";
 
   /*********************************************************************************************************************
    * <code>
@@ -789,9 +855,12 @@ public interface TCPropertiesConsts {
    * <code>
    * REST management Settings
    *  management.rest.enabled       -   Enable or disable the management REST facilities
+   *  management.rest.snapshot.ttl  -   Time (in milliseconds) statistics and topology fetched from the servers and
+   *                                    clients are reused by the REST API before being fetched again, 0 to disable
    * </code>
    ********************************************************************************************************************/
   public static final String MANAGEMENT_REST_ENABLED                                        = "management.rest.enabled";
+  public static final String MANAGEMENT_REST_SNAPSHOT_TTL                                   = "management.rest.snapshot.ttl";
 
   /*********************************************************************************************************************
    * <code>
@@ -858,6 +927,7 @@ public interface TCPropertiesConsts {
   public static final String SEARCH_LUCENE_MAX_MERGE_DOCS                                   = "search.lucene.maxMergeDocs";
   public static final String SEARCH_LUCENE_INDEXES_PER_CACHE                                = "search.lucene.indexes.per.cache";
   public static final String SEARCH_LUCENE_DISABLE_FIELD_COMPRESSION                        = "search.lucene.disableStoredFieldCompression";
+  public static final String SEARCH_IN_MEMORY_INDEX_ENABLED                                 = "search.inMemory.index.enabled";
 
   public static final String APP_GROUPS_DEBUG                                               = "appgroups.debug";
 
@@ -899,6 +969,37 @@ public interface TCPropertiesConsts {
   public static final String TOOLKIT_LOCAL_BUFFER_PUTS_BATCH_TIME_MILLIS                    = "toolkit.bulkload.throttle.timeInmillis";
   public static final String TOOLKIT_LOCAL_BUFFER_PUTS_THROTTLE_BYTE_SIZE                   = "toolkit.bulkload.throttle.threshold";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  Local Cache Off Heap Store Settings
+   * toolkit.localcache.offheap.enabled     - Keep local caches that overflow to off heap in slab allocated direct memory
+   * toolkit.localcache.offheap.slabSize    - Size in bytes of each direct memory slab
+   * toolkit.localcache.offheap.blockSize   - Size in bytes of the blocks slabs are carved into
+   * </code>
+   ********************************************************************************************************************/
+  public static final String TOOLKIT_LOCALCACHE_OFFHEAP_ENABLED                             = "toolkit.localcache.offheap.enabled";
+  public static final String TOOLKIT_LOCALCACHE_OFFHEAP_SLAB_SIZE                           = "toolkit.localcache.offheap.slabSize";
+  public static final String TOOLKIT_LOCALCACHE_OFFHEAP_BLOCK_SIZE                          = "toolkit.localcache.offheap.blockSize";
+
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  Blocking Queue Settings
+   * toolkit.blockingqueue.stripes          - Number of stripes, each with its own put and take locks, of the blocking
+   *                                          queues created from now on. 0 keeps the single lock queues, that are FIFO
+   *                                          across all elements. Must be the same on all the clients of a queue
+   * </code>
+   ********************************************************************************************************************/
+  public static final String TOOLKIT_BLOCKINGQUEUE_STRIPES                                  = "toolkit.blockingqueue.stripes";
+
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  Notifier Settings
+   * toolkit.notifier.batch.maxbytes        - Maximum size in bytes of the notifications sent together in one
+   *                                          transaction. A notification bigger than that is sent on its own
+   * </code>
+   ********************************************************************************************************************/
+  public static final String TOOLKIT_NOTIFIER_BATCH_MAX_BYTES                               = "toolkit.notifier.batch.maxbytes";
+
   /*
    * For enabling CAS logging
    */
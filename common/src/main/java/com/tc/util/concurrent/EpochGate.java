@@ -0,0 +1,90 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets a rare writer wait for every reader that might have missed a state change it just published, without readers
+ * sharing a lock. Use it in place of a read-write lock whose write side only exists to flush out readers in flight.
+ * <p>
+ * Readers call {@link #enter()} before looking at the shared state and {@link #exit(int)} once done with it. They only
+ * touch a counter striped by thread and by epoch. The writer publishes its change through a volatile and then calls
+ * {@link #awaitQuiescence()}. That call moves on to the next epoch and waits for the readers of the previous one to
+ * exit. Readers entering afterwards are counted against the new epoch and see the change, so they never hold the writer
+ * up, and a steady stream of readers cannot starve it.
+ */
+public final class EpochGate {
+  // 16 longs keep neighbouring stripes 128 bytes apart
+  private static final int      PADDING        = 16;
+  private static final int      SPINS          = 100;
+  private static final long     PARK_NANOS     = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final int             stripes;
+  // [epoch parity][stripe]
+  private final AtomicLongArray active;
+  private volatile int          epoch;
+
+  public EpochGate() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public EpochGate(int concurrency) {
+    int n = 1;
+    while (n < concurrency) {
+      n <<= 1;
+    }
+    this.stripes = n;
+    this.active = new AtomicLongArray(2 * n * PADDING);
+  }
+
+  /**
+   * @return the token to hand to {@link #exit(int)}
+   */
+  public int enter() {
+    int stripe = (int) Thread.currentThread().getId() & (stripes - 1);
+    while (true) {
+      int e = this.epoch;
+      int slot = ((e & 1) * stripes + stripe) * PADDING;
+      active.incrementAndGet(slot);
+      // counted against an epoch the writer may already have stopped waiting for, try again on the current one
+      if (this.epoch == e) { return slot; }
+      active.decrementAndGet(slot);
+    }
+  }
+
+  public void exit(int token) {
+    active.decrementAndGet(token);
+  }
+
+  /**
+   * Returns once every reader that entered before this call has exited.
+   */
+  public synchronized void awaitQuiescence() {
+    int previous = this.epoch;
+    this.epoch = previous + 1;
+    int base = (previous & 1) * stripes;
+    for (int stripe = 0; stripe < stripes; stripe++) {
+      int slot = (base + stripe) * PADDING;
+      for (int spins = 0; active.get(slot) != 0; spins++) {
+        if (spins < SPINS) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(this, PARK_NANOS);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    long readers = 0;
+    for (int i = 0; i < active.length(); i += PADDING) {
+      readers += active.get(i);
+    }
+    return "EpochGate[epoch=" + epoch + ", readers=" + readers + "]";
+  }
+}
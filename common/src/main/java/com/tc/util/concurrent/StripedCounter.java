@@ -0,0 +1,68 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter for values that are incremented and decremented by many threads at once, like a count of checked out
+ * objects. Increments and decrements land on per thread stripes, each padded to its own cache line, so updating threads
+ * do not contend.
+ * <p>
+ * Increments and decrements are kept in separate monotonic sums. {@link #get()} reads all decrements before all
+ * increments. As long as every decrement follows a matching increment, the value returned is therefore never below
+ * the count at the instant between the two passes. It is never negative, and a result of zero means the count really
+ * was zero at that instant. Increments racing with the call can only make it overstate.
+ */
+public final class StripedCounter {
+  // 16 longs keep neighbouring stripes 128 bytes apart
+  private static final int      PADDING = 16;
+
+  private final int             mask;
+  private final AtomicLongArray increments;
+  private final AtomicLongArray decrements;
+
+  public StripedCounter() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public StripedCounter(int concurrency) {
+    int stripes = 1;
+    while (stripes < concurrency) {
+      stripes <<= 1;
+    }
+    this.mask = stripes - 1;
+    this.increments = new AtomicLongArray(stripes * PADDING);
+    this.decrements = new AtomicLongArray(stripes * PADDING);
+  }
+
+  private int slot() {
+    return ((int) Thread.currentThread().getId() & mask) * PADDING;
+  }
+
+  public void increment() {
+    increments.incrementAndGet(slot());
+  }
+
+  public void decrement() {
+    decrements.incrementAndGet(slot());
+  }
+
+  public long get() {
+    long decremented = 0;
+    for (int i = 0; i < decrements.length(); i += PADDING) {
+      decremented += decrements.get(i);
+    }
+    long incremented = 0;
+    for (int i = 0; i < increments.length(); i += PADDING) {
+      incremented += increments.get(i);
+    }
+    return incremented - decremented;
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(get());
+  }
+}
@@ -7,14 +7,25 @@ package com.tc.async.impl;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.tc.async.api.EventContext;
+import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.async.api.Stage;
+import com.tc.exception.TCNotRunningException;
 import com.tc.lang.TCThreadGroup;
 import com.tc.lang.ThrowableHandlerImpl;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.util.concurrent.QueueFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import junit.framework.TestCase;
 
 /**
@@ -154,6 +165,98 @@ public class StageManagerImplTest extends TestCase {
     stageManager.stopAll();
   }
 
+  public void testBatchingStage() throws Exception {
+    BatchRecordingEventHandler handler = new BatchRecordingEventHandler();
+    stageManager.createBatchingStage("testStage3", handler, 1, 30, 4);
+    Stage s = stageManager.getStage("testStage3");
+    for (int i = 0; i < 10; i++) {
+      s.getSink().add(new TestEventContext());
+    }
+
+    s.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(10, 60, SECONDS);
+    assertEquals(10, handler.getContexts().size());
+    assertEquals(Arrays.asList(4, 4, 2), handler.getBatchSizes());
+    stageManager.stopAll();
+  }
+
+  public void testBatchKeepsGoingAfterNotRunningContext() throws Exception {
+    final EventContext failing = new TestEventContext();
+    BatchRecordingEventHandler handler = new BatchRecordingEventHandler() {
+      @Override
+      public void handleEvent(EventContext context) {
+        if (context == failing) { throw new TCNotRunningException(); }
+        super.handleEvent(context);
+      }
+    };
+    stageManager.createBatchingStage("testStage6", handler, 1, 30, 4);
+    Stage s = stageManager.getStage("testStage6");
+    for (int i = 0; i < 10; i++) {
+      s.getSink().add(i == 1 ? failing : new TestEventContext());
+    }
+
+    s.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(9, 60, SECONDS);
+    assertEquals(9, handler.getContexts().size());
+    assertFalse(handler.getContexts().contains(failing));
+    // the rest of the first batch went to the handler again
+    assertEquals(Arrays.asList(4, 2, 4, 2), handler.getBatchSizes());
+    stageManager.stopAll();
+  }
+
+  public void testWorkStealingStageKeepsKeyOrder() throws Exception {
+    OrderCheckingEventHandler handler = new OrderCheckingEventHandler();
+    stageManager.createWorkStealingStage("testStage4", handler, 4, -1, 8);
+    Stage s = stageManager.getStage("testStage4");
+    s.start(new ConfigurationContextImpl(null));
+    for (int seq = 0; seq < 100; seq++) {
+      for (int key = 0; key < 50; key++) {
+        s.getSink().add(new SequencedEventContext(key, seq));
+      }
+    }
+
+    handler.waitForEventContextCount(5000, 60, SECONDS);
+    assertEquals(5000, handler.getContexts().size());
+    assertEquals(0, handler.getViolations());
+    stageManager.stopAll();
+  }
+
+  public void testWorkStealingStageWorksAroundBlockedWorker() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    TestEventHandler handler = new TestEventHandler() {
+      @Override
+      public void handleEvent(EventContext context) {
+        if (Integer.valueOf(0).equals(((MultiThreadedEventContext) context).getKey())) {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.handleEvent(context);
+      }
+    };
+    stageManager.createWorkStealingStage("testStage5", handler, 2, -1, 1);
+    Stage s = stageManager.getStage("testStage5");
+    s.start(new ConfigurationContextImpl(null));
+    s.getSink().add(new SequencedEventContext(0, 0));
+    assertTrue(blocked.await(60, SECONDS));
+
+    // small integer keys all land in distinct key groups, half of them homed on the blocked worker
+    for (int key = 1; key < 20; key++) {
+      s.getSink().add(new SequencedEventContext(key, 0));
+    }
+    handler.waitForEventContextCount(19, 60, SECONDS);
+    assertEquals(19, handler.getContexts().size());
+
+    release.countDown();
+    handler.waitForEventContextCount(20, 60, SECONDS);
+    assertEquals(20, handler.getContexts().size());
+    stageManager.stopAll();
+  }
+
   /*
    * @see TestCase#tearDown()
    */
@@ -169,6 +272,63 @@ public class StageManagerImplTest extends TestCase {
 
   }
 
+  private static class SequencedEventContext implements MultiThreadedEventContext {
+    final Integer key;
+    final int     seq;
+
+    SequencedEventContext(int key, int seq) {
+      this.key = key;
+      this.seq = seq;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+  }
+
+  private static class BatchRecordingEventHandler extends TestEventHandler {
+    private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+    @Override
+    public synchronized void handleEvents(Collection contexts) throws EventHandlerException {
+      batchSizes.add(contexts.size());
+      super.handleEvents(contexts);
+    }
+
+    synchronized List<Integer> getBatchSizes() {
+      return new ArrayList<Integer>(batchSizes);
+    }
+  }
+
+  private static class OrderCheckingEventHandler extends TestEventHandler {
+    private final Map<Object, Integer>       lastSeqs   = new ConcurrentHashMap<Object, Integer>();
+    private final Map<Object, AtomicInteger> inFlight   = new ConcurrentHashMap<Object, AtomicInteger>();
+    private final AtomicInteger              violations = new AtomicInteger();
+
+    @Override
+    public void handleEvent(EventContext context) {
+      SequencedEventContext sequenced = (SequencedEventContext) context;
+      AtomicInteger count = inFlight.get(sequenced.key);
+      if (count == null) {
+        inFlight.put(sequenced.key, count = new AtomicInteger());
+      }
+      if (count.incrementAndGet() != 1) {
+        violations.incrementAndGet();
+      }
+      Integer last = lastSeqs.put(sequenced.key, sequenced.seq);
+      if (last == null ? sequenced.seq != 0 : last + 1 != sequenced.seq) {
+        violations.incrementAndGet();
+      }
+      count.decrementAndGet();
+      super.handleEvent(context);
+    }
+
+    int getViolations() {
+      return violations.get();
+    }
+  }
+
   private static class TestMultiThreadedEventContext implements MultiThreadedEventContext {
     final Object name;
 
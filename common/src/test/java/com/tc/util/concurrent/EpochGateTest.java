@@ -0,0 +1,95 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.util.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EpochGateTest extends TestCase {
+
+  public void testAwaitQuiescenceWaitsForReadersInFlight() throws Exception {
+    final EpochGate gate = new EpochGate(4);
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        int token = gate.enter();
+        entered.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        } finally {
+          gate.exit(token);
+        }
+      }
+    };
+    reader.start();
+    entered.await();
+
+    final CountDownLatch quiesced = new CountDownLatch(1);
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        gate.awaitQuiescence();
+        quiesced.countDown();
+      }
+    };
+    writer.start();
+    assertFalse(quiesced.await(200, TimeUnit.MILLISECONDS));
+
+    // readers of the new epoch do not hold the writer up
+    int token = gate.enter();
+    release.countDown();
+    assertTrue(quiesced.await(10, TimeUnit.SECONDS));
+    gate.exit(token);
+    gate.awaitQuiescence();
+  }
+
+  public void testNoReaderMissesTheChange() throws Exception {
+    final EpochGate gate = new EpochGate(8);
+    final AtomicBoolean changed = new AtomicBoolean();
+    final AtomicBoolean stop = new AtomicBoolean();
+    // readers currently acting on the old state
+    final AtomicInteger inside = new AtomicInteger();
+    Thread[] readers = new Thread[4];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = new Thread() {
+        @Override
+        public void run() {
+          while (!stop.get()) {
+            int token = gate.enter();
+            try {
+              if (!changed.get()) {
+                inside.incrementAndGet();
+                Thread.yield();
+                inside.decrementAndGet();
+              }
+            } finally {
+              gate.exit(token);
+            }
+          }
+        }
+      };
+      readers[i].start();
+    }
+
+    for (int i = 0; i < 200; i++) {
+      changed.set(true);
+      gate.awaitQuiescence();
+      // every reader that saw the old state has left and new ones see the change
+      assertEquals(0, inside.get());
+      changed.set(false);
+    }
+    stop.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.util.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StripedCounterTest extends TestCase {
+
+  public void testCountsAcrossThreads() throws Exception {
+    final StripedCounter counter = new StripedCounter(4);
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 10000; j++) {
+            counter.increment();
+          }
+          for (int j = 0; j < 4000; j++) {
+            counter.decrement();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(8 * 6000, counter.get());
+  }
+
+  public void testDecrementOnAnotherThread() throws Exception {
+    final StripedCounter counter = new StripedCounter(16);
+    counter.increment();
+    Thread other = new Thread() {
+      @Override
+      public void run() {
+        counter.decrement();
+      }
+    };
+    other.start();
+    other.join();
+    assertEquals(0, counter.get());
+  }
+
+  public void testNeverReadsNegative() throws Exception {
+    final StripedCounter counter = new StripedCounter(8);
+    final AtomicBoolean stop = new AtomicBoolean();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          while (!stop.get()) {
+            counter.increment();
+            Thread.yield();
+            counter.decrement();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    try {
+      for (int i = 0; i < 100000; i++) {
+        long value = counter.get();
+        assertTrue(String.valueOf(value), value >= 0);
+      }
+    } finally {
+      stop.set(true);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+  }
+}
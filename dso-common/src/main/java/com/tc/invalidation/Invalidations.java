@@ -7,11 +7,11 @@ import com.tc.io.TCByteBufferInput;
 import com.tc.io.TCByteBufferOutput;
 import com.tc.io.TCSerializable;
 import com.tc.object.ObjectID;
-import com.tc.util.BasicObjectIDSet;
 import com.tc.util.BitSetObjectIDSet;
 import com.tc.util.ObjectIDSet;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -19,8 +19,17 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Invalidated entries of server maps, per map. The serialized form holds each set of ids as runs of consecutive ids,
+ * each run written as its distance from the end of the previous run and its length, in variable length longs. Ids
+ * invalidated together tend to be close, so most runs take a couple of bytes whatever the magnitude of the ids.
+ */
 public class Invalidations implements TCSerializable {
+  private static final AtomicLong SERIALIZED_BYTES       = new AtomicLong();
+  private static final AtomicLong SERIALIZED_BYTES_SAVED = new AtomicLong();
+
   @Override
   public String toString() {
     return "Invalidations [invalidationsPerCdsm=" + invalidationsPerCdsm + "]";
@@ -39,6 +48,15 @@ public class Invalidations implements TCSerializable {
     }
   }
 
+  /**
+   * Wraps the sets instead of copying them, for sets nothing else holds on to, like those of a received message.
+   */
+  public static Invalidations adopt(Map<ObjectID, ObjectIDSet> invalidationsPerCdsm) {
+    Invalidations invalidations = new Invalidations();
+    invalidations.invalidationsPerCdsm.putAll(invalidationsPerCdsm);
+    return invalidations;
+  }
+
   public void add(ObjectID mapID, ObjectID oid) {
     ObjectIDSet set = invalidationsPerCdsm.get(mapID);
     if (set == null) {
@@ -83,9 +101,19 @@ public class Invalidations implements TCSerializable {
     int size = in.readInt();
     for (int i = 0; i < size; i++) {
       ObjectID mapID = new ObjectID(in.readLong());
-      ObjectIDSet oidSet = new BasicObjectIDSet();
-      oidSet.deserializeFrom(in);
-      this.invalidationsPerCdsm.put(mapID, new BitSetObjectIDSet(oidSet));
+      ObjectIDSet oidSet = new BitSetObjectIDSet();
+      int runs = (int) readVarLong(in);
+      long next = 0;
+      for (int j = 0; j < runs; j++) {
+        long start = j == 0 ? in.readLong() : next + readVarLong(in);
+        long end = start + readVarLong(in);
+        for (long id = start; id <= end; id++) {
+          oidSet.add(new ObjectID(id));
+        }
+        // the id after a run is never in the set, so the next run starts 2 or more past its end
+        next = end + 2;
+      }
+      this.invalidationsPerCdsm.put(mapID, oidSet);
     }
     return this;
   }
@@ -113,13 +141,92 @@ public class Invalidations implements TCSerializable {
   @Override
   public void serializeTo(TCByteBufferOutput out) {
     out.writeInt(this.invalidationsPerCdsm.size());
+    long bytes = 4;
+    long rangeBytes = 4;
     for (Entry<ObjectID, ObjectIDSet> entry : this.invalidationsPerCdsm.entrySet()) {
       ObjectID oid = entry.getKey();
       ObjectIDSet oidSet = entry.getValue();
 
       out.writeLong(oid.toLong());
-      oidSet.serializeTo(out);
+      long[] runs = runsOf(oidSet);
+      bytes += 8 + writeVarLong(out, runs.length / 2);
+      long next = 0;
+      for (int i = 0; i < runs.length; i += 2) {
+        if (i == 0) {
+          out.writeLong(runs[i]);
+          bytes += 8;
+        } else {
+          bytes += writeVarLong(out, runs[i] - next);
+        }
+        bytes += writeVarLong(out, runs[i + 1] - runs[i]);
+        next = runs[i + 1] + 2;
+      }
+      // BasicObjectIDSet wrote a range count and the first and last id of each range, its ranges are these runs
+      rangeBytes += 8 + 4 + 16L * (runs.length / 2);
+    }
+    SERIALIZED_BYTES.addAndGet(bytes);
+    SERIALIZED_BYTES_SAVED.addAndGet(rangeBytes - bytes);
+  }
+
+  /**
+   * @return bytes written by {@link #serializeTo} in this VM
+   */
+  public static long getSerializedBytes() {
+    return SERIALIZED_BYTES.get();
+  }
+
+  /**
+   * @return bytes {@link #serializeTo} saved in this VM over the range form BasicObjectIDSet wrote before
+   */
+  public static long getSerializedBytesSaved() {
+    return SERIALIZED_BYTES_SAVED.get();
+  }
+
+  /**
+   * @return first and last id of each run of consecutive ids of the set, in order
+   */
+  private static long[] runsOf(ObjectIDSet oidSet) {
+    long[] runs = new long[8];
+    int count = 0;
+    for (Iterator<ObjectID> i = oidSet.iterator(); i.hasNext();) {
+      long id = i.next().toLong();
+      if (count > 0 && id == runs[count - 1] + 1) {
+        runs[count - 1] = id;
+      } else {
+        if (count > 0 && id <= runs[count - 1]) { throw new AssertionError("Ids out of order : " + id + " after "
+                                                                           + runs[count - 1]); }
+        if (count == runs.length) {
+          runs = Arrays.copyOf(runs, count * 2);
+        }
+        runs[count++] = id;
+        runs[count++] = id;
+      }
+    }
+    return Arrays.copyOf(runs, count);
+  }
+
+  /**
+   * @return number of bytes written
+   */
+  private static int writeVarLong(TCByteBufferOutput out, long value) {
+    int bytes = 1;
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+      bytes++;
+    }
+    out.writeByte((int) value);
+    return bytes;
+  }
+
+  private static long readVarLong(TCByteBufferInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) { return value; }
     }
+    throw new IOException("Malformed variable length long");
   }
 
   public int size() {
@@ -0,0 +1,39 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.net.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Clear text {@link GatheringBufferManager}. Messages are already packed up into pooled direct buffers before they are
+ * written, so handing those straight to the socket avoids both the copy into the send buffer and the copy the JDK makes
+ * when writing from a heap buffer. Reads only skip the receive buffer, they land in whatever buffers the caller hands
+ * in and the JDK copies through a temporary direct buffer when those are on heap. The inherited copying methods are
+ * only used once the connection is detached onto a {@link PipeSocket}.
+ */
+class DirectBufferManager extends ClearTextBufferManager implements GatheringBufferManager {
+  private final SocketChannel channel;
+
+  DirectBufferManager(SocketChannel channel) {
+    super(channel);
+    this.channel = channel;
+  }
+
+  @Override
+  public long gatheringWrite(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    long written = channel.write(srcs, offset, length);
+    if (written == -1) { throw new EOFException(); }
+    return written;
+  }
+
+  @Override
+  public long scatteringRead(ByteBuffer[] dsts, int offset, int length) throws IOException {
+    long read = channel.read(dsts, offset, length);
+    if (read == -1) { throw new EOFException(); }
+    return read;
+  }
+}
@@ -0,0 +1,13 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.net.core;
+
+import java.nio.channels.SocketChannel;
+
+public class DirectBufferManagerFactory implements BufferManagerFactory {
+  @Override
+  public BufferManager createBufferManager(SocketChannel socketChannel, boolean client) {
+    return new DirectBufferManager(socketChannel);
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.net.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BufferManager} that can move data straight between the message buffers and the socket, without staging it in
+ * an intermediate per connection buffer first.
+ */
+public interface GatheringBufferManager extends BufferManager {
+
+  /**
+   * Writes as much of the given buffers as the socket accepts in a single gathering write.
+   *
+   * @return the number of bytes written
+   */
+  long gatheringWrite(ByteBuffer[] srcs, int offset, int length) throws IOException;
+
+  /**
+   * Reads as much as is available on the socket into the given buffers in a single scattering read.
+   *
+   * @return the number of bytes read
+   */
+  long scatteringRead(ByteBuffer[] dsts, int offset, int length) throws IOException;
+}
@@ -40,12 +40,17 @@ import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.SSLException;
@@ -70,7 +75,12 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
   private final BufferManagerFactory         bufferManagerFactory;
   private final AtomicBoolean                transportEstablished        = new AtomicBoolean(false);
-  private final LinkedList<TCNetworkMessage> writeMessages               = new LinkedList<TCNetworkMessage>();
+  // producers never lock, the comm thread drains it. queuedMessages is bumped before a message is offered, so it never
+  // counts fewer messages than the queue holds
+  private final ConcurrentLinkedQueue<TCNetworkMessage> writeMessages    = new ConcurrentLinkedQueue<TCNetworkMessage>();
+  private final AtomicInteger                queuedMessages              = new AtomicInteger();
+  private final WriteCoalescer               coalescer                   = ADAPTIVE_GROUPING_ENABLED
+      ? new WriteCoalescer(ADAPTIVE_GROUPING_MAX_DELAY_NANOS) : null;
   private final TCConnectionManagerImpl      parent;
   private final TCConnectionEventCaller      eventCaller                 = new TCConnectionEventCaller(logger);
   private final AtomicLong                   lastDataWriteTime           = new AtomicLong(System.currentTimeMillis());
@@ -102,15 +112,32 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       .getProperties()
       .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_ENABLED,
           true);
+  private static final boolean               GATHERING_IO_ENABLED        = TCPropertiesImpl
+      .getProperties()
+      .getBoolean(TCPropertiesConsts.NET_CORE_GATHERING_IO_ENABLED,
+          false);
+  private static final boolean               ADAPTIVE_GROUPING_ENABLED   = TCPropertiesImpl
+      .getProperties()
+      .getBoolean(TCPropertiesConsts.TC_MESSAGE_GROUPING_ADAPTIVE_ENABLED,
+          false);
+  private static final long                  ADAPTIVE_GROUPING_MAX_DELAY_NANOS = TimeUnit.MICROSECONDS
+      .toNanos(TCPropertiesImpl.getProperties()
+          .getLong(TCPropertiesConsts.TC_MESSAGE_GROUPING_ADAPTIVE_MAX_DELAY_MICROS, 200));
+  private static final int                   MAX_GATHER_BUFFERS          = 512;
   private final Object                       readerLock                  = new Object();
   private final Object                       writerLock                  = new Object();
 
   static {
     logger.info("Comms Message Batching " + (MSG_GROUPING_ENABLED ? "enabled" : "disabled"));
+    logger.info("Comms Gathering IO " + (GATHERING_IO_ENABLED ? "enabled" : "disabled"));
+    logger.info("Comms Adaptive Message Batching "
+                + (ADAPTIVE_GROUPING_ENABLED ? "enabled, max delay " + ADAPTIVE_GROUPING_MAX_DELAY_NANOS + "ns"
+                    : "disabled"));
   }
 
   // having this variable at instance level helps reducing memory pressure at VM;
   private final ArrayList<TCNetworkMessage>  messagesToBatch             = new ArrayList<TCNetworkMessage>();
+  private final ArrayList<TCNetworkMessage>  messagesToWrite             = new ArrayList<TCNetworkMessage>();
 
   // for creating unconnected client connections
   TCConnectionImpl(final TCConnectionEventListener listener, final TCProtocolAdaptor adaptor,
@@ -137,6 +164,8 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
     if (securityManager != null) {
       this.bufferManagerFactory = securityManager.getBufferManagerFactory();
+    } else if (GATHERING_IO_ENABLED) {
+      this.bufferManagerFactory = new DirectBufferManagerFactory();
     } else {
       this.bufferManagerFactory = new ClearTextBufferManagerFactory();
     }
@@ -164,9 +193,7 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
         callback.run();
       }
     } finally {
-      synchronized (this.writeMessages) {
-        this.writeMessages.clear();
-      }
+      this.writeMessages.clear();
     }
     try {
       if (pipeSocket != null) {
@@ -271,6 +298,8 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private int doReadInternal() throws IOException {
+    if (pipeSocket == null && bufferManager instanceof GatheringBufferManager) { return doScatteringRead((GatheringBufferManager) bufferManager); }
+
     try {
       bufferManager.recvToBuffer();
     } catch (SSLException ssle) {
@@ -314,6 +343,8 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private int doWriteInternal() throws IOException {
+    if (pipeSocket == null && bufferManager instanceof GatheringBufferManager) { return doGatheringWrite((GatheringBufferManager) bufferManager); }
+
     int written;
     try {
       written = doWriteToBuffer();
@@ -364,17 +395,20 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private void buildWriteContextsFromMessages() {
-    TCNetworkMessage messagesToWrite[];
-    synchronized (this.writeMessages) {
-      if (this.closed.isSet()) { return; }
-      messagesToWrite = this.writeMessages.toArray(new TCNetworkMessage[this.writeMessages.size()]);
-      this.writeMessages.clear();
+    if (this.closed.isSet()) { return; }
+    for (TCNetworkMessage queued = this.writeMessages.poll(); queued != null; queued = this.writeMessages.poll()) {
+      this.messagesToWrite.add(queued);
+    }
+    if (this.messagesToWrite.isEmpty()) { return; }
+    this.queuedMessages.addAndGet(-this.messagesToWrite.size());
+    if (this.coalescer != null) {
+      this.coalescer.drained(this.messagesToWrite.size(), System.nanoTime());
     }
 
     int batchSize = 0;
     int batchMsgCount = 0;
     TCNetworkMessage msg = null;
-    for (final TCNetworkMessage element : messagesToWrite) {
+    for (final TCNetworkMessage element : this.messagesToWrite) {
       msg = element;
 
       // we don't want to group already constructed Transport Handshake WireProtocolMessages
@@ -415,7 +449,7 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       this.writeContexts.add(new WriteContext(ms));
     }
 
-    messagesToWrite = null;
+    this.messagesToWrite.clear();
     this.messagesToBatch.clear();
   }
 
@@ -517,16 +551,129 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       }
     }
 
-    synchronized (this.writeMessages) {
-      if (this.closed.isSet()) { return totalBytesWritten; }
+    removeWriteInterestIfDone();
+    return totalBytesWritten;
+  }
+
+  /**
+   * Reads from the socket into the protocol adaptor's buffers until the socket has nothing more to give. This skips the
+   * connection's receive buffer, but the adaptor's buffers are heap buffers so the JDK still copies through a temporary
+   * direct buffer.
+   */
+  private int doScatteringRead(final GatheringBufferManager manager) {
+    int totalBytesRead = 0;
+    while (true) {
+      final TCByteBuffer[] readBuffers = getReadBuffers();
+      final ByteBuffer[] nioBuffers = new ByteBuffer[readBuffers.length];
+      long capacity = 0;
+      for (int i = 0; i < readBuffers.length; i++) {
+        nioBuffers[i] = extractNioBuffer(readBuffers[i]);
+        capacity += nioBuffers[i].remaining();
+      }
+
+      final long read;
+      try {
+        read = manager.scatteringRead(nioBuffers, 0, nioBuffers.length);
+      } catch (IOException ioe) {
+        closeReadOnException(ioe);
+        break;
+      }
+      if (read == 0) {
+        break;
+      }
+
+      addNetworkData(readBuffers, (int) read);
+      totalBytesRead += read;
+
+      if (read < capacity) {
+        // socket drained
+        break;
+      }
+    }
+
+    this.totalRead.addAndGet(totalBytesRead);
+    return totalBytesRead;
+  }
+
+  /**
+   * Writes the queued write contexts straight from their (packed up, direct) buffers with as few gathering writes as
+   * possible, spanning several messages per write.
+   */
+  private int doGatheringWrite(final GatheringBufferManager manager) {
+    final boolean debug = logger.isDebugEnabled();
+    int totalBytesWritten = 0;
+
+    if (this.writeContexts.size() <= 0) {
+      buildWriteContextsFromMessages();
+    }
+
+    while (this.writeContexts.size() > 0) {
+      final List<ByteBuffer> gather = new ArrayList<ByteBuffer>();
+      long requested = 0;
+      for (final WriteContext context : this.writeContexts) {
+        for (int i = context.index, n = context.entireMessageData.length; i < n && gather.size() < MAX_GATHER_BUFFERS; i++) {
+          final ByteBuffer buf = context.entireMessageData[i].getNioBuffer();
+          gather.add(buf);
+          requested += buf.remaining();
+        }
+        if (gather.size() >= MAX_GATHER_BUFFERS) {
+          break;
+        }
+      }
+
+      final long written;
+      try {
+        written = manager.gatheringWrite(gather.toArray(new ByteBuffer[gather.size()]), 0, gather.size());
+      } catch (IOException ioe) {
+        closeWriteOnException(ioe);
+        break;
+      }
+      totalBytesWritten += written;
+
+      if (debug) {
+        logger.debug("Wrote " + written + " of " + requested + " bytes from " + gather.size()
+                     + " buffers on connection " + this.channel.toString());
+      }
 
-      if (this.writeMessages.isEmpty() && this.writeContexts.isEmpty()) {
-        this.commWorker.removeWriteInterest(this, this.channel);
+      completeWrittenContexts();
+
+      if (written < requested) {
+        // socket send buffer is full, wait to be selected for write again
+        break;
       }
     }
+
+    this.totalWrite.addAndGet(totalBytesWritten);
+
+    removeWriteInterestIfDone();
     return totalBytesWritten;
   }
 
+  private void removeWriteInterestIfDone() {
+    if (this.closed.isSet()) { return; }
+
+    // A producer that bumps queuedMessages after this check asks for write interest again. Its request reaches the
+    // comm thread after this removal, which runs right away since we are on the comm thread.
+    if (this.queuedMessages.get() == 0 && this.writeContexts.isEmpty()) {
+      this.commWorker.removeWriteInterest(this, this.channel);
+    }
+  }
+
+  private void completeWrittenContexts() {
+    for (final Iterator<WriteContext> i = this.writeContexts.iterator(); i.hasNext();) {
+      final WriteContext context = i.next();
+      while (context.index < context.entireMessageData.length
+             && !context.entireMessageData[context.index].hasRemaining()) {
+        context.incrementIndexAndCleanOld();
+      }
+      if (!context.done()) {
+        break;
+      }
+      context.writeComplete();
+      i.remove();
+    }
+  }
+
   static private ByteBuffer extractNioBuffer(final TCByteBuffer buffer) {
     return buffer.getNioBuffer();
   }
@@ -543,15 +690,11 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     }
 
     // TODO: outgoing queue should not be unbounded size!
-    final boolean newData;
-    final int msgCount;
-
-    synchronized (this.writeMessages) {
-      if (this.closed.isSet()) { return; }
-      this.writeMessages.addLast(message);
-      msgCount = this.writeMessages.size();
-      newData = (msgCount == 1);
-    }
+    if (this.closed.isSet()) { return; }
+    final int msgCount = this.queuedMessages.incrementAndGet();
+    this.writeMessages.offer(message);
+    final boolean newData = (msgCount == 1);
+    final long delay = (this.coalescer == null) ? 0 : this.coalescer.messageQueued(System.nanoTime());
 
     if (debug) {
       logger.debug("Connection (" + this.channel.toString() + ") has " + msgCount + " messages queued");
@@ -573,10 +716,40 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       // for, as well as actually be selected for, write interest immediately
       // after finishConnect(). Only after this selection occurs it is always safe to try
       // to write.
-      this.commWorker.requestWriteInterest(this, this.channel);
+      if (delay > 0) {
+        requestWriteInterestAfter(delay);
+      } else {
+        this.commWorker.requestWriteInterest(this, this.channel);
+      }
     }
   }
 
+  /**
+   * Gives more messages the chance to join the batch before the comm thread writes it out.
+   */
+  private void requestWriteInterestAfter(final long delayNanos) {
+    CoalescingTimer.TIMER.schedule(new Runnable() {
+      @Override
+      public void run() {
+        if (!TCConnectionImpl.this.closed.isSet()) {
+          TCConnectionImpl.this.commWorker.requestWriteInterest(TCConnectionImpl.this, TCConnectionImpl.this.channel);
+        }
+      }
+    }, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  // lazily started, only connections with adaptive batching use it
+  private static final class CoalescingTimer {
+    static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                                                  @Override
+                                                  public Thread newThread(Runnable r) {
+                                                    Thread t = new Thread(r, "TCConnection write coalescing timer");
+                                                    t.setDaemon(true);
+                                                    return t;
+                                                  }
+                                                });
+  }
+
   @Override
   public final void asynchClose() {
     if (this.closed.attemptSet()) {
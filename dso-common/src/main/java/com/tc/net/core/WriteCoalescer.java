@@ -0,0 +1,72 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.net.core;
+
+/**
+ * Decides how long a connection should hold a message that lands on an empty write queue before asking to be selected
+ * for write, so that more small messages can go out in the same batch. Nagle style, an idle link writes at once. A busy
+ * link waits for about as many more messages as its batches fall short of {@link #TARGET_DEPTH}, going by the observed
+ * gap between messages, and never longer than the configured maximum delay.
+ * <p>
+ * The estimates are plain volatile moving averages. Producers update them without locking, an occasional lost update
+ * only makes the average a little stale.
+ */
+final class WriteCoalescer {
+
+  static final int    TARGET_DEPTH = 8;
+
+  // weight of a new sample in the moving averages, 1/8
+  private static final int SHIFT   = 3;
+
+  private final long  maxDelayNanos;
+  private volatile long lastArrival;
+  private volatile long lastWrite;
+  private volatile long gapAverage;
+  // queue depth at each drain, in 1/256ths of a message
+  private volatile long depthAverage = 256;
+
+  WriteCoalescer(long maxDelayNanos) {
+    this.maxDelayNanos = maxDelayNanos;
+    long now = System.nanoTime();
+    this.lastArrival = now;
+    // starts out idle
+    this.lastWrite = now - maxDelayNanos - 1;
+    this.gapAverage = maxDelayNanos;
+  }
+
+  /**
+   * Called for every queued message.
+   *
+   * @return how many nanoseconds to wait before requesting write interest, only meaningful for a message that found the
+   *         queue empty
+   */
+  long messageQueued(long now) {
+    long gap = now - lastArrival;
+    lastArrival = now;
+    long average = gapAverage;
+    average += (gap - average) >> SHIFT;
+    gapAverage = average;
+
+    if (now - lastWrite > maxDelayNanos) {
+      // idle link, nothing to coalesce with
+      return 0;
+    }
+    long depth = depthAverage >> 8;
+    if (depth >= TARGET_DEPTH || average >= maxDelayNanos) {
+      // batching well already, or the next message is too far away to be worth waiting for
+      return 0;
+    }
+    return Math.min(maxDelayNanos, average * (TARGET_DEPTH - depth));
+  }
+
+  /**
+   * Called by the comm thread when it drains the queue.
+   */
+  void drained(int messages, long now) {
+    long average = depthAverage;
+    average += (((long) messages << 8) - average) >> SHIFT;
+    depthAverage = average;
+    lastWrite = now;
+  }
+}
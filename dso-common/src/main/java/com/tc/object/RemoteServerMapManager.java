@@ -18,7 +18,14 @@ import java.util.Set;
 public interface RemoteServerMapManager extends ClientHandshakeCallback,
     InvalidationsProcessor, PrettyPrintable {
 
-  public Object getMappingForKey(ObjectID mapID, Object portableKey) throws AbortedOperationException;
+  /**
+   * @param writeSequence count of writes to the map the caller has seen, a request already in flight is only shared
+   *        if it was issued after all of them
+   * @param coalesce false if the caller has a pending write for the key, the lookup then gets a request of its own
+   *        instead of sharing one that is already in flight
+   */
+  public Object getMappingForKey(ObjectID mapID, Object portableKey, long writeSequence, boolean coalesce)
+      throws AbortedOperationException;
 
   public Set getAllKeys(ObjectID mapID) throws AbortedOperationException;
 
@@ -0,0 +1,1122 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.util;
+
+import com.tc.object.ObjectID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * ObjectIDSet laid out like a Roaring bitmap. Ids are cut on their high 48 bits into chunks of 65536, and each chunk
+ * is held in whichever container suits what it holds : a sorted array of the low 16 bits while it is sparse, a 1024
+ * word bitmap once it is dense, or a list of runs when the ids come in long consecutive stretches. Chunks are kept in a
+ * sorted array rather than a tree.
+ * <p>
+ * {@link #addAll}, {@link #removeAll} and {@link #retainAll} with another RoaringObjectIDSet walk both sets chunk by
+ * chunk and combine dense chunks a word at a time, in plain loops over long arrays the JIT can unroll and vectorize.
+ * Run containers are only made by {@link #optimize()}, which copies of other sets call once they are built.
+ */
+public class RoaringObjectIDSet extends ObjectIDSet {
+
+  private static final int    CHUNK_BITS    = 16;
+  private static final int    CHUNK_SIZE    = 1 << CHUNK_BITS;
+  private static final int    CHUNK_WORDS   = CHUNK_SIZE / Long.SIZE;
+  // past this many ids a bitmap is smaller than an array
+  static final int            ARRAY_MAX     = 4096;
+  private static final int    INITIAL_CHUNKS = 4;
+
+  private long[]              keys          = new long[INITIAL_CHUNKS];
+  private Container[]         containers    = new Container[INITIAL_CHUNKS];
+  private int                 chunks;
+  private int                 size;
+  private volatile int        modCount;
+
+  public RoaringObjectIDSet() {
+    super();
+  }
+
+  public RoaringObjectIDSet(final Collection c) {
+    addAll(c);
+    optimize();
+  }
+
+  private static long keyOf(final long lid) {
+    return lid >> CHUNK_BITS;
+  }
+
+  private static int lowOf(final long lid) {
+    return (int) (lid & (CHUNK_SIZE - 1));
+  }
+
+  private static long idOf(final long key, final int low) {
+    return (key << CHUNK_BITS) | low;
+  }
+
+  private int indexOf(final long key) {
+    return Arrays.binarySearch(this.keys, 0, this.chunks, key);
+  }
+
+  private void insertChunk(final int index, final long key, final Container container) {
+    if (this.chunks == this.keys.length) {
+      final int capacity = this.chunks * 2;
+      this.keys = Arrays.copyOf(this.keys, capacity);
+      this.containers = Arrays.copyOf(this.containers, capacity);
+    }
+    System.arraycopy(this.keys, index, this.keys, index + 1, this.chunks - index);
+    System.arraycopy(this.containers, index, this.containers, index + 1, this.chunks - index);
+    this.keys[index] = key;
+    this.containers[index] = container;
+    this.chunks++;
+  }
+
+  private void removeChunk(final int index) {
+    System.arraycopy(this.keys, index + 1, this.keys, index, this.chunks - index - 1);
+    System.arraycopy(this.containers, index + 1, this.containers, index, this.chunks - index - 1);
+    this.chunks--;
+    this.containers[this.chunks] = null;
+  }
+
+  /**
+   * ignore find bug warning for non thread safe increment of a volatile variable The volatile varibale is being used
+   * only for validation of no concurrent modification while iterating the set
+   */
+  @FindbugsSuppressWarnings("VO_VOLATILE_INCREMENT")
+  @Override
+  public boolean add(final ObjectID id) {
+    final long lid = id.toLong();
+    final long key = keyOf(lid);
+    final int index = indexOf(key);
+    if (index < 0) {
+      insertChunk(-index - 1, key, new ArrayContainer().add(lowOf(lid)));
+    } else {
+      final Container current = this.containers[index];
+      final int before = current.cardinality();
+      final Container updated = current.add(lowOf(lid));
+      this.containers[index] = updated;
+      if (updated.cardinality() == before) { return false; }
+    }
+    this.size++;
+    this.modCount++;
+    return true;
+  }
+
+  /**
+   * ignore find bug warning for non thread safe increment of a volatile variable The volatile varibale is being used
+   * only for validation of no concurrent modification while iterating the set
+   */
+  @FindbugsSuppressWarnings("VO_VOLATILE_INCREMENT")
+  @Override
+  public boolean remove(final Object o) {
+    if (!(o instanceof ObjectID)) { return false; }
+    final long lid = ((ObjectID) o).toLong();
+    final int index = indexOf(keyOf(lid));
+    if (index < 0) { return false; }
+    final Container current = this.containers[index];
+    final int before = current.cardinality();
+    final Container updated = current.remove(lowOf(lid));
+    if (updated.cardinality() == before) { return false; }
+    if (updated.cardinality() == 0) {
+      removeChunk(index);
+    } else {
+      this.containers[index] = updated;
+    }
+    this.size--;
+    this.modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    if (!(o instanceof ObjectID)) { return false; }
+    final long lid = ((ObjectID) o).toLong();
+    final int index = indexOf(keyOf(lid));
+    return index >= 0 && this.containers[index].contains(lowOf(lid));
+  }
+
+  @Override
+  public boolean addAll(final Collection<? extends ObjectID> c) {
+    if (c instanceof RoaringObjectIDSet) {
+      return or((RoaringObjectIDSet) c);
+    } else if (c instanceof ObjectIDSet) {
+      final int before = this.size;
+      for (final Range range : ((ObjectIDSet) c).ranges()) {
+        insertRange(range);
+      }
+      return this.size != before;
+    }
+    return super.addAll(c);
+  }
+
+  @Override
+  public boolean removeAll(final Collection<?> c) {
+    if (c instanceof RoaringObjectIDSet) { return andNot((RoaringObjectIDSet) c); }
+    return super.removeAll(c);
+  }
+
+  @Override
+  public boolean retainAll(final Collection<?> c) {
+    if (c instanceof RoaringObjectIDSet) { return and((RoaringObjectIDSet) c); }
+    return super.retainAll(c);
+  }
+
+  /**
+   * Both key arrays are sorted, so the union is a merge of the two.
+   */
+  @FindbugsSuppressWarnings("VO_VOLATILE_INCREMENT")
+  private boolean or(final RoaringObjectIDSet other) {
+    final int capacity = Math.max(INITIAL_CHUNKS, this.chunks + other.chunks);
+    final long[] mergedKeys = new long[capacity];
+    final Container[] merged = new Container[capacity];
+    int i = 0, j = 0, n = 0;
+    while (i < this.chunks || j < other.chunks) {
+      if (j == other.chunks || (i < this.chunks && this.keys[i] < other.keys[j])) {
+        mergedKeys[n] = this.keys[i];
+        merged[n++] = this.containers[i++];
+      } else if (i == this.chunks || other.keys[j] < this.keys[i]) {
+        mergedKeys[n] = other.keys[j];
+        merged[n++] = other.containers[j++].copy();
+      } else {
+        mergedKeys[n] = this.keys[i];
+        merged[n++] = Container.or(this.containers[i++], other.containers[j++]);
+      }
+    }
+    return replaceChunks(mergedKeys, merged, n);
+  }
+
+  private boolean and(final RoaringObjectIDSet other) {
+    final long[] keptKeys = new long[Math.max(INITIAL_CHUNKS, Math.min(this.chunks, other.chunks))];
+    final Container[] kept = new Container[keptKeys.length];
+    int i = 0, j = 0, n = 0;
+    while (i < this.chunks && j < other.chunks) {
+      if (this.keys[i] < other.keys[j]) {
+        i++;
+      } else if (other.keys[j] < this.keys[i]) {
+        j++;
+      } else {
+        final Container c = Container.and(this.containers[i], other.containers[j]);
+        if (c != null) {
+          keptKeys[n] = this.keys[i];
+          kept[n++] = c;
+        }
+        i++;
+        j++;
+      }
+    }
+    return replaceChunks(keptKeys, kept, n);
+  }
+
+  private boolean andNot(final RoaringObjectIDSet other) {
+    final long[] keptKeys = new long[Math.max(INITIAL_CHUNKS, this.chunks)];
+    final Container[] kept = new Container[keptKeys.length];
+    int j = 0, n = 0;
+    for (int i = 0; i < this.chunks; i++) {
+      while (j < other.chunks && other.keys[j] < this.keys[i]) {
+        j++;
+      }
+      final Container c = (j < other.chunks && other.keys[j] == this.keys[i]) ? Container
+          .andNot(this.containers[i], other.containers[j]) : this.containers[i];
+      if (c != null) {
+        keptKeys[n] = this.keys[i];
+        kept[n++] = c;
+      }
+    }
+    return replaceChunks(keptKeys, kept, n);
+  }
+
+  @FindbugsSuppressWarnings("VO_VOLATILE_INCREMENT")
+  private boolean replaceChunks(final long[] newKeys, final Container[] newContainers, final int count) {
+    final int before = this.size;
+    this.keys = newKeys;
+    this.containers = newContainers;
+    this.chunks = count;
+    int total = 0;
+    for (int i = 0; i < count; i++) {
+      total += newContainers[i].cardinality();
+    }
+    this.size = total;
+    this.modCount++;
+    return this.size != before;
+  }
+
+  /**
+   * Turns chunks made of long stretches of consecutive ids into run containers where that makes them smaller.
+   */
+  public void optimize() {
+    for (int i = 0; i < this.chunks; i++) {
+      this.containers[i] = this.containers[i].optimize();
+    }
+  }
+
+  /**
+   * @return an estimate of the memory held by the containers, in bytes
+   */
+  public long sizeInBytes() {
+    long bytes = (long) this.keys.length * (8 + 4);
+    for (int i = 0; i < this.chunks; i++) {
+      bytes += this.containers[i].sizeInBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public Iterator<ObjectID> iterator() {
+    return new RoaringIterator();
+  }
+
+  @Override
+  public ObjectID first() {
+    if (this.size == 0) { throw new NoSuchElementException(); }
+    return new ObjectID(idOf(this.keys[0], this.containers[0].first()));
+  }
+
+  @Override
+  public ObjectID last() {
+    if (this.size == 0) { throw new NoSuchElementException(); }
+    return new ObjectID(idOf(this.keys[this.chunks - 1], this.containers[this.chunks - 1].last()));
+  }
+
+  @FindbugsSuppressWarnings("VO_VOLATILE_INCREMENT")
+  @Override
+  public void clear() {
+    this.keys = new long[INITIAL_CHUNKS];
+    this.containers = new Container[INITIAL_CHUNKS];
+    this.chunks = 0;
+    this.size = 0;
+    this.modCount++;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Ranges are expected to start on a multiple of 64, as those of the other ObjectIDSets do, so each word of the bitmap
+   * falls in a single chunk.
+   */
+  @FindbugsSuppressWarnings("VO_VOLATILE_INCREMENT")
+  @Override
+  protected void insertRange(final Range range) {
+    long start = range.getStart();
+    final long[] bitmap = range.getBitmap();
+    if ((start & (Long.SIZE - 1)) != 0) {
+      for (final long word : bitmap) {
+        for (long bits = word; bits != 0; bits &= bits - 1) {
+          add(new ObjectID(start + Long.numberOfTrailingZeros(bits)));
+        }
+        start += Long.SIZE;
+      }
+      return;
+    }
+    for (final long word : bitmap) {
+      if (word != 0) {
+        final long key = keyOf(start);
+        int index = indexOf(key);
+        if (index < 0) {
+          index = -index - 1;
+          insertChunk(index, key, new ArrayContainer());
+        }
+        final Container current = this.containers[index];
+        final int before = current.cardinality();
+        final Container updated = current.orWord(lowOf(start) >>> 6, word);
+        this.containers[index] = updated;
+        this.size += updated.cardinality() - before;
+      }
+      start += Long.SIZE;
+    }
+    this.modCount++;
+  }
+
+  /**
+   * Each chunk is handed out as the words from its first to its last id, split where it has long empty gaps.
+   */
+  @Override
+  protected Collection<? extends Range> ranges() {
+    final List<Range> ranges = new ArrayList<Range>();
+    final long[] words = new long[CHUNK_WORDS];
+    for (int i = 0; i < this.chunks; i++) {
+      Arrays.fill(words, 0L);
+      this.containers[i].orInto(words);
+      final long base = idOf(this.keys[i], 0);
+      int from = -1;
+      int lastSet = -1;
+      for (int w = 0; w < CHUNK_WORDS; w++) {
+        if (words[w] == 0) {
+          continue;
+        }
+        if (from >= 0 && w - lastSet > WordRange.MAX_GAP) {
+          ranges.add(new WordRange(base + (long) from * Long.SIZE, Arrays.copyOfRange(words, from, lastSet + 1)));
+          from = -1;
+        }
+        if (from < 0) {
+          from = w;
+        }
+        lastSet = w;
+      }
+      if (from >= 0) {
+        ranges.add(new WordRange(base + (long) from * Long.SIZE, Arrays.copyOfRange(words, from, lastSet + 1)));
+      }
+    }
+    return ranges;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("RoaringObjectIDSet{");
+    sb.append("size=").append(this.size);
+    sb.append(", chunks=").append(this.chunks);
+    sb.append(", containers=[");
+    for (int i = 0; i < this.chunks; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(this.keys[i]).append(':').append(this.containers[i]);
+    }
+    sb.append("], modCount=").append(this.modCount);
+    sb.append('}');
+    return sb.toString();
+  }
+
+  private class RoaringIterator implements Iterator<ObjectID> {
+
+    // position of the next id, chunk index and low bits, nextLow is -1 once exhausted
+    private int     chunk;
+    private int     nextLow;
+    private long    lastReturned;
+    private boolean canRemove;
+    private int     expectedModCount;
+
+    RoaringIterator() {
+      this.expectedModCount = RoaringObjectIDSet.this.modCount;
+      this.chunk = 0;
+      advance(0);
+    }
+
+    private void advance(int from) {
+      while (this.chunk < RoaringObjectIDSet.this.chunks) {
+        final int low = from < CHUNK_SIZE ? RoaringObjectIDSet.this.containers[this.chunk].nextValue(from) : -1;
+        if (low >= 0) {
+          this.nextLow = low;
+          return;
+        }
+        this.chunk++;
+        from = 0;
+      }
+      this.nextLow = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      checkModCount();
+      return this.nextLow >= 0;
+    }
+
+    @Override
+    public ObjectID next() {
+      checkModCount();
+      if (this.nextLow < 0) { throw new NoSuchElementException(); }
+      this.lastReturned = idOf(RoaringObjectIDSet.this.keys[this.chunk], this.nextLow);
+      this.canRemove = true;
+      advance(this.nextLow + 1);
+      return new ObjectID(this.lastReturned);
+    }
+
+    @Override
+    public void remove() {
+      if (!this.canRemove) { throw new IllegalStateException(); }
+      checkModCount();
+      final long nextKey = this.nextLow >= 0 ? RoaringObjectIDSet.this.keys[this.chunk] : 0;
+      RoaringObjectIDSet.this.remove(new ObjectID(this.lastReturned));
+      if (this.nextLow >= 0) {
+        // the chunk of the last id may have gone, find the next one again
+        this.chunk = indexOf(nextKey);
+      }
+      this.canRemove = false;
+      this.expectedModCount = RoaringObjectIDSet.this.modCount;
+    }
+
+    private void checkModCount() {
+      if (this.expectedModCount != RoaringObjectIDSet.this.modCount) { throw new ConcurrentModificationException(); }
+    }
+  }
+
+  private static final class WordRange implements Range {
+    // empty words tolerated inside one range before it is split in two
+    private static final int MAX_GAP = 8;
+
+    private final long       start;
+    private final long[]     bitmap;
+
+    WordRange(final long start, final long[] bitmap) {
+      this.start = start;
+      this.bitmap = bitmap;
+    }
+
+    @Override
+    public long getStart() {
+      return this.start;
+    }
+
+    @Override
+    public long[] getBitmap() {
+      return this.bitmap;
+    }
+  }
+
+  /**
+   * The low 16 bits of the ids of one chunk. Mutators return the container to use from then on, which is this one
+   * unless the change made another kind of container a better fit.
+   */
+  abstract static class Container {
+
+    abstract int cardinality();
+
+    abstract boolean contains(int low);
+
+    abstract Container add(int low);
+
+    abstract Container remove(int low);
+
+    /**
+     * Adds the ids of a bitmap word, word index being the low bits divided by 64.
+     */
+    abstract Container orWord(int wordIndex, long word);
+
+    abstract int first();
+
+    abstract int last();
+
+    /**
+     * @return the smallest id not less than from, -1 if there is none
+     */
+    abstract int nextValue(int from);
+
+    /**
+     * Sets the bits of this container in a chunk wide bitmap.
+     */
+    abstract void orInto(long[] words);
+
+    /**
+     * Clears the bits of this container in a chunk wide bitmap.
+     */
+    abstract void andNotInto(long[] words);
+
+    void andInto(final long[] words) {
+      final long[] mine = new long[CHUNK_WORDS];
+      orInto(mine);
+      for (int i = 0; i < CHUNK_WORDS; i++) {
+        words[i] &= mine[i];
+      }
+    }
+
+    abstract Container copy();
+
+    abstract int sizeInBytes();
+
+    abstract int runCount();
+
+    Container optimize() {
+      final int runs = runCount();
+      if (RunContainer.sizeInBytes(runs) < sizeInBytes()) { return RunContainer.from(this, runs); }
+      return this;
+    }
+
+    /**
+     * @return the smallest container for the bits, null if there are none
+     */
+    static Container fromWords(final long[] words) {
+      int cardinality = 0;
+      for (int i = 0; i < CHUNK_WORDS; i++) {
+        cardinality += Long.bitCount(words[i]);
+      }
+      if (cardinality == 0) { return null; }
+      if (cardinality > ARRAY_MAX) { return new BitmapContainer(words, cardinality); }
+      final char[] values = new char[cardinality];
+      int n = 0;
+      for (int i = 0; i < CHUNK_WORDS; i++) {
+        for (long bits = words[i]; bits != 0; bits &= bits - 1) {
+          values[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(bits));
+        }
+      }
+      return new ArrayContainer(values, cardinality);
+    }
+
+    static Container or(final Container a, final Container b) {
+      if (a instanceof ArrayContainer && b instanceof ArrayContainer
+          && a.cardinality() + b.cardinality() <= ARRAY_MAX) { return ArrayContainer.merge((ArrayContainer) a,
+                                                                                          (ArrayContainer) b); }
+      final long[] words = new long[CHUNK_WORDS];
+      a.orInto(words);
+      b.orInto(words);
+      return fromWords(words);
+    }
+
+    static Container and(final Container a, final Container b) {
+      if (a instanceof ArrayContainer) { return ((ArrayContainer) a).filter(b, true); }
+      if (b instanceof ArrayContainer) { return ((ArrayContainer) b).filter(a, true); }
+      final long[] words = new long[CHUNK_WORDS];
+      a.orInto(words);
+      b.andInto(words);
+      return fromWords(words);
+    }
+
+    static Container andNot(final Container a, final Container b) {
+      if (a instanceof ArrayContainer) { return ((ArrayContainer) a).filter(b, false); }
+      final long[] words = new long[CHUNK_WORDS];
+      a.orInto(words);
+      b.andNotInto(words);
+      return fromWords(words);
+    }
+  }
+
+  /**
+   * Sorted low bits, for chunks of up to {@link RoaringObjectIDSet#ARRAY_MAX} ids.
+   */
+  static final class ArrayContainer extends Container {
+    private char[] values;
+    private int    cardinality;
+
+    ArrayContainer() {
+      this(new char[4], 0);
+    }
+
+    ArrayContainer(final char[] values, final int cardinality) {
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    static ArrayContainer merge(final ArrayContainer a, final ArrayContainer b) {
+      final char[] merged = new char[a.cardinality + b.cardinality];
+      int i = 0, j = 0, n = 0;
+      while (i < a.cardinality && j < b.cardinality) {
+        final char x = a.values[i];
+        final char y = b.values[j];
+        if (x < y) {
+          merged[n++] = x;
+          i++;
+        } else if (y < x) {
+          merged[n++] = y;
+          j++;
+        } else {
+          merged[n++] = x;
+          i++;
+          j++;
+        }
+      }
+      while (i < a.cardinality) {
+        merged[n++] = a.values[i++];
+      }
+      while (j < b.cardinality) {
+        merged[n++] = b.values[j++];
+      }
+      return new ArrayContainer(merged, n);
+    }
+
+    /**
+     * @return the ids of this container that are (or are not) in the other one, null if none are left
+     */
+    Container filter(final Container other, final boolean keepContained) {
+      final char[] kept = new char[this.cardinality];
+      int n = 0;
+      for (int i = 0; i < this.cardinality; i++) {
+        if (other.contains(this.values[i]) == keepContained) {
+          kept[n++] = this.values[i];
+        }
+      }
+      return n == 0 ? null : new ArrayContainer(kept, n);
+    }
+
+    @Override
+    int cardinality() {
+      return this.cardinality;
+    }
+
+    @Override
+    boolean contains(final int low) {
+      return Arrays.binarySearch(this.values, 0, this.cardinality, (char) low) >= 0;
+    }
+
+    @Override
+    Container add(final int low) {
+      final int index = Arrays.binarySearch(this.values, 0, this.cardinality, (char) low);
+      if (index >= 0) { return this; }
+      if (this.cardinality == ARRAY_MAX) { return toBitmap().add(low); }
+      final int insertion = -index - 1;
+      if (this.cardinality == this.values.length) {
+        this.values = Arrays.copyOf(this.values, Math.min(ARRAY_MAX, this.values.length * 2));
+      }
+      System.arraycopy(this.values, insertion, this.values, insertion + 1, this.cardinality - insertion);
+      this.values[insertion] = (char) low;
+      this.cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(final int low) {
+      final int index = Arrays.binarySearch(this.values, 0, this.cardinality, (char) low);
+      if (index < 0) { return this; }
+      System.arraycopy(this.values, index + 1, this.values, index, this.cardinality - index - 1);
+      this.cardinality--;
+      return this;
+    }
+
+    @Override
+    Container orWord(final int wordIndex, final long word) {
+      Container c = this;
+      for (long bits = word; bits != 0; bits &= bits - 1) {
+        c = c.add((wordIndex << 6) + Long.numberOfTrailingZeros(bits));
+      }
+      return c;
+    }
+
+    private BitmapContainer toBitmap() {
+      final long[] words = new long[CHUNK_WORDS];
+      orInto(words);
+      return new BitmapContainer(words, this.cardinality);
+    }
+
+    @Override
+    int first() {
+      if (this.cardinality == 0) { throw new NoSuchElementException(); }
+      return this.values[0];
+    }
+
+    @Override
+    int last() {
+      if (this.cardinality == 0) { throw new NoSuchElementException(); }
+      return this.values[this.cardinality - 1];
+    }
+
+    @Override
+    int nextValue(final int from) {
+      int index = Arrays.binarySearch(this.values, 0, this.cardinality, (char) from);
+      if (index >= 0) { return from; }
+      index = -index - 1;
+      return index < this.cardinality ? this.values[index] : -1;
+    }
+
+    @Override
+    void orInto(final long[] words) {
+      for (int i = 0; i < this.cardinality; i++) {
+        final int v = this.values[i];
+        words[v >>> 6] |= 1L << v;
+      }
+    }
+
+    @Override
+    void andNotInto(final long[] words) {
+      for (int i = 0; i < this.cardinality; i++) {
+        final int v = this.values[i];
+        words[v >>> 6] &= ~(1L << v);
+      }
+    }
+
+    @Override
+    Container copy() {
+      return new ArrayContainer(Arrays.copyOf(this.values, this.cardinality), this.cardinality);
+    }
+
+    @Override
+    int sizeInBytes() {
+      return 2 * this.values.length;
+    }
+
+    @Override
+    int runCount() {
+      int runs = 0;
+      for (int i = 0; i < this.cardinality; i++) {
+        if (i == 0 || this.values[i] != this.values[i - 1] + 1) {
+          runs++;
+        }
+      }
+      return runs;
+    }
+
+    @Override
+    Container optimize() {
+      final Container optimized = super.optimize();
+      // drop the spare room left from growing
+      return optimized == this && this.values.length > this.cardinality ? copy() : optimized;
+    }
+
+    @Override
+    public String toString() {
+      return "Array(" + this.cardinality + ")";
+    }
+  }
+
+  /**
+   * One bit per id of the chunk.
+   */
+  static final class BitmapContainer extends Container {
+    private final long[] words;
+    private int          cardinality;
+
+    BitmapContainer(final long[] words, final int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return this.cardinality;
+    }
+
+    @Override
+    boolean contains(final int low) {
+      return (this.words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    Container add(final int low) {
+      final long bit = 1L << low;
+      if ((this.words[low >>> 6] & bit) == 0) {
+        this.words[low >>> 6] |= bit;
+        this.cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(final int low) {
+      final long bit = 1L << low;
+      if ((this.words[low >>> 6] & bit) != 0) {
+        this.words[low >>> 6] &= ~bit;
+        this.cardinality--;
+        // well below the array limit, so ids hovering around it do not flip the container back and forth
+        if (this.cardinality > 0 && this.cardinality <= ARRAY_MAX / 2) { return Container.fromWords(this.words); }
+      }
+      return this;
+    }
+
+    @Override
+    Container orWord(final int wordIndex, final long word) {
+      final long before = this.words[wordIndex];
+      this.words[wordIndex] = before | word;
+      this.cardinality += Long.bitCount(word & ~before);
+      return this;
+    }
+
+    @Override
+    int first() {
+      return nextValue(0);
+    }
+
+    @Override
+    int last() {
+      for (int i = CHUNK_WORDS - 1; i >= 0; i--) {
+        if (this.words[i] != 0) { return (i << 6) + Long.SIZE - 1 - Long.numberOfLeadingZeros(this.words[i]); }
+      }
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    int nextValue(final int from) {
+      int i = from >>> 6;
+      long word = this.words[i] & (-1L << from);
+      while (true) {
+        if (word != 0) { return (i << 6) + Long.numberOfTrailingZeros(word); }
+        if (++i == CHUNK_WORDS) { return -1; }
+        word = this.words[i];
+      }
+    }
+
+    @Override
+    void orInto(final long[] target) {
+      for (int i = 0; i < CHUNK_WORDS; i++) {
+        target[i] |= this.words[i];
+      }
+    }
+
+    @Override
+    void andNotInto(final long[] target) {
+      for (int i = 0; i < CHUNK_WORDS; i++) {
+        target[i] &= ~this.words[i];
+      }
+    }
+
+    @Override
+    void andInto(final long[] target) {
+      for (int i = 0; i < CHUNK_WORDS; i++) {
+        target[i] &= this.words[i];
+      }
+    }
+
+    @Override
+    Container copy() {
+      return new BitmapContainer(this.words.clone(), this.cardinality);
+    }
+
+    @Override
+    int sizeInBytes() {
+      return 8 * CHUNK_WORDS;
+    }
+
+    @Override
+    int runCount() {
+      int runs = 0;
+      long carry = 0;
+      for (int i = 0; i < CHUNK_WORDS; i++) {
+        final long word = this.words[i];
+        // a run starts on every set bit whose lower neighbour is clear
+        runs += Long.bitCount(word & ~((word << 1) | carry));
+        carry = word >>> 63;
+      }
+      return runs;
+    }
+
+    @Override
+    public String toString() {
+      return "Bitmap(" + this.cardinality + ")";
+    }
+  }
+
+  /**
+   * Runs of consecutive ids, as pairs of start and length minus one.
+   */
+  static final class RunContainer extends Container {
+    private char[] runs;
+    private int    runCount;
+    private int    cardinality;
+
+    private RunContainer(final char[] runs, final int runCount, final int cardinality) {
+      this.runs = runs;
+      this.runCount = runCount;
+      this.cardinality = cardinality;
+    }
+
+    static int sizeInBytes(final int runs) {
+      return 4 * runs;
+    }
+
+    static RunContainer from(final Container c, final int runCount) {
+      final char[] runs = new char[2 * runCount];
+      int n = 0;
+      int v = c.nextValue(0);
+      while (v >= 0) {
+        int end = v;
+        while (end + 1 < CHUNK_SIZE && c.contains(end + 1)) {
+          end++;
+        }
+        runs[2 * n] = (char) v;
+        runs[2 * n + 1] = (char) (end - v);
+        n++;
+        v = end + 1 < CHUNK_SIZE ? c.nextValue(end + 1) : -1;
+      }
+      return new RunContainer(runs, n, c.cardinality());
+    }
+
+    private int start(final int run) {
+      return this.runs[2 * run];
+    }
+
+    private int end(final int run) {
+      return this.runs[2 * run] + this.runs[2 * run + 1];
+    }
+
+    /**
+     * @return the last run starting at or before low, -1 if there is none
+     */
+    private int runAtOrBefore(final int low) {
+      int lo = 0, hi = this.runCount - 1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (start(mid) <= low) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return hi;
+    }
+
+    private void setRun(final int run, final int start, final int end) {
+      this.runs[2 * run] = (char) start;
+      this.runs[2 * run + 1] = (char) (end - start);
+    }
+
+    private void insertRun(final int run, final int start, final int end) {
+      if (2 * (this.runCount + 1) > this.runs.length) {
+        this.runs = Arrays.copyOf(this.runs, Math.max(4, this.runs.length * 2));
+      }
+      System.arraycopy(this.runs, 2 * run, this.runs, 2 * run + 2, 2 * (this.runCount - run));
+      this.runCount++;
+      setRun(run, start, end);
+    }
+
+    private void deleteRun(final int run) {
+      System.arraycopy(this.runs, 2 * run + 2, this.runs, 2 * run, 2 * (this.runCount - run - 1));
+      this.runCount--;
+    }
+
+    /**
+     * Once runs are no longer the smallest way to hold the ids, go back to an array or a bitmap.
+     */
+    private Container settle() {
+      final int other = this.cardinality <= ARRAY_MAX ? 2 * this.cardinality : 8 * CHUNK_WORDS;
+      if (sizeInBytes(this.runCount) <= other) { return this; }
+      final long[] words = new long[CHUNK_WORDS];
+      orInto(words);
+      return Container.fromWords(words);
+    }
+
+    @Override
+    int cardinality() {
+      return this.cardinality;
+    }
+
+    @Override
+    boolean contains(final int low) {
+      final int run = runAtOrBefore(low);
+      return run >= 0 && low <= end(run);
+    }
+
+    @Override
+    Container add(final int low) {
+      final int run = runAtOrBefore(low);
+      if (run >= 0 && low <= end(run)) { return this; }
+      this.cardinality++;
+      final boolean extendsLeft = run >= 0 && end(run) + 1 == low;
+      final boolean extendsRight = run + 1 < this.runCount && start(run + 1) == low + 1;
+      if (extendsLeft && extendsRight) {
+        setRun(run, start(run), end(run + 1));
+        deleteRun(run + 1);
+      } else if (extendsLeft) {
+        setRun(run, start(run), low);
+      } else if (extendsRight) {
+        setRun(run + 1, low, end(run + 1));
+      } else {
+        insertRun(run + 1, low, low);
+        return settle();
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(final int low) {
+      final int run = runAtOrBefore(low);
+      if (run < 0 || low > end(run)) { return this; }
+      this.cardinality--;
+      final int start = start(run);
+      final int end = end(run);
+      if (start == end) {
+        deleteRun(run);
+      } else if (low == start) {
+        setRun(run, start + 1, end);
+      } else if (low == end) {
+        setRun(run, start, end - 1);
+      } else {
+        setRun(run, start, low - 1);
+        insertRun(run + 1, low + 1, end);
+        return settle();
+      }
+      return this;
+    }
+
+    @Override
+    Container orWord(final int wordIndex, final long word) {
+      Container c = this;
+      for (long bits = word; bits != 0; bits &= bits - 1) {
+        c = c.add((wordIndex << 6) + Long.numberOfTrailingZeros(bits));
+      }
+      return c;
+    }
+
+    @Override
+    int first() {
+      if (this.runCount == 0) { throw new NoSuchElementException(); }
+      return start(0);
+    }
+
+    @Override
+    int last() {
+      if (this.runCount == 0) { throw new NoSuchElementException(); }
+      return end(this.runCount - 1);
+    }
+
+    @Override
+    int nextValue(final int from) {
+      final int run = runAtOrBefore(from);
+      if (run >= 0 && from <= end(run)) { return from; }
+      return run + 1 < this.runCount ? start(run + 1) : -1;
+    }
+
+    @Override
+    void orInto(final long[] words) {
+      for (int r = 0; r < this.runCount; r++) {
+        setBits(words, start(r), end(r));
+      }
+    }
+
+    @Override
+    void andNotInto(final long[] words) {
+      for (int r = 0; r < this.runCount; r++) {
+        clearBits(words, start(r), end(r));
+      }
+    }
+
+    private static void setBits(final long[] words, final int from, final int to) {
+      final int first = from >>> 6;
+      final int last = to >>> 6;
+      final long firstMask = -1L << from;
+      final long lastMask = -1L >>> (Long.SIZE - 1 - (to & (Long.SIZE - 1)));
+      if (first == last) {
+        words[first] |= firstMask & lastMask;
+        return;
+      }
+      words[first] |= firstMask;
+      for (int i = first + 1; i < last; i++) {
+        words[i] = -1L;
+      }
+      words[last] |= lastMask;
+    }
+
+    private static void clearBits(final long[] words, final int from, final int to) {
+      final int first = from >>> 6;
+      final int last = to >>> 6;
+      final long firstMask = -1L << from;
+      final long lastMask = -1L >>> (Long.SIZE - 1 - (to & (Long.SIZE - 1)));
+      if (first == last) {
+        words[first] &= ~(firstMask & lastMask);
+        return;
+      }
+      words[first] &= ~firstMask;
+      for (int i = first + 1; i < last; i++) {
+        words[i] = 0;
+      }
+      words[last] &= ~lastMask;
+    }
+
+    @Override
+    Container copy() {
+      return new RunContainer(Arrays.copyOf(this.runs, 2 * this.runCount), this.runCount, this.cardinality);
+    }
+
+    @Override
+    int sizeInBytes() {
+      return 2 * this.runs.length;
+    }
+
+    @Override
+    int runCount() {
+      return this.runCount;
+    }
+
+    @Override
+    Container optimize() {
+      return settle();
+    }
+
+    @Override
+    public String toString() {
+      return "Run(" + this.cardinality + " in " + this.runCount + ")";
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.invalidation;
+
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class InvalidationsTest extends TCTestCase {
+
+  public void testSerializationRoundTrip() throws Exception {
+    Invalidations invalidations = new Invalidations();
+    ObjectID mapId1 = new ObjectID(1001);
+    ObjectID mapId2 = new ObjectID(1002);
+    // runs, isolated ids, far apart ids and a run across a long boundary
+    for (long id = 10; id < 200; id++) {
+      invalidations.add(mapId1, new ObjectID(id));
+    }
+    invalidations.add(mapId1, new ObjectID(202));
+    invalidations.add(mapId1, new ObjectID(5000000000L));
+    for (long id = 60; id < 70; id++) {
+      invalidations.add(mapId2, new ObjectID(id));
+    }
+    invalidations.add(mapId2, new ObjectID(0));
+
+    Invalidations read = roundTrip(invalidations);
+    assertEquals(invalidations, read);
+    assertEquals(invalidations.size(), read.size());
+  }
+
+  public void testEmptyRoundTrip() throws Exception {
+    Invalidations read = roundTrip(new Invalidations());
+    assertTrue(read.isEmpty());
+  }
+
+  public void testRunsAreSmallerThanRanges() throws Exception {
+    Invalidations invalidations = new Invalidations();
+    for (long id = 1000000; id < 1010000; id++) {
+      invalidations.add(ObjectID.NULL_ID, new ObjectID(id));
+    }
+    long saved = Invalidations.getSerializedBytesSaved();
+    roundTrip(invalidations);
+    // map count, map id, run count, first id and run length, against map count, map id, range count, first and last id
+    assertEquals((4 + 8 + 4 + 16) - (4 + 8 + 1 + 8 + 2), Invalidations.getSerializedBytesSaved() - saved);
+
+    invalidations = new Invalidations();
+    for (long id = 0; id < 20; id += 2) {
+      invalidations.add(ObjectID.NULL_ID, new ObjectID(id));
+    }
+    saved = Invalidations.getSerializedBytesSaved();
+    roundTrip(invalidations);
+    // first id and 9 gaps, 10 run lengths
+    assertEquals((4 + 8 + 4 + 10 * 16) - (4 + 8 + 1 + 8 + 9 + 10), Invalidations.getSerializedBytesSaved() - saved);
+  }
+
+  public void testAdoptDoesNotCopy() {
+    ObjectIDSet oids = new BitSetObjectIDSet();
+    oids.add(new ObjectID(1));
+    Map<ObjectID, ObjectIDSet> map = Collections.singletonMap(new ObjectID(1001), oids);
+    assertSame(oids, Invalidations.adopt(map).getObjectIDSetForMapId(new ObjectID(1001)));
+    assertNotSame(oids, new Invalidations(map).getObjectIDSetForMapId(new ObjectID(1001)));
+  }
+
+  private static Invalidations roundTrip(Invalidations invalidations) throws Exception {
+    long written = Invalidations.getSerializedBytes();
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    invalidations.serializeTo(out);
+    out.close();
+    assertEquals(out.getBytesWritten(), Invalidations.getSerializedBytes() - written);
+    return (Invalidations) new Invalidations().deserializeFrom(new TCByteBufferInputStream(out.toArray()));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.net.core;
+
+import com.tc.test.TCTestCase;
+import com.tc.util.concurrent.ThreadUtil;
+
+import java.io.EOFException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class DirectBufferManagerTest extends TCTestCase {
+
+  private ServerSocketChannel server;
+  private SocketChannel       writer;
+  private SocketChannel       reader;
+
+  @Override
+  protected void setUp() throws Exception {
+    server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+    writer = SocketChannel.open();
+    // small socket buffers so a large gathering write can only go out partially
+    writer.socket().setSendBufferSize(16 * 1024);
+    writer.connect(server.socket().getLocalSocketAddress());
+    reader = server.accept();
+    reader.socket().setReceiveBufferSize(16 * 1024);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    writer.close();
+    reader.close();
+    server.close();
+  }
+
+  public void testPartialGatheringWriteResumesWhereItStopped() throws Exception {
+    final ByteBuffer[] srcs = new ByteBuffer[] { sequence(0, 1024 * 1024, true), sequence(1024 * 1024, 1, true),
+        sequence(1024 * 1024 + 1, 1024 * 1024, false) };
+    final int total = 2 * 1024 * 1024 + 1;
+    DirectBufferManager manager = new DirectBufferManager(writer);
+    writer.configureBlocking(false);
+
+    long written = manager.gatheringWrite(srcs, 0, srcs.length);
+    assertTrue(written > 0);
+    assertTrue("socket took all " + written + " bytes", written < total);
+    // what was written is a prefix of the buffers, in order
+    long consumed = 0;
+    boolean gap = false;
+    for (ByteBuffer src : srcs) {
+      if (gap) {
+        assertEquals(0, src.position());
+      }
+      consumed += src.position();
+      gap |= src.hasRemaining();
+    }
+    assertEquals(written, consumed);
+
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread drainer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          ByteBuffer dst = ByteBuffer.allocate(total);
+          while (dst.hasRemaining()) {
+            if (reader.read(dst) == -1) { throw new EOFException(); }
+          }
+          dst.flip();
+          for (int i = 0; i < total; i++) {
+            assertEquals("byte " + i, (byte) i, dst.get());
+          }
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      }
+    };
+    drainer.start();
+
+    int first = 0;
+    while (first < srcs.length) {
+      if (!srcs[first].hasRemaining()) {
+        first++;
+        continue;
+      }
+      if (manager.gatheringWrite(srcs, first, srcs.length - first) == 0) {
+        ThreadUtil.reallySleep(1);
+      }
+    }
+    drainer.join();
+    if (error.get() != null) { throw new AssertionError(error.get()); }
+  }
+
+  public void testScatteringReadFillsBuffersAcrossBoundaries() throws Exception {
+    ByteBuffer src = sequence(0, 100, false);
+    while (src.hasRemaining()) {
+      writer.write(src);
+    }
+
+    ByteBuffer[] dsts = new ByteBuffer[] { ByteBuffer.allocateDirect(30), ByteBuffer.allocate(30),
+        ByteBuffer.allocateDirect(30), ByteBuffer.allocate(30) };
+    DirectBufferManager manager = new DirectBufferManager(reader);
+    long read = 0;
+    while (read < 100) {
+      read += manager.scatteringRead(dsts, 0, dsts.length);
+    }
+    assertEquals(100, read);
+
+    int expected = 0;
+    int[] filled = new int[] { 30, 30, 30, 10 };
+    for (int i = 0; i < dsts.length; i++) {
+      assertEquals(filled[i], dsts[i].position());
+      dsts[i].flip();
+      while (dsts[i].hasRemaining()) {
+        assertEquals((byte) expected++, dsts[i].get());
+      }
+    }
+  }
+
+  public void testScatteringReadAtEndOfStream() throws Exception {
+    writer.close();
+    DirectBufferManager manager = new DirectBufferManager(reader);
+    try {
+      manager.scatteringRead(new ByteBuffer[] { ByteBuffer.allocate(10), ByteBuffer.allocate(10) }, 0, 2);
+      fail();
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+
+  private static ByteBuffer sequence(int start, int length, boolean direct) {
+    ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+    for (int i = 0; i < length; i++) {
+      buffer.put((byte) (start + i));
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.net.core;
+
+import com.tc.test.TCTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class WriteCoalescerTest extends TCTestCase {
+
+  private static final long MAX_DELAY = TimeUnit.MICROSECONDS.toNanos(200);
+
+  public void testIdleLinkWritesAtOnce() {
+    WriteCoalescer coalescer = new WriteCoalescer(MAX_DELAY);
+    long now = System.nanoTime();
+    assertEquals(0, coalescer.messageQueued(now));
+    // a drain long ago leaves the link idle
+    coalescer.drained(1, now);
+    assertEquals(0, coalescer.messageQueued(now + MAX_DELAY + 1));
+  }
+
+  public void testBusyLinkCoalesces() {
+    WriteCoalescer coalescer = new WriteCoalescer(MAX_DELAY);
+    long now = System.nanoTime();
+    // a message every microsecond, each written on its own
+    for (int i = 0; i < 100; i++) {
+      now += 1000;
+      coalescer.messageQueued(now);
+      coalescer.drained(1, now);
+    }
+    long delay = coalescer.messageQueued(now + 1000);
+    assertTrue(delay > 0);
+    assertTrue(delay <= MAX_DELAY);
+  }
+
+  public void testSparseMessagesAreNotHeld() {
+    WriteCoalescer coalescer = new WriteCoalescer(MAX_DELAY);
+    long now = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      now += MAX_DELAY;
+      coalescer.drained(1, now);
+      now += MAX_DELAY;
+      coalescer.messageQueued(now);
+    }
+    // the link is busy, but the next message is not expected soon enough to wait for it
+    coalescer.drained(1, now);
+    assertEquals(0, coalescer.messageQueued(now + MAX_DELAY / 2));
+  }
+
+  public void testDeepBatchesAreNotHeld() {
+    WriteCoalescer coalescer = new WriteCoalescer(MAX_DELAY);
+    long now = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      now += 1000;
+      coalescer.messageQueued(now);
+      coalescer.drained(WriteCoalescer.TARGET_DEPTH * 2, now);
+    }
+    assertEquals(0, coalescer.messageQueued(now + 1000));
+  }
+}
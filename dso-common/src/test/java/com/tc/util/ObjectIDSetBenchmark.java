@@ -0,0 +1,145 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.util;
+
+import com.tc.object.ObjectID;
+
+import java.util.Random;
+
+/**
+ * Compares the memory used by {@link BitSetObjectIDSet}, {@link ExpandingBitSetObjectIDSet} and
+ * {@link RoaringObjectIDSet}, and the time they take to build and combine, on dense ids, sparse ids and the ids left
+ * behind by a DGC run that collected most of a dense range. Not run as part of the build, run its main method with the
+ * test classpath.
+ */
+public class ObjectIDSetBenchmark {
+
+  private static final int    IDS     = 2000000;
+  private static final int    ROUNDS  = 5;
+  private static final String[] TYPES = { "BitSet", "ExpandingBitSet", "Roaring" };
+
+  public static void main(String[] args) {
+    run("dense", dense(0), dense(IDS / 2));
+    run("sparse", sparse(1), sparse(2));
+    run("post-dgc", postDGC(3), postDGC(4));
+  }
+
+  private static void run(String distribution, long[] a, long[] b) {
+    System.out.printf("%s : %d ids%n", distribution, a.length);
+    for (String type : TYPES) {
+      // warm up
+      measure(type, a, b);
+      long best = Long.MAX_VALUE;
+      long[] times = null;
+      for (int r = 0; r < ROUNDS; r++) {
+        long[] t = measure(type, a, b);
+        if (t[0] < best) {
+          best = t[0];
+          times = t;
+        }
+      }
+      long heap = heapOf(type, a);
+      System.out.printf("  %-16s heap %10d bytes  add %6.1f ms  addAll %6.1f ms  removeAll %6.1f ms  retainAll %6.1f ms%n",
+                        type, heap, times[0] / 1e6, times[1] / 1e6, times[2] / 1e6, times[3] / 1e6);
+    }
+  }
+
+  private static long[] measure(String type, long[] a, long[] b) {
+    long[] times = new long[4];
+    long start = System.nanoTime();
+    ObjectIDSet setA = build(type, a);
+    times[0] = System.nanoTime() - start;
+    ObjectIDSet setB = build(type, b);
+
+    ObjectIDSet union = copy(type, setA);
+    start = System.nanoTime();
+    union.addAll(setB);
+    times[1] = System.nanoTime() - start;
+
+    ObjectIDSet difference = copy(type, setA);
+    start = System.nanoTime();
+    difference.removeAll(setB);
+    times[2] = System.nanoTime() - start;
+
+    ObjectIDSet intersection = copy(type, setA);
+    start = System.nanoTime();
+    intersection.retainAll(setB);
+    times[3] = System.nanoTime() - start;
+    return times;
+  }
+
+  private static long heapOf(String type, long[] ids) {
+    long before = usedHeap();
+    ObjectIDSet set = build(type, ids);
+    long used = usedHeap() - before;
+    if (set instanceof RoaringObjectIDSet) {
+      System.out.printf("  %-16s estimated %10d bytes%n", type, ((RoaringObjectIDSet) set).sizeInBytes());
+    }
+    // keep the set reachable until it has been measured, small sets are lost in the noise of the collector
+    return set.size() < 0 ? 0 : Math.max(0, used);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static ObjectIDSet build(String type, long[] ids) {
+    ObjectIDSet set = create(type);
+    for (long id : ids) {
+      set.add(new ObjectID(id));
+    }
+    if (set instanceof RoaringObjectIDSet) {
+      ((RoaringObjectIDSet) set).optimize();
+    }
+    return set;
+  }
+
+  private static ObjectIDSet copy(String type, ObjectIDSet set) {
+    if ("BitSet".equals(type)) { return new BitSetObjectIDSet(set); }
+    if ("ExpandingBitSet".equals(type)) { return new ExpandingBitSetObjectIDSet(set); }
+    return new RoaringObjectIDSet(set);
+  }
+
+  private static ObjectIDSet create(String type) {
+    if ("BitSet".equals(type)) { return new BitSetObjectIDSet(); }
+    if ("ExpandingBitSet".equals(type)) { return new ExpandingBitSetObjectIDSet(); }
+    return new RoaringObjectIDSet();
+  }
+
+  private static long[] dense(long offset) {
+    long[] ids = new long[IDS];
+    for (int i = 0; i < IDS; i++) {
+      ids[i] = offset + i;
+    }
+    return ids;
+  }
+
+  private static long[] sparse(long seed) {
+    Random r = new Random(seed);
+    long[] ids = new long[IDS];
+    for (int i = 0; i < IDS; i++) {
+      ids[i] = (long) (r.nextDouble() * IDS * 1000);
+    }
+    return ids;
+  }
+
+  private static long[] postDGC(long seed) {
+    // one object in ten survives, in clusters as whole object graphs do
+    Random r = new Random(seed);
+    long[] ids = new long[IDS];
+    long next = 0;
+    for (int i = 0; i < IDS;) {
+      int cluster = 1 + r.nextInt(20);
+      for (int j = 0; j < cluster && i < IDS; j++) {
+        ids[i++] = next++;
+      }
+      next += cluster * 9;
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.util;
+
+import org.junit.Test;
+
+import com.tc.object.ObjectID;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RoaringObjectIDSetTest extends ObjectIDSetTestBase {
+  @Override
+  protected ObjectIDSet create() {
+    return new RoaringObjectIDSet();
+  }
+
+  @Override
+  protected ObjectIDSet create(final Collection<ObjectID> copy) {
+    return new RoaringObjectIDSet(copy);
+  }
+
+  @Test
+  public void testContainerTransitions() {
+    RoaringObjectIDSet set = new RoaringObjectIDSet();
+    TreeSet<ObjectID> reference = new TreeSet<ObjectID>();
+    // fill one chunk past the array limit and empty it again
+    for (int i = 0; i < 3 * RoaringObjectIDSet.ARRAY_MAX; i += 2) {
+      set.add(new ObjectID(i));
+      reference.add(new ObjectID(i));
+    }
+    assertEquals(reference, set);
+    for (int i = 0; i < 3 * RoaringObjectIDSet.ARRAY_MAX; i += 4) {
+      assertTrue(set.remove(new ObjectID(i)));
+      reference.remove(new ObjectID(i));
+      assertEquals(reference.size(), set.size());
+    }
+    assertEquals(reference, set);
+    assertEquals(reference.first(), set.first());
+    assertEquals(reference.last(), set.last());
+  }
+
+  @Test
+  public void testRunContainers() {
+    RoaringObjectIDSet set = new RoaringObjectIDSet();
+    for (long i = -100000; i < 300000; i++) {
+      set.add(new ObjectID(i));
+    }
+    long bitmaps = set.sizeInBytes();
+    set.optimize();
+    assertTrue(set.sizeInBytes() < bitmaps / 100);
+
+    // punch holes in the runs and fill some of them again
+    TreeSet<ObjectID> reference = new TreeSet<ObjectID>();
+    for (long i = -100000; i < 300000; i++) {
+      reference.add(new ObjectID(i));
+    }
+    for (long i = -99999; i < 300000; i += 1000) {
+      assertTrue(set.remove(new ObjectID(i)));
+      reference.remove(new ObjectID(i));
+    }
+    for (long i = -99999; i < 300000; i += 3000) {
+      assertTrue(set.add(new ObjectID(i)));
+      reference.add(new ObjectID(i));
+    }
+    assertFalse(set.add(new ObjectID(0)));
+    assertEquals(reference, set);
+    assertEquals(reference.first(), set.first());
+    assertEquals(reference.last(), set.last());
+  }
+
+  @Test
+  public void testSetOperations() {
+    Random r = new Random(42);
+    for (int round = 0; round < 20; round++) {
+      TreeSet<ObjectID> a = randomIDs(r);
+      TreeSet<ObjectID> b = randomIDs(r);
+
+      RoaringObjectIDSet union = new RoaringObjectIDSet(a);
+      assertEquals(!b.isEmpty() && !a.containsAll(b), union.addAll(new RoaringObjectIDSet(b)));
+      TreeSet<ObjectID> expected = new TreeSet<ObjectID>(a);
+      expected.addAll(b);
+      assertEquals(expected, union);
+      assertEquals(expected.size(), union.size());
+
+      RoaringObjectIDSet intersection = new RoaringObjectIDSet(a);
+      intersection.retainAll(new RoaringObjectIDSet(b));
+      expected = new TreeSet<ObjectID>(a);
+      expected.retainAll(b);
+      assertEquals(expected, intersection);
+      assertEquals(expected.size(), intersection.size());
+
+      RoaringObjectIDSet difference = new RoaringObjectIDSet(a);
+      difference.removeAll(new RoaringObjectIDSet(b));
+      expected = new TreeSet<ObjectID>(a);
+      expected.removeAll(b);
+      assertEquals(expected, difference);
+      assertEquals(expected.size(), difference.size());
+    }
+  }
+
+  @Test
+  public void testCopyBetweenImplementations() {
+    TreeSet<ObjectID> reference = randomIDs(new Random(7));
+    ObjectIDSet roaring = new RoaringObjectIDSet(reference);
+
+    BitSetObjectIDSet bitSet = new BitSetObjectIDSet(roaring);
+    assertEquals(reference, bitSet);
+
+    RoaringObjectIDSet copy = new RoaringObjectIDSet();
+    copy.addAll(bitSet);
+    assertEquals(reference, copy);
+    assertEquals(reference.size(), copy.size());
+  }
+
+  @Test
+  public void testIteratorRemoveAcrossChunks() {
+    RoaringObjectIDSet set = new RoaringObjectIDSet();
+    for (long i = 0; i < 10; i++) {
+      set.add(new ObjectID(i << 16));
+      set.add(new ObjectID((i << 16) + 1));
+    }
+    int seen = 0;
+    for (Iterator<ObjectID> i = set.iterator(); i.hasNext();) {
+      ObjectID id = i.next();
+      seen++;
+      if ((id.toLong() & 1) == 0) {
+        i.remove();
+      }
+    }
+    assertEquals(20, seen);
+    assertEquals(10, set.size());
+    for (ObjectID id : set) {
+      assertEquals(1, id.toLong() & 0xFFFF);
+    }
+  }
+
+  /**
+   * Mixes dense stretches, sparse ids and runs over a few chunks, with negative ids.
+   */
+  private static TreeSet<ObjectID> randomIDs(Random r) {
+    TreeSet<ObjectID> ids = new TreeSet<ObjectID>();
+    int blocks = r.nextInt(8);
+    for (int b = 0; b < blocks; b++) {
+      long base = (r.nextInt(16) - 4) * 65536L + r.nextInt(65536);
+      switch (r.nextInt(3)) {
+        case 0:
+          for (int i = 0; i < 20000; i++) {
+            ids.add(new ObjectID(base + r.nextInt(30000)));
+          }
+          break;
+        case 1:
+          for (int i = 0; i < 500; i++) {
+            ids.add(new ObjectID(base + r.nextInt(65536)));
+          }
+          break;
+        default:
+          int length = r.nextInt(100000);
+          for (int i = 0; i < length; i++) {
+            ids.add(new ObjectID(base + i));
+          }
+      }
+    }
+    return ids;
+  }
+}
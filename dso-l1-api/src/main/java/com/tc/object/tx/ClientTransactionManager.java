@@ -147,6 +147,22 @@ public interface ClientTransactionManager extends ClearableCallback {
    * @throws AbortedOperationException
    */
   public void waitForAllCurrentTransactionsToComplete() throws AbortedOperationException;
+
+  /**
+   * Non blocking counterpart of {@link #waitForAllCurrentTransactionsToComplete()}
+   * 
+   * @return a future resolved once all the transactions in flight at the time of the call are acknowledged
+   */
+  public TransactionCompletionFuture allCurrentTransactionsCompletion();
+
+  /**
+   * Get a completion handle for the current transaction of the calling thread, so that writers can commit without
+   * waiting and collect the acknowledgements later. The handle fails if the transaction is aborted.
+   * 
+   * @return a future resolved once the current transaction is committed and acknowledged
+   * @throws UnlockedSharedObjectException If there is no current transaction
+   */
+  public TransactionCompletionFuture currentTransactionCompletion() throws UnlockedSharedObjectException;
   
   public void receivedLogicalChangeResult(Map<LogicalChangeID, LogicalChangeResult> results);
 
@@ -0,0 +1,151 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.object.tx;
+
+import com.tc.abortable.AbortedOperationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Completion handle of a commit that does not park the committing thread. It is resolved by the thread processing the
+ * server acknowledgements, either when the transaction it was registered on is acknowledged, or when all the
+ * transactions it was waiting for (those under a lock, or all those in flight) are. A writer can therefore keep many
+ * commits in flight and only wait, or be called back, when it needs to know they are applied.
+ * <p>
+ * Callbacks registered with {@link #whenComplete(Runnable)} are run on the acknowledging thread and must not block.
+ * A commit cannot be taken back, so {@link #cancel(boolean)} always returns false.
+ */
+public class TransactionCompletionFuture implements Future<Void>, TransactionCompleteListener {
+
+  private final List<Runnable> callbacks = new ArrayList<Runnable>();
+  private boolean              done;
+  private Throwable            failure;
+
+  /**
+   * @return a future that is already complete, for commits that had nothing to wait for
+   */
+  public static TransactionCompletionFuture completed() {
+    TransactionCompletionFuture future = new TransactionCompletionFuture();
+    future.complete();
+    return future;
+  }
+
+  /**
+   * Mark the commit as applied, waking up waiters and running callbacks.
+   *
+   * @return false if this future was already resolved
+   */
+  public boolean complete() {
+    return resolve(null);
+  }
+
+  /**
+   * Mark the commit as failed, {@link #get()} will throw an {@link ExecutionException} with the given cause.
+   *
+   * @return false if this future was already resolved
+   */
+  public boolean fail(Throwable cause) {
+    if (cause == null) { throw new IllegalArgumentException("failure cause cannot be null"); }
+    return resolve(cause);
+  }
+
+  /**
+   * Run the given callback once this future is resolved, right away on the calling thread if it already is.
+   */
+  public void whenComplete(Runnable callback) {
+    synchronized (this) {
+      if (!done) {
+        callbacks.add(callback);
+        return;
+      }
+    }
+    callback.run();
+  }
+
+  @Override
+  public void transactionComplete(TransactionID txnID) {
+    complete();
+  }
+
+  @Override
+  public void transactionAborted(TransactionID txnID) {
+    fail(new AbortedOperationException());
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return false;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return false;
+  }
+
+  @Override
+  public synchronized boolean isDone() {
+    return done;
+  }
+
+  /**
+   * @return true if this future is resolved and the commit failed
+   */
+  public synchronized boolean isFailed() {
+    return failure != null;
+  }
+
+  @Override
+  public synchronized Void get() throws InterruptedException, ExecutionException {
+    while (!done) {
+      wait();
+    }
+    return report();
+  }
+
+  @Override
+  public synchronized Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+      TimeoutException {
+    long remaining = unit.toNanos(timeout);
+    final long deadline = System.nanoTime() + remaining;
+    while (!done) {
+      if (remaining <= 0) { throw new TimeoutException("Commit not acknowledged within " + timeout + " " + unit); }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      remaining = deadline - System.nanoTime();
+    }
+    return report();
+  }
+
+  private Void report() throws ExecutionException {
+    if (failure != null) { throw new ExecutionException(failure); }
+    return null;
+  }
+
+  private boolean resolve(Throwable cause) {
+    final List<Runnable> toRun;
+    synchronized (this) {
+      if (done) { return false; }
+      done = true;
+      failure = cause;
+      notifyAll();
+      toRun = new ArrayList<Runnable>(callbacks);
+      callbacks.clear();
+    }
+    // never run callbacks while holding the lock
+    for (Runnable callback : toRun) {
+      callback.run();
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "TransactionCompletionFuture [done=" + done + ", failure=" + failure + "]";
+  }
+
+}
@@ -17,6 +17,7 @@ import com.tc.object.locks.LockID;
 import com.tc.object.locks.LockLevel;
 import com.tc.object.metadata.MetaDataDescriptor;
 import com.tc.object.tx.TransactionCompleteListener;
+import com.tc.object.tx.TransactionCompletionFuture;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventLevel;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventSubsystem;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventType;
@@ -80,6 +81,12 @@ public interface PlatformService {
 
   void addTransactionCompleteListener(TransactionCompleteListener listener);
 
+  /**
+   * @return a future resolved once the current transaction is acknowledged, so that writers can pipeline their commits
+   *         instead of waiting for each of them
+   */
+  TransactionCompletionFuture getCurrentTransactionCompletion();
+
   MetaDataDescriptor createMetaDataDescriptor(String category);
 
   void fireOperatorEvent(EventLevel coreOperatorEventLevel, EventSubsystem coreEventSubsytem, EventType eventType,
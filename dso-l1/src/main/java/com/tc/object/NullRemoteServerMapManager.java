@@ -52,7 +52,8 @@ public final class NullRemoteServerMapManager implements RemoteServerMapManager
   }
 
   @Override
-  public Object getMappingForKey(final ObjectID oid, final Object portableKey) {
+  public Object getMappingForKey(final ObjectID oid, final Object portableKey, final long writeSequence,
+                                 final boolean coalesce) {
     return null;
   }
 
@@ -41,8 +41,18 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application threads never contend on a shared monitor while looking up values: outstanding requests live in a
+ * concurrent map and each caller parks on its own request context, which is completed by the response handler.
+ * Concurrent single key lookups for the same mapping share one in-flight request. The manager's monitor is only used
+ * for the PAUSED/RUNNING state transitions.
+ */
 public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
 
   // TODO::Make its own property
@@ -62,13 +72,14 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   private final TCLogger                                                 logger;
   private final SessionManager                                           sessionManager;
   private final RemoteObjectManager                                      remoteObjectManager;
-  private final Map<ServerMapRequestID, AbstractServerMapRequestContext> outstandingRequests                       = new HashMap<ServerMapRequestID, AbstractServerMapRequestContext>();
+  private final ConcurrentMap<ServerMapRequestID, AbstractServerMapRequestContext> outstandingRequests             = new ConcurrentHashMap<ServerMapRequestID, AbstractServerMapRequestContext>();
+  private final ConcurrentMap<KeyLookup, GetValueServerMapRequestContext> inflightLookups                           = new ConcurrentHashMap<KeyLookup, GetValueServerMapRequestContext>();
   private final TaskRunner                                               taskRunner;
   private final AbortableOperationManager                                abortableOperationManager;
 
   private volatile State                                                 state                                     = State.RUNNING;
-  private long                                                           requestIDCounter                          = 0;
-  private boolean                                                        pendingSendTaskScheduled                  = false;
+  private final AtomicLong                                               requestIDCounter                          = new AtomicLong();
+  private final AtomicBoolean                                            pendingSendTaskScheduled                  = new AtomicBoolean();
 
   // private final Sink ttiTTLEvitionSink;
   private final L1ServerMapLocalCacheManager                             globalLocalCacheManager;
@@ -100,8 +111,11 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   @Override
   public synchronized void cleanup() {
     checkAndSetstate();
-    outstandingRequests.clear();
-    pendingSendTaskScheduled = false;
+    for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
+      removeRequestContext(context);
+    }
+    inflightLookups.clear();
+    pendingSendTaskScheduled.set(false);
     globalLocalCacheManager.cleanup();
     reInvalidateHandler.shutdown();
     reInvalidateHandler = new ReInvalidateHandler(globalLocalCacheManager, taskRunner);
@@ -112,6 +126,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     state = State.REJOIN_IN_PROGRESS;
     globalLocalCacheManager.rejoinInProgress(true);
     notifyAll();
+    wakeUpWaiters();
   }
 
   private void throwExceptionIfNecessary(boolean throwExp) {
@@ -131,27 +146,62 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    * @throws AbortedOperationException
    */
   @Override
-  public synchronized Object getMappingForKey(final ObjectID oid, final Object portableKey)
-      throws AbortedOperationException {
+  public Object getMappingForKey(final ObjectID oid, final Object portableKey, final long writeSequence,
+                                 final boolean coalesce) throws AbortedOperationException {
     assertSameGroupID(oid);
     waitUntilRunningAbortable();
 
-    final AbstractServerMapRequestContext context = createLookupValueRequestContext(oid,
-                                                                                    Collections.singleton(portableKey));
+    final KeyLookup lookup = new KeyLookup(oid, portableKey);
+    if (!coalesce) {
+      // the caller has a write of its own in flight, an earlier request may not see it
+      final GetValueServerMapRequestContext context = newLookupContext(oid, portableKey, lookup, writeSequence);
+      this.outstandingRequests.put(context.getRequestID(), context);
+      // later lookups attach to this request rather than to one sent before the write
+      this.inflightLookups.put(lookup, context);
+      sendRequest(context);
+      return waitForResult(context).get(portableKey);
+    }
+
+    while (true) {
+      final GetValueServerMapRequestContext inflight = this.inflightLookups.get(lookup);
+      if (inflight != null && inflight.writeSequence >= writeSequence) {
+        if (inflight.addWaiter()) { return waitForResult(inflight).get(portableKey); }
+        // completed or abandoned, let it go and issue a fresh request
+        this.inflightLookups.remove(lookup, inflight);
+        continue;
+      }
+
+      // nothing in flight, or only a request sent before the last write to the map
+      final GetValueServerMapRequestContext context = newLookupContext(oid, portableKey, lookup, writeSequence);
+      final boolean installed = inflight == null ? this.inflightLookups.putIfAbsent(lookup, context) == null
+          : this.inflightLookups.replace(lookup, inflight, context);
+      if (installed) {
+        this.outstandingRequests.put(context.getRequestID(), context);
+        sendRequest(context);
+        return waitForResult(context).get(portableKey);
+      }
+    }
+  }
+
+  private GetValueServerMapRequestContext newLookupContext(final ObjectID oid, final Object portableKey,
+                                                           final KeyLookup lookup, final long writeSequence) {
+    final GetValueServerMapRequestContext context = new GetValueServerMapRequestContext(getNextRequestID(), oid,
+                                                                                        Collections
+                                                                                            .singleton(portableKey),
+                                                                                        lookup, writeSequence,
+                                                                                        this.groupID);
     context.makeLookupRequest();
-    sendRequest(context);
-    Map<Object, Object> result = waitForResult(context);
-    return result.get(portableKey);
+    return context;
   }
 
   @Override
-  public synchronized void getMappingForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap, Map<Object, Object> rv)
+  public void getMappingForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap, Map<Object, Object> rv)
       throws AbortedOperationException {
     Set<AbstractServerMapRequestContext> contextsToWaitFor = sendRequestForAllKeys(mapIdToKeysMap);
     waitForResults(contextsToWaitFor, rv);
   }
 
-  protected synchronized Set<AbstractServerMapRequestContext> sendRequestForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
+  protected Set<AbstractServerMapRequestContext> sendRequestForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
       throws AbortedOperationException {
     Set<AbstractServerMapRequestContext> contextsToWaitFor = new HashSet<AbstractServerMapRequestContext>();
     waitUntilRunningAbortable();
@@ -168,7 +218,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   @Override
-  public synchronized Set getAllKeys(ObjectID mapID) throws AbortedOperationException {
+  public Set getAllKeys(ObjectID mapID) throws AbortedOperationException {
     assertSameGroupID(mapID);
     waitUntilRunningAbortable();
 
@@ -187,7 +237,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   @Override
-  public synchronized long getAllSize(final ObjectID[] mapIDs) throws AbortedOperationException {
+  public long getAllSize(final ObjectID[] mapIDs) throws AbortedOperationException {
     for (ObjectID mapId : mapIDs) {
       assertSameGroupID(mapId);
     }
@@ -210,22 +260,16 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     boolean isInterrupted = false;
     try {
       while (true) {
-        if (isStopped()) { throw new TCNotRunningException(); }
-        if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
         try {
-          wait(RESULT_WAIT_MAXTIME_MILLIS);
+          awaitCompletion(context);
         } catch (final InterruptedException e) {
           checkIfAbortedAndRemoveContexts(context);
           isInterrupted = true;
         }
-        if (context.isMissing()) {
-          removeRequestContext(context);
-          throw new TCObjectNotFoundException(context.getMapID().toString());
-        }
-        Map<Object, Object> result = context.getResult();
-        if (result != null) {
-          removeRequestContext(context);
-          return result;
+        synchronized (context) {
+          if (context.isMissing()) { throw new TCObjectNotFoundException(context.getMapID().toString()); }
+          Map<Object, Object> result = context.getResult();
+          if (result != null) { return result; }
         }
       }
     } finally {
@@ -233,19 +277,39 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
+  /**
+   * Parks the calling thread on the context's own monitor for at most {@link #RESULT_WAIT_MAXTIME_MILLIS}. The state is
+   * checked under that monitor so that {@link #wakeUpWaiters()} can not be missed.
+   */
+  void awaitCompletion(final AbstractServerMapRequestContext context) throws InterruptedException {
+    synchronized (context) {
+      if (isStopped()) { throw new TCNotRunningException(); }
+      if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+      if (!context.isCompleted()) {
+        context.wait(RESULT_WAIT_MAXTIME_MILLIS);
+      }
+    }
+  }
+
+  private void wakeUpWaiters() {
+    for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
+      context.wakeUp();
+    }
+  }
+
   /**
    * Waits in quantums of {@link #RESULT_WAIT_MAXTIME_MILLIS} until results corresponding to contextsToWaitFor are
    * available from the server.
    */
-  protected synchronized void waitForResults(Set<AbstractServerMapRequestContext> contextsToWaitFor,
-                                             Map<Object, Object> rv) throws AbortedOperationException {
+  protected void waitForResults(Set<AbstractServerMapRequestContext> contextsToWaitFor, Map<Object, Object> rv)
+      throws AbortedOperationException {
     boolean isInterrupted = false;
     try {
       while (!allRequestsDone(contextsToWaitFor, rv)) {
-        if (isStopped()) { throw new TCNotRunningException(); }
-        if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
         try {
-          wait(RESULT_WAIT_MAXTIME_MILLIS);
+          for (final AbstractServerMapRequestContext context : contextsToWaitFor) {
+            awaitCompletion(context);
+          }
         } catch (final InterruptedException e) {
           checkIfAbortedAndRemoveContexts(contextsToWaitFor);
           isInterrupted = true;
@@ -259,14 +323,15 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   private boolean allRequestsDone(Set<AbstractServerMapRequestContext> contextsToWaitFor, Map<Object, Object> rv) {
     for (Iterator<AbstractServerMapRequestContext> iterator = contextsToWaitFor.iterator(); iterator.hasNext();) {
       AbstractServerMapRequestContext context = iterator.next();
-      if (context.isMissing()) {
-        removeRequestContext(context);
-        iterator.remove();
-        throw new TCObjectNotFoundException(context.getMapID().toString());
+      final Map<Object, Object> result;
+      synchronized (context) {
+        if (context.isMissing()) {
+          iterator.remove();
+          throw new TCObjectNotFoundException(context.getMapID().toString());
+        }
+        result = context.getResult();
       }
-      Map<Object, Object> result = context.getResult();
       if (result != null) {
-        removeRequestContext(context);
         iterator.remove();
         synchronized (rv) {
           rv.putAll(result);
@@ -289,10 +354,11 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   private void scheduleRequestForLater(final AbstractServerMapRequestContext context) {
-    context.makePending();
-    if (!pendingSendTaskScheduled) {
+    synchronized (context) {
+      context.makePending();
+    }
+    if (pendingSendTaskScheduled.compareAndSet(false, true)) {
       requestsTimer.schedule(new SendPendingRequestsTask(), BATCH_LOOKUP_TIME_PERIOD, TimeUnit.MILLISECONDS);
-      pendingSendTaskScheduled = true;
     }
   }
 
@@ -313,9 +379,9 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   /**
    * Only GET_VALUE_FOR_KEY requests are batched, its a little ugly to assume that here. Needs some refactoring.
    */
-  public synchronized void sendPendingRequests() {
+  public void sendPendingRequests() {
     waitUntilRunning();
-    this.pendingSendTaskScheduled = false;
+    this.pendingSendTaskScheduled.set(false);
     final ServerMapRequestMessage msg = this.smmFactory
         .newServerMapRequestMessage(this.groupID, ServerMapRequestType.GET_VALUE_FOR_KEY);
     initializeMessageWithPendingRequests(msg);
@@ -326,14 +392,16 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
 
   private void initializeMessageWithPendingRequests(final ServerMapRequestMessage msg) {
     for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
-      if (context.isPending()) {
-        if (context.getRequestType() != ServerMapRequestType.GET_VALUE_FOR_KEY) {
-          // Only GET_VALUE_FOR_KEY Requests are batched here
-          throw new AssertionError(context.getRequestType()
-                                   + " requests are not batched so it should never be pending : " + context);
+      synchronized (context) {
+        if (context.isPending()) {
+          if (context.getRequestType() != ServerMapRequestType.GET_VALUE_FOR_KEY) {
+            // Only GET_VALUE_FOR_KEY Requests are batched here
+            throw new AssertionError(context.getRequestType()
+                                     + " requests are not batched so it should never be pending : " + context);
+          }
+          context.makeUnPending();
+          context.initializeMessage(msg);
         }
-        context.makeUnPending();
-        context.initializeMessage(msg);
       }
     }
   }
@@ -360,16 +428,29 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
-  private void removeRequestContext(final AbstractServerMapRequestContext context) {
+  /**
+   * Removes the context from {@link #outstandingRequests} unless a response, an abort or a cleanup removed it already.
+   * 
+   * @return true if this call removed the context
+   */
+  private boolean removeRequestContext(final AbstractServerMapRequestContext context) {
+    if (!context.claimRemoval()) { return false; }
     final Object old = this.outstandingRequests.remove(context.getRequestID());
     if (old != context) { throw new AssertionError("Removed wrong context. context = " + context + " old = " + old); }
+    if (context instanceof GetValueServerMapRequestContext) {
+      final KeyLookup lookup = ((GetValueServerMapRequestContext) context).lookup;
+      if (lookup != null) {
+        this.inflightLookups.remove(lookup, context);
+      }
+    }
+    return true;
   }
 
   private AbstractServerMapRequestContext createLookupValueRequestContext(final ObjectID oid,
                                                                           final Set<Object> portableKeys) {
     final ServerMapRequestID requestID = getNextRequestID();
     final GetValueServerMapRequestContext context = new GetValueServerMapRequestContext(requestID, oid, portableKeys,
-                                                                                        this.groupID);
+                                                                                        null, 0, this.groupID);
     this.outstandingRequests.put(requestID, context);
     return context;
   }
@@ -382,12 +463,8 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     return context;
   }
 
-  private AbstractServerMapRequestContext getRequestContext(final ServerMapRequestID requestID) {
-    return this.outstandingRequests.get(requestID);
-  }
-
   @Override
-  public synchronized void addResponseForKeyValueMapping(final SessionID sessionID, final ObjectID mapID,
+  public void addResponseForKeyValueMapping(final SessionID sessionID, final ObjectID mapID,
                                                          final Collection<ServerMapGetValueResponse> responses,
                                                          final NodeID nodeID) {
     waitUntilRunning();
@@ -397,18 +474,18 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       return;
     }
     for (final ServerMapGetValueResponse r : responses) {
-      setResultForRequest(sessionID, mapID, r.getRequestID(), r.getValues(), nodeID);
+      final AbstractServerMapRequestContext context = setResultForRequest(sessionID, mapID, r.getRequestID(),
+                                                                          r.getValues(), nodeID);
       addResponseToObjectManager(r.getValues());
-      if (getRequestContext(r.getRequestID()) == null) {
+      if (context == null || !context.hasWaiters()) {
         // Request was aborted, so we need to clean up.
         cleanupObjectManagerOnAbort(r.getValues());
       }
     }
-    notifyAll();
   }
 
   @Override
-  public synchronized void addResponseForGetAllSize(final SessionID sessionID, final GroupID gID,
+  public void addResponseForGetAllSize(final SessionID sessionID, final GroupID gID,
                                                     final ServerMapRequestID requestID, final Long size,
                                                     final NodeID nodeID) {
     waitUntilRunning();
@@ -420,11 +497,10 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     Map<Object, Object> sizeMap = new HashMap<Object, Object>();
     sizeMap.put(SIZE_KEY, size);
     setResultForRequest(sessionID, ObjectID.NULL_ID, requestID, sizeMap, nodeID);
-    notifyAll();
   }
 
   @Override
-  public synchronized void addResponseForGetAllKeys(final SessionID sessionID, final ObjectID mapID,
+  public void addResponseForGetAllKeys(final SessionID sessionID, final ObjectID mapID,
                                                     final ServerMapRequestID requestID, final Set keys,
                                                     final NodeID nodeID) {
     waitUntilRunning();
@@ -436,11 +512,10 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     Map<Object, Object> allKeysMap = new HashMap<Object, Object>();
     allKeysMap.put(ALL_KEYS, keys);
     setResultForRequest(sessionID, mapID, requestID, allKeysMap, nodeID);
-    notifyAll();
   }
 
   @Override
-  public synchronized void objectNotFoundFor(final SessionID sessionID, final ObjectID mapID,
+  public void objectNotFoundFor(final SessionID sessionID, final ObjectID mapID,
                                              final ServerMapRequestID requestID, final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
@@ -449,22 +524,29 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       return;
     }
     final AbstractServerMapRequestContext context = this.outstandingRequests.get(requestID);
-    context.makeMissingObject();
-    notifyAll();
+    if (context != null && removeRequestContext(context)) {
+      context.completeMissing();
+    }
   }
 
-  private void setResultForRequest(final SessionID sessionID, final ObjectID mapID, final ServerMapRequestID requestID,
-                                   final Map<Object, Object> rv, final NodeID nodeID) {
-    final AbstractServerMapRequestContext context = getRequestContext(requestID);
-    if (context != null) {
+  /**
+   * Completes the outstanding request, waking up every thread waiting on it.
+   * 
+   * @return the completed context or null if there is no such request outstanding any more
+   */
+  private AbstractServerMapRequestContext setResultForRequest(final SessionID sessionID, final ObjectID mapID,
+                                                              final ServerMapRequestID requestID,
+                                                              final Map<Object, Object> rv, final NodeID nodeID) {
+    final AbstractServerMapRequestContext context = this.outstandingRequests.get(requestID);
+    if (context != null && removeRequestContext(context)) {
       context.setResult(mapID, rv);
-    } else {
-      if (logger.isDebugEnabled()) {
-        this.logger.debug("Server Map Request Context is null for " + mapID + " request ID : " + requestID
-                          + " result : "
-                       + rv);
-      }
+      return context;
+    }
+    if (logger.isDebugEnabled()) {
+      this.logger.debug("Server Map Request Context is null for " + mapID + " request ID : " + requestID
+                        + " result : " + rv);
     }
+    return null;
   }
 
   private void addResponseToObjectManager(final Map<Object, Object> rv) {
@@ -497,6 +579,13 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    * To be used by methods which are called by the App thread.
    */
   private void waitUntilRunningAbortable() throws AbortedOperationException {
+    if (this.state == State.RUNNING) { return; }
+    synchronized (this) {
+      waitUntilRunningAbortableInternal();
+    }
+  }
+
+  private void waitUntilRunningAbortableInternal() throws AbortedOperationException {
     boolean isInterrupted = false;
     try {
       while (this.state != State.RUNNING) {
@@ -518,6 +607,13 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    * To be used by methods which are directly called by the Stage thread.
    */
   private void waitUntilRunning() {
+    if (this.state == State.RUNNING) { return; }
+    synchronized (this) {
+      waitUntilRunningInternal();
+    }
+  }
+
+  private void waitUntilRunningInternal() {
     boolean isInterrupted = false;
     try {
       while (this.state != State.RUNNING) {
@@ -536,15 +632,14 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
 
   /**
    * Checks whether the interrupt was due to aborting the operation. Also removes the context from
-   * {@link #outstandingRequests}
+   * {@link #outstandingRequests} if no other thread is waiting on it.
    * 
    * @throws AbortedOperationException if the interrupt was due to aborting the operation.
    */
   private void checkIfAbortedAndRemoveContexts(AbstractServerMapRequestContext context)
       throws AbortedOperationException {
     if (isAborted()) {
-      removeRequestContext(context);
-      cleanupObjectManagerOnAbort(context.getResult());
+      abandon(context);
       AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
     }
   }
@@ -559,12 +654,19 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       throws AbortedOperationException {
     if (isAborted()) {
       for (AbstractServerMapRequestContext context : contextsToWaitFor) {
-        removeRequestContext(context);
+        abandon(context);
       }
       AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
     }
   }
 
+  private void abandon(final AbstractServerMapRequestContext context) {
+    if (context.removeWaiter()) {
+      removeRequestContext(context);
+      cleanupObjectManagerOnAbort(context.getResult());
+    }
+  }
+
   private boolean isAborted() {
     return abortableOperationManager.isAborted();
   }
@@ -600,10 +702,11 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   public void shutdown(boolean fromShutdownHook) {
     state = State.STOPPED;
     reInvalidateHandler.shutdown();
-      synchronized (this) {
-        requestsTimer.cancel();
-        notifyAll();
-      }
+    synchronized (this) {
+      requestsTimer.cancel();
+      notifyAll();
+    }
+    wakeUpWaiters();
   }
 
   private boolean isStopped() {
@@ -629,7 +732,33 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   private ServerMapRequestID getNextRequestID() {
-    return new ServerMapRequestID(this.requestIDCounter++);
+    return new ServerMapRequestID(this.requestIDCounter.getAndIncrement());
+  }
+
+  /**
+   * Identity of a single key lookup, used to coalesce concurrent lookups of the same mapping.
+   */
+  private static final class KeyLookup {
+    private final ObjectID mapID;
+    private final Object   portableKey;
+
+    KeyLookup(final ObjectID mapID, final Object portableKey) {
+      this.mapID = mapID;
+      this.portableKey = portableKey;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.mapID.hashCode() + this.portableKey.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (o == this) { return true; }
+      if (!(o instanceof KeyLookup)) { return false; }
+      final KeyLookup other = (KeyLookup) o;
+      return this.mapID.equals(other.mapID) && this.portableKey.equals(other.portableKey);
+    }
   }
 
   protected static abstract class AbstractServerMapRequestContext extends LookupStateTransitionAdaptor {
@@ -641,6 +770,9 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     protected final ServerMapRequestID   requestID;
     protected final ServerMapRequestType requestType;
     protected Map<Object, Object>        result;
+    private int                          waiters = 1;
+    private boolean                      completed;
+    private boolean                      removed;
 
     public AbstractServerMapRequestContext(final ServerMapRequestType requestType, final ServerMapRequestID requestID,
                                            final ObjectID mapID, final GroupID groupID) {
@@ -659,17 +791,64 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       return this.requestType;
     }
 
-    public void setResult(final ObjectID mapID, final Map<Object, Object> rv) {
+    public synchronized void setResult(final ObjectID mapID, final Map<Object, Object> rv) {
       if (!this.oid.equals(mapID)) { throw new AssertionError("Wrong request to response : this map id : " + this.oid
                                                               + " response is for : " + mapID + " type : "
                                                               + getRequestType()); }
       this.result = rv;
+      this.completed = true;
+      notifyAll();
     }
 
-    public Map<Object, Object> getResult() {
+    public synchronized Map<Object, Object> getResult() {
       return this.result;
     }
 
+    synchronized void completeMissing() {
+      makeMissingObject();
+      this.completed = true;
+      notifyAll();
+    }
+
+    synchronized boolean isCompleted() {
+      return this.completed;
+    }
+
+    synchronized void wakeUp() {
+      notifyAll();
+    }
+
+    /**
+     * Registers another thread waiting for this request's result.
+     * 
+     * @return false if the request is already completed or abandoned by all its waiters
+     */
+    synchronized boolean addWaiter() {
+      if (this.completed || this.waiters == 0) { return false; }
+      this.waiters++;
+      return true;
+    }
+
+    /**
+     * @return true if the last waiting thread went away
+     */
+    synchronized boolean removeWaiter() {
+      return --this.waiters == 0;
+    }
+
+    synchronized boolean hasWaiters() {
+      return this.waiters > 0;
+    }
+
+    /**
+     * @return false if the request was already removed from the outstanding requests
+     */
+    synchronized boolean claimRemoval() {
+      if (this.removed) { return false; }
+      this.removed = true;
+      return true;
+    }
+
     @Override
     public int hashCode() {
       return this.requestID.hashCode();
@@ -695,11 +874,17 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   private class GetValueServerMapRequestContext extends AbstractServerMapRequestContext {
 
     private final Set<Object> portableKeys;
+    private final KeyLookup   lookup;
+    // writes to the map the request was issued after, later lookups only share it if they saw no newer write
+    private final long        writeSequence;
 
     public GetValueServerMapRequestContext(final ServerMapRequestID requestID, final ObjectID mapID,
-                                           final Set<Object> portableKeys, final GroupID groupID) {
+                                           final Set<Object> portableKeys, final KeyLookup lookup,
+                                           final long writeSequence, final GroupID groupID) {
       super(ServerMapRequestType.GET_VALUE_FOR_KEY, requestID, mapID, groupID);
       this.portableKeys = portableKeys;
+      this.lookup = lookup;
+      this.writeSequence = writeSequence;
     }
 
     @Override
@@ -770,9 +955,10 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   @Override
-  public synchronized PrettyPrinter prettyPrint(PrettyPrinter out) {
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
     out.print(this.getClass().getName()).print("Group Id: ").print(groupID).flush();
     out.indent().print("outstandingRequests count: ").print(Integer.valueOf(this.outstandingRequests.size())).flush();
+    out.indent().print("inflight key lookups count: ").print(Integer.valueOf(this.inflightLookups.size())).flush();
     for (Entry<ServerMapRequestID, AbstractServerMapRequestContext> entry : outstandingRequests.entrySet()) {
       out.indent().print(entry.getKey()).print(entry.getValue());
     }
@@ -46,6 +46,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -88,6 +89,8 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
   private volatile boolean                    createdOnServer;
 
   private final PlatformService               platformService;
+  // bumped before every write to the map, lookups never share a request sent before a write they follow
+  private final AtomicLong                    writeSequence                   = new AtomicLong();
 
   public TCObjectServerMapImpl(final PlatformService platformService, final ClientObjectManager objectManager,
                                final RemoteServerMapManager serverMapManager, final ObjectID id, final Object peer,
@@ -648,6 +651,19 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
     }
   }
 
+  @Override
+  public void logicalInvoke(final LogicalOperation method, final Object[] parameters) {
+    this.writeSequence.incrementAndGet();
+    super.logicalInvoke(method, parameters);
+  }
+
+  @Override
+  public boolean logicalInvokeWithResult(final LogicalOperation method, final Object[] parameters)
+      throws AbortedOperationException {
+    this.writeSequence.incrementAndGet();
+    return super.logicalInvokeWithResult(method, parameters);
+  }
+
   private Object getValueForKeyFromServer(final TCServerMap map, final Object key, final boolean retry,
                                           final boolean versionRequired) throws AbortedOperationException {
     final TCObject tcObject = map.__tc_managed();
@@ -657,12 +673,16 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
 
     final ObjectID mapID = tcObject.getObjectID();
     Object portableKey = getPortableKey(key);
+    // a lookup already in flight may have been sent before our own write to the key
+    final boolean coalesce = !(isCacheInitialized() && this.cache.hasPendingTransaction(key));
+    final long writes = this.writeSequence.get();
 
     // If the key->value mapping is changed in some way during this lookup, it's possible that the value object
     // originally pointed to was deleted by DGC. If that happens we retry until we get a good value.
     long start = System.nanoTime();
     while (true) {
-      final CompoundResponse value = (CompoundResponse) this.serverMapManager.getMappingForKey(mapID, portableKey);
+      final CompoundResponse value = (CompoundResponse) this.serverMapManager.getMappingForKey(mapID, portableKey,
+                                                                                                writes, coalesce);
       try {
         Object object = lookupValue(value);
         if (versionRequired) {
@@ -4,8 +4,10 @@
  */
 package com.tc.object.change;
 
+import com.tc.object.LiteralValues;
 import com.tc.object.LogicalOperation;
 import com.tc.object.TCObject;
+import com.tc.object.TCObjectServerMap;
 import com.tc.object.change.event.LogicalChangeEvent;
 import com.tc.object.dna.api.DNAWriter;
 import com.tc.object.dna.api.DNAWriterInternal;
@@ -15,8 +17,10 @@ import com.tc.util.concurrent.SetOnceFlag;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author orion
@@ -28,8 +32,22 @@ public class TCChangeBufferImpl implements TCChangeBuffer {
   private final List<LogicalChangeEvent>         logicalEvents;
   private final List<MetaDataDescriptorInternal> metaData;
 
+  private final boolean                          foldWrites;
+  // index in logicalEvents of the last foldable put or remove of each key since the last change that was not one
+  private Map<Object, Integer>                   lastWrites;
+  private int                                    foldedCount;
+
   public TCChangeBufferImpl(TCObject object) {
+    this(object, false);
+  }
+
+  /**
+   * @param foldWrites when the object is a server map, keep only the last of the puts and removes of a key, as long as
+   *          nothing else happened to the map in between
+   */
+  public TCChangeBufferImpl(TCObject object, boolean foldWrites) {
     this.tcObject = object;
+    this.foldWrites = foldWrites && object instanceof TCObjectServerMap;
     logicalEvents = new ArrayList<LogicalChangeEvent>();
     metaData = new ArrayList<MetaDataDescriptorInternal>();
   }
@@ -58,6 +76,8 @@ public class TCChangeBufferImpl implements TCChangeBuffer {
     if (events.size() > 0) {
       for (Iterator iter = events.iterator(); iter.hasNext();) {
         TCChangeBufferEvent event = (TCChangeBufferEvent) iter.next();
+        // folded away by a later write to the same key
+        if (event == null) continue;
         event.write(writer);
       }
     }
@@ -80,12 +100,54 @@ public class TCChangeBufferImpl implements TCChangeBuffer {
 
   @Override
   public void logicalInvoke(LogicalOperation method, Object[] parameters, LogicalChangeID id) {
-    // TODO: It might be useful (if it doesn't take too much CPU) to collapse logical operations. For instance,
-    // if a put() is followed by a remove() on the same key we don't need to send anything. Or if multiple put()s are
-    // done, only the last one matters
+    if (foldWrites) {
+      fold(method, parameters, id);
+    }
     logicalEvents.add(new LogicalChangeEvent(method, parameters, id));
   }
 
+  /**
+   * A put or a remove overwrites whatever an earlier put or remove of the same key did, so the earlier one need not be
+   * sent. Anything else, a conditional write, a clear, a change waiting for its result or meta data for the search
+   * index, may depend on the earlier writes and stops them from being folded.
+   * <p>
+   * Only removes and puts of literal values are left out. The value of any other put is already shared and goes to the
+   * server as a new object, and without the put the map would never reference it, so the server would not delete it
+   * when the key is overwritten.
+   */
+  private void fold(LogicalOperation method, Object[] parameters, LogicalChangeID id) {
+    boolean overwrite = (method == LogicalOperation.PUT || method == LogicalOperation.REMOVE) && id.isNull()
+                        && parameters.length > 0 && metaData.isEmpty();
+    if (!overwrite) {
+      if (lastWrites != null) {
+        lastWrites.clear();
+      }
+      return;
+    }
+
+    if (lastWrites == null) {
+      lastWrites = new HashMap<Object, Integer>();
+    }
+    Integer previous = isFoldable(method, parameters) ? lastWrites.put(parameters[0], logicalEvents.size())
+        : lastWrites.remove(parameters[0]);
+    if (previous != null) {
+      logicalEvents.set(previous, null);
+      foldedCount++;
+    }
+  }
+
+  private static boolean isFoldable(LogicalOperation method, Object[] parameters) {
+    return method == LogicalOperation.REMOVE
+           || (parameters.length == 2 && LiteralValues.isLiteralInstance(parameters[1]));
+  }
+
+  /**
+   * @return the number of puts and removes left out because a later one replaced them
+   */
+  public int getFoldedCount() {
+    return foldedCount;
+  }
+
   @Override
   public TCObject getTCObject() {
     return tcObject;
@@ -21,6 +21,6 @@ public class ReceiveInvalidationHandler extends AbstractEventHandler implements
   @Override
   public void handleEvent(EventContext context) {
     InvalidateObjectsMessage invalidationContext = (InvalidateObjectsMessage) context;
-    invalidationsProcessor.processInvalidations(new Invalidations(invalidationContext.getObjectIDsToInvalidate()));
+    invalidationsProcessor.processInvalidations(Invalidations.adopt(invalidationContext.getObjectIDsToInvalidate()));
   }
 }
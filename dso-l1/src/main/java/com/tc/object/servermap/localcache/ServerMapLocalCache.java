@@ -61,6 +61,11 @@ public interface ServerMapLocalCache {
    */
   Object getMappingUnlocked(Object key);
 
+  /**
+   * Check if a transaction changing the key is not yet complete
+   */
+  boolean hasPendingTransaction(Object key);
+
   /**
    * Check if the key is on-heap
    */
@@ -460,6 +460,11 @@ public final class ServerMapLocalCacheImpl implements ServerMapLocalCache {
     }
   }
 
+  @Override
+  public boolean hasPendingTransaction(final Object key) {
+    return keyToListeners.containsKey(key);
+  }
+
   @Override
   public AbstractLocalCacheStoreValue getLocalValueStrong(final Object key) {
     ReentrantReadWriteLock lock = getLock(key);
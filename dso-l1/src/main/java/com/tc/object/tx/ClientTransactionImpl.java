@@ -12,6 +12,8 @@ import com.tc.object.change.TCChangeBufferImpl;
 import com.tc.object.dna.api.LogicalChangeID;
 import com.tc.object.locks.Notify;
 import com.tc.object.metadata.MetaDataDescriptorInternal;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 
 import java.util.ArrayList;
@@ -27,6 +29,11 @@ import java.util.Map;
  * Client side transaction : Collects all changes by a single thread under a lock
  */
 public class ClientTransactionImpl extends AbstractClientTransaction {
+  private static final boolean                FOLD_SERVER_MAP_WRITES = TCPropertiesImpl
+                                                                         .getProperties()
+                                                                         .getBoolean(TCPropertiesConsts.L1_TRANSACTIONMANAGER_FOLDING_SERVERMAP_ENABLED,
+                                                                                     false);
+
   private final Map<ObjectID, TCChangeBuffer> objectChanges = new LinkedHashMap<ObjectID, TCChangeBuffer>();
 
   private Map                                 newRoots;
@@ -96,7 +103,7 @@ public class ClientTransactionImpl extends AbstractClientTransaction {
 
     TCChangeBuffer cb = objectChanges.get(oid);
     if (cb == null) {
-      cb = new TCChangeBufferImpl(object);
+      cb = new TCChangeBufferImpl(object, FOLD_SERVER_MAP_WRITES);
       objectChanges.put(oid, cb);
     }
 
@@ -658,6 +658,19 @@ public class ClientTransactionManagerImpl implements ClientTransactionManager, P
     this.remoteTxnManager.waitForAllCurrentTransactionsToComplete();
   }
 
+  @Override
+  public TransactionCompletionFuture allCurrentTransactionsCompletion() {
+    return this.remoteTxnManager.allCurrentTransactionsCompletion();
+  }
+
+  @Override
+  public TransactionCompletionFuture currentTransactionCompletion() throws UnlockedSharedObjectException {
+    final TransactionCompletionFuture future = new TransactionCompletionFuture();
+    // resolved from RemoteTransactionManagerImpl.receivedAcknowledgement() or on abort, as any completion listener
+    getTransaction().addTransactionCompleteListener(future);
+    return future;
+  }
+
   @Override
   public void receivedLogicalChangeResult(Map<LogicalChangeID, LogicalChangeResult> results) {
     for (Entry<LogicalChangeID, LogicalChangeResult> entry : results.entrySet()) {
@@ -14,11 +14,13 @@ import com.tc.object.ClearableCallback;
 import com.tc.object.locks.LockID;
 import com.tc.util.AbortedOperationUtil;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -35,6 +37,7 @@ public class LockAccounting implements ClearableCallback {
   private final Map<TransactionIDWrapper, Set<LockID>>   tx2Locks                       = new HashMap<TransactionIDWrapper, Set<LockID>>();
   private final Map<LockID, Set<TransactionIDWrapper>>   lock2Txs                       = new HashMap<LockID, Set<TransactionIDWrapper>>();
   private final Map<TransactionID, TransactionIDWrapper> tid2wrap                       = new HashMap<TransactionID, TransactionIDWrapper>();
+  private final List<TransactionCompletionFuture>        completedFutures               = new ArrayList<TransactionCompletionFuture>();
   private volatile boolean                               shutdown                       = false;
   private final AbortableOperationManager                abortableOperationManager;
   private final RemoteTransactionManagerImpl             remoteTxnMgrImpl;
@@ -46,14 +49,30 @@ public class LockAccounting implements ClearableCallback {
   }
 
   @Override
-  public synchronized void cleanup() {
+  public void cleanup() {
+    List<TransactionCompletionFuture> pending;
+    synchronized (this) {
+      pending = releaseListeners();
+      tx2Locks.clear();
+      lock2Txs.clear();
+      tid2wrap.clear();
+    }
+    for (TransactionCompletionFuture future : pending) {
+      future.fail(new PlatformRejoinException());
+    }
+  }
+
+  private List<TransactionCompletionFuture> releaseListeners() {
+    List<TransactionCompletionFuture> pending = new ArrayList<TransactionCompletionFuture>(completedFutures);
+    completedFutures.clear();
     for (TxnRemovedListener listener : listeners) {
       listener.release();
+      if (listener.future != null) {
+        pending.add(listener.future);
+      }
     }
     listeners.clear();
-    tx2Locks.clear();
-    lock2Txs.clear();
-    tid2wrap.clear();
+    return pending;
   }
 
   public synchronized boolean hasListeners() {
@@ -70,6 +89,13 @@ public class LockAccounting implements ClearableCallback {
 
   public void shutdown() {
     this.shutdown = true;
+    List<TransactionCompletionFuture> pending;
+    synchronized (this) {
+      pending = releaseListeners();
+    }
+    for (TransactionCompletionFuture future : pending) {
+      future.fail(new TCNotRunningException());
+    }
   }
 
   @Override
@@ -224,6 +250,30 @@ public class LockAccounting implements ClearableCallback {
 
   }
 
+  /**
+   * Non blocking counterpart of {@link #waitAllCurrentTxnCompleted()}: the returned future is resolved once all the
+   * transactions known at the time of the call are acknowledged, by whoever then calls
+   * {@link #drainCompletedFutures()}.
+   */
+  public synchronized TransactionCompletionFuture allCurrentTxnCompletion() {
+    if (shutdown) { throw new TCNotRunningException(); }
+    if (tx2Locks.isEmpty()) { return TransactionCompletionFuture.completed(); }
+    TransactionCompletionFuture future = new TransactionCompletionFuture();
+    listeners.add(new TxnRemovedListener(new HashSet(tx2Locks.keySet()), future));
+    return future;
+  }
+
+  /**
+   * @return the futures of {@link #allCurrentTxnCompletion()} whose transactions are all acknowledged, to be completed
+   *         by the caller outside of any lock
+   */
+  public synchronized List<TransactionCompletionFuture> drainCompletedFutures() {
+    if (completedFutures.isEmpty()) { return Collections.emptyList(); }
+    List<TransactionCompletionFuture> rv = new ArrayList<TransactionCompletionFuture>(completedFutures);
+    completedFutures.clear();
+    return rv;
+  }
+
   private static <K,V> Set<V> getOrCreateSetFor(K key, Map<K, Set<V>> m) {
     Set<V> rv = m.get(key);
     if (rv == null) {
@@ -245,14 +295,25 @@ public class LockAccounting implements ClearableCallback {
   private class TxnRemovedListener {
     private final Set<TransactionIDWrapper>         txnSet;
     private final CountDownLatch                     latch;
+    private final TransactionCompletionFuture        future;
     // private boolean released = false;
 
     TxnRemovedListener(Set<TransactionIDWrapper> txnSet, CountDownLatch latch) {
+      this(txnSet, latch, null);
+    }
+
+    TxnRemovedListener(Set<TransactionIDWrapper> txnSet, TransactionCompletionFuture future) {
+      this(txnSet, new CountDownLatch(txnSet.size()), future);
+    }
+
+    private TxnRemovedListener(Set<TransactionIDWrapper> txnSet, CountDownLatch latch,
+                               TransactionCompletionFuture future) {
       if ( !Thread.holdsLock(LockAccounting.this) ) {
           throw new AssertionError();
       }
       this.txnSet = txnSet;
       this.latch = latch;
+      this.future = future;
     }
 
     void txnRemoved(TransactionIDWrapper txnID) {
@@ -262,6 +323,11 @@ public class LockAccounting implements ClearableCallback {
       }
       if ( this.txnSet.remove(txnID) ) {
         this.latch.countDown();
+        if (this.future != null && this.txnSet.isEmpty()) {
+          // completed by the acknowledging thread once it released its locks
+          listeners.remove(this);
+          completedFutures.add(this.future);
+        }
       } else {
 //  not interested in this transaction
       }
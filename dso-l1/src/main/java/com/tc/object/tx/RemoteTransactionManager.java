@@ -28,6 +28,12 @@ public interface RemoteTransactionManager extends ClientHandshakeCallback, Prett
 
   public boolean asyncFlush(LockID lockID, LockFlushCallback callback);
 
+  /**
+   * Non blocking counterpart of {@link #flush(LockID)}: the returned future is resolved once all of the transactions
+   * within the given lock have been fully ACKed.
+   */
+  public TransactionCompletionFuture flushAsync(LockID lockID);
+
   public void commit(ClientTransaction transaction) throws AbortedOperationException;
 
   public TransactionBuffer receivedAcknowledgement(SessionID sessionID, TransactionID txID, NodeID nodeID);
@@ -38,6 +44,11 @@ public interface RemoteTransactionManager extends ClientHandshakeCallback, Prett
 
   public void waitForAllCurrentTransactionsToComplete() throws AbortedOperationException;
 
+  /**
+   * Non blocking counterpart of {@link #waitForAllCurrentTransactionsToComplete()}.
+   */
+  public TransactionCompletionFuture allCurrentTransactionsCompletion();
+
   public void waitForServerToReceiveTxnsForThisLock(LockID lock) throws AbortedOperationException;
 
   public void batchReceived(TxnBatchID batchId, Set<TransactionID> set, NodeID nid);
@@ -69,7 +69,8 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
                                                                                          .getLong(TCPropertiesConsts.L1_TRANSACTIONMANAGER_COMPLETED_ACK_FLUSH_TIMEOUT);
 
   private static final State                             RUNNING                     = new State("RUNNING");
-  private static final State                             PAUSED                      = new State("PAUSED");
+  // for testing
+  static final State                                     PAUSED                      = new State("PAUSED");
   private static final State                             STARTING                    = new State("STARTING");
   private static final State                             REJOIN_IN_PROGRESS          = new State("REJOIN_IN_PROGRESS");
   private static final State                             STOP_INITIATED              = new State("STOP-INITIATED");
@@ -172,10 +173,16 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
       // this is outside the rejoinCleanUpLock in order to kick out all the threads that are throttling at present..
       checkAndSetstate();
     }
+    final List<FlushCompletion> pending = new ArrayList<FlushCompletion>();
+    final List<TransactionCompletionFuture> dropped;
     rejoinCleanupLock.writeLock().lock();
     try {
       synchronized (this.lock) {
+        for (LockFlushCallback callback : lockFlushCallbacks.values()) {
+          addFlushCompletionsTo(callback, pending);
+        }
         lockFlushCallbacks.clear();
+        dropped = removeCompletionFutures();
         batchManager.clear();
         batchAccounting = new TransactionBatchAccounting();
         sequencer.cleanup();
@@ -183,6 +190,46 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     } finally {
       rejoinCleanupLock.writeLock().unlock();
     }
+    for (FlushCompletion completion : pending) {
+      completion.future.fail(new PlatformRejoinException());
+    }
+    for (TransactionCompletionFuture future : dropped) {
+      future.fail(new PlatformRejoinException());
+    }
+  }
+
+  /**
+   * Take the transactions that will never be acknowledged out of the batches, returning the completion futures that
+   * were waiting on them. Their other listeners are left alone, as before.
+   */
+  private List<TransactionCompletionFuture> removeCompletionFutures() {
+    final List<ClientTransactionBatch> batches = new ArrayList<ClientTransactionBatch>();
+    batchManager.addIncompleteBatchesTo(batches);
+    sequencer.addPendingBatchesTo(batches);
+    final List<TransactionCompletionFuture> futures = new ArrayList<TransactionCompletionFuture>();
+    for (ClientTransactionBatch batch : batches) {
+      final Collection<TransactionID> txIDs = batch.addTransactionIDsTo(new ArrayList<TransactionID>());
+      for (TransactionID txID : txIDs) {
+        final List<TransactionCompleteListener> listeners = batch.removeTransaction(txID)
+            .getTransactionCompleteListeners();
+        for (TransactionCompleteListener listener : listeners) {
+          if (listener instanceof TransactionCompletionFuture) {
+            futures.add((TransactionCompletionFuture) listener);
+          }
+        }
+      }
+    }
+    return futures;
+  }
+
+  private static void addFlushCompletionsTo(final LockFlushCallback callback, final List<FlushCompletion> pending) {
+    if (callback instanceof FlushCompletion) {
+      pending.add((FlushCompletion) callback);
+    } else if (callback instanceof ChainedCallback) {
+      for (LockFlushCallback chained : (ChainedCallback) callback) {
+        addFlushCompletionsTo(chained, pending);
+      }
+    }
   }
 
   private void checkAndSetstate() {
@@ -208,9 +255,14 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     lockAccounting.shutdown();
     isShutdown = true;
     flusherTimer.cancel();
+    final List<TransactionCompletionFuture> dropped;
     synchronized (lock) {
+      dropped = removeCompletionFutures();
       lock.notifyAll();
     }
+    for (TransactionCompletionFuture future : dropped) {
+      future.fail(new TCNotRunningException());
+    }
   }
 
   @Override
@@ -438,6 +490,27 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     }
   }
 
+  @Override
+  public TransactionCompletionFuture flushAsync(final LockID lockID) {
+    final FlushCompletion completion = new FlushCompletion();
+    if (asyncFlush(lockID, completion)) {
+      completion.future.complete();
+    }
+    return completion.future;
+  }
+
+  /**
+   * Resolves the future of {@link #flushAsync(LockID)}, it is run by the acknowledging thread outside of the lock.
+   */
+  private static class FlushCompletion implements LockFlushCallback {
+    private final TransactionCompletionFuture future = new TransactionCompletionFuture();
+
+    @Override
+    public void transactionsForLockFlushed(LockID id) {
+      future.complete();
+    }
+  }
+
   private static LockFlushCallback chain(final LockFlushCallback prior, final LockFlushCallback subsequent) {
     if ( prior == null ) {
       return subsequent;
@@ -631,6 +704,9 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
       this.lock.notifyAll();
     }
     fireLockFlushCallbacks(callbacks);
+    for (TransactionCompletionFuture future : this.lockAccounting.drainCompletedFutures()) {
+      future.complete();
+    }
   }
   
   @Override
@@ -642,6 +718,12 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
       return tb;
     }
 
+    if (isShutdown) {
+      // the transactions of a shut down client were taken out of their batches
+      this.logger.warn("Ignoring Transaction ACK for " + txID + " after shutdown");
+      return tb;
+    }
+
     final TxnBatchID container = this.batchAccounting.getBatchByTransactionID(txID);
     if (!container.isNull()) {
       final ClientTransactionBatch containingBatch = batchManager.getBatch(container);
@@ -682,6 +764,12 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     this.lockAccounting.waitAllCurrentTxnCompleted();
   }
 
+  @Override
+  public TransactionCompletionFuture allCurrentTransactionsCompletion() {
+    if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+    return this.lockAccounting.allCurrentTxnCompletion();
+  }
+
   private TransactionID getCompletedTransactionIDLowWaterMark() {
     waitUntilRunning();
     return this.batchAccounting.getLowWaterMark();
@@ -955,6 +1043,10 @@ class BatchManager extends Semaphore {
       return null;
     }
 
+    void addIncompleteBatchesTo(Collection<ClientTransactionBatch> batches) {
+      batches.addAll(incompleteBatches.values());
+    }
+
     ClientTransactionBatch getBatch(TxnBatchID id) {
       return incompleteBatches.get(id);
     }
@@ -20,6 +20,7 @@ import com.tc.util.SequenceGenerator;
 import com.tc.util.SequenceID;
 import com.tc.util.Util;
 
+import java.util.Collection;
 import java.util.LinkedList;
 
 public class TransactionSequencer implements ClearableCallback {
@@ -99,6 +100,17 @@ public class TransactionSequencer implements ClearableCallback {
     notifyAll();
   }
   
+  /**
+   * Add the batches that were not handed to the batch manager yet, including the one being filled, to the given
+   * collection.
+   */
+  synchronized void addPendingBatchesTo(Collection<ClientTransactionBatch> batches) {
+    batches.addAll(pendingBatches);
+    if (!currentBatch.isEmpty()) {
+      batches.add(currentBatch);
+    }
+  }
+
   private void log_settings() {
     logger.info("Max Byte Size for Batches = " + MAX_BYTE_SIZE_FOR_BATCH + " Max Pending Batches = "
                 + MAX_PENDING_BATCHES);
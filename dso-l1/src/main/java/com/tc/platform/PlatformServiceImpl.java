@@ -36,6 +36,7 @@ import com.tc.object.tx.ClientTransaction;
 import com.tc.object.tx.ClientTransactionManager;
 import com.tc.object.tx.OnCommitCallable;
 import com.tc.object.tx.TransactionCompleteListener;
+import com.tc.object.tx.TransactionCompletionFuture;
 import com.tc.object.tx.UnlockedSharedObjectException;
 import com.tc.operatorevent.TerracottaOperatorEvent;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventLevel;
@@ -392,6 +393,11 @@ public class PlatformServiceImpl implements PlatformService {
     txManager.getCurrentTransaction().addTransactionCompleteListener(listener);
   }
 
+  @Override
+  public TransactionCompletionFuture getCurrentTransactionCompletion() {
+    return txManager.currentTransactionCompletion();
+  }
+
   @Override
   public MetaDataDescriptor createMetaDataDescriptor(String category) {
     return new MetaDataDescriptorImpl(category);
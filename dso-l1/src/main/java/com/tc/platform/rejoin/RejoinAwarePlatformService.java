@@ -20,6 +20,7 @@ import com.tc.object.locks.LockID;
 import com.tc.object.locks.LockLevel;
 import com.tc.object.metadata.MetaDataDescriptor;
 import com.tc.object.tx.TransactionCompleteListener;
+import com.tc.object.tx.TransactionCompletionFuture;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventLevel;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventSubsystem;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventType;
@@ -397,6 +398,16 @@ public class RejoinAwarePlatformService implements PlatformService {
     }
   }
 
+  @Override
+  public TransactionCompletionFuture getCurrentTransactionCompletion() {
+    assertRejoinNotInProgress();
+    try {
+      return delegate.getCurrentTransactionCompletion();
+    } catch (PlatformRejoinException e) {
+      throw new RejoinException(e);
+    }
+  }
+
   @Override
   public MetaDataDescriptor createMetaDataDescriptor(String category) {
     assertRejoinNotInProgress();
@@ -0,0 +1,212 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.object;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.abortable.AbortableOperationManager;
+import com.tc.logging.TCLogger;
+import com.tc.net.GroupID;
+import com.tc.net.NodeID;
+import com.tc.object.msg.GetValueServerMapRequestMessage;
+import com.tc.object.msg.ServerMapMessageFactory;
+import com.tc.object.servermap.localcache.L1ServerMapLocalCacheManager;
+import com.tc.object.session.SessionID;
+import com.tc.object.session.SessionManager;
+import com.tc.util.concurrent.TaskRunner;
+import com.tc.util.concurrent.Timer;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class RemoteServerMapManagerImplTest {
+  private static final GroupID       GROUP_ID = new GroupID(0);
+  private static final ObjectID      MAP_ID   = new ObjectID(1);
+
+  private RemoteServerMapManagerImpl   serverMapManager;
+  private GetValueServerMapRequestMessage message;
+  private SessionID                    sessionID;
+  private NodeID                       nodeID;
+  // one permit per request message sent
+  private final Semaphore              sent = new Semaphore(0);
+  // counted down each time a lookup starts waiting for its request
+  private volatile CountDownLatch      waiting = new CountDownLatch(0);
+
+  @Before
+  public void setUp() throws Exception {
+    TaskRunner taskRunner = mock(TaskRunner.class);
+    when(taskRunner.newTimer(anyString())).thenReturn(mock(Timer.class));
+    message = mock(GetValueServerMapRequestMessage.class);
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        sent.release();
+        return null;
+      }
+    }).when(message).send();
+    ServerMapMessageFactory messageFactory = mock(ServerMapMessageFactory.class);
+    when(messageFactory.newServerMapRequestMessage(eq(GROUP_ID), any(ServerMapRequestType.class))).thenReturn(message);
+    SessionManager sessionManager = mock(SessionManager.class);
+    when(sessionManager.isCurrentSession(any(NodeID.class), any(SessionID.class))).thenReturn(true);
+    sessionID = new SessionID(0);
+    nodeID = GROUP_ID;
+
+    serverMapManager = new RemoteServerMapManagerImpl(GROUP_ID, mock(TCLogger.class), mock(RemoteObjectManager.class),
+                                                      messageFactory, sessionManager,
+                                                      mock(L1ServerMapLocalCacheManager.class),
+                                                      mock(AbortableOperationManager.class), taskRunner) {
+      @Override
+      void awaitCompletion(AbstractServerMapRequestContext context) throws InterruptedException {
+        waiting.countDown();
+        super.awaitCompletion(context);
+      }
+    };
+  }
+
+  @Test
+  public void testConcurrentLookupsOfSameKeyAreCoalesced() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      waiting = new CountDownLatch(2);
+      Future<Object> first = executor.submit(lookup("key", 0, true));
+      ServerMapRequestID requestID = awaitRequest(1);
+      Future<Object> second = executor.submit(lookup("key", 0, true));
+      // both lookups wait on the in-flight request
+      assertTrue(waiting.await(10, TimeUnit.SECONDS));
+
+      respond(requestID, "key", "value");
+
+      assertEquals("value", first.get(10, TimeUnit.SECONDS));
+      assertEquals("value", second.get(10, TimeUnit.SECONDS));
+      verify(message, times(1)).addGetValueRequestTo(any(ServerMapRequestID.class), eq(MAP_ID), any(Set.class));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLookupAfterResponseIsNotCoalesced() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> first = executor.submit(lookup("key", 0, true));
+      respond(awaitRequest(1), "key", "value1");
+      assertEquals("value1", first.get(10, TimeUnit.SECONDS));
+
+      Future<Object> second = executor.submit(lookup("key", 0, true));
+      respond(awaitRequest(2), "key", "value2");
+      assertEquals("value2", second.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLookupWithPendingWriteIsNotCoalesced() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      waiting = new CountDownLatch(1);
+      Future<Object> before = executor.submit(lookup("key", 1, true));
+      ServerMapRequestID beforeWrite = awaitRequest(1);
+      assertTrue(waiting.await(10, TimeUnit.SECONDS));
+
+      waiting = new CountDownLatch(1);
+      Future<Object> writer = executor.submit(lookup("key", 1, false));
+      ServerMapRequestID afterWrite = awaitRequest(2);
+      assertTrue(waiting.await(10, TimeUnit.SECONDS));
+
+      // a later lookup shares the request sent after the write
+      waiting = new CountDownLatch(1);
+      Future<Object> after = executor.submit(lookup("key", 1, true));
+      assertTrue(waiting.await(10, TimeUnit.SECONDS));
+      assertFalse(sent.tryAcquire());
+
+      respond(afterWrite, "key", "new");
+      assertEquals("new", writer.get(10, TimeUnit.SECONDS));
+      assertEquals("new", after.get(10, TimeUnit.SECONDS));
+      assertFalse(before.isDone());
+
+      respond(beforeWrite, "key", "old");
+      assertEquals("old", before.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLookupAfterAckedWriteIsNotCoalescedWithEarlierRequest() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      waiting = new CountDownLatch(1);
+      Future<Object> before = executor.submit(lookup("key", 0, true));
+      ServerMapRequestID beforeWrite = awaitRequest(1);
+      assertTrue(waiting.await(10, TimeUnit.SECONDS));
+
+      // the write is acked, nothing pending anymore, but the request in flight was sent before it
+      waiting = new CountDownLatch(1);
+      Future<Object> reader = executor.submit(lookup("key", 1, true));
+      ServerMapRequestID afterWrite = awaitRequest(2);
+      assertTrue(waiting.await(10, TimeUnit.SECONDS));
+
+      waiting = new CountDownLatch(1);
+      Future<Object> after = executor.submit(lookup("key", 1, true));
+      assertTrue(waiting.await(10, TimeUnit.SECONDS));
+      assertFalse(sent.tryAcquire());
+
+      respond(afterWrite, "key", "new");
+      assertEquals("new", reader.get(10, TimeUnit.SECONDS));
+      assertEquals("new", after.get(10, TimeUnit.SECONDS));
+      assertFalse(before.isDone());
+
+      respond(beforeWrite, "key", "old");
+      assertEquals("old", before.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Callable<Object> lookup(final Object key, final long writeSequence, final boolean coalesce) {
+    return new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return serverMapManager.getMappingForKey(MAP_ID, key, writeSequence, coalesce);
+      }
+    };
+  }
+
+  private ServerMapRequestID awaitRequest(int count) throws Exception {
+    ArgumentCaptor<ServerMapRequestID> captor = ArgumentCaptor.forClass(ServerMapRequestID.class);
+    assertTrue(sent.tryAcquire(10, TimeUnit.SECONDS));
+    verify(message, times(count)).addGetValueRequestTo(captor.capture(), eq(MAP_ID), any(Set.class));
+    return captor.getValue();
+  }
+
+  private void respond(ServerMapRequestID requestID, Object key, Object value) {
+    ServerMapGetValueResponse response = new ServerMapGetValueResponse(requestID);
+    response.put(key, value);
+    serverMapManager.addResponseForKeyValueMapping(sessionID, MAP_ID, Collections.singleton(response), nodeID);
+  }
+}
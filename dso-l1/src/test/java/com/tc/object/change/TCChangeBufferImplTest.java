@@ -0,0 +1,132 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.object.change;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import com.tc.object.LogicalOperation;
+import com.tc.object.TCObject;
+import com.tc.object.TCObjectServerMap;
+import com.tc.object.dna.api.DNAWriter;
+import com.tc.object.dna.api.LogicalChangeID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class TCChangeBufferImplTest {
+
+  private static final LogicalChangeID NULL_ID = LogicalChangeID.NULL_ID;
+
+  @Test
+  public void testOnlyLastWriteOfAKeyIsWritten() {
+    TCChangeBufferImpl buffer = new TCChangeBufferImpl(mock(TCObjectServerMap.class), true);
+    Object[] put1 = new Object[] { "k1", "v1" };
+    Object[] put2 = new Object[] { "k2", "v1" };
+    Object[] put3 = new Object[] { "k1", "v2" };
+    Object[] remove = new Object[] { "k2" };
+    buffer.logicalInvoke(LogicalOperation.PUT, put1, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.PUT, put2, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.PUT, put3, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.REMOVE, remove, NULL_ID);
+
+    DNAWriter writer = mock(DNAWriter.class);
+    buffer.writeTo(writer);
+
+    InOrder inOrder = inOrder(writer);
+    inOrder.verify(writer).addLogicalAction(LogicalOperation.PUT, put3, NULL_ID);
+    inOrder.verify(writer).addLogicalAction(LogicalOperation.REMOVE, remove, NULL_ID);
+    verifyNoMoreInteractions(writer);
+    assertEquals(2, buffer.getFoldedCount());
+  }
+
+  @Test
+  public void testOtherChangesStopFolding() {
+    TCChangeBufferImpl buffer = new TCChangeBufferImpl(mock(TCObjectServerMap.class), true);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v1" }, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.PUT_IF_ABSENT, new Object[] { "k1", "v2" }, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v3" }, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.CLEAR, new Object[0], NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.REMOVE, new Object[] { "k1" }, NULL_ID);
+
+    DNAWriter writer = mock(DNAWriter.class);
+    buffer.writeTo(writer);
+
+    verify(writer, times(5)).addLogicalAction(any(LogicalOperation.class), any(Object[].class), eq(NULL_ID));
+    assertEquals(0, buffer.getFoldedCount());
+  }
+
+  @Test
+  public void testWritesWaitingForAResultAreNotFolded() {
+    TCChangeBufferImpl buffer = new TCChangeBufferImpl(mock(TCObjectServerMap.class), true);
+    LogicalChangeID id = new LogicalChangeID(1);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v1" }, id);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v2" }, NULL_ID);
+
+    DNAWriter writer = mock(DNAWriter.class);
+    buffer.writeTo(writer);
+
+    verify(writer).addLogicalAction(LogicalOperation.PUT, new Object[] { "k1", "v1" }, id);
+    verify(writer).addLogicalAction(LogicalOperation.PUT, new Object[] { "k1", "v2" }, NULL_ID);
+    assertEquals(0, buffer.getFoldedCount());
+  }
+
+  @Test
+  public void testPutsOfSharedValuesAreNotFoldedAway() {
+    TCChangeBufferImpl buffer = new TCChangeBufferImpl(mock(TCObjectServerMap.class), true);
+    Object shared = new Object();
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", shared }, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v1" }, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v2" }, NULL_ID);
+
+    DNAWriter writer = mock(DNAWriter.class);
+    buffer.writeTo(writer);
+
+    // the shared value is sent as a new object, the map has to reference it so the server can delete it later
+    verify(writer).addLogicalAction(LogicalOperation.PUT, new Object[] { "k1", shared }, NULL_ID);
+    verify(writer).addLogicalAction(LogicalOperation.PUT, new Object[] { "k1", "v2" }, NULL_ID);
+    verifyNoMoreInteractions(writer);
+    assertEquals(1, buffer.getFoldedCount());
+  }
+
+  @Test
+  public void testHotKeyWritesAreSentOncePerKey() {
+    TCChangeBufferImpl folded = new TCChangeBufferImpl(mock(TCObjectServerMap.class), true);
+    TCChangeBufferImpl unfolded = new TCChangeBufferImpl(mock(TCObjectServerMap.class), false);
+    for (int i = 0; i < 1000; i++) {
+      Object[] put = new Object[] { "k" + (i % 10), Long.valueOf(i) };
+      folded.logicalInvoke(LogicalOperation.PUT, put, NULL_ID);
+      unfolded.logicalInvoke(LogicalOperation.PUT, put, NULL_ID);
+    }
+
+    DNAWriter foldedWriter = mock(DNAWriter.class);
+    folded.writeTo(foldedWriter);
+    DNAWriter unfoldedWriter = mock(DNAWriter.class);
+    unfolded.writeTo(unfoldedWriter);
+
+    verify(foldedWriter, times(10)).addLogicalAction(eq(LogicalOperation.PUT), any(Object[].class), eq(NULL_ID));
+    verify(unfoldedWriter, times(1000)).addLogicalAction(eq(LogicalOperation.PUT), any(Object[].class), eq(NULL_ID));
+    assertEquals(990, folded.getFoldedCount());
+  }
+
+  @Test
+  public void testOnlyServerMapsAreFolded() {
+    TCChangeBufferImpl buffer = new TCChangeBufferImpl(mock(TCObject.class), true);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v1" }, NULL_ID);
+    buffer.logicalInvoke(LogicalOperation.PUT, new Object[] { "k1", "v2" }, NULL_ID);
+
+    DNAWriter writer = mock(DNAWriter.class);
+    buffer.writeTo(writer);
+
+    verify(writer, times(2)).addLogicalAction(eq(LogicalOperation.PUT), any(Object[].class), eq(NULL_ID));
+    assertEquals(0, buffer.getFoldedCount());
+  }
+
+}
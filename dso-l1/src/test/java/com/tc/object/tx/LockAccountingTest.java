@@ -9,6 +9,7 @@ import org.mockito.Mockito;
 import org.terracotta.test.categories.CheckShorts;
 
 import com.tc.abortable.NullAbortableOperationManager;
+import com.tc.exception.PlatformRejoinException;
 import com.tc.lang.TCThreadGroup;
 import com.tc.lang.ThrowableHandlerImpl;
 import com.tc.object.locks.LockID;
@@ -18,9 +19,11 @@ import com.tc.util.concurrent.ThreadUtil;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import junit.framework.Assert;
@@ -302,6 +305,52 @@ public class LockAccountingTest extends TestCase {
 
   }
 
+  public void testAllCurrentTxnCompletion() throws Exception {
+    lockID1 = new StringLockID("lock1");
+    txID1 = new TransactionID(1);
+    txID2 = new TransactionID(2);
+    txID3 = new TransactionID(3);
+    Collection txlocks = new HashSet();
+    txlocks.add(lockID1);
+
+    assertTrue(la.allCurrentTxnCompletion().isDone());
+
+    la.add(txID1, txlocks);
+    la.add(txID2, txlocks);
+    TransactionCompletionFuture future = la.allCurrentTxnCompletion();
+    // transactions committed after the call are not waited for
+    la.add(txID3, txlocks);
+    assertFalse(future.isDone());
+
+    la.acknowledge(txID1);
+    assertTrue(la.drainCompletedFutures().isEmpty());
+
+    la.acknowledge(txID2);
+    List<TransactionCompletionFuture> completed = la.drainCompletedFutures();
+    assertEquals(1, completed.size());
+    assertSame(future, completed.get(0));
+    assertFalse(la.hasListeners());
+    // the acknowledging thread completes it once out of the accounting lock
+    assertFalse(future.isDone());
+    assertTrue(la.drainCompletedFutures().isEmpty());
+  }
+
+  public void testAllCurrentTxnCompletionFailsOnCleanup() throws Exception {
+    Collection txlocks = new HashSet();
+    txlocks.add(new StringLockID("lock1"));
+    la.add(new TransactionID(1), txlocks);
+
+    TransactionCompletionFuture future = la.allCurrentTxnCompletion();
+    la.cleanup();
+    assertTrue(future.isDone());
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PlatformRejoinException);
+    }
+  }
+
   private class RunToStringThread extends Thread {
     private boolean success = true;
 
@@ -162,6 +162,16 @@ public class MockTransactionManager implements ClientTransactionManager {
     throw new ImplementMe();
   }
 
+  @Override
+  public TransactionCompletionFuture allCurrentTransactionsCompletion() {
+    throw new ImplementMe();
+  }
+
+  @Override
+  public TransactionCompletionFuture currentTransactionCompletion() {
+    throw new ImplementMe();
+  }
+
   @Override
   public void addMetaDataDescriptor(TCObject tco, MetaDataDescriptorInternal md) {
     throw new ImplementMe();
@@ -4,6 +4,7 @@
 package com.tc.object.tx;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 
@@ -14,12 +15,17 @@ import org.junit.experimental.categories.Category;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.terracotta.test.categories.CheckShorts;
 
+import com.tc.exception.PlatformRejoinException;
 import com.tc.exception.TCNotRunningException;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.net.NodeID;
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.StringLockID;
 import com.tc.object.session.SessionID;
 import com.tc.object.session.SessionManager;
 import com.tc.object.tx.RemoteTransactionManagerImpl.BatchManager;
@@ -27,7 +33,9 @@ import com.tc.util.concurrent.Timer;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 @Category(CheckShorts.class)
 public class RemoteTransactionManagerImplTest {
@@ -52,6 +60,8 @@ public class RemoteTransactionManagerImplTest {
   private TxnBatchID                  txnBatchID;
   @Mock
   private TransactionBatchAccounting  batchAccounting;
+  @Mock
+  private TransactionSequencer        sequencer;
 
   @Before
   public void setUp() {
@@ -79,7 +89,7 @@ public class RemoteTransactionManagerImplTest {
     when(batch.removeTransaction((TransactionID) any())).thenReturn(txnBuffer);
 
     manager = new RemoteTransactionManagerImpl(batchManager, batchAccounting, lockAccounting, logger,
-                                               ackOnExitTimeoutMs, null, sessionManager, null, null, null, false, null,
+                                               ackOnExitTimeoutMs, null, sessionManager, sequencer, null, null, false, null,
                                                flusherTimer, null);
   }
 
@@ -115,6 +125,105 @@ public class RemoteTransactionManagerImplTest {
     manager.receivedAcknowledgement(null, null, null);
   }
 
+  @Test
+  public void test_flushAsync_is_resolved_by_acknowledgement_without_blocking() throws Exception {
+    LockID lockID = new StringLockID("lock");
+    TransactionID txID = new TransactionID(1);
+    when(txnBuffer.getFoldedTransactionID()).thenReturn(txID);
+    when(lockAccounting.getTransactionsFor(lockID)).thenReturn(Collections.singleton(txID));
+    when(lockAccounting.acknowledge((Collection) any())).thenReturn(Collections.singleton(lockID));
+
+    TransactionCompletionFuture first = manager.flushAsync(lockID);
+    TransactionCompletionFuture second = manager.flushAsync(lockID);
+    Assert.assertFalse(first.isDone());
+    Assert.assertFalse(second.isDone());
+
+    manager.receivedAcknowledgement(null, txID, null);
+    Assert.assertTrue(first.isDone());
+    Assert.assertTrue(second.isDone());
+    first.get();
+  }
+
+  @Test
+  public void test_flushAsync_is_complete_when_nothing_to_flush() {
+    when(lockAccounting.getTransactionsFor((LockID) any())).thenReturn(Collections.emptySet());
+    Assert.assertTrue(manager.flushAsync(new StringLockID("lock")).isDone());
+  }
+
+  @Test
+  public void test_allCurrentTransactionsCompletion_is_resolved_by_acknowledgement() throws Exception {
+    TransactionID txID = new TransactionID(1);
+    TransactionCompletionFuture future = new TransactionCompletionFuture();
+    when(txnBuffer.getFoldedTransactionID()).thenReturn(txID);
+    when(lockAccounting.allCurrentTxnCompletion()).thenReturn(future);
+    when(lockAccounting.acknowledge((Collection) any())).thenReturn(Collections.<LockID> emptySet());
+
+    Assert.assertSame(future, manager.allCurrentTransactionsCompletion());
+    Assert.assertFalse(future.isDone());
+
+    when(lockAccounting.drainCompletedFutures()).thenReturn(Collections.singletonList(future));
+    manager.receivedAcknowledgement(null, txID, null);
+    Assert.assertTrue(future.isDone());
+    future.get();
+  }
+
+  @Test
+  public void test_cleanup_fails_pending_transaction_completion() throws Exception {
+    TransactionCompletionFuture future = pendingTransactionCompletion();
+    manager = new RemoteTransactionManagerImpl(batchManager, batchAccounting, lockAccounting, logger,
+                                               ackOnExitTimeoutMs, RemoteTransactionManagerImpl.PAUSED,
+                                               sessionManager, sequencer, null, null, false, null, flusherTimer, null);
+
+    manager.cleanup();
+    assertFailedWith(future, PlatformRejoinException.class);
+  }
+
+  @Test
+  public void test_shutdown_fails_pending_transaction_completion() throws Exception {
+    TransactionCompletionFuture future = pendingTransactionCompletion();
+
+    manager.shutdown(false);
+    assertFailedWith(future, TCNotRunningException.class);
+  }
+
+  private TransactionCompletionFuture pendingTransactionCompletion() {
+    final TransactionID txID = new TransactionID(1);
+    // what ClientTransactionManagerImpl.currentTransactionCompletion() registers on the transaction
+    TransactionCompletionFuture future = new TransactionCompletionFuture();
+    List<TransactionCompleteListener> listeners = new ArrayList<TransactionCompleteListener>();
+    listeners.add(txnCompleteListener);
+    listeners.add(future);
+    when(txnBuffer.getTransactionCompleteListeners()).thenReturn(listeners);
+    when(batch.addTransactionIDsTo((Collection) any())).thenAnswer(new Answer<Collection>() {
+      @Override
+      public Collection answer(InvocationOnMock invocation) {
+        Collection txIDs = (Collection) invocation.getArguments()[0];
+        txIDs.add(txID);
+        return txIDs;
+      }
+    });
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        ((Collection) invocation.getArguments()[0]).add(batch);
+        return null;
+      }
+    }).when(batchManager).addIncompleteBatchesTo((Collection) any());
+    Assert.assertFalse(future.isDone());
+    return future;
+  }
+
+  private static void assertFailedWith(TransactionCompletionFuture future, Class<? extends Throwable> cause)
+      throws InterruptedException {
+    Assert.assertTrue(future.isDone());
+    try {
+      future.get();
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause().toString(), cause.isInstance(e.getCause()));
+    }
+  }
+
   private long stopManagerAndReturnTimeTaken() {
     long startTime = System.currentTimeMillis();
     manager.stop();
@@ -81,6 +81,11 @@ public class TestRemoteTransactionManager implements RemoteTransactionManager {
     throw new ImplementMe();
   }
 
+  @Override
+  public TransactionCompletionFuture flushAsync(LockID lockID) {
+    throw new ImplementMe();
+  }
+
   @Override
   public void initializeHandshake(final NodeID thisNode, final NodeID remoteNode,
                                   final ClientHandshakeMessage handshakeMessage) {
@@ -107,6 +112,11 @@ public class TestRemoteTransactionManager implements RemoteTransactionManager {
     //
   }
 
+  @Override
+  public TransactionCompletionFuture allCurrentTransactionsCompletion() {
+    return TransactionCompletionFuture.completed();
+  }
+
   @Override
   public void waitForServerToReceiveTxnsForThisLock(LockID lock) {
     throw new ImplementMe();
@@ -0,0 +1,37 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.management.beans;
+
+import com.tc.management.TerracottaMBean;
+
+/**
+ * Progress of the object sync from this server to its passives, rates are averaged since the sync started.
+ */
+public interface PassiveSyncMBean extends TerracottaMBean {
+
+  /**
+   * @return the passives a sync was started for
+   */
+  String[] getPassives();
+
+  long getObjectsToSync(String passive);
+
+  long getObjectsSynced(String passive);
+
+  long getBytesSynced(String passive);
+
+  double getObjectsPerSecond(String passive);
+
+  double getBytesPerSecond(String passive);
+
+  /**
+   * @return the estimated time left, or -1 if nothing has been synced yet
+   */
+  long getEstimatedMillisRemaining(String passive);
+
+  /**
+   * @return the number of sync batches currently allowed in flight to the passive
+   */
+  int getWindow(String passive);
+}
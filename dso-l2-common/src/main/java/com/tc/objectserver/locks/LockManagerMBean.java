@@ -10,4 +10,14 @@ public interface LockManagerMBean {
 
   public LockMBean[] getAllLocks();
 
+  /**
+   * @return the number of try lock and wait timeouts scheduled and not yet expired or canceled
+   */
+  public int getPendingLockTimeoutCount();
+
+  /**
+   * @return how late, in millis, the most late timeout of the last batch fired after it expired
+   */
+  public long getLockTimeoutExpiryLag();
+
 }
@@ -23,6 +23,7 @@ import com.tc.object.tx.ServerTransactionID;
 public class ManagedObjectSyncContext implements EventContext {
 
   private final NodeID                nodeID;
+  private final int                   stream;
   private final ObjectIDSet           requestedOids;
   private final boolean               more;
   private final Map<String, ObjectID> rootsMap;
@@ -37,22 +38,28 @@ public class ManagedObjectSyncContext implements EventContext {
   private ObjectIDSet                 syncedOids    = TCCollections.EMPTY_OBJECT_ID_SET;
   private ObjectIDSet                 notSyncedOids = TCCollections.EMPTY_OBJECT_ID_SET;
   private ObjectIDSet                 deletedOids = TCCollections.EMPTY_OBJECT_ID_SET;
+  private long                        dehydratedByteCount;
 
   public ManagedObjectSyncContext(final NodeID nodeID, final ObjectIDSet oids, final boolean more,
                                   final int totalObjectsToSync, final int totalObjectsSynced, final long sessionId) {
-    this.nodeID = nodeID;
-    this.requestedOids = oids;
-    this.more = more;
-    this.totalObjectsToSync = totalObjectsToSync;
-    this.totalObjectsSynced = totalObjectsSynced;
-    this.rootsMap = Collections.emptyMap();
-    this.sessionId = sessionId;
+    this(nodeID, 0, Collections.<String, ObjectID> emptyMap(), oids, more, totalObjectsToSync, totalObjectsSynced,
+         sessionId);
   }
 
   public ManagedObjectSyncContext(final NodeID nodeID, final Map<String, ObjectID> rootsMap, final ObjectIDSet oids,
                                   final boolean more, final int totalObjectsToSync, final int totalObjectsSynced,
                                   final long sessionId) {
+    this(nodeID, 0, rootsMap, oids, more, totalObjectsToSync, totalObjectsSynced, sessionId);
+  }
+
+  /**
+   * @param stream the sync stream the objects were taken from, more is about that stream only
+   */
+  public ManagedObjectSyncContext(final NodeID nodeID, final int stream, final Map<String, ObjectID> rootsMap,
+                                  final ObjectIDSet oids, final boolean more, final int totalObjectsToSync,
+                                  final int totalObjectsSynced, final long sessionId) {
     this.nodeID = nodeID;
+    this.stream = stream;
     this.totalObjectsToSync = totalObjectsToSync;
     this.totalObjectsSynced = totalObjectsSynced;
     this.requestedOids = oids;
@@ -81,6 +88,10 @@ public class ManagedObjectSyncContext implements EventContext {
     return this.sessionId;
   }
 
+  public int getStream() {
+    return this.stream;
+  }
+
   public void setDehydratedBytes(ObjectIDSet synced, ObjectIDSet notSynced, TCByteBuffer[] buffers, int count,
                                  ObjectStringSerializer os, final ObjectIDSet deletedObjects) {
     this.syncedOids = synced;
@@ -92,6 +103,19 @@ public class ManagedObjectSyncContext implements EventContext {
     Assert.assertTrue(deletedObjects.size() + dnaCount > 0);
   }
 
+  public void setDehydratedBytes(ObjectIDSet synced, ObjectIDSet notSynced, TCByteBuffer[] buffers, int count,
+                                 ObjectStringSerializer os, final ObjectIDSet deletedObjects, final long byteCount) {
+    setDehydratedBytes(synced, notSynced, buffers, count, os, deletedObjects);
+    this.dehydratedByteCount = byteCount;
+  }
+
+  /**
+   * @return the size of the dehydrated objects, 0 if it was not given
+   */
+  public long getDehydratedByteCount() {
+    return this.dehydratedByteCount;
+  }
+
   public NodeID getNodeID() {
     return this.nodeID;
   }
@@ -129,7 +153,8 @@ public class ManagedObjectSyncContext implements EventContext {
 
   @Override
   public String toString() {
-    return "ManagedObjectSyncContext [" + this.nodeID + " , sessionId = " + this.sessionId + " , oids = "
+    return "ManagedObjectSyncContext [" + this.nodeID + " , sessionId = " + this.sessionId + " , stream = "
+           + this.stream + " , oids = "
            + this.requestedOids + " ,  rootsMap = " + this.rootsMap + " , more = " + this.more + "]";
   }
 
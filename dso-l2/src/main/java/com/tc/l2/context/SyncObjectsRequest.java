@@ -3,19 +3,34 @@
  */
 package com.tc.l2.context;
 
-import com.tc.async.api.EventContext;
+import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.net.NodeID;
 
-public class SyncObjectsRequest implements EventContext {
+/**
+ * Asks for the next batch of a sync stream. Requests of a stream are handled in order on one thread, different streams
+ * are dehydrated in parallel.
+ */
+public class SyncObjectsRequest implements MultiThreadedEventContext {
 
   private final NodeID nodeID;
+  private final int    stream;
 
-  public SyncObjectsRequest(NodeID nodeID) {
+  public SyncObjectsRequest(NodeID nodeID, int stream) {
     this.nodeID = nodeID;
+    this.stream = stream;
   }
   
   public NodeID getNodeID() {
     return nodeID;
   }
 
+  public int getStream() {
+    return stream;
+  }
+
+  @Override
+  public Object getKey() {
+    return Integer.valueOf(stream);
+  }
+
 }
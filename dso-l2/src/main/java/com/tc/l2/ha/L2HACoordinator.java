@@ -180,8 +180,9 @@ public class L2HACoordinator implements L2Coordinator, GroupEventsListener, Sequ
     final L2ObjectSyncAckManager objectSyncAckManager = new L2ObjectSyncAckManagerImpl(transactionManager, groupManager);
     final Sink objectsSyncRequestSink = stageManager.createStage(ServerConfigurationContext.OBJECTS_SYNC_REQUEST_STAGE,
                                                                  new L2ObjectSyncRequestHandler(this.sequenceGenerator,
-                                                                                                objectStateManager), 1,
-                                                                 MAX_STAGE_SIZE).getSink();
+                                                                                                objectStateManager),
+                                                                 objectStateManager.getSyncStreams(), MAX_STAGE_SIZE)
+        .getSink();
     final Sink objectsSyncSink = stageManager.createStage(ServerConfigurationContext.OBJECTS_SYNC_STAGE,
                                                           new L2ObjectSyncHandler(serverTransactionFactory,
                                                                                   objectSyncAckManager, this.server
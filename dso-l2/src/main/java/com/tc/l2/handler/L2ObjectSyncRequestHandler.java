@@ -87,7 +87,8 @@ public class L2ObjectSyncRequestHandler extends AbstractEventHandler {
 
   private void doSyncObjectsRequest(SyncObjectsRequest request) {
     NodeID nodeID = request.getNodeID();
-    ManagedObjectSyncContext mosc = l2ObjectStateMgr.getSomeObjectsToSyncContext(nodeID, L2_OBJECT_SYNC_BATCH_SIZE);
+    ManagedObjectSyncContext mosc = l2ObjectStateMgr.getSomeObjectsToSyncContext(nodeID, request.getStream(),
+                                                                                  L2_OBJECT_SYNC_BATCH_SIZE);
     if (mosc != null) {
       doSyncObjectsDehydrate(mosc);
     }
@@ -135,7 +136,8 @@ public class L2ObjectSyncRequestHandler extends AbstractEventHandler {
         }
       }
     }
-    mosc.setDehydratedBytes(synced, notSynced, out.toArray(), synced.size(), serializer, deletedOids);
+    final long byteCount = out.getBytesWritten();
+    mosc.setDehydratedBytes(synced, notSynced, out.toArray(), synced.size(), serializer, deletedOids, byteCount);
     this.sendSink.add(mosc);
   }
 
@@ -64,7 +64,7 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
       if (sendObjects(mosc)) {
         if (mosc.hasMore()) {
           throttleOnObjectSync();
-          this.objectStateManager.syncMore(mosc.getNodeID());
+          this.objectStateManager.syncMore(mosc.getNodeID(), mosc.getStream());
         }
       }
     } else if (context instanceof ServerTxnAckMessage) {
@@ -22,7 +22,10 @@ public interface L2ObjectStateManager {
 
   public boolean addL2(NodeID nodeID);
 
-  public ManagedObjectSyncContext getSomeObjectsToSyncContext(NodeID nodeID, int count);
+  /**
+   * @return the next batch of the given sync stream, or null if the stream has nothing left to send
+   */
+  public ManagedObjectSyncContext getSomeObjectsToSyncContext(NodeID nodeID, int stream, int count);
 
   public void close(ManagedObjectSyncContext mosc);
 
@@ -30,10 +33,17 @@ public interface L2ObjectStateManager {
 
   public void registerForL2ObjectStateChangeEvents(L2ObjectStateListener listener);
 
-  public void initiateSync(NodeID nodeID, Runnable syncRunnable);
+  /**
+   * @return the number of streams a passive is synced on at the same time
+   */
+  public int getSyncStreams();
+
+  public void initiateSync(NodeID nodeID, L2ObjectSyncRequester requester);
 
-  public void syncMore(NodeID nodeID);
+  public void syncMore(NodeID nodeID, int stream);
 
   public void ackSync(NodeID nodeID);
 
+  public Collection<PassiveSyncProgress> getSyncProgress();
+
 }
\ No newline at end of file
@@ -14,19 +14,27 @@ import com.tc.objectserver.tx.ServerTransactionManager;
 import com.tc.objectserver.tx.TxnsInSystemCompletionListener;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
-import com.tc.util.Assert;
 import com.tc.util.BitSetObjectIDSet;
 import com.tc.util.ObjectIDSet;
 import com.tc.util.State;
 import com.tc.util.concurrent.CopyOnWriteSequentialMap;
-import com.tc.util.concurrent.ThrottledTaskExecutor;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Objects missing on a passive are split into as many runs of consecutive ObjectIDs as there are sync streams. Each
+ * stream sends the batches of its own run, so several batches can be read and dehydrated at the same time, while a
+ * {@link PassiveSyncFlowControl} per passive decides how many of them may be in flight.
+ */
 public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
 
   private static final TCLogger          logger                 = TCLogging.getLogger(L2ObjectStateManagerImpl.class);
@@ -35,8 +43,9 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
   private final CopyOnWriteSequentialMap<NodeID, L2ObjectStateImpl> nodes                  = new CopyOnWriteSequentialMap<NodeID, L2ObjectStateImpl>();
   private final CopyOnWriteArrayList<L2ObjectStateListener>         listeners              = new CopyOnWriteArrayList<L2ObjectStateListener>();
   private final ServerTransactionManager transactionManager;
-  private final CopyOnWriteSequentialMap<NodeID, SyncExecutorContext> syncExecutorContextMap = new CopyOnWriteSequentialMap<NodeID, SyncExecutorContext>();
+  private final CopyOnWriteSequentialMap<NodeID, PassiveSyncFlowControl> flowControls           = new CopyOnWriteSequentialMap<NodeID, PassiveSyncFlowControl>();
   private final int                      syncMaxPendingMsgs;
+  private final int                      syncStreams;
   private long                           currentSessionId       = 0;
 
   public L2ObjectStateManagerImpl(final ObjectManager objectManager, final ServerTransactionManager transactionManager) {
@@ -50,6 +59,17 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
                   + ")");
     }
     this.syncMaxPendingMsgs = (maxSyncPendingMsgs <= 0) ? Integer.MAX_VALUE : maxSyncPendingMsgs;
+    int streams = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_STREAMS, 1);
+    if (streams <= 0) {
+      logger.warn(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_STREAMS + " = " + streams
+                  + " is not valid, using a single stream");
+    }
+    this.syncStreams = Math.max(1, streams);
+  }
+
+  @Override
+  public int getSyncStreams() {
+    return this.syncStreams;
   }
 
   @Override
@@ -80,7 +100,7 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     if (l2State == null) {
       logger.warn("L2State Not found for " + nodeID);
     }
-    this.syncExecutorContextMap.remove(nodeID);
+    this.flowControls.remove(nodeID);
   }
 
   @Override
@@ -113,10 +133,18 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
   }
 
   @Override
-  public ManagedObjectSyncContext getSomeObjectsToSyncContext(final NodeID nodeID, final int count) {
+  public ManagedObjectSyncContext getSomeObjectsToSyncContext(final NodeID nodeID, final int stream, final int count) {
     final L2ObjectStateImpl l2State = this.nodes.get(nodeID);
     if (l2State != null) {
-      return l2State.getSomeObjectsToSyncContext(count);
+      final ManagedObjectSyncContext mosc = l2State.getSomeObjectsToSyncContext(stream, count);
+      if (mosc == null) {
+        // nothing left on this stream, the credit it was given goes to the others
+        final PassiveSyncFlowControl flowControl = this.flowControls.get(nodeID);
+        if (flowControl != null) {
+          flowControl.cancelled();
+        }
+      }
+      return mosc;
     } else {
       logger.warn("L2 State Object Not found for " + nodeID);
       return null;
@@ -127,7 +155,15 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
   public void close(final ManagedObjectSyncContext mosc) {
     final L2ObjectStateImpl l2State = this.nodes.get(mosc.getNodeID());
     if (l2State != null) {
-      l2State.close(mosc);
+      if (!l2State.close(mosc)) { return; }
+      final PassiveSyncFlowControl flowControl = this.flowControls.get(mosc.getNodeID());
+      if (flowControl != null) {
+        flowControl.sent(System.nanoTime());
+        if (!mosc.getRootsMap().isEmpty()) {
+          // the roots are out, the remaining streams can start
+          startStreams(flowControl, 1);
+        }
+      }
     } else {
       logger.warn("close() : L2 State Object Not found for " + mosc.getNodeID());
     }
@@ -139,40 +175,63 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
   }
 
   @Override
-  public void initiateSync(NodeID nodeID, Runnable syncRunnable) {
-    ThrottledTaskExecutor throttledTaskExecutor = new ThrottledTaskExecutor(syncMaxPendingMsgs);
-    SyncExecutorContext passiveSyncContext = new SyncExecutorContext(throttledTaskExecutor, syncRunnable);
-    Object o = this.syncExecutorContextMap.put(nodeID, passiveSyncContext);
+  public void initiateSync(NodeID nodeID, L2ObjectSyncRequester requester) {
+    final L2ObjectStateImpl l2State = this.nodes.get(nodeID);
+    if (l2State == null) {
+      logger.warn("initiateSync: L2 State Object Not found for " + nodeID);
+      return;
+    }
+    PassiveSyncFlowControl flowControl = new PassiveSyncFlowControl(nodeID, requester, syncStreams, syncMaxPendingMsgs);
+    Object o = this.flowControls.put(nodeID, flowControl);
     if (o != null) {
       logger.warn("initiateSync: Passive Sync Context already available for " + nodeID);
     }
-    syncPassive(throttledTaskExecutor, syncRunnable);
+    // roots are sent on their own by the first stream before the others start
+    if (l2State.isRootsMissing()) {
+      flowControl.ready(0);
+    } else {
+      startStreams(flowControl, 0);
+    }
+  }
+
+  private void startStreams(PassiveSyncFlowControl flowControl, int first) {
+    for (int stream = first; stream < this.syncStreams; stream++) {
+      flowControl.ready(stream);
+    }
   }
 
   @Override
-  public void syncMore(NodeID nodeID) {
-    SyncExecutorContext passiveSync = this.syncExecutorContextMap.get(nodeID);
-    if (passiveSync != null) {
-      syncPassive(passiveSync.getExecutor(), passiveSync.getRunnable());
+  public void syncMore(NodeID nodeID, int stream) {
+    PassiveSyncFlowControl flowControl = this.flowControls.get(nodeID);
+    if (flowControl != null) {
+      flowControl.ready(stream);
     } else {
       logger.warn("syncMore: Passive Sync Context missing for " + nodeID);
     }
   }
 
-  private void syncPassive(ThrottledTaskExecutor executor, Runnable syncRunnable) {
-    executor.offer(syncRunnable);
-  }
-
   @Override
   public void ackSync(NodeID nodeID) {
-    SyncExecutorContext passiveSync = this.syncExecutorContextMap.get(nodeID);
-    if (passiveSync != null) {
-      passiveSync.getExecutor().receiveFeedback();
+    PassiveSyncFlowControl flowControl = this.flowControls.get(nodeID);
+    if (flowControl != null) {
+      flowControl.acked(System.nanoTime());
     } else {
       logger.warn("ackSync: Passive Sync Context missing for " + nodeID);
     }
   }
 
+  @Override
+  public Collection<PassiveSyncProgress> getSyncProgress() {
+    List<PassiveSyncProgress> progress = new ArrayList<PassiveSyncProgress>();
+    for (L2ObjectStateImpl l2State : this.nodes.values()) {
+      PassiveSyncFlowControl flowControl = this.flowControls.get(l2State.getNodeID());
+      if (flowControl != null) {
+        progress.add(l2State.getSyncProgress(flowControl));
+      }
+    }
+    return progress;
+  }
+
   @Override
   public String toString() {
     StringBuilder strBuilder = new StringBuilder();
@@ -181,25 +240,6 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     return strBuilder.toString();
   }
 
-  private static class SyncExecutorContext {
-    private final ThrottledTaskExecutor executor;
-    private final Runnable              runnable;
-
-    public SyncExecutorContext(ThrottledTaskExecutor executor, Runnable runnable) {
-      this.executor = executor;
-      this.runnable = runnable;
-    }
-
-    public ThrottledTaskExecutor getExecutor() {
-      return executor;
-    }
-
-    public Runnable getRunnable() {
-      return runnable;
-    }
-
-  }
-
   private static final State START                  = new State("START");
   private static final State READY_TO_SYNC          = new State("READY_TO_SYNC");
   private static final State SYNC_STARTED           = new State("SYNC_STARTED");
@@ -208,38 +248,46 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
 
   private final class L2ObjectStateImpl implements L2ObjectState {
 
-    private final NodeID             nodeID;
+    private final NodeID                        nodeID;
 
-    private ObjectIDSet              missingOids;
-    private Map                      missingRoots;
+    // one run of consecutive missing ObjectIDs per sync stream
+    private ObjectIDSet[]                       missingRanges;
+    private Map                                 missingRoots;
 
-    private volatile State           state          = START;
+    private volatile State                      state           = START;
 
-    private ManagedObjectSyncContext syncingContext = null;
+    private final Set<ManagedObjectSyncContext> syncingContexts = new HashSet<ManagedObjectSyncContext>();
 
-    private int                      totalObjectsToSync;
-    private int                      totalObjectsSynced;
-    private final long               sessionId;
+    private int                                 totalObjectsToSync;
+    private int                                 totalObjectsSynced;
+    private long                                totalBytesSynced;
+    private long                                syncStartTime;
+    private long                                syncEndTime;
+    private final long                          sessionId;
 
     public L2ObjectStateImpl(final NodeID nodeID, final long currentSessionId) {
       this.nodeID = nodeID;
       this.sessionId = currentSessionId;
     }
 
-    private void close(final ManagedObjectSyncContext mosc) {
+    /**
+     * @return false if the context belongs to an older sync session and was ignored
+     */
+    private synchronized boolean close(final ManagedObjectSyncContext mosc) {
       if (this.sessionId != mosc.getSessionId()) {
         logger.warn("An old request for object sync for " + this.nodeID + " is being ignored");
-        return;
+        return false;
       }
-      if (mosc != this.syncingContext) { throw new AssertionError("expected: " + this.syncingContext + " actual: "
-                                                                  + mosc); }
-      this.syncingContext = null;
+      if (!this.syncingContexts.remove(mosc)) { throw new AssertionError("expected one of: " + this.syncingContexts
+                                                                          + " actual: " + mosc); }
       // NotSynchedOids are picked up first as its a stored set and thus prefetching that happened is not a waste.
-      missingOids.addAll(mosc.getNotSynchedOids());
+      missingRanges[mosc.getStream()].addAll(mosc.getNotSynchedOids());
       totalObjectsSynced += mosc.getSynchedOids().size();
       totalObjectsSynced += mosc.getDeletedOids().size();
-      if (this.missingOids.isEmpty()) {
+      totalBytesSynced += mosc.getDehydratedByteCount();
+      if (this.syncingContexts.isEmpty() && missingCount() == 0) {
         this.state = IN_SYNC_PENDING_NOTIFY;
+        this.syncEndTime = System.currentTimeMillis();
         L2ObjectStateManagerImpl.this.transactionManager
             .callBackOnTxnsInSystemCompletion(new TxnsInSystemCompletionListener() {
               @Override
@@ -248,59 +296,82 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
               }
             });
       }
+      return true;
     }
 
-    private ManagedObjectSyncContext getSomeObjectsToSyncContext(final int count) {
-      Assert.assertTrue(this.state == SYNC_STARTED);
-      Assert.assertNull(this.syncingContext);
-      if (isRootsMissing()) { return getMissingRootsSynccontext(); }
+    private synchronized ManagedObjectSyncContext getSomeObjectsToSyncContext(final int stream, final int count) {
+      // streams can still ask after the last batch of the sync went out
+      if (this.state != SYNC_STARTED) { return null; }
+      if (isRootsMissing()) { return getMissingRootsSynccontext(stream); }
+      final ObjectIDSet range = this.missingRanges[stream];
+      if (range.isEmpty()) { return null; }
       final ObjectIDSet oids = new BitSetObjectIDSet();
-      addSomeMissingObjectIDsTo(oids, count);
-      this.syncingContext = new ManagedObjectSyncContext(this.nodeID, oids, !this.missingOids.isEmpty(),
-                                                         this.totalObjectsToSync, this.totalObjectsSynced,
-                                                         this.sessionId);
-      return this.syncingContext;
+      addSomeMissingObjectIDsTo(range, oids, count);
+      final ManagedObjectSyncContext mosc = new ManagedObjectSyncContext(this.nodeID, stream,
+                                                                         Collections.<String, ObjectID> emptyMap(),
+                                                                         oids, !range.isEmpty(),
+                                                                         this.totalObjectsToSync,
+                                                                         this.totalObjectsSynced, this.sessionId);
+      this.syncingContexts.add(mosc);
+      return mosc;
     }
 
-    private void addSomeMissingObjectIDsTo(final ObjectIDSet oids, int count) {
-      for (final Iterator<ObjectID> i = this.missingOids.iterator(); i.hasNext() && --count >= 0;) {
+    private void addSomeMissingObjectIDsTo(final ObjectIDSet range, final ObjectIDSet oids, int count) {
+      for (final Iterator<ObjectID> i = range.iterator(); i.hasNext() && --count >= 0;) {
         oids.add(i.next());
         i.remove();
       }
     }
 
-    private ManagedObjectSyncContext getMissingRootsSynccontext() {
+    private ManagedObjectSyncContext getMissingRootsSynccontext(final int stream) {
       final ObjectIDSet oids = new BitSetObjectIDSet();
       // NOTE:: some root IDs might not be present in this mirror group in AA config
       for (final Iterator i = this.missingRoots.values().iterator(); i.hasNext();) {
         final ObjectID rootID = (ObjectID) i.next();
-        if (this.missingOids.remove(rootID)) {
-          oids.add(rootID);
+        for (final ObjectIDSet range : this.missingRanges) {
+          if (range.remove(rootID)) {
+            oids.add(rootID);
+            break;
+          }
         }
       }
+      final ObjectIDSet range = this.missingRanges[stream];
       if (oids.isEmpty()) {
         // Get some objects anyways
-        addSomeMissingObjectIDsTo(oids, this.missingRoots.size());
+        addSomeMissingObjectIDsTo(range, oids, this.missingRoots.size());
       }
-      this.syncingContext = new ManagedObjectSyncContext(this.nodeID, new HashMap<String, ObjectID>(this.missingRoots), oids,
-                                                         !this.missingOids.isEmpty(), this.totalObjectsToSync,
-                                                         this.totalObjectsSynced, this.sessionId);
+      final ManagedObjectSyncContext mosc = new ManagedObjectSyncContext(this.nodeID, stream,
+                                                                         new HashMap<String, ObjectID>(this.missingRoots),
+                                                                         oids, !range.isEmpty(),
+                                                                         this.totalObjectsToSync,
+                                                                         this.totalObjectsSynced, this.sessionId);
+      this.syncingContexts.add(mosc);
       this.missingRoots.clear();
-      return this.syncingContext;
+      return mosc;
     }
 
-    private boolean isRootsMissing() {
+    private synchronized boolean isRootsMissing() {
       return !this.missingRoots.isEmpty();
     }
 
-    private int computeDiff() {
-      this.missingOids = L2ObjectStateManagerImpl.this.objectManager.getAllObjectIDs();
+    private int missingCount() {
+      int count = 0;
+      for (final ObjectIDSet range : this.missingRanges) {
+        count += range.size();
+      }
+      return count;
+    }
+
+    private synchronized int computeDiff() {
+      final ObjectIDSet missingOids = L2ObjectStateManagerImpl.this.objectManager.getAllObjectIDs();
       this.missingRoots = L2ObjectStateManagerImpl.this.objectManager.getRootNamesToIDsMap();
-      final int objectCount = this.missingOids.size();
-      this.totalObjectsToSync = this.missingOids.size();
-      logger.info(this.nodeID + " : is missing " + this.missingOids.size() + " out of " + objectCount
+      final int objectCount = missingOids.size();
+      this.totalObjectsToSync = missingOids.size();
+      this.missingRanges = splitIntoRanges(missingOids, L2ObjectStateManagerImpl.this.syncStreams);
+      this.syncStartTime = System.currentTimeMillis();
+      logger.info(this.nodeID + " : is missing " + missingOids.size() + " out of " + objectCount
                   + " objects of which missing roots = " + this.missingRoots.size());
-      final int missingCount = this.missingOids.size();
+      final int missingCount = missingOids.size();
       if (missingCount == 0) {
         this.state = IN_SYNC;
       } else {
@@ -309,15 +380,39 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
       return missingCount;
     }
 
+    /**
+     * Cuts the ids, in ObjectID order, into runs of about the same size.
+     */
+    private ObjectIDSet[] splitIntoRanges(final ObjectIDSet oids, final int count) {
+      final ObjectIDSet[] ranges = new ObjectIDSet[count];
+      final int perRange = (oids.size() + count - 1) / count;
+      final Iterator<ObjectID> i = oids.iterator();
+      for (int r = 0; r < count; r++) {
+        ranges[r] = new BitSetObjectIDSet();
+        for (int n = 0; n < perRange && i.hasNext(); n++) {
+          ranges[r].add(i.next());
+        }
+      }
+      return ranges;
+    }
+
+    private synchronized PassiveSyncProgress getSyncProgress(final PassiveSyncFlowControl flowControl) {
+      final long end = this.state == SYNC_STARTED ? System.currentTimeMillis() : this.syncEndTime;
+      return new PassiveSyncProgress(this.nodeID, this.totalObjectsToSync, this.totalObjectsSynced,
+                                     this.totalBytesSynced, Math.max(0, end - this.syncStartTime),
+                                     flowControl.getWindow(), flowControl.getOutstanding());
+    }
+
     @Override
     public NodeID getNodeID() {
       return this.nodeID;
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
       return "L2StateObjectImpl [ " + this.nodeID + " ] : "
-             + (this.missingOids != null ? "missing = " + this.missingOids.size() : "") + " state = " + this.state;
+             + (this.missingRanges != null ? "missing = " + missingCount() + " in flight = "
+                                             + this.syncingContexts.size() : "") + " state = " + this.state;
     }
 
     private void moveToReadyToSyncState() {
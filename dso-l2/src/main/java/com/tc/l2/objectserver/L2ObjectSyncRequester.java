@@ -0,0 +1,15 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.l2.objectserver;
+
+import com.tc.net.NodeID;
+
+/**
+ * Asks for the next batch of objects of a sync stream to be read and sent to a passive.
+ */
+public interface L2ObjectSyncRequester {
+
+  public void requestSync(NodeID nodeID, int stream);
+
+}
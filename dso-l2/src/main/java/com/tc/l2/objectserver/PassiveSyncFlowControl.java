@@ -0,0 +1,133 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.l2.objectserver;
+
+import com.tc.net.NodeID;
+import com.tc.util.Assert;
+
+import java.util.LinkedList;
+
+/**
+ * Credit based flow control for the object sync batches sent to one passive. A batch takes a credit when it is
+ * requested and gives it back when the passive acks it, or straight away if the stream had nothing left to send.
+ * Streams that want to send while no credit is free wait in turn.
+ * <p>
+ * The number of credits follows how fast the passive applies the batches. The shortest round trip seen is what a batch
+ * costs when the passive has nothing queued, the time between acks is what it takes the passive to apply one. Keeping
+ * their ratio (plus one) in flight keeps the passive busy without queueing batches on it, bounded by
+ * l2.objectmanager.passive.sync.throttle.maxPendingMessages.
+ */
+final class PassiveSyncFlowControl {
+
+  // weight of the newest ack interval in the moving average, as a shift
+  private static final int            ACK_INTERVAL_SHIFT = 3;
+
+  private final NodeID                nodeID;
+  private final L2ObjectSyncRequester requester;
+  private final int                   maxOutstanding;
+
+  private final LinkedList<Integer>   ready              = new LinkedList<Integer>();
+  private final LinkedList<Long>      sendTimes          = new LinkedList<Long>();
+  private int                         outstanding;
+  private int                         window;
+  private long                        minRoundTrip       = Long.MAX_VALUE;
+  private long                        lastAck            = -1;
+  private long                        avgAckInterval;
+
+  PassiveSyncFlowControl(NodeID nodeID, L2ObjectSyncRequester requester, int initialWindow, int maxOutstanding) {
+    Assert.assertTrue(maxOutstanding > 0);
+    this.nodeID = nodeID;
+    this.requester = requester;
+    this.maxOutstanding = maxOutstanding;
+    this.window = Math.max(1, Math.min(initialWindow, maxOutstanding));
+  }
+
+  /**
+   * The stream has another batch to send, it is requested as soon as a credit is free.
+   */
+  void ready(int stream) {
+    synchronized (this) {
+      this.ready.add(Integer.valueOf(stream));
+    }
+    dispatch();
+  }
+
+  /**
+   * The requested batch turned out to be empty and was never sent.
+   */
+  void cancelled() {
+    synchronized (this) {
+      release();
+    }
+    dispatch();
+  }
+
+  /**
+   * A requested batch went out to the passive at the given time, in nanoseconds.
+   */
+  synchronized void sent(long now) {
+    this.sendTimes.add(Long.valueOf(now));
+  }
+
+  /**
+   * The passive acked the oldest batch sent at the given time, in nanoseconds.
+   */
+  void acked(long now) {
+    synchronized (this) {
+      release();
+      if (!this.sendTimes.isEmpty()) {
+        this.minRoundTrip = Math.min(this.minRoundTrip, now - this.sendTimes.removeFirst().longValue());
+      }
+      if (this.lastAck >= 0) {
+        long interval = now - this.lastAck;
+        this.avgAckInterval = this.avgAckInterval == 0 ? interval : this.avgAckInterval
+                                                                    + ((interval - this.avgAckInterval) >> ACK_INTERVAL_SHIFT);
+      }
+      this.lastAck = now;
+      resize();
+    }
+    dispatch();
+  }
+
+  synchronized int getWindow() {
+    return this.window;
+  }
+
+  synchronized int getOutstanding() {
+    return this.outstanding;
+  }
+
+  private void release() {
+    if (this.outstanding > 0) {
+      this.outstanding--;
+    }
+  }
+
+  private void resize() {
+    if (this.avgAckInterval <= 0 || this.minRoundTrip == Long.MAX_VALUE) { return; }
+    long inFlight = (this.minRoundTrip + this.avgAckInterval - 1) / this.avgAckInterval + 1;
+    this.window = (int) Math.max(1, Math.min(inFlight, this.maxOutstanding));
+  }
+
+  /**
+   * Requests are made outside the lock as the requester may call back in.
+   */
+  private void dispatch() {
+    while (true) {
+      int stream;
+      synchronized (this) {
+        if (this.ready.isEmpty() || this.outstanding >= this.window) { return; }
+        stream = this.ready.removeFirst().intValue();
+        this.outstanding++;
+      }
+      this.requester.requestSync(this.nodeID, stream);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "PassiveSyncFlowControl [" + this.nodeID + " , window = " + this.window + " , outstanding = "
+           + this.outstanding + " , waiting = " + this.ready.size() + "]";
+  }
+}
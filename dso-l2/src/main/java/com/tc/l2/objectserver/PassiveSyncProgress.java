@@ -0,0 +1,96 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.l2.objectserver;
+
+import com.tc.net.NodeID;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How far the object sync to a passive has got, as of the moment it was taken.
+ */
+public final class PassiveSyncProgress {
+
+  private final NodeID nodeID;
+  private final long   objectsToSync;
+  private final long   objectsSynced;
+  private final long   bytesSynced;
+  private final long   elapsedMillis;
+  private final int    window;
+  private final int    outstanding;
+
+  public PassiveSyncProgress(NodeID nodeID, long objectsToSync, long objectsSynced, long bytesSynced,
+                             long elapsedMillis, int window, int outstanding) {
+    this.nodeID = nodeID;
+    this.objectsToSync = objectsToSync;
+    this.objectsSynced = objectsSynced;
+    this.bytesSynced = bytesSynced;
+    this.elapsedMillis = elapsedMillis;
+    this.window = window;
+    this.outstanding = outstanding;
+  }
+
+  public NodeID getNodeID() {
+    return this.nodeID;
+  }
+
+  public long getObjectsToSync() {
+    return this.objectsToSync;
+  }
+
+  public long getObjectsSynced() {
+    return this.objectsSynced;
+  }
+
+  public long getBytesSynced() {
+    return this.bytesSynced;
+  }
+
+  public long getElapsedMillis() {
+    return this.elapsedMillis;
+  }
+
+  /**
+   * @return the number of batches currently allowed in flight to the passive
+   */
+  public int getWindow() {
+    return this.window;
+  }
+
+  /**
+   * @return the number of batches requested or sent and not yet acked by the passive
+   */
+  public int getOutstanding() {
+    return this.outstanding;
+  }
+
+  public double getObjectsPerSecond() {
+    return perSecond(this.objectsSynced);
+  }
+
+  public double getBytesPerSecond() {
+    return perSecond(this.bytesSynced);
+  }
+
+  /**
+   * @return the time left at the rate seen so far, or -1 if nothing has been synced yet
+   */
+  public long getEstimatedMillisRemaining() {
+    if (this.objectsSynced == 0 || this.elapsedMillis == 0) { return -1; }
+    long remaining = Math.max(0, this.objectsToSync - this.objectsSynced);
+    return (long) (remaining * ((double) this.elapsedMillis / this.objectsSynced));
+  }
+
+  private double perSecond(long count) {
+    if (this.elapsedMillis == 0) { return 0; }
+    return count * (double) TimeUnit.SECONDS.toMillis(1) / this.elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "PassiveSyncProgress [" + this.nodeID + " , synced = " + this.objectsSynced + "/" + this.objectsToSync
+           + " , bytes = " + this.bytesSynced + " , elapsed = " + this.elapsedMillis + "ms , window = " + this.window
+           + " , outstanding = " + this.outstanding + "]";
+  }
+}
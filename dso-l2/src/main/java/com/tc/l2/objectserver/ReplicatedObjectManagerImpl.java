@@ -302,13 +302,13 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
       this.passiveSyncStateManager.objectSyncComplete(nodeID);
       moveNodeToPassiveStandByIfPossible(nodeID);
     } else {
-      final Runnable syncRunnable = new Runnable() {
+      final L2ObjectSyncRequester requester = new L2ObjectSyncRequester() {
         @Override
-        public void run() {
-          objectsSyncRequestSink.add(new SyncObjectsRequest(nodeID));
+        public void requestSync(NodeID node, int stream) {
+          objectsSyncRequestSink.add(new SyncObjectsRequest(node, stream));
         }
       };
-      this.l2ObjectStateManager.initiateSync(nodeID, syncRunnable);
+      this.l2ObjectStateManager.initiateSync(nodeID, requester);
     }
   }
 
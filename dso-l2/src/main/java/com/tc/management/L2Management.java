@@ -16,12 +16,14 @@ import com.sun.jmx.remote.socket.SocketConnectionServer;
 import com.tc.async.api.Sink;
 import com.tc.config.schema.setup.L2ConfigurationSetupManager;
 import com.tc.exception.TCRuntimeException;
+import com.tc.l2.objectserver.L2ObjectStateManager;
 import com.tc.logging.CustomerLogging;
 import com.tc.logging.JMXLogging;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.management.beans.L2Dumper;
 import com.tc.management.beans.L2MBeanNames;
+import com.tc.management.beans.PassiveSync;
 import com.tc.management.beans.TCDumper;
 import com.tc.management.beans.TCServerInfoMBean;
 import com.tc.management.beans.object.ObjectManagementMonitor;
@@ -160,6 +162,11 @@ public class L2Management extends TerracottaManagement {
     return objectManagementBean;
   }
 
+  public void registerPassiveSyncMBean(L2ObjectStateManager l2ObjectStateManager) throws NotCompliantMBeanException,
+      InstanceAlreadyExistsException, MBeanRegistrationException {
+    mBeanServer.registerMBean(new PassiveSync(l2ObjectStateManager), L2MBeanNames.PASSIVE_SYNC);
+  }
+
   protected void registerMBeans() throws MBeanRegistrationException, NotCompliantMBeanException,
       InstanceAlreadyExistsException {
     mBeanServer.registerMBean(tcServerInfo, L2MBeanNames.TC_SERVER_INFO);
@@ -173,6 +180,10 @@ public class L2Management extends TerracottaManagement {
     mBeanServer.unregisterMBean(L2MBeanNames.LOGGER);
     mBeanServer.unregisterMBean(L2MBeanNames.OBJECT_MANAGEMENT);
     mBeanServer.unregisterMBean(L2MBeanNames.DUMPER);
+    // registered later on, once the server has its object state manager
+    if (mBeanServer.isRegistered(L2MBeanNames.PASSIVE_SYNC)) {
+      mBeanServer.unregisterMBean(L2MBeanNames.PASSIVE_SYNC);
+    }
   }
 
   public static class TCSynchroMessageConnectionServer extends SynchroMessageConnectionServerImpl {
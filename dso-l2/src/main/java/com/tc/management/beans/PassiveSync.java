@@ -0,0 +1,79 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.management.beans;
+
+import com.tc.l2.objectserver.L2ObjectStateManager;
+import com.tc.l2.objectserver.PassiveSyncProgress;
+import com.tc.management.AbstractTerracottaMBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.NotCompliantMBeanException;
+
+public class PassiveSync extends AbstractTerracottaMBean implements PassiveSyncMBean {
+
+  private final L2ObjectStateManager l2ObjectStateManager;
+
+  public PassiveSync(L2ObjectStateManager l2ObjectStateManager) throws NotCompliantMBeanException {
+    super(PassiveSyncMBean.class, false);
+    this.l2ObjectStateManager = l2ObjectStateManager;
+  }
+
+  @Override
+  public String[] getPassives() {
+    List<String> passives = new ArrayList<String>();
+    for (PassiveSyncProgress progress : l2ObjectStateManager.getSyncProgress()) {
+      passives.add(progress.getNodeID().toString());
+    }
+    return passives.toArray(new String[passives.size()]);
+  }
+
+  @Override
+  public long getObjectsToSync(String passive) {
+    return progressOf(passive).getObjectsToSync();
+  }
+
+  @Override
+  public long getObjectsSynced(String passive) {
+    return progressOf(passive).getObjectsSynced();
+  }
+
+  @Override
+  public long getBytesSynced(String passive) {
+    return progressOf(passive).getBytesSynced();
+  }
+
+  @Override
+  public double getObjectsPerSecond(String passive) {
+    return progressOf(passive).getObjectsPerSecond();
+  }
+
+  @Override
+  public double getBytesPerSecond(String passive) {
+    return progressOf(passive).getBytesPerSecond();
+  }
+
+  @Override
+  public long getEstimatedMillisRemaining(String passive) {
+    return progressOf(passive).getEstimatedMillisRemaining();
+  }
+
+  @Override
+  public int getWindow(String passive) {
+    return progressOf(passive).getWindow();
+  }
+
+  private PassiveSyncProgress progressOf(String passive) {
+    for (PassiveSyncProgress progress : l2ObjectStateManager.getSyncProgress()) {
+      if (progress.getNodeID().toString().equals(passive)) { return progress; }
+    }
+    throw new IllegalArgumentException("No object sync started for " + passive);
+  }
+
+  @Override
+  public void reset() {
+    //
+  }
+}
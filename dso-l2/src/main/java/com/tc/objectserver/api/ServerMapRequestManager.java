@@ -8,10 +8,12 @@ import com.tc.object.ObjectID;
 import com.tc.object.ServerMapGetValueRequest;
 import com.tc.object.ServerMapRequestID;
 import com.tc.objectserver.context.ServerMapGetAllSizeHelper;
+import com.tc.objectserver.context.ServerMapRequestBulkValueContext;
 import com.tc.objectserver.core.api.ManagedObject;
 import com.tc.text.PrettyPrintable;
 
 import java.util.Collection;
+import java.util.Map;
 
 public interface ServerMapRequestManager extends PrettyPrintable {
 
@@ -26,4 +28,11 @@ public interface ServerMapRequestManager extends PrettyPrintable {
 
   public void requestValues(ClientID clientID, ObjectID mapID, Collection<ServerMapGetValueRequest> requests);
 
+  /**
+   * Requests for several maps of a client, looked up and answered together when bulk requests are enabled.
+   */
+  public void requestValues(ClientID clientID, Map<ObjectID, Collection<ServerMapGetValueRequest>> requests);
+
+  public void sendResponseFor(ServerMapRequestBulkValueContext context);
+
 }
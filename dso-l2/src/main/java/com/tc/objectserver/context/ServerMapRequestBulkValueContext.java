@@ -0,0 +1,71 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.context;
+
+import com.tc.async.api.Sink;
+import com.tc.net.ClientID;
+import com.tc.object.ObjectID;
+import com.tc.object.ServerMapGetValueRequest;
+import com.tc.objectserver.api.ObjectManagerLookupResults;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+import com.tc.util.TCCollections;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Get value requests of a client for several maps, looked up together : all the maps are checked out in a single
+ * lookup and the whole context goes to the respond stage once they are.
+ */
+public class ServerMapRequestBulkValueContext implements ObjectManagerResultsContext {
+
+  private final ClientID                                            clientID;
+  private final Map<ObjectID, Collection<ServerMapGetValueRequest>> requests;
+  private final ObjectIDSet                                         lookupIDs = new BitSetObjectIDSet();
+  private final Sink                                                destinationSink;
+  private volatile ObjectManagerLookupResults                       results;
+
+  public ServerMapRequestBulkValueContext(final ClientID clientID,
+                                          final Map<ObjectID, Collection<ServerMapGetValueRequest>> requests,
+                                          final Sink destinationSink) {
+    this.clientID = clientID;
+    this.requests = requests;
+    this.destinationSink = destinationSink;
+    this.lookupIDs.addAll(requests.keySet());
+  }
+
+  public ClientID getClientID() {
+    return this.clientID;
+  }
+
+  public Map<ObjectID, Collection<ServerMapGetValueRequest>> getValueRequests() {
+    return this.requests;
+  }
+
+  public ObjectManagerLookupResults getResults() {
+    return this.results;
+  }
+
+  @Override
+  public ObjectIDSet getLookupIDs() {
+    return this.lookupIDs;
+  }
+
+  @Override
+  public ObjectIDSet getNewObjectIDs() {
+    return TCCollections.EMPTY_OBJECT_ID_SET;
+  }
+
+  @Override
+  public void setResults(final ObjectManagerLookupResults results) {
+    this.results = results;
+    this.destinationSink.add(this);
+  }
+
+  @Override
+  public String toString() {
+    return "ServerMapRequestBulkValueContext [ clientID : " + this.clientID + " maps : " + this.requests.size() + "]";
+  }
+}
@@ -19,13 +19,16 @@ import com.tc.util.TCCollections;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class ServerMapRequestPrefetchObjectsContext implements ObjectManagerResultsContext {
 
   private final ClientID                              clientid;
   private final ObjectID                              mapid;
   private ObjectManagerLookupResults                  lookedUp;
-  private final Collection<ServerMapGetValueResponse> answers    = new ArrayList<ServerMapGetValueResponse>();
+  // answers per map, in the order maps were answered
+  private final Map<ObjectID, Collection<ServerMapGetValueResponse>> answers = new LinkedHashMap<ObjectID, Collection<ServerMapGetValueResponse>>();
   private final ObjectStringSerializerImpl            serializer = new ObjectStringSerializerImpl();
   private final Sink                                  destination;
 
@@ -35,23 +38,52 @@ public class ServerMapRequestPrefetchObjectsContext implements ObjectManagerResu
     this.destination = destination;
   }
 
+  /**
+   * For the answers of a client for several maps, prefetched together.
+   */
+  public ServerMapRequestPrefetchObjectsContext(final ClientID clientID, final Sink destination) {
+    this(clientID, ObjectID.NULL_ID, destination);
+  }
+
   public Collection<ServerMapGetValueResponse> getAnswers() {
+    if (answers.size() == 1) { return answers.values().iterator().next(); }
+    Collection<ServerMapGetValueResponse> all = new ArrayList<ServerMapGetValueResponse>();
+    for (Collection<ServerMapGetValueResponse> mapAnswers : answers.values()) {
+      all.addAll(mapAnswers);
+    }
+    return all;
+  }
+
+  public Map<ObjectID, Collection<ServerMapGetValueResponse>> getAnswersByMap() {
     return answers;
   }
 
+  public boolean hasAnswers() {
+    return !answers.isEmpty();
+  }
+
   public ObjectStringSerializerImpl getSerializer() {
     return serializer;
   }
 
   public boolean shouldPrefetch() {
-    for (ServerMapGetValueResponse response : answers) {
+    for (ServerMapGetValueResponse response : getAnswers()) {
       if (!response.getObjectIDs().isEmpty()) { return true; }
     }
     return false;
   }
 
   public void addResponse(ServerMapGetValueResponse resp) {
-    answers.add(resp);
+    addResponse(mapid, resp);
+  }
+
+  public void addResponse(ObjectID mapID, ServerMapGetValueResponse resp) {
+    Collection<ServerMapGetValueResponse> mapAnswers = answers.get(mapID);
+    if (mapAnswers == null) {
+      mapAnswers = new ArrayList<ServerMapGetValueResponse>();
+      answers.put(mapID, mapAnswers);
+    }
+    mapAnswers.add(resp);
   }
 
   public ClientID getClientID() {
@@ -65,7 +97,7 @@ public class ServerMapRequestPrefetchObjectsContext implements ObjectManagerResu
   @Override
   public ObjectIDSet getLookupIDs() {
     ObjectIDSet set = new BitSetObjectIDSet();
-    for (ServerMapGetValueResponse resp : answers) {
+    for (ServerMapGetValueResponse resp : getAnswers()) {
       set.addAll(resp.getObjectIDs());
     }
     return set;
@@ -80,7 +112,7 @@ public class ServerMapRequestPrefetchObjectsContext implements ObjectManagerResu
 
   public int prefetchObjects() {
     int count = 0;
-    for (ServerMapGetValueResponse resp : answers) {
+    for (ServerMapGetValueResponse resp : getAnswers()) {
       for (ObjectID oid : new ArrayList<ObjectID>(resp.getObjectIDs())) {
         ManagedObject mo = lookedUp.getObjects().get(oid);
         if (mo != null) {
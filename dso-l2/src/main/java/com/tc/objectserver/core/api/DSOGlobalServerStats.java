@@ -36,4 +36,10 @@ public interface DSOGlobalServerStats {
   SampledCumulativeCounter getServerMapGetValueRequestsCounter();
 
   SampledCounter getOperationCounter();
+
+  SampledCumulativeCounter getInvalidationsReceivedCounter();
+
+  SampledCumulativeCounter getInvalidationsSentCounter();
+
+  SampledCumulativeCounter getInvalidationMessagesSentCounter();
 }
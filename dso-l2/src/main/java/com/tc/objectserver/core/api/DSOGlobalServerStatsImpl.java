@@ -28,6 +28,9 @@ public class DSOGlobalServerStatsImpl implements DSOGlobalServerStats {
   private SampledCumulativeCounter serverMapGetSizeRequestsCounter;
   private SampledCumulativeCounter serverMapGetValueRequestsCounter;
   private SampledCumulativeCounter serverMapGetSnapshotRequestsCounter;
+  private SampledCumulativeCounter invalidationsReceivedCounter;
+  private SampledCumulativeCounter invalidationsSentCounter;
+  private SampledCumulativeCounter invalidationMessagesSentCounter;
 
   public DSOGlobalServerStatsImpl(SampledCounter readCounter, SampledCounter txnCounter,
                                   ObjectManagerStatsImpl objMgrStats, SampledCounter broadcastCounter,
@@ -72,6 +75,15 @@ public class DSOGlobalServerStatsImpl implements DSOGlobalServerStats {
     return this;
   }
 
+  public DSOGlobalServerStatsImpl invalidationCounters(final SampledCumulativeCounter received,
+                                                       final SampledCumulativeCounter sent,
+                                                       final SampledCumulativeCounter messagesSent) {
+    this.invalidationsReceivedCounter = received;
+    this.invalidationsSentCounter = sent;
+    this.invalidationMessagesSentCounter = messagesSent;
+    return this;
+  }
+
   @Override
   public SampledCounter getReadOperationRateCounter() {
     return this.readCounter;
@@ -131,6 +143,21 @@ public class DSOGlobalServerStatsImpl implements DSOGlobalServerStats {
     return serverMapGetSnapshotRequestsCounter;
   }
 
+  @Override
+  public SampledCumulativeCounter getInvalidationsReceivedCounter() {
+    return invalidationsReceivedCounter;
+  }
+
+  @Override
+  public SampledCumulativeCounter getInvalidationsSentCounter() {
+    return invalidationsSentCounter;
+  }
+
+  @Override
+  public SampledCumulativeCounter getInvalidationMessagesSentCounter() {
+    return invalidationMessagesSentCounter;
+  }
+
   @Override
   public SampledCounter getEvictionRateCounter() {
     return evictionRateCounter;
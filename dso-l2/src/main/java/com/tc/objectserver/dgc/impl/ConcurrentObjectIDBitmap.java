@@ -0,0 +1,83 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.dgc.impl;
+
+import com.tc.object.ObjectID;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed set of ObjectIDs that many threads can take ids out of at once. The bits live in pages of 64K ids that are
+ * all allocated up front, so after construction the page map is only read and claiming an id is a single CAS.
+ */
+final class ConcurrentObjectIDBitmap {
+
+  private static final int                    PAGE_SHIFT = 16;
+  private static final int                    PAGE_MASK  = (1 << PAGE_SHIFT) - 1;
+
+  private final Map<Long, AtomicLongArray>    pages      = new HashMap<Long, AtomicLongArray>();
+  private final AtomicLong                    remaining  = new AtomicLong();
+
+  ConcurrentObjectIDBitmap(Iterable<ObjectID> ids) {
+    long count = 0;
+    for (ObjectID id : ids) {
+      long lid = id.toLong();
+      Long pageIndex = Long.valueOf(lid >>> PAGE_SHIFT);
+      AtomicLongArray page = pages.get(pageIndex);
+      if (page == null) {
+        page = new AtomicLongArray(1 << (PAGE_SHIFT - 6));
+        pages.put(pageIndex, page);
+      }
+      int bit = (int) (lid & PAGE_MASK);
+      long word = page.get(bit >>> 6);
+      long mask = 1L << bit;
+      if ((word & mask) == 0) {
+        page.set(bit >>> 6, word | mask);
+        count++;
+      }
+    }
+    remaining.set(count);
+  }
+
+  /**
+   * Takes the id out of the set.
+   *
+   * @return true if the id was in the set and this call took it out
+   */
+  boolean claim(ObjectID id) {
+    long lid = id.toLong();
+    AtomicLongArray page = pages.get(Long.valueOf(lid >>> PAGE_SHIFT));
+    if (page == null) { return false; }
+    int bit = (int) (lid & PAGE_MASK);
+    int index = bit >>> 6;
+    long mask = 1L << bit;
+    while (true) {
+      long word = page.get(index);
+      if ((word & mask) == 0) { return false; }
+      if (page.compareAndSet(index, word, word & ~mask)) {
+        remaining.decrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  boolean contains(ObjectID id) {
+    long lid = id.toLong();
+    AtomicLongArray page = pages.get(Long.valueOf(lid >>> PAGE_SHIFT));
+    if (page == null) { return false; }
+    int bit = (int) (lid & PAGE_MASK);
+    return (page.get(bit >>> 6) & (1L << bit)) != 0;
+  }
+
+  boolean isEmpty() {
+    return remaining.get() == 0;
+  }
+
+  long size() {
+    return remaining.get();
+  }
+}
@@ -10,6 +10,7 @@ import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.concurrent.ThreadUtil;
 
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DGCRequestThrottler {
   private static final long     THROTTLE_GC_MILLIS    = TCPropertiesImpl
@@ -21,7 +22,8 @@ public class DGCRequestThrottler {
                                                           .getLong(
                                                                    TCPropertiesConsts.L2_OBJECTMANAGER_DGC_REQUEST_PER_THROTTLE);
   protected final ObjectManager objectManager;
-  private long                  request_count         = 0;
+  // shared by the marking threads of a parallel mark
+  private final AtomicLong      request_count         = new AtomicLong();
 
   public DGCRequestThrottler(ObjectManager objectManager) {
     this.objectManager = objectManager;
@@ -33,7 +35,7 @@ public class DGCRequestThrottler {
   }
 
   private void throttleIfNecessary() {
-    if (THROTTLE_GC_MILLIS > 0 && ++this.request_count % REQUESTS_PER_THROTTLE == 0) {
+    if (THROTTLE_GC_MILLIS > 0 && this.request_count.incrementAndGet() % REQUESTS_PER_THROTTLE == 0) {
       ThreadUtil.reallySleep(THROTTLE_GC_MILLIS);
     }
   }
@@ -11,6 +11,9 @@ import com.tc.objectserver.core.impl.GarbageCollectionID;
 import com.tc.objectserver.dgc.api.GarbageCollectionInfo;
 import com.tc.objectserver.dgc.api.GarbageCollectionInfoPublisher;
 import com.tc.objectserver.dgc.api.GarbageCollector;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.BitSetObjectIDSet;
 import com.tc.util.ObjectIDSet;
 import com.tc.util.TCCollections;
@@ -29,14 +32,25 @@ final class MarkAndSweepGCAlgorithm {
   private final GarbageCollectionInfoPublisher gcPublisher;
   private final LifeCycleState                 gcState;
   private final String                         uuid = UUID.getUUID().toString();
+  private final int                            markThreads;
+  private final long                           markSliceMillis;
+  private final long                           markPauseMillis;
 
   public MarkAndSweepGCAlgorithm(GarbageCollector collector, GCHook gcHook, GarbageCollectionInfoPublisher gcPublisher,
                                  LifeCycleState gcState, long gcIteration) {
+    this(collector, gcHook, gcPublisher, gcState, gcIteration, TCPropertiesImpl.getProperties());
+  }
+
+  MarkAndSweepGCAlgorithm(GarbageCollector collector, GCHook gcHook, GarbageCollectionInfoPublisher gcPublisher,
+                          LifeCycleState gcState, long gcIteration, TCProperties properties) {
     this.collector = collector;
     this.gcHook = gcHook;
     this.gcPublisher = gcPublisher;
     this.gcState = gcState;
     this.gcIteration = gcIteration;
+    this.markThreads = Math.max(1, properties.getInt(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_MARK_THREADS, 1));
+    this.markSliceMillis = properties.getLong(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_MARK_SLICE_MILLIS, 0);
+    this.markPauseMillis = properties.getLong(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_MARK_PAUSE_MILLIS, 0);
   }
 
   void doGC() {
@@ -59,14 +73,15 @@ final class MarkAndSweepGCAlgorithm {
 
     if (gcState.isStopRequested()) { return; }
 
-    ObjectIDSet gcResults = collect(gcHook.getCollectCycleFilter(candidateIDs), rootIDs, candidateIDs, gcState);
+    ObjectIDSet gcResults = collect("mark", gcHook.getCollectCycleFilter(candidateIDs), rootIDs, candidateIDs, gcState,
+                                    true);
     gcInfo.setPreRescueCount(gcResults.size());
     gcPublisher.fireGCMarkResultsEvent(gcInfo);
 
     if (gcState.isStopRequested()) { return; }
 
     long startRescue1 = System.currentTimeMillis();
-    gcResults = rescue(gcResults);
+    gcResults = rescue("rescue1", gcResults, true);
     long rescue1Time = System.currentTimeMillis() - startRescue1;
     gcInfo.setRescue1Time(rescue1Time);
     gcInfo.setRescue1Count(gcResults.size());
@@ -96,7 +111,9 @@ final class MarkAndSweepGCAlgorithm {
     gcInfo.setCandidateGarbageCount(gcResults.size());
     gcPublisher.fireGCRescue2StartEvent(gcInfo);
     long startRescue2 = System.currentTimeMillis();
-    ObjectIDSet toDelete = ObjectIDSet.unmodifiableObjectIDSet(rescue(new BitSetObjectIDSet(gcResults)));
+    // the object manager is paused for rescue2, slicing it would only make the pause longer
+    ObjectIDSet toDelete = ObjectIDSet.unmodifiableObjectIDSet(rescue("rescue2", new BitSetObjectIDSet(gcResults),
+                                                                      false));
     long rescue2Time = System.currentTimeMillis() - startRescue2;
     gcInfo.setRescue2Time(rescue2Time);
 
@@ -134,22 +151,60 @@ final class MarkAndSweepGCAlgorithm {
 
   public ObjectIDSet collect(Filter filter, Collection rootIds, ObjectIDSet managedObjectIds,
                              LifeCycleState lifeCycleState) {
+    return collect("collect", filter, rootIds, managedObjectIds, lifeCycleState, true);
+  }
+
+  /**
+   * @param sliced whether the traversal pauses every markSliceMillis, only for phases that run concurrently with the
+   *        object manager
+   */
+  private ObjectIDSet collect(String phase, Filter filter, Collection rootIds, ObjectIDSet managedObjectIds,
+                              LifeCycleState lifeCycleState, boolean sliced) {
     long start = System.currentTimeMillis();
     logstart_collect(rootIds, managedObjectIds);
 
-    for (Iterator i = rootIds.iterator(); i.hasNext() && !managedObjectIds.isEmpty();) {
-      ObjectID rootId = (ObjectID) i.next();
-      managedObjectIds.remove(rootId);
-      if (lifeCycleState.isStopRequested()) return TCCollections.EMPTY_OBJECT_ID_SET;
-      collectRoot(filter, rootId, managedObjectIds, lifeCycleState);
+    MarkStats stats = new MarkStats(phase, markThreads);
+    stats.setRoots(rootIds.size());
+    long sliceMillis = sliced ? markSliceMillis : 0;
+    ObjectIDSet result;
+    if (markThreads > 1 && !managedObjectIds.isEmpty()) {
+      result = new ParallelMarker(gcHook, markThreads, sliceMillis, markPauseMillis)
+          .mark(filter, rootIds, managedObjectIds, lifeCycleState, stats);
+    } else {
+      result = collectSerially(filter, rootIds, managedObjectIds, lifeCycleState, stats, sliceMillis);
     }
+    if (result == null) { return TCCollections.EMPTY_OBJECT_ID_SET; }
 
+    stats.setElapsedMillis(System.currentTimeMillis() - start);
+    MarkAndSweepGarbageCollector.logger.info("DGC " + gcIteration + " " + stats);
     profile_collect(start);
 
+    return result;
+  }
+
+  private ObjectIDSet collectSerially(Filter filter, Collection rootIds, ObjectIDSet managedObjectIds,
+                                      LifeCycleState lifeCycleState, MarkStats stats, long sliceMillis) {
+    MarkSlicer slicer = new MarkSlicer(sliceMillis, markPauseMillis);
+    long traversed = 0;
+    try {
+      for (Iterator i = rootIds.iterator(); i.hasNext() && !managedObjectIds.isEmpty();) {
+        ObjectID rootId = (ObjectID) i.next();
+        managedObjectIds.remove(rootId);
+        if (lifeCycleState.isStopRequested()) return null;
+        traversed += collectRoot(filter, rootId, managedObjectIds, lifeCycleState, slicer);
+      }
+    } finally {
+      stats.add(traversed, slicer.getPauses());
+    }
     return managedObjectIds;
   }
 
-  private void collectRoot(Filter filter, ObjectID rootId, Set managedObjectIds, LifeCycleState lifeCycleState) {
+  /**
+   * @return the number of objects traversed
+   */
+  private long collectRoot(Filter filter, ObjectID rootId, Set managedObjectIds, LifeCycleState lifeCycleState,
+                           MarkSlicer slicer) {
+    long traversed = 0;
     Set<ObjectID> toBeVisited = new BitSetObjectIDSet();
     toBeVisited.add(rootId);
 
@@ -157,8 +212,10 @@ final class MarkAndSweepGCAlgorithm {
 
       for (Iterator i = new BitSetObjectIDSet(toBeVisited).iterator(); i.hasNext() && !managedObjectIds.isEmpty();) {
         ObjectID id = (ObjectID) i.next();
-        if (lifeCycleState.isStopRequested()) return;
+        if (lifeCycleState.isStopRequested()) return traversed;
+        slicer.tick();
         Set<ObjectID> references = gcHook.getObjectReferencesFrom(id);
+        traversed++;
         toBeVisited.remove(id);
 
         for (final ObjectID mid : references) {
@@ -173,14 +230,15 @@ final class MarkAndSweepGCAlgorithm {
         }
       }
     }
+    return traversed;
   }
 
-  private ObjectIDSet rescue(final ObjectIDSet gcResults) {
+  private ObjectIDSet rescue(String phase, final ObjectIDSet gcResults, boolean sliced) {
     Set<ObjectID> rescueIds = gcHook.getRescueIDs();
     rescueIds.retainAll(gcResults);
 
     Filter rescueFilter = new SelectiveFilter(gcResults);
-    return collect(rescueFilter, rescueIds, gcResults, gcState);
+    return collect(phase, rescueFilter, rescueIds, gcResults, gcState, sliced);
   }
 
   private void logstart_collect(Collection rootIds, Set managedObjectIds) {
@@ -0,0 +1,43 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.dgc.impl;
+
+import com.tc.util.concurrent.ThreadUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads the work of one marking thread over time slices. After each slice of work the thread sleeps for the pause,
+ * so a mark never takes more than slice / (slice + pause) of a core per thread. A slice of 0 marks flat out.
+ * <p>
+ * Not thread safe, each marking thread has its own.
+ */
+final class MarkSlicer {
+
+  private final long sliceNanos;
+  private final long pauseMillis;
+  private long       sliceStart = System.nanoTime();
+  private int        pauses;
+
+  MarkSlicer(long sliceMillis, long pauseMillis) {
+    this.sliceNanos = TimeUnit.MILLISECONDS.toNanos(sliceMillis);
+    this.pauseMillis = pauseMillis;
+  }
+
+  /**
+   * Called before each object is traversed.
+   */
+  void tick() {
+    if (sliceNanos <= 0 || pauseMillis <= 0) { return; }
+    if (System.nanoTime() - sliceStart >= sliceNanos) {
+      ThreadUtil.reallySleep(pauseMillis);
+      pauses++;
+      sliceStart = System.nanoTime();
+    }
+  }
+
+  int getPauses() {
+    return pauses;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.dgc.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What one collect pass of the DGC mark did, for the logs.
+ */
+final class MarkStats {
+
+  private final String        phase;
+  private final int           threads;
+  private final AtomicLong    traversed = new AtomicLong();
+  private final AtomicInteger pauses    = new AtomicInteger();
+  private long                roots;
+  private long                elapsedMillis;
+
+  MarkStats(String phase, int threads) {
+    this.phase = phase;
+    this.threads = threads;
+  }
+
+  void add(long traversedObjects, int slicePauses) {
+    traversed.addAndGet(traversedObjects);
+    pauses.addAndGet(slicePauses);
+  }
+
+  void setRoots(long roots) {
+    this.roots = roots;
+  }
+
+  void setElapsedMillis(long elapsedMillis) {
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  String getPhase() {
+    return phase;
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  long getTraversed() {
+    return traversed.get();
+  }
+
+  int getPauses() {
+    return pauses.get();
+  }
+
+  long getRoots() {
+    return roots;
+  }
+
+  long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return phase + ": " + roots + " roots, " + traversed.get() + " objects traversed by " + threads + " thread(s) in "
+           + elapsedMillis + " ms, " + pauses.get() + " slice pauses";
+  }
+}
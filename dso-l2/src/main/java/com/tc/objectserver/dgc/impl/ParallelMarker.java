@@ -0,0 +1,194 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.dgc.impl;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.core.api.Filter;
+import com.tc.util.ObjectIDSet;
+import com.tc.util.concurrent.LifeCycleState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Mark phase of {@link MarkAndSweepGCAlgorithm} spread over several threads. The roots are cut into chunks that go on a
+ * shared queue. A thread marks its chunk and the objects reachable from it, handing every full chunk of newly found
+ * objects back to the queue for idle threads to pick up. Marking an object takes it out of a shared
+ * {@link ConcurrentObjectIDBitmap} of candidates, so every object is traversed once whichever thread reaches it first.
+ */
+final class ParallelMarker {
+
+  private static final int                        CHUNK_SIZE      = 256;
+  private static final long                       IDLE_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final GCHook                            gcHook;
+  private final int                               threads;
+  private final long                              sliceMillis;
+  private final long                              pauseMillis;
+
+  private final ConcurrentLinkedQueue<ObjectID[]> work            = new ConcurrentLinkedQueue<ObjectID[]>();
+  // chunks queued or being marked
+  private final AtomicInteger                     pending         = new AtomicInteger();
+  private final AtomicReference<Throwable>        error           = new AtomicReference<Throwable>();
+  private volatile boolean                        aborted;
+
+  private Filter                                  filter;
+  private ConcurrentObjectIDBitmap                candidates;
+  private LifeCycleState                          lifeCycleState;
+  private MarkStats                               stats;
+
+  ParallelMarker(GCHook gcHook, int threads, long sliceMillis, long pauseMillis) {
+    this.gcHook = gcHook;
+    this.threads = threads;
+    this.sliceMillis = sliceMillis;
+    this.pauseMillis = pauseMillis;
+  }
+
+  /**
+   * Same contract as {@link MarkAndSweepGCAlgorithm#collect}, every object reachable from the roots is taken out of
+   * managedObjectIds. Can be called once per instance.
+   *
+   * @return managedObjectIds, or null if the mark was stopped
+   */
+  ObjectIDSet mark(Filter markFilter, Collection rootIds, ObjectIDSet managedObjectIds, LifeCycleState state,
+                   MarkStats markStats) {
+    this.filter = markFilter;
+    this.lifeCycleState = state;
+    this.stats = markStats;
+    this.candidates = new ConcurrentObjectIDBitmap(managedObjectIds);
+
+    List<ObjectID> roots = new ArrayList<ObjectID>(CHUNK_SIZE);
+    for (Iterator i = rootIds.iterator(); i.hasNext();) {
+      ObjectID rootId = (ObjectID) i.next();
+      candidates.claim(rootId);
+      roots.add(rootId);
+      if (roots.size() == CHUNK_SIZE) {
+        push(roots.toArray(new ObjectID[roots.size()]));
+        roots.clear();
+      }
+    }
+    if (!roots.isEmpty()) {
+      push(roots.toArray(new ObjectID[roots.size()]));
+    }
+
+    Thread[] markers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      markers[i] = new Thread(new Marker(), "DGC mark thread-" + i);
+      markers[i].setDaemon(true);
+      markers[i].start();
+    }
+    boolean interrupted = false;
+    for (Thread marker : markers) {
+      while (marker.isAlive()) {
+        try {
+          marker.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    Throwable t = error.get();
+    if (t != null) {
+      if (t instanceof RuntimeException) { throw (RuntimeException) t; }
+      if (t instanceof Error) { throw (Error) t; }
+      throw new RuntimeException(t);
+    }
+    if (lifeCycleState.isStopRequested()) { return null; }
+
+    for (Iterator<ObjectID> i = managedObjectIds.iterator(); i.hasNext();) {
+      if (!candidates.contains(i.next())) {
+        i.remove();
+      }
+    }
+    return managedObjectIds;
+  }
+
+  private void push(ObjectID[] chunk) {
+    pending.incrementAndGet();
+    work.offer(chunk);
+  }
+
+  private boolean isDone() {
+    return aborted || candidates.isEmpty() || lifeCycleState.isStopRequested();
+  }
+
+  private final class Marker implements Runnable {
+    private final MarkSlicer slicer = new MarkSlicer(sliceMillis, pauseMillis);
+    private long             traversed;
+
+    @Override
+    public void run() {
+      try {
+        while (!isDone()) {
+          ObjectID[] chunk = work.poll();
+          if (chunk == null) {
+            if (pending.get() == 0) {
+              break;
+            }
+            LockSupport.parkNanos(IDLE_WAIT_NANOS);
+            continue;
+          }
+          try {
+            mark(chunk);
+          } finally {
+            pending.decrementAndGet();
+          }
+        }
+      } catch (Throwable t) {
+        error.compareAndSet(null, t);
+        aborted = true;
+      } finally {
+        stats.add(traversed, slicer.getPauses());
+      }
+    }
+
+    /**
+     * Marks the chunk and then whatever it leads to that did not fill a chunk of its own.
+     */
+    private void mark(ObjectID[] chunk) {
+      ObjectID[] current = chunk;
+      int length = chunk.length;
+      while (length > 0) {
+        ObjectID[] next = new ObjectID[CHUNK_SIZE];
+        int found = 0;
+        for (int i = 0; i < length; i++) {
+          if (isDone()) { return; }
+          slicer.tick();
+          ObjectID id = current[i];
+          Set<ObjectID> references = gcHook.getObjectReferencesFrom(id);
+          traversed++;
+
+          for (final ObjectID mid : references) {
+            if (mid == null) {
+              // see CDV-765
+              MarkAndSweepGarbageCollector.logger.error("null value returned from getObjectReferences() on " + id);
+              continue;
+            }
+            if (mid.isNull() || !candidates.claim(mid) || !filter.shouldVisit(mid)) continue;
+            if (found == CHUNK_SIZE) {
+              push(next);
+              next = new ObjectID[CHUNK_SIZE];
+              found = 0;
+            }
+            next[found++] = mid;
+          }
+        }
+        current = next;
+        length = found;
+      }
+    }
+  }
+}
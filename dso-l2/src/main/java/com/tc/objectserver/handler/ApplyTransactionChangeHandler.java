@@ -39,6 +39,7 @@ import com.tc.util.concurrent.Timer;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -70,12 +71,28 @@ public class ApplyTransactionChangeHandler extends AbstractEventHandler {
   private GarbageCollectionManager         garbageCollectionManager;
   private final ServerEventBuffer          eventBuffer;
   private final ClientChannelMonitor       clientChannelMonitor;
+  private final boolean                    commitEachBatch;
 
   public ApplyTransactionChangeHandler(final ObjectInstanceMonitor instanceMonitor,
                                        final GlobalTransactionManager gtxm, final ServerMapEvictionManager evictions,
                                        final TransactionProvider persistenceTransactionProvider,
                                        final TaskRunner taskRunner, final ServerEventBuffer eventBuffer,
                                        final ClientChannelMonitor clientChannelMonitor) {
+    this(instanceMonitor, gtxm, evictions, persistenceTransactionProvider, taskRunner, eventBuffer,
+         clientChannelMonitor, false);
+  }
+
+  /**
+   * @param commitEachBatch true when the stage may hand the next transactions of a grouping to another worker, like a
+   *        work stealing stage does. The persistence transaction of a grouping is thread local, so it is then
+   *        committed at the end of every batch instead of once the grouping is done.
+   */
+  public ApplyTransactionChangeHandler(final ObjectInstanceMonitor instanceMonitor,
+                                       final GlobalTransactionManager gtxm, final ServerMapEvictionManager evictions,
+                                       final TransactionProvider persistenceTransactionProvider,
+                                       final TaskRunner taskRunner, final ServerEventBuffer eventBuffer,
+                                       final ClientChannelMonitor clientChannelMonitor, final boolean commitEachBatch) {
+    this.commitEachBatch = commitEachBatch;
     this.instanceMonitor = instanceMonitor;
     this.serverEvictions = evictions;
     this.persistenceTransactionProvider = persistenceTransactionProvider;
@@ -147,6 +164,22 @@ public class ApplyTransactionChangeHandler extends AbstractEventHandler {
     commit(atc, applyInfo);
   }
 
+  /**
+   * Applies the batch. A grouping that is not done yet keeps its persistence transaction open on this thread for the
+   * next batch, unless this handler commits each batch.
+   */
+  @Override
+  public void handleEvents(final Collection contexts) {
+    for (final Object context : contexts) {
+      handleEvent((EventContext) context);
+    }
+    final CommitContext commitContext = localCommitContext.get();
+    if (commitEachBatch && commitContext != null) {
+      commitContext.commit(Collections.<ManagedObject> emptyList(), true);
+      localCommitContext.set(null);
+    }
+  }
+
   private void begin() {
     if (localCommitContext.get() == null) {
       localCommitContext.set(new CommitContext());
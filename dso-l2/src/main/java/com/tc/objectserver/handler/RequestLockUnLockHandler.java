@@ -16,12 +16,17 @@ import com.tc.object.locks.ThreadID;
 import com.tc.object.msg.LockRequestMessage;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.locks.LockManager;
+import com.tc.objectserver.locks.LockRequest;
+import com.tc.objectserver.locks.LockRequest.Type;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
- * Makes the request for a lock on behalf of a client
+ * Makes the request for a lock on behalf of a client. When the stage hands over a batch, the requests go to the lock
+ * manager together so that each lock is checked out once per batch.
  * 
  * @author steve
  */
@@ -69,6 +74,48 @@ public class RequestLockUnLockHandler extends AbstractEventHandler {
     }
   }
 
+  @Override
+  public void handleEvents(Collection contexts) {
+    List<LockRequest> requests = new ArrayList<LockRequest>(contexts.size());
+    for (Object context : contexts) {
+      LockRequestMessage lrm = (LockRequestMessage) context;
+
+      LockID lid = lrm.getLockID();
+      ClientID cid = (ClientID) lrm.getSourceNodeID();
+      ThreadID tid = lrm.getThreadID();
+
+      switch (lrm.getRequestType()) {
+        case LOCK:
+          requests.add(new LockRequest(Type.LOCK, lid, cid, tid, lrm.getLockLevel(), -1));
+          break;
+        case TRY_LOCK:
+          requests.add(new LockRequest(Type.TRY_LOCK, lid, cid, tid, lrm.getLockLevel(), lrm.getTimeout()));
+          break;
+        case UNLOCK:
+          requests.add(new LockRequest(Type.UNLOCK, lid, cid, tid, null, -1));
+          break;
+        case WAIT:
+          requests.add(new LockRequest(Type.WAIT, lid, cid, tid, null, lrm.getTimeout()));
+          break;
+        case RECALL_COMMIT:
+          requests.add(new LockRequest(lid, cid, lrm.getContexts()));
+          break;
+        case QUERY:
+          requests.add(new LockRequest(Type.QUERY, lid, cid, tid, null, -1));
+          break;
+        case INTERRUPT_WAIT:
+          requests.add(new LockRequest(Type.INTERRUPT_WAIT, lid, cid, tid, null, -1));
+          break;
+        case BATCHED_RECALL_COMMIT:
+          for (RecallBatchContext recallContext : lrm.getRecallBatchedContexts()) {
+            requests.add(new LockRequest(recallContext.getLockID(), cid, recallContext.getContexts()));
+          }
+          break;
+      }
+    }
+    lockManager.process(requests);
+  }
+
   @Override
   public void initialize(ConfigurationContext context) {
     super.initialize(context);
@@ -21,10 +21,18 @@ import com.tc.object.net.NoSuchChannelException;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.locks.LockResponseContext;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * Sends lock responses to the clients. A batch of responses is sent client by client, so that the responses for one
+ * client go out back to back and the transport can group them into as few network writes as it can. A recall that
+ * repeats the previous response for the same lock and client is dropped.
+ * 
  * @author steve
  */
 public class RespondToRequestLockHandler extends AbstractEventHandler {
@@ -78,6 +86,42 @@ public class RespondToRequestLockHandler extends AbstractEventHandler {
     }
   }
 
+  @Override
+  public void handleEvents(Collection contexts) {
+    Map<NodeID, List<LockResponseContext>> responsesByClient = new LinkedHashMap<NodeID, List<LockResponseContext>>();
+    for (Object context : contexts) {
+      LockResponseContext lrc = (LockResponseContext) context;
+      List<LockResponseContext> responses = responsesByClient.get(lrc.getNodeID());
+      if (responses == null) {
+        responses = new ArrayList<LockResponseContext>();
+        responsesByClient.put(lrc.getNodeID(), responses);
+      }
+      if (lrc.isLockRecall() && isRepeatedRecall(responses, lrc)) {
+        continue;
+      }
+      responses.add(lrc);
+    }
+
+    for (List<LockResponseContext> responses : responsesByClient.values()) {
+      for (LockResponseContext lrc : responses) {
+        handleEvent(lrc);
+      }
+    }
+  }
+
+  private static boolean isRepeatedRecall(List<LockResponseContext> responses, LockResponseContext recall) {
+    for (int i = responses.size() - 1; i >= 0; i--) {
+      LockResponseContext previous = responses.get(i);
+      if (!previous.getLockID().equals(recall.getLockID())) {
+        continue;
+      }
+      return previous.isLockRecall() && previous.getThreadID().equals(recall.getThreadID())
+             && previous.getLockLevel() == recall.getLockLevel()
+             && previous.getAwardLeaseTime() == recall.getAwardLeaseTime();
+    }
+    return false;
+  }
+
   protected LockResponseMessage createMessage(EventContext context, TCMessageType messageType)
       throws NoSuchChannelException {
     LockResponseContext lrc = (LockResponseContext) context;
@@ -8,6 +8,7 @@ import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventContext;
 import com.tc.objectserver.api.ServerMapRequestManager;
 import com.tc.objectserver.context.EntryForKeyResponseContext;
+import com.tc.objectserver.context.ServerMapRequestBulkValueContext;
 import com.tc.objectserver.context.ServerMapMissingObjectResponseContext;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 
@@ -23,6 +24,8 @@ public class RespondToServerMapRequestHandler extends AbstractEventHandler {
     } else if (context instanceof EntryForKeyResponseContext) {
       final EntryForKeyResponseContext responseContext = (EntryForKeyResponseContext) context;
       serverMapRequestManager.sendResponseFor(responseContext.getMapID(), responseContext.getManagedObject());
+    } else if (context instanceof ServerMapRequestBulkValueContext) {
+      serverMapRequestManager.sendResponseFor((ServerMapRequestBulkValueContext) context);
     }
   }
 
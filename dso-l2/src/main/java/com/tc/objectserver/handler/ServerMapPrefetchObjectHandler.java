@@ -12,6 +12,7 @@ import com.tc.logging.TCLogging;
 import com.tc.net.ClientID;
 import com.tc.net.protocol.tcm.MessageChannel;
 import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.ObjectID;
 import com.tc.object.ObjectRequestID;
 import com.tc.object.ObjectRequestServerContext.LOOKUP_STATE;
 import com.tc.object.ServerMapGetValueResponse;
@@ -27,7 +28,9 @@ import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.l1.api.ClientStateManager;
 import com.tc.stats.counter.Counter;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Map.Entry;
 
 public class ServerMapPrefetchObjectHandler extends AbstractEventHandler {
 
@@ -58,8 +61,6 @@ public class ServerMapPrefetchObjectHandler extends AbstractEventHandler {
     if (channel == null) {
       logger.info("Client " + clientID + " is not active : Ignoring sending response for getValue() ");
     } else {
-      final GetValueServerMapResponseMessage responseMessage = (GetValueServerMapResponseMessage) channel
-          .createMessage(TCMessageType.GET_VALUE_SERVER_MAP_RESPONSE_MESSAGE);
       int count = results.prefetchObjects();
       if (count > 0) {
         this.globalObjectRequestCounter.increment(count);
@@ -86,8 +87,13 @@ public class ServerMapPrefetchObjectHandler extends AbstractEventHandler {
         
         clientManager.removeReferences(clientID, results.getMissingObjectIds(), Collections.EMPTY_SET);
       }
-      responseMessage.initializeGetValueResponse(results.getMapID(), results.getSerializer(), results.getAnswers());
-      responseMessage.send();
+      // one response per map, all of them from a single prefetch lookup for bulk requests
+      for (Entry<ObjectID, Collection<ServerMapGetValueResponse>> answers : results.getAnswersByMap().entrySet()) {
+        final GetValueServerMapResponseMessage responseMessage = (GetValueServerMapResponseMessage) channel
+            .createMessage(TCMessageType.GET_VALUE_SERVER_MAP_RESPONSE_MESSAGE);
+        responseMessage.initializeGetValueResponse(answers.getKey(), results.getSerializer(), answers.getValue());
+        responseMessage.send();
+      }
     }
     results.releaseAll(this.objectManager);
   }
@@ -20,7 +20,6 @@ import com.tc.stats.counter.Counter;
 
 import java.util.Collection;
 import java.util.Map;
-import java.util.Map.Entry;
 
 public class ServerMapRequestHandler extends AbstractEventHandler {
 
@@ -54,9 +53,7 @@ public class ServerMapRequestHandler extends AbstractEventHandler {
       globalGetValueRequestCounter.increment(numRequests);
       this.channelStats.notifyServerMapRequest(ServerMapRequestType.GET_VALUE_FOR_KEY, smContext.getChannel(),
                                                numRequests);
-      for (final Entry<ObjectID, Collection<ServerMapGetValueRequest>> e : requests.entrySet()) {
-        this.serverMapRequestManager.requestValues(smContext.getClientID(), e.getKey(), e.getValue());
-      }
+      this.serverMapRequestManager.requestValues(smContext.getClientID(), requests);
     } else if (context instanceof GetAllKeysServerMapRequestMessage) {
       final GetAllKeysServerMapRequestMessage smContext = (GetAllKeysServerMapRequestMessage) context;
       globalGetSnapshotRequestCounter.increment();
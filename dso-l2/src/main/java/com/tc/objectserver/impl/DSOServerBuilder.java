@@ -96,7 +96,8 @@ public interface DSOServerBuilder extends TCDumper, PostInit {
 
   ServerMapRequestManager createServerMapRequestManager(ObjectManager objectMgr, DSOChannelManager channelManager,
                                                         Sink respondToServerTCMapSink, Sink prefetch,
-                                                        ClientStateManager clientStateManager, ChannelStats channelStats);
+                                                        ClientStateManager clientStateManager, ChannelStats channelStats,
+                                                        ServerMapEvictionPolicyManager evictionPolicyManager);
 
   ObjectRequestManager createObjectRequestManager(ObjectManager objectMgr, DSOChannelManager channelManager,
                                                   ClientStateManager clientStateMgr,
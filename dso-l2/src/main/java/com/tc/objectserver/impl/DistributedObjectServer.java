@@ -650,9 +650,11 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     toInit.add(recycler);
 
     // Creating a stage here so that the sink can be passed
-    final Stage respondToLockStage = stageManager.createStage(ServerConfigurationContext.RESPOND_TO_LOCK_REQUEST_STAGE,
-                                                              new RespondToRequestLockHandler(),
-                                                              stageWorkerThreadCount, 1, maxStageSize);
+    final Stage respondToLockStage = stageManager
+        .createBatchingStage(ServerConfigurationContext.RESPOND_TO_LOCK_REQUEST_STAGE,
+                             new RespondToRequestLockHandler(), stageWorkerThreadCount, maxStageSize,
+                             TCPropertiesImpl.getProperties()
+                                 .getInt(TCPropertiesConsts.L2_SEDA_RESPOND_TO_LOCK_STAGE_MAX_BATCH_SIZE));
     this.lockManager = new LockManagerImpl(respondToLockStage.getSink(), channelManager);
 
     final CallbackDumpAdapter lockDumpAdapter = new CallbackDumpAdapter(this.lockManager);
@@ -718,6 +720,12 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
         .createCounter(sampledCumulativeCounterConfig);
     final SampledCumulativeCounter globalServerMapGetSnapshotRequestsCounter = (SampledCumulativeCounter) this.sampledCounterManager
         .createCounter(sampledCumulativeCounterConfig);
+    final SampledCumulativeCounter invalidationsReceivedCounter = (SampledCumulativeCounter) this.sampledCounterManager
+        .createCounter(sampledCumulativeCounterConfig);
+    final SampledCumulativeCounter invalidationsSentCounter = (SampledCumulativeCounter) this.sampledCounterManager
+        .createCounter(sampledCumulativeCounterConfig);
+    final SampledCumulativeCounter invalidationMessagesSentCounter = (SampledCumulativeCounter) this.sampledCounterManager
+        .createCounter(sampledCumulativeCounterConfig);
 
     final ServerTransactionFactory serverTransactionFactory = new ServerTransactionFactory(thisServerNodeID);
     toInit.add(serverTransactionFactory);
@@ -769,14 +777,22 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     stageManager.createStage(ServerConfigurationContext.TRANSACTION_LOOKUP_STAGE, new TransactionLookupHandler(), 1,
         maxStageSize);
 
-    final Stage processTx = stageManager.createStage(ServerConfigurationContext.PROCESS_TRANSACTION_STAGE,
-                                                     new ProcessTransactionHandler(transactionBatchManager), 1,
-                                                     maxStageSize);
+    final Stage processTx = stageManager.createBatchingStage(ServerConfigurationContext.PROCESS_TRANSACTION_STAGE,
+                                                             new ProcessTransactionHandler(transactionBatchManager), 1,
+                                                             maxStageSize, TCPropertiesImpl.getProperties()
+                                                                 .getInt(TCPropertiesConsts.L2_SEDA_PROCESS_TRANSACTION_STAGE_MAX_BATCH_SIZE));
 
     final Stage rootRequest = stageManager.createStage(ServerConfigurationContext.MANAGED_ROOT_REQUEST_STAGE,
                                                        new RequestRootHandler(), 1, maxStageSize);
 
-    final InvalidateObjectManagerImpl invalidateObjMgr = new InvalidateObjectManagerImpl(transactionManager);
+    final InvalidateObjectManagerImpl invalidateObjMgr = new InvalidateObjectManagerImpl(
+                                                                                         transactionManager,
+                                                                                         TCPropertiesImpl
+                                                                                             .getProperties()
+                                                                                             .getLong(TCPropertiesConsts.L2_OBJECTMANAGER_INVALIDATION_COALESCE_WINDOW_MILLIS),
+                                                                                         invalidationsReceivedCounter,
+                                                                                         invalidationsSentCounter,
+                                                                                         invalidationMessagesSentCounter);
     toInit.add(invalidateObjMgr);
     stageManager.createStage(ServerConfigurationContext.INVALIDATE_OBJECTS_STAGE,
                              new InvalidateObjectsHandler(invalidateObjMgr, channelManager), 8, maxStageSize);
@@ -789,9 +805,10 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
                                                                                      invalidateObjMgr);
     stageManager.createStage(ServerConfigurationContext.BROADCAST_CHANGES_STAGE, broadcastChangeHandler, 1,
         maxStageSize);
-    final Stage requestLock = stageManager.createStage(ServerConfigurationContext.REQUEST_LOCK_STAGE,
-                                                       new RequestLockUnLockHandler(), stageWorkerThreadCount, 1,
-                                                       maxStageSize);
+    final Stage requestLock = stageManager.createBatchingStage(ServerConfigurationContext.REQUEST_LOCK_STAGE,
+                                                               new RequestLockUnLockHandler(), stageWorkerThreadCount,
+                                                               maxStageSize, TCPropertiesImpl.getProperties()
+                                                                   .getInt(TCPropertiesConsts.L2_SEDA_REQUEST_LOCK_STAGE_MAX_BATCH_SIZE));
     final ChannelLifeCycleHandler channelLifeCycleHandler = new ChannelLifeCycleHandler(this.communicationsManager,
                                                                                         transactionBatchManager,
                                                                                         channelManager, this.haConfig);
@@ -827,9 +844,10 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
                                                                               objectRequestStage.getSink(), taskRunner);
     toInit.add(this.searchRequestManager);
 
+    final ServerMapEvictionPolicyManager evictionPolicyManager = new ServerMapEvictionPolicyManager(new ServerMapEvictionStatsManager());
     this.serverMapRequestManager = this.serverBuilder
         .createServerMapRequestManager(this.objectManager, channelManager, respondToServerTCMapStage.getSink(),prefetchStage.getSink(),
-                                        this.clientStateManager, channelStats);
+                                        this.clientStateManager, channelStats, evictionPolicyManager);
     this.dumpHandler.registerForDump(new CallbackDumpAdapter(this.serverMapRequestManager));
 
     resourceManager = new ResourceManagerImpl(channelManager, haConfig.getThisGroupID());
@@ -839,7 +857,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     this.serverMapEvictor = new ProgressiveEvictionManager(objectManager, persistor.getMonitoredResources(),
                                                            objectStore, clientObjectReferenceSet,
                                                            serverTransactionFactory, threadGroup, resourceManager,
-                                                           sampledCounterManager, evictionTransactionPersistor, hybrid, restartable);
+                                                           sampledCounterManager, evictionTransactionPersistor,
+                                                           evictionPolicyManager, hybrid, restartable);
 
     toInit.add(this.serverMapEvictor);
     this.dumpHandler.registerForDump(new CallbackDumpAdapter(this.serverMapEvictor));
@@ -849,10 +868,20 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     
     // Lookup stage should never be blocked trying to add to apply stage
     int applyStageThreads = L2Utils.getOptimalApplyStageWorkerThreads(restartable || hybrid);
-    stageManager.createStage(ServerConfigurationContext.APPLY_CHANGES_STAGE,
-                             new ApplyTransactionChangeHandler(instanceMonitor, this.transactionManager, this.serverMapEvictor,
-                             persistor.getPersistenceTransactionProvider(), taskRunner, serverEventbuffer, clientChannelMonitorImpl),
-                             applyStageThreads, 1, -1);
+    final boolean applyStageWorkStealing = TCPropertiesImpl.getProperties()
+        .getBoolean(TCPropertiesConsts.L2_SEDA_APPLY_STAGE_WORK_STEALING, false);
+    final ApplyTransactionChangeHandler applyChangesHandler = new ApplyTransactionChangeHandler(instanceMonitor,
+        this.transactionManager, this.serverMapEvictor, persistor.getPersistenceTransactionProvider(), taskRunner,
+        serverEventbuffer, clientChannelMonitorImpl, applyStageWorkStealing);
+    final int applyStageMaxBatchSize = TCPropertiesImpl.getProperties()
+        .getInt(TCPropertiesConsts.L2_SEDA_APPLY_STAGE_MAX_BATCH_SIZE);
+    if (applyStageWorkStealing) {
+      stageManager.createWorkStealingStage(ServerConfigurationContext.APPLY_CHANGES_STAGE, applyChangesHandler,
+                                           applyStageThreads, -1, applyStageMaxBatchSize);
+    } else {
+      stageManager.createBatchingStage(ServerConfigurationContext.APPLY_CHANGES_STAGE, applyChangesHandler,
+                                       applyStageThreads, -1, applyStageMaxBatchSize);
+    }
 
     txnStageCoordinator.lookUpSinks();
     
@@ -970,6 +999,11 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
 
     L2ObjectStateManager l2ObjectStateManager = this.serverBuilder.createL2ObjectStateManager(objectManager,
                                                                                               transactionManager);
+    try {
+      this.l2Management.registerPassiveSyncMBean(l2ObjectStateManager);
+    } catch (final Exception e) {
+      logger.warn("Unable to register the passive sync MBean", e);
+    }
 
     L2PassiveSyncStateManager l2PassiveSyncStateManager = this.serverBuilder
         .createL2PassiveSyncStateManager(l2IndexStateManager, l2ObjectStateManager,
@@ -1012,7 +1046,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
 
     serverStats.serverMapGetSizeRequestsCounter(globalServerMapGetSizeRequestsCounter)
         .serverMapGetValueRequestsCounter(globalServerMapGetValueRequestsCounter)
-        .serverMapGetSnapshotRequestsCounter(globalServerMapGetSnapshotRequestsCounter);
+        .serverMapGetSnapshotRequestsCounter(globalServerMapGetSnapshotRequestsCounter)
+        .invalidationCounters(invalidationsReceivedCounter, invalidationsSentCounter, invalidationMessagesSentCounter);
 
     this.context = this.serverBuilder.createServerConfigurationContext(stageManager, this.objectManager,
                                                                        this.objectRequestManager,
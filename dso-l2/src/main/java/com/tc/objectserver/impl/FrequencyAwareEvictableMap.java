@@ -0,0 +1,114 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.objectserver.api.EvictableEntry;
+import com.tc.objectserver.api.EvictableMap;
+import com.tc.objectserver.l1.impl.ClientObjectReferenceSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sampled LFU view of an {@link EvictableMap}. Eviction samples {@code sampleFactor} times as many entries as it was
+ * asked for and keeps the ones its {@link FrequencySketch} says were read the least. Expiration samples are passed
+ * through untouched, expired entries go whatever their frequency.
+ */
+class FrequencyAwareEvictableMap implements EvictableMap {
+
+  private final EvictableMap                  delegate;
+  private final FrequencySketch               sketch;
+  private final int                           sampleFactor;
+  private final ServerMapEvictionStatsManager stats;
+
+  FrequencyAwareEvictableMap(final EvictableMap delegate, final FrequencySketch sketch, final int sampleFactor,
+                             final ServerMapEvictionStatsManager stats) {
+    this.delegate = delegate;
+    this.sketch = sketch;
+    this.sampleFactor = sampleFactor;
+    this.stats = stats;
+  }
+
+  @Override
+  public Map<Object, EvictableEntry> getRandomSamples(final int count,
+                                                      final ClientObjectReferenceSet serverMapEvictionClientObjectRefSet,
+                                                      final SamplingType samplingType) {
+    if (samplingType != SamplingType.FOR_EVICTION || count <= 0) { return delegate
+        .getRandomSamples(count, serverMapEvictionClientObjectRefSet, samplingType); }
+
+    final int candidateCount = (int) Math.min((long) count * sampleFactor, Math.max(count, delegate.getSize()));
+    final Map<Object, EvictableEntry> candidates = delegate.getRandomSamples(candidateCount,
+                                                                             serverMapEvictionClientObjectRefSet,
+                                                                             samplingType);
+    final Object[] keys = new Object[candidates.size()];
+    // frequency in the high half so sorting orders by it, index into keys in the low half
+    final long[] ranked = new long[keys.length];
+    long candidateFrequencies = 0;
+    int i = 0;
+    for (Object key : candidates.keySet()) {
+      int frequency = sketch.frequency(key);
+      candidateFrequencies += frequency;
+      keys[i] = key;
+      ranked[i] = ((long) frequency << 32) | i;
+      i++;
+    }
+
+    if (keys.length <= count) {
+      stats.victimsSelected(keys.length, candidateFrequencies, keys.length, candidateFrequencies);
+      return candidates;
+    }
+
+    Arrays.sort(ranked);
+    final Map<Object, EvictableEntry> victims = new HashMap<Object, EvictableEntry>(count);
+    long victimFrequencies = 0;
+    for (int v = 0; v < count; v++) {
+      Object key = keys[(int) ranked[v]];
+      victimFrequencies += ranked[v] >>> 32;
+      victims.put(key, candidates.get(key));
+    }
+    stats.victimsSelected(keys.length, candidateFrequencies, count, victimFrequencies);
+    return victims;
+  }
+
+  @Override
+  public int getMaxTotalCount() {
+    return delegate.getMaxTotalCount();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public int getTTLSeconds() {
+    return delegate.getTTLSeconds();
+  }
+
+  @Override
+  public int getTTISeconds() {
+    return delegate.getTTISeconds();
+  }
+
+  @Override
+  public boolean startEviction() {
+    return delegate.startEviction();
+  }
+
+  @Override
+  public void evictionCompleted() {
+    delegate.evictionCompleted();
+  }
+
+  @Override
+  public String getCacheName() {
+    return delegate.getCacheName();
+  }
+
+  @Override
+  public boolean isEvictionEnabled() {
+    return delegate.isEvictionEnabled();
+  }
+}
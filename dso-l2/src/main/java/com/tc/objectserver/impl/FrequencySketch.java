@@ -0,0 +1,139 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate read frequency of the keys of one server map, in a count-min sketch of 4 bit counters. Each key maps to
+ * one counter in each of four rows, and its frequency is the smallest of the four, so collisions can only make a key
+ * look hotter than it is. Sixteen counters share a long.
+ * <p>
+ * Once ten increments per table slot have been recorded every counter is halved, so keys that stop being read cool
+ * down and the counters never saturate for good.
+ * <p>
+ * Every server map lookup increments the sketch, so counters are updated with compare-and-set on their long rather
+ * than under a lock. Only growing the table locks.
+ */
+public class FrequencySketch {
+
+  static final int            MAX_FREQUENCY     = 15;
+
+  private static final int    MIN_TABLE_SIZE    = 16;
+  // 8MB of counters per map at most
+  private static final int    MAX_TABLE_SIZE    = 1 << 20;
+  private static final int    SAMPLE_MULTIPLIER = 10;
+  private static final long[] SEEDS             = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L                      };
+  private static final long   RESET_MASK        = 0x7777777777777777L;
+
+  private volatile Table      table;
+
+  public FrequencySketch(int expectedSize) {
+    this.table = new Table(tableSizeFor(expectedSize));
+  }
+
+  /**
+   * Grows the sketch to suit a map of the given size. Growing starts again from empty counters, increments racing with
+   * it may be lost.
+   */
+  public void ensureCapacity(int expectedSize) {
+    int size = tableSizeFor(expectedSize);
+    if (size <= table.length()) { return; }
+    synchronized (this) {
+      if (size > table.length()) {
+        table = new Table(size);
+      }
+    }
+  }
+
+  public void increment(Object key) {
+    Table t = table;
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= t.incrementAt(t.indexOf(hash, i), start + i);
+    }
+    // only the increment that reaches the sample size resets
+    if (added && t.additions.incrementAndGet() == t.sampleSize) {
+      t.reset();
+    }
+  }
+
+  public int frequency(Object key) {
+    Table t = table;
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < 4; i++) {
+      int count = (int) ((t.counters.get(t.indexOf(hash, i)) >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  int getTableSize() {
+    return table.length();
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    int size = MIN_TABLE_SIZE;
+    while (size < expectedSize && size < MAX_TABLE_SIZE) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  private static final class Table {
+    private final AtomicLongArray counters;
+    private final int             mask;
+    private final int             sampleSize;
+    private final AtomicInteger   additions = new AtomicInteger();
+
+    Table(int size) {
+      this.counters = new AtomicLongArray(size);
+      this.mask = size - 1;
+      this.sampleSize = SAMPLE_MULTIPLIER * size;
+    }
+
+    int length() {
+      return counters.length();
+    }
+
+    int indexOf(int hash, int row) {
+      long h = (hash + SEEDS[row]) * SEEDS[row];
+      h += h >>> 32;
+      return ((int) h) & mask;
+    }
+
+    boolean incrementAt(int index, int counter) {
+      int offset = counter << 2;
+      long counterMask = 0xfL << offset;
+      while (true) {
+        long current = counters.get(index);
+        if ((current & counterMask) == counterMask) { return false; }
+        if (counters.compareAndSet(index, current, current + (1L << offset))) { return true; }
+      }
+    }
+
+    void reset() {
+      for (int i = 0; i < counters.length(); i++) {
+        while (true) {
+          long current = counters.get(i);
+          if (counters.compareAndSet(i, current, (current >>> 1) & RESET_MASK)) {
+            break;
+          }
+        }
+      }
+      additions.addAndGet(-(sampleSize >>> 1));
+    }
+  }
+}
@@ -31,6 +31,8 @@ import com.tc.util.Assert;
 import com.tc.util.BitSetObjectIDSet;
 import com.tc.util.ObjectIDSet;
 import com.tc.util.TCCollections;
+import com.tc.util.concurrent.EpochGate;
+import com.tc.util.concurrent.StripedCounter;
 import com.tc.util.concurrent.TCConcurrentMultiMap;
 
 import java.util.ArrayList;
@@ -50,11 +52,14 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Manages access to all the Managed objects in the system. This class is rewritten to be concurrent.
+ * <p>
+ * Checkouts take no shared lock. A reference is claimed with a CAS on its own state and counted on a
+ * {@link StripedCounter}. Every lookup runs inside an {@link EpochGate}. DGC first publishes its pausing state, then
+ * waits for the lookups of the current epoch to drain. After that no read-write lookup can slip past the pause, and
+ * the pause only has to wait for the checked out count to reach zero.
  */
 public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeListener, PrettyPrintable {
 
@@ -79,16 +84,17 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
 
   private final PersistentManagedObjectStore                    objectStore;
   private final ConcurrentMap<ObjectID, ManagedObjectReference> references;
-  private final AtomicInteger                                   checkedOutCount = new AtomicInteger();
+  private final StripedCounter                                  checkedOutCount = new StripedCounter();
   private final PendingList                                     pending         = new PendingList();
   private final AtomicBoolean                                   inShutdown      = new AtomicBoolean();
   private final ObjectManagerStatsListener                      stats;
 
   private volatile GarbageCollector                             collector       = new NullGarbageCollector();
 
-  // A Lock that prevents checkouts when some critical operation is going on
-  private final ReentrantReadWriteLock                          lock            = new ReentrantReadWriteLock();
-  private final Condition                                       signal          = this.lock.writeLock().newCondition();
+  // Lets critical operations wait out the lookups that started before they did
+  private final EpochGate                                       lookupGate      = new EpochGate();
+  // Wakes up a DGC waiting for objects to be checked back in
+  private final Object                                          gcSignal        = new Object();
 
   private final ClientStateManager                              stateManager;
   private final ObjectManagerConfig                             config;
@@ -121,21 +127,19 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
     this.collector.stop();
     if (this.config.paranoid()) { return; }
 
-    this.lock.writeLock().lock(); // Allow no more checkouts
-    try {
-      // flush the cache to stable persistence.
-      final Set<ManagedObject> toFlush = new HashSet<ManagedObject>();
-      for (final ManagedObjectReference ref : this.references.values()) {
-        final ManagedObject obj = ref.getObject();
-        if (!obj.isNew() && !ref.isReferenced() && obj.isDirty()) {
-          toFlush.add(obj);
-        }
+    // Allow no more checkouts, lookups entering from now on see inShutdown
+    this.lookupGate.awaitQuiescence();
+
+    // flush the cache to stable persistence.
+    final Set<ManagedObject> toFlush = new HashSet<ManagedObject>();
+    for (final ManagedObjectReference ref : this.references.values()) {
+      final ManagedObject obj = ref.getObject();
+      if (!obj.isNew() && !ref.isReferenced() && obj.isDirty()) {
+        toFlush.add(obj);
       }
-      final Transaction tx = newTransaction();
-      flushAllAndCommit(tx, toFlush);
-    } finally {
-      this.lock.writeLock().unlock();
     }
+    final Transaction tx = newTransaction();
+    flushAllAndCommit(tx, toFlush);
   }
 
   @Override
@@ -232,7 +236,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
         reference.unmarkReference();
         return false;
       }
-      this.checkedOutCount.incrementAndGet();
+      this.checkedOutCount.increment();
     }
     return marked;
   }
@@ -240,8 +244,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
   private void unmarkReferenced(final ManagedObjectReference reference) {
     if (!reference.unmarkReference()) { throw new AssertionError("Attempt to unmark an unreferenced object: "
                                                                  + reference); }
-    final int current = this.checkedOutCount.decrementAndGet();
-    Assert.assertTrue(current >= 0);
+    this.checkedOutCount.decrement();
   }
 
   /**
@@ -277,7 +280,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
     final ManagedObjectReference ref = this.references.putIfAbsent(oid, delete);
     if ( ref == null ) {
 //  deletes are self marked    
-      this.checkedOutCount.incrementAndGet();
+      this.checkedOutCount.increment();
       return delete;
     } else {
       if ( ref.isNew() ) {
@@ -303,10 +306,11 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
 
   private boolean basicLookupObjectsFor(final NodeID nodeID, final ObjectManagerLookupContext context,
                                         final int maxReachableObjects) {
-    assertNotInShutdown();
-
-    this.lock.readLock().lock();
+    final int token = this.lookupGate.enter();
     try {
+      // checked inside the gate so that stop() either sees this lookup or this lookup sees stop()
+      assertNotInShutdown();
+
       // DEV-5889 : Allowing READ requests like DGC and lookupFacade to go thru as blocking those might result in a
       // deadlock.
       if (context.getAccessLevel() == AccessLevel.READ_WRITE && this.collector.isPausingOrPaused()) {
@@ -325,7 +329,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
       } while (result == LookupState.RETRY);
       return (result == LookupState.AVAILABLE);
     } finally {
-      this.lock.readLock().unlock();
+      this.lookupGate.exit(token);
     }
   }
 
@@ -537,7 +541,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
 
   @Override
   public int getCheckedOutCount() {
-    return this.checkedOutCount.get();
+    return (int) this.checkedOutCount.get();
   }
 
   @Override
@@ -642,29 +646,38 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
     return removed;
   }
 
+  /**
+   * Called on release while DGC is pausing. Only wakes up the DGC thread, which is the one that knows whether the
+   * lookups that started before the pause are done.
+   */
   private void checkAndNotifyGC() {
     if (this.checkedOutCount.get() == 0) {
-      this.collector.notifyReadyToGC();
       signal();
     }
   }
 
   private void signal() {
-    this.lock.writeLock().lock();
-    try {
-      this.signal.signalAll();
-    } finally {
-      this.lock.writeLock().unlock();
+    synchronized (this.gcSignal) {
+      this.gcSignal.notifyAll();
     }
   }
 
+  /**
+   * The collector is already pausing when this is called, so once the lookups of the current epoch are done no new
+   * read-write checkout can happen and a zero checked out count means DGC can go ahead.
+   */
   @Override
   public void waitUntilReadyToGC() {
-    this.lock.writeLock().lock();
-    try {
-      checkAndNotifyGC();
+    this.lookupGate.awaitQuiescence();
+    synchronized (this.gcSignal) {
       int count = 0;
-      while (!this.collector.isPaused()) {
+      while (true) {
+        if (this.checkedOutCount.get() == 0) {
+          this.collector.notifyReadyToGC();
+        }
+        if (this.collector.isPaused()) {
+          break;
+        }
         if (count++ % 4 == 3) {
           logger
               .warn("Still waiting for object to be checked back in. collector state is not paused. checkout count = "
@@ -672,14 +685,12 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
         }
         wait(10000, TimeUnit.MILLISECONDS);
       }
-    } finally {
-      this.lock.writeLock().unlock();
     }
   }
 
   private void wait(final int time, final TimeUnit unit) {
     try {
-      this.signal.await(time, unit);
+      this.gcSignal.wait(unit.toMillis(time));
     } catch (final InterruptedException e) {
       throw new AssertionError(e);
     }
@@ -687,12 +698,7 @@ public class ObjectManagerImpl implements ObjectManager, ManagedObjectChangeList
 
   @Override
   public void notifyGCComplete(final DGCResultContext gcResult) {
-    this.lock.writeLock().lock();
-    try {
-      Assert.assertTrue(this.collector.requestGCDeleteStart());
-    } finally {
-      this.lock.writeLock().unlock();
-    }
+    Assert.assertTrue(this.collector.requestGCDeleteStart());
     Transaction transaction = persistenceTransactionProvider.newTransaction();
     deleteObjects(gcResult.getGarbageIDs());
     transaction.commit();
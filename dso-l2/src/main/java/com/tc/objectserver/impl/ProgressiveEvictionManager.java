@@ -84,6 +84,7 @@ public class ProgressiveEvictionManager implements ServerMapEvictionManager {
   private final PersistentManagedObjectStore      store;
   private final ObjectManager                     objectManager;
   private final ClientObjectReferenceSet          clientObjectReferenceSet;
+  private final ServerMapEvictionPolicyManager    evictionPolicyManager;
   private Sink                                    evictorSink;
   private final ExecutorService                   agent;
   private final ThreadLocal<EvictionTrigger>      currentTrigger = new ThreadLocal<EvictionTrigger>();
@@ -142,8 +143,10 @@ public class ProgressiveEvictionManager implements ServerMapEvictionManager {
                                     final ClientObjectReferenceSet clients, final ServerTransactionFactory trans,
                                     final TCThreadGroup grp, final ResourceManager resourceManager,
                                     final CounterManager counterManager,
-                                    final EvictionTransactionPersistor evictionTransactionPersistor, final boolean hybrid, final boolean persistent) {
+                                    final EvictionTransactionPersistor evictionTransactionPersistor,
+                                    final ServerMapEvictionPolicyManager evictionPolicyManager, final boolean hybrid, final boolean persistent) {
     this.objectManager = mgr;
+    this.evictionPolicyManager = evictionPolicyManager;
     this.store = store;
     this.clientObjectReferenceSet = clients;
     this.resourceManager = resourceManager;
@@ -346,6 +349,7 @@ public class ProgressiveEvictionManager implements ServerMapEvictionManager {
         if (evictor.isLogging()) {
           log("Managed object gone : " + oid);
         }
+        evictionPolicyManager.forget(oid);
         isDone = true;
       } else {
         if ( evictor.markEvictionInProgress(oid) ) {
@@ -442,7 +446,7 @@ public class ProgressiveEvictionManager implements ServerMapEvictionManager {
                                                                                                    "Received wrong object thats not evictable : "
                                                                                                        + id + " : "
                                                                                                        + state); }
-    return (EvictableMap) state;
+    return evictionPolicyManager.applyTo(id, (EvictableMap) state);
   }
 
   private void log(String msg) {
@@ -544,6 +548,10 @@ public class ProgressiveEvictionManager implements ServerMapEvictionManager {
             if ( count > 0 ) {
                 log("Evicted and expired " + count + " total elements");
             }
+            ServerMapEvictionStatsManager stats = evictionPolicyManager.getStatsManager();
+            log("Server map hit ratio: " + stats.getHitRatio() + " eviction quality: " + stats.getEvictionQuality()
+                + " (mean frequency evicted: " + stats.getMeanVictimFrequency() + " sampled: "
+                + stats.getMeanCandidateFrequency() + ")");
           }
         }
         if (!isEmergency && PERIODIC_EVICTOR_ENABLED && currentRun.isDone()) {
@@ -0,0 +1,18 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.impl;
+
+/**
+ * How server map eviction picks the entries it evicts.
+ */
+public enum ServerMapEvictionPolicy {
+  /**
+   * Evict a random sample of the entries not referenced by any client.
+   */
+  RANDOM,
+  /**
+   * Sample more entries than needed and evict the least frequently read of them.
+   */
+  LFU
+}
@@ -0,0 +1,130 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.EvictableMap;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the {@link ServerMapEvictionPolicy} of each cache and keeps the read frequencies that
+ * {@link ServerMapEvictionPolicy#LFU} evicts by. The frequencies live here rather than in the map state because the
+ * state is rebuilt every time the map is loaded from the object store.
+ * <p>
+ * The policy comes from {@link TCPropertiesConsts#L2_SERVERMAP_EVICTION_POLICY}, which a cache can override with the
+ * same property suffixed by its name.
+ */
+public class ServerMapEvictionPolicyManager {
+
+  private static final TCLogger                                logger   = TCLogging
+                                                                            .getLogger(ServerMapEvictionPolicyManager.class);
+
+  private final TCProperties                                   properties;
+  private final ServerMapEvictionStatsManager                  stats;
+  private final ServerMapEvictionPolicy                        defaultPolicy;
+  private final int                                            sampleFactor;
+  private final ConcurrentMap<String, ServerMapEvictionPolicy> policies = new ConcurrentHashMap<String, ServerMapEvictionPolicy>();
+  private final ConcurrentMap<ObjectID, FrequencySketch>       sketches = new ConcurrentHashMap<ObjectID, FrequencySketch>();
+
+  public ServerMapEvictionPolicyManager(final ServerMapEvictionStatsManager stats) {
+    this(TCPropertiesImpl.getProperties(), stats);
+  }
+
+  ServerMapEvictionPolicyManager(final TCProperties properties, final ServerMapEvictionStatsManager stats) {
+    this.properties = properties;
+    this.stats = stats;
+    String policy = properties.getProperty(TCPropertiesConsts.L2_SERVERMAP_EVICTION_POLICY, true);
+    if (policy == null) {
+      this.defaultPolicy = ServerMapEvictionPolicy.RANDOM;
+    } else {
+      this.defaultPolicy = parse(TCPropertiesConsts.L2_SERVERMAP_EVICTION_POLICY, policy);
+    }
+    this.sampleFactor = properties.getInt(TCPropertiesConsts.L2_SERVERMAP_EVICTION_LFU_SAMPLE_FACTOR, 4);
+    if (sampleFactor < 1) { throw new IllegalArgumentException("Invalid value for ["
+                                                               + TCPropertiesConsts.L2_SERVERMAP_EVICTION_LFU_SAMPLE_FACTOR
+                                                               + "]: " + sampleFactor + " (must be at least 1)"); }
+    logger.info("Default server map eviction policy is " + defaultPolicy);
+  }
+
+  public ServerMapEvictionStatsManager getStatsManager() {
+    return stats;
+  }
+
+  public ServerMapEvictionPolicy getPolicyFor(final String cacheName) {
+    if (cacheName == null) { return defaultPolicy; }
+    ServerMapEvictionPolicy policy = policies.get(cacheName);
+    if (policy == null) {
+      policy = defaultPolicy;
+      String key = TCPropertiesConsts.L2_SERVERMAP_EVICTION_POLICY + "." + cacheName;
+      String value = properties.getProperty(key, true);
+      if (value != null) {
+        try {
+          policy = parse(key, value);
+          logger.info("Cache " + cacheName + " uses eviction policy " + policy);
+        } catch (IllegalArgumentException e) {
+          logger.warn(e.getMessage() + ", using " + defaultPolicy + " for cache " + cacheName);
+        }
+      }
+      policies.put(cacheName, policy);
+    }
+    return policy;
+  }
+
+  /**
+   * Records a lookup of {@code key} in a server map. Misses count towards the frequency too, a key that is read again
+   * right after being loaded from the system of record is as hot as one that was never evicted. Lookups in maps that
+   * don't evict by frequency are not recorded at all.
+   */
+  public void recordAccess(final ObjectID mapID, final EvictableMap map, final Object key, final boolean hit) {
+    if (getPolicyFor(map.getCacheName()) != ServerMapEvictionPolicy.LFU) { return; }
+    stats.lookup(hit);
+    getOrCreateSketch(mapID, map).increment(key);
+  }
+
+  /**
+   * @return the map as eviction should see it under its cache's policy
+   */
+  public EvictableMap applyTo(final ObjectID mapID, final EvictableMap map) {
+    if (getPolicyFor(map.getCacheName()) != ServerMapEvictionPolicy.LFU) { return map; }
+    return new FrequencyAwareEvictableMap(map, getOrCreateSketch(mapID, map), sampleFactor, stats);
+  }
+
+  /**
+   * Drops the frequencies of a map that no longer exists.
+   */
+  public void forget(final ObjectID mapID) {
+    sketches.remove(mapID);
+  }
+
+  private FrequencySketch getOrCreateSketch(final ObjectID mapID, final EvictableMap map) {
+    int expectedSize = Math.max(map.getMaxTotalCount(), map.getSize());
+    FrequencySketch sketch = sketches.get(mapID);
+    if (sketch == null) {
+      sketch = new FrequencySketch(expectedSize);
+      FrequencySketch racer = sketches.putIfAbsent(mapID, sketch);
+      if (racer != null) {
+        sketch = racer;
+      }
+    }
+    sketch.ensureCapacity(expectedSize);
+    return sketch;
+  }
+
+  private static ServerMapEvictionPolicy parse(final String key, final String value) {
+    try {
+      return ServerMapEvictionPolicy.valueOf(value.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value for [" + key + "]: " + value + " (must be one of "
+                                         + Arrays.toString(ServerMapEvictionPolicy.values()) + ")");
+    }
+  }
+}
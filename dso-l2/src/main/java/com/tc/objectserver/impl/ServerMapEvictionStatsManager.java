@@ -27,6 +27,14 @@ public class ServerMapEvictionStatsManager {
   private final AtomicLong      segmentsWithEvictionCount   = new AtomicLong();
   private final AtomicLong      evictedEntriesCount         = new AtomicLong();
 
+  // not reset between periodic runs
+  private final AtomicLong      lookupHits                  = new AtomicLong();
+  private final AtomicLong      lookupMisses                = new AtomicLong();
+  private final AtomicLong      evictionCandidates          = new AtomicLong();
+  private final AtomicLong      candidateFrequencies        = new AtomicLong();
+  private final AtomicLong      evictionVictims             = new AtomicLong();
+  private final AtomicLong      victimFrequencies           = new AtomicLong();
+
   private void resetCounters() {
     periodicEvictionStartTime = now();
     periodicEvictionEndTime = now();
@@ -63,6 +71,57 @@ public class ServerMapEvictionStatsManager {
     evictedEntriesCount.addAndGet(numEvictedEntries);
   }
 
+  public void lookup(boolean hit) {
+    if (hit) {
+      lookupHits.incrementAndGet();
+    } else {
+      lookupMisses.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records a frequency aware pick of {@code victims} entries out of {@code candidates} sampled ones, along with the
+   * summed read frequencies of each group.
+   */
+  public void victimsSelected(int candidates, long candidateFrequencySum, int victims, long victimFrequencySum) {
+    evictionCandidates.addAndGet(candidates);
+    candidateFrequencies.addAndGet(candidateFrequencySum);
+    evictionVictims.addAndGet(victims);
+    victimFrequencies.addAndGet(victimFrequencySum);
+  }
+
+  /**
+   * @return the fraction of key lookups in {@link ServerMapEvictionPolicy#LFU} maps that found a value
+   */
+  public double getHitRatio() {
+    long hits = lookupHits.get();
+    long total = hits + lookupMisses.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public double getMeanCandidateFrequency() {
+    return mean(candidateFrequencies.get(), evictionCandidates.get());
+  }
+
+  public double getMeanVictimFrequency() {
+    return mean(victimFrequencies.get(), evictionVictims.get());
+  }
+
+  /**
+   * How much colder the evicted entries were than the samples they were picked from: 0 when they were as hot as a
+   * random pick would be, 1 when none of them had been read.
+   */
+  public double getEvictionQuality() {
+    if (evictionVictims.get() == 0) { return 0; }
+    double candidateMean = getMeanCandidateFrequency();
+    if (candidateMean == 0) { return 1; }
+    return 1 - getMeanVictimFrequency() / candidateMean;
+  }
+
+  private static double mean(long sum, long count) {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
   public void periodicEvictionFinished() {
     periodicEvictionEndTime = now();
 
@@ -23,6 +23,7 @@ import com.tc.object.net.NoSuchChannelException;
 import com.tc.objectserver.api.ObjectManager;
 import com.tc.objectserver.api.ServerMapRequestManager;
 import com.tc.objectserver.context.ServerMapGetAllSizeHelper;
+import com.tc.objectserver.context.ServerMapRequestBulkValueContext;
 import com.tc.objectserver.context.ServerMapRequestAllKeysContext;
 import com.tc.objectserver.context.ServerMapRequestContext;
 import com.tc.objectserver.context.ServerMapRequestPrefetchObjectsContext;
@@ -41,7 +42,10 @@ import com.tc.util.concurrent.TCConcurrentMultiMap;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
@@ -53,18 +57,24 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
   private final Sink                  prefetchObjectsSink;
   private final ServerMapRequestQueue requestQueue = new ServerMapRequestQueue();
   private final ClientStateManager    clientStateManager;
+  private final ServerMapEvictionPolicyManager evictionPolicyManager;
   // private final ChannelStats channelStats;
   private final boolean               enablePrefetch = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_PREFETCH_ENABLED, true);
+  private final boolean               enableBulk     = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_BULK_ENABLED, false);
+  private final int                   bulkMaxSegments = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_BULK_MAX_SEGMENTS, 16);
+  private final int                   bulkPrefetchBatchSize = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_BULK_PREFETCH_BATCH_SIZE, 1000);
 
   public ServerMapRequestManagerImpl(final ObjectManager objectManager, final DSOChannelManager channelManager,
                                      final Sink respondToServerTCMapSink,
                                      final Sink prefetchObjectsSink,
-                                     ClientStateManager clientStateManager, ChannelStats channelStats) {
+                                     ClientStateManager clientStateManager, ChannelStats channelStats,
+                                     final ServerMapEvictionPolicyManager evictionPolicyManager) {
     this.channelManager = channelManager;
     this.objectManager = objectManager;
     this.respondToServerTCMapSink = respondToServerTCMapSink;
     this.prefetchObjectsSink = prefetchObjectsSink;
     this.clientStateManager = clientStateManager;
+    this.evictionPolicyManager = evictionPolicyManager;
     // this.channelStats = channelStats;
   }
 
@@ -77,6 +87,42 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
     processRequest(clientID, requestContext);
   }
 
+  /**
+   * Bulk requests skip the per map request queue, so they do not piggyback on a lookup of the same map by another
+   * request, but their maps are checked out bulkMaxSegments at a time, each chunk by a single lookup and answered by a
+   * single response context. A lookup only completes once all the maps of its chunk are available, so chunks are kept
+   * small to not wait on, nor hold, many maps that are being written to.
+   */
+  @Override
+  public void requestValues(final ClientID clientID, final Map<ObjectID, Collection<ServerMapGetValueRequest>> requests) {
+    if (!enableBulk || bulkMaxSegments <= 1 || requests.size() == 1) {
+      for (final Entry<ObjectID, Collection<ServerMapGetValueRequest>> e : requests.entrySet()) {
+        requestValues(clientID, e.getKey(), e.getValue());
+      }
+      return;
+    }
+
+    Map<ObjectID, Collection<ServerMapGetValueRequest>> chunk = new LinkedHashMap<ObjectID, Collection<ServerMapGetValueRequest>>();
+    for (final Entry<ObjectID, Collection<ServerMapGetValueRequest>> e : requests.entrySet()) {
+      chunk.put(e.getKey(), e.getValue());
+      if (chunk.size() == bulkMaxSegments) {
+        requestChunk(clientID, chunk);
+        chunk = new LinkedHashMap<ObjectID, Collection<ServerMapGetValueRequest>>();
+      }
+    }
+    requestChunk(clientID, chunk);
+  }
+
+  private void requestChunk(final ClientID clientID, final Map<ObjectID, Collection<ServerMapGetValueRequest>> chunk) {
+    if (chunk.size() == 1) {
+      final Entry<ObjectID, Collection<ServerMapGetValueRequest>> e = chunk.entrySet().iterator().next();
+      requestValues(clientID, e.getKey(), e.getValue());
+    } else if (!chunk.isEmpty()) {
+      this.objectManager.lookupObjectsFor(clientID, new ServerMapRequestBulkValueContext(clientID, chunk,
+                                                                                         this.respondToServerTCMapSink));
+    }
+  }
+
   @Override
   public void requestSize(final ServerMapRequestID requestID, final ClientID clientID, final ObjectID mapID,
                           ServerMapGetAllSizeHelper helper) {
@@ -105,15 +151,7 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
 
   @Override
   public void sendResponseFor(final ObjectID mapID, final ManagedObject managedObject) {
-    final ManagedObjectState state = managedObject.getManagedObjectState();
-
-    if (!(state instanceof ConcurrentDistributedServerMapManagedObjectState)) {
-      // Formatter
-      throw new AssertionError("Server Map " + mapID
-                               + " is not a ConcurrentDistributedServerMapManagedObjectState, state is of class type: "
-                               + state.getClassName());
-    }
-    final ConcurrentDistributedServerMapManagedObjectState cdsmState = (ConcurrentDistributedServerMapManagedObjectState) state;
+    final ConcurrentDistributedServerMapManagedObjectState cdsmState = getCDSMState(mapID, managedObject);
 
     final Map<ClientID, ServerMapRequestPrefetchObjectsContext> results = new HashMap<ClientID, ServerMapRequestPrefetchObjectsContext>();
     try {
@@ -133,8 +171,13 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
             sendResponseForGetAllKeys(mapID, (ServerMapRequestAllKeysContext) request, cdsmState);
             break;
           case GET_VALUE_FOR_KEY:
-            ServerMapRequestPrefetchObjectsContext responses = gatherResponseForGetValue(request.getClientID(), mapID, (ServerMapRequestValueContext)request, results.get(request.getClientID()),
-                                                                     cdsmState);
+            ServerMapRequestPrefetchObjectsContext responses = results.get(request.getClientID());
+            if (responses == null) {
+              responses = new ServerMapRequestPrefetchObjectsContext(request.getClientID(), mapID, prefetchObjectsSink);
+            }
+            gatherResponseForGetValue(request.getClientID(), mapID,
+                                      ((ServerMapRequestValueContext) request).getValueRequests(), responses,
+                                      cdsmState);
             results.put(request.getClientID(), responses);
             break;
           default:
@@ -150,18 +193,100 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
     }
   }
   
+  private static ConcurrentDistributedServerMapManagedObjectState getCDSMState(final ObjectID mapID,
+                                                                              final ManagedObject managedObject) {
+    final ManagedObjectState state = managedObject.getManagedObjectState();
+
+    if (!(state instanceof ConcurrentDistributedServerMapManagedObjectState)) {
+      // Formatter
+      throw new AssertionError("Server Map " + mapID
+                               + " is not a ConcurrentDistributedServerMapManagedObjectState, state is of class type: "
+                               + state.getClassName());
+    }
+    return (ConcurrentDistributedServerMapManagedObjectState) state;
+  }
+
   private void stagePrefetch(Map<ClientID, ServerMapRequestPrefetchObjectsContext> results) {
     for ( Map.Entry<ClientID, ServerMapRequestPrefetchObjectsContext> cxt : results.entrySet() ) {
-      if ( cxt.getValue().shouldPrefetch() ) {
-        this.objectManager.lookupObjectsFor(cxt.getKey(),cxt.getValue());
-      } else {
-        this.prefetchObjectsSink.add(cxt.getValue());
+      stagePrefetch(cxt.getKey(), cxt.getValue());
+    }
+  }
+
+  private void stagePrefetch(ClientID clientID, ServerMapRequestPrefetchObjectsContext responses) {
+    if (responses.shouldPrefetch()) {
+      this.objectManager.lookupObjectsFor(clientID, responses);
+    } else {
+      this.prefetchObjectsSink.add(responses);
+    }
+  }
+
+  /**
+   * Answers the maps one after the other, releasing each one as soon as it is answered. Every
+   * bulkPrefetchBatchSize keys the answers so far are staged, so that the lookup of their values runs while the
+   * next maps are answered. The answers gathered are staged even if answering a later map fails.
+   */
+  @Override
+  public void sendResponseFor(final ServerMapRequestBulkValueContext context) {
+    final ClientID clientID = context.getClientID();
+    final Map<ObjectID, ManagedObject> objects = context.getResults().getObjects();
+    final Iterator<Entry<ObjectID, Collection<ServerMapGetValueRequest>>> i = context.getValueRequests().entrySet()
+        .iterator();
+    ServerMapRequestPrefetchObjectsContext responses = new ServerMapRequestPrefetchObjectsContext(clientID,
+                                                                                                  prefetchObjectsSink);
+    int keys = 0;
+    try {
+      while (i.hasNext()) {
+        final Entry<ObjectID, Collection<ServerMapGetValueRequest>> e = i.next();
+        final ObjectID mapID = e.getKey();
+        final ManagedObject managedObject = objects.get(mapID);
+        if (managedObject == null) {
+          sendMissingObjectResponseFor(clientID, mapID, e.getValue());
+          continue;
+        }
+
+        try {
+          gatherResponseForGetValue(clientID, mapID, e.getValue(), responses, getCDSMState(mapID, managedObject));
+        } finally {
+          this.objectManager.releaseReadOnly(managedObject);
+        }
+        for (final ServerMapGetValueRequest r : e.getValue()) {
+          keys += r.getKeys().size();
+        }
+        if (keys >= bulkPrefetchBatchSize && i.hasNext()) {
+          stagePrefetch(clientID, responses);
+          responses = new ServerMapRequestPrefetchObjectsContext(clientID, prefetchObjectsSink);
+          keys = 0;
+        }
+      }
+    } finally {
+      // release the maps not answered, if answering one failed
+      while (i.hasNext()) {
+        final ManagedObject managedObject = objects.get(i.next().getKey());
+        if (managedObject != null) {
+          this.objectManager.releaseReadOnly(managedObject);
+        }
+      }
+      if (responses.hasAnswers()) {
+        stagePrefetch(clientID, responses);
       }
     }
   }
 
+  private void sendMissingObjectResponseFor(final ClientID clientID, final ObjectID mapID,
+                                            final Collection<ServerMapGetValueRequest> requests) {
+    logger.error("Missing ObjectID : " + mapID + " for bulk request of client : " + clientID);
+    evictionPolicyManager.forget(mapID);
+    final MessageChannel channel = getActiveChannel(clientID);
+    if (channel == null) { return; }
+    for (ServerMapGetValueRequest request : requests) {
+      initializeAndSendObjectNotFoundMessage(mapID, request.getRequestID(), ServerMapRequestType.GET_VALUE_FOR_KEY,
+                                             channel);
+    }
+  }
+
   @Override
   public void sendMissingObjectResponseFor(ObjectID mapID) {
+    evictionPolicyManager.forget(mapID);
     final Collection<ServerMapRequestContext> requests = this.requestQueue.remove(mapID);
 
     for (final ServerMapRequestContext request : requests) {
@@ -204,19 +329,17 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
     }
   }
 
-  private ServerMapRequestPrefetchObjectsContext gatherResponseForGetValue(final ClientID clientID, final ObjectID mapID, final ServerMapRequestValueContext request,
-                                                ServerMapRequestPrefetchObjectsContext responses,
-                                                final ConcurrentDistributedServerMapManagedObjectState cdsmState) {
-    if (responses == null ) {
-        responses = new ServerMapRequestPrefetchObjectsContext(clientID, mapID, prefetchObjectsSink);
-    }
-    
-    for (final ServerMapGetValueRequest r : request.getValueRequests()) {
+  private void gatherResponseForGetValue(final ClientID clientID, final ObjectID mapID,
+                                         final Collection<ServerMapGetValueRequest> requests,
+                                         final ServerMapRequestPrefetchObjectsContext responses,
+                                         final ConcurrentDistributedServerMapManagedObjectState cdsmState) {
+    for (final ServerMapGetValueRequest r : requests) {
       ServerMapGetValueResponse response = new ServerMapGetValueResponse(r.getRequestID());
       Set<Object> portableKeys = r.getKeys();
       for (Object portableKey : portableKeys) {
         CDSMValue wrappedValue = cdsmState.getValueForKey(portableKey);
-        
+        evictionPolicyManager.recordAccess(mapID, cdsmState, portableKey, wrappedValue != null);
+
         if (wrappedValue == null) {
           response.put(portableKey, ObjectID.NULL_ID);
         } else {
@@ -233,9 +356,8 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
 
         }
       }
-      responses.addResponse(response);
+      responses.addResponse(mapID, response);
     }
-    return responses;
   }
 
   private void sendResponseForGetAllSize(final ObjectID mapID, final ServerMapRequestSizeContext request,
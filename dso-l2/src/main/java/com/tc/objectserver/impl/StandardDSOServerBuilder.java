@@ -60,7 +60,10 @@ import com.tc.objectserver.metadata.NullMetaDataManager;
 import com.tc.objectserver.mgmt.ObjectStatsRecorder;
 import com.tc.objectserver.persistence.ClusterStatePersistor;
 import com.tc.objectserver.persistence.HeapStorageManagerFactory;
+import com.tc.objectserver.persistence.LogStructuredStorageManagerFactory;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.objectserver.persistence.RestartablePersistor;
+import com.tc.objectserver.search.InMemoryIndexHACoordinator;
 import com.tc.objectserver.search.IndexHACoordinator;
 import com.tc.objectserver.search.IndexManager;
 import com.tc.objectserver.search.NullIndexHACoordinator;
@@ -76,6 +79,8 @@ import com.tc.operatorevent.TerracottaOperatorEventCallbackLogger;
 import com.tc.operatorevent.TerracottaOperatorEventHistoryProvider;
 import com.tc.operatorevent.TerracottaOperatorEventLogger;
 import com.tc.operatorevent.TerracottaOperatorEventLogging;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.runtime.logging.LongGCLogger;
 import com.tc.server.ServerConnectionValidator;
 import com.tc.util.NonBlockingStartupLock;
@@ -125,6 +130,14 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
   @Override
   public IndexHACoordinator createIndexHACoordinator(L2ConfigurationSetupManager configSetupManager, Sink sink, StorageManager storageManager)
       throws IOException {
+    if (TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.SEARCH_IN_MEMORY_INDEX_ENABLED, false)) {
+      // search attributes are only known from the search events, the map states can not rebuild the index
+      if (configSetupManager.dsoL2Config().getRestartable().getEnabled()) {
+        logger.warn("The in memory search index is not durable, it is not used on a restartable server");
+      } else {
+        return new InMemoryIndexHACoordinator();
+      }
+    }
     return new NullIndexHACoordinator();
   }
 
@@ -175,9 +188,10 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
                                                                final Sink respondToServerTCMapSink,
                                                                final Sink prefetchObjectsSink,
                                                                final ClientStateManager clientStateManager,
-                                                               final ChannelStats channelStats) {
+                                                               final ChannelStats channelStats,
+                                                               final ServerMapEvictionPolicyManager evictionPolicyManager) {
     return new ServerMapRequestManagerImpl(objectMgr, channelManager, respondToServerTCMapSink, prefetchObjectsSink,
-            clientStateManager, channelStats);
+            clientStateManager, channelStats, evictionPolicyManager);
   }
 
   @Override
@@ -298,12 +312,16 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
   @Override
   public Persistor createPersistor(final boolean persistent, final File l2DataPath, final L2State l2State)
           throws IOException {
-    // make warning go away
-    if (false) {
-      throw new IOException();
+    if (persistent) {
+      Persistor persistor = new RestartablePersistor(new LogStructuredStorageManagerFactory(l2DataPath));
+      if (persistor.getClusterStatePersistor().isDBClean()) {
+        return persistor;
+      }
+      logger.info("Discarding dirty L2 data in " + l2DataPath.getAbsolutePath());
+      persistor.close();
+      LogStructuredStorageManagerFactory.deleteData(l2DataPath);
+      return new RestartablePersistor(new LogStructuredStorageManagerFactory(l2DataPath));
     }
-
-    if (persistent) throw new UnsupportedOperationException("Restartability is not supported in open source servers.");
     return new Persistor(HeapStorageManagerFactory.INSTANCE);
   }
 
@@ -17,6 +17,8 @@ import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.l1.api.InvalidateObjectManager;
 import com.tc.objectserver.tx.ServerTransactionManager;
 import com.tc.objectserver.tx.TxnsInSystemCompletionListener;
+import com.tc.stats.counter.Counter;
+import com.tc.stats.counter.CounterImpl;
 import com.tc.util.ObjectIDSet;
 import com.tc.util.concurrent.TCConcurrentStore;
 import com.tc.util.concurrent.TCConcurrentStore.TCConcurrentStoreCallback;
@@ -25,10 +27,15 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This class naturally batches invalidation to the clients by internally using a MultiMap
+ * This class naturally batches invalidation to the clients by internally using a MultiMap. With a coalescing window
+ * the message to a client is held back that long after its first pending invalidation, so that invalidation storms
+ * merge into fewer, bigger messages, whose ids compress better too. The counters of received and sent ids show how much
+ * merging happened, the server passes sampled ones that show in the DSO MBean.
  */
 public class InvalidateObjectManagerImpl implements InvalidateObjectManager, PostInit {
   private static final TCLogger logger = TCLogging.getLogger(InvalidateObjectManagerImpl.class);
@@ -52,22 +59,67 @@ public class InvalidateObjectManagerImpl implements InvalidateObjectManager, Pos
   private Sink                                             validateSink;
 
   private final ServerTransactionManager                   transactionManager;
+  private final long                                       coalesceWindowMillis;
+  private final Timer                                      coalesceTimer;
+
+  private final Counter                                    invalidationsReceived;
+  private final Counter                                    invalidationsSent;
+  private final Counter                                    messagesSent;
 
   public InvalidateObjectManagerImpl(ServerTransactionManager transactionManager) {
+    this(transactionManager, 0);
+  }
+
+  /**
+   * @param coalesceWindowMillis time invalidations for a client are held back, to merge with later ones, 0 to send
+   *        them as soon as the invalidate stage gets to them
+   */
+  public InvalidateObjectManagerImpl(ServerTransactionManager transactionManager, long coalesceWindowMillis) {
+    this(transactionManager, coalesceWindowMillis, new CounterImpl(), new CounterImpl(), new CounterImpl());
+  }
+
+  /**
+   * @param invalidationsReceived counts the invalidated ids received, before merging
+   * @param invalidationsSent counts the invalidated ids handed out to be sent to the clients, after merging
+   * @param messagesSent counts the invalidations handed out to be sent to the clients
+   */
+  public InvalidateObjectManagerImpl(ServerTransactionManager transactionManager, long coalesceWindowMillis,
+                                     Counter invalidationsReceived, Counter invalidationsSent, Counter messagesSent) {
     this.transactionManager = transactionManager;
+    this.coalesceWindowMillis = coalesceWindowMillis;
+    this.coalesceTimer = coalesceWindowMillis > 0 ? new Timer("Invalidation Coalescing Timer", true) : null;
+    this.invalidationsReceived = invalidationsReceived;
+    this.invalidationsSent = invalidationsSent;
+    this.messagesSent = messagesSent;
   }
 
   @Override
-  public void invalidateObjectFor(ClientID clientID, Invalidations invalidations) {
+  public void invalidateObjectFor(final ClientID clientID, Invalidations invalidations) {
+    invalidationsReceived.increment(invalidations.size());
     Boolean bool = (Boolean) invalidateMap.executeUnderWriteLock(clientID, invalidations, addCallbackForInvalidations);
     if (bool.booleanValue()) {
-      invalidateSink.add(new InvalidateObjectsForClientContext(clientID));
+      if (coalesceTimer == null) {
+        invalidateSink.add(new InvalidateObjectsForClientContext(clientID));
+      } else {
+        // later invalidations for this client merge into the pending ones until the timer goes off
+        coalesceTimer.schedule(new TimerTask() {
+          @Override
+          public void run() {
+            invalidateSink.add(new InvalidateObjectsForClientContext(clientID));
+          }
+        }, coalesceWindowMillis);
+      }
     }
   }
 
   @Override
   public Invalidations getObjectsIDsToInvalidate(ClientID clientID) {
-    return invalidateMap.remove(clientID);
+    Invalidations invalidations = invalidateMap.remove(clientID);
+    if (invalidations != null) {
+      invalidationsSent.increment(invalidations.size());
+      messagesSent.increment();
+    }
+    return invalidations;
   }
 
   @Override
@@ -75,6 +75,14 @@ public interface LockManager {
    */
   void recallCommit(LockID lid, ClientID cid, Collection<ClientServerExchangeLockContext> serverLockContexts);
 
+  /**
+   * Called by the stage thread with a batch of requests. Requests for the same lock are applied in order under a single
+   * check out of that lock, requests for different locks may be applied in any order.
+   * 
+   * @param requests - requests as they were received
+   */
+  void process(Collection<LockRequest> requests);
+
   /**
    * Called by the stage thread to notify threads waiting on this lock.
    * 
@@ -23,7 +23,10 @@ import com.tc.util.Assert;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -143,6 +146,104 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
     }
   }
 
+  @Override
+  public void process(Collection<LockRequest> requests) {
+    if (!isStarted()) {
+      // one at a time, so that requests get queued up like any other
+      for (LockRequest request : requests) {
+        dispatch(request);
+      }
+      return;
+    }
+
+    Map<LockID, List<LockRequest>> requestsByLock = new LinkedHashMap<LockID, List<LockRequest>>();
+    for (LockRequest request : requests) {
+      List<LockRequest> forLock = requestsByLock.get(request.getLockID());
+      if (forLock == null) {
+        forLock = new ArrayList<LockRequest>(2);
+        requestsByLock.put(request.getLockID(), forLock);
+      }
+      forLock.add(request);
+    }
+
+    for (Entry<LockID, List<LockRequest>> e : requestsByLock.entrySet()) {
+      LockID lid = e.getKey();
+      ServerLock lock = lockStore.checkOut(lid);
+      try {
+        for (LockRequest request : e.getValue()) {
+          if (lockStore.isRemoved(lock)) {
+            // emptied by the previous request, carry on with a fresh one
+            lockStore.checkIn(lock);
+            lock = lockStore.checkOut(lid);
+          }
+          if (!isClientAlive(request.getClientID())) {
+            continue;
+          }
+          apply(lock, request);
+        }
+      } finally {
+        lockStore.checkIn(lock);
+      }
+    }
+  }
+
+  private void apply(ServerLock lock, LockRequest request) {
+    ClientID cid = request.getClientID();
+    ThreadID tid = request.getThreadID();
+    switch (request.getType()) {
+      case LOCK:
+        lock.lock(cid, tid, request.getLevel(), lockHelper);
+        break;
+      case TRY_LOCK:
+        lock.tryLock(cid, tid, request.getLevel(), request.getTimeout(), lockHelper);
+        break;
+      case UNLOCK:
+        lock.unlock(cid, tid, lockHelper);
+        break;
+      case WAIT:
+        lock.wait(cid, tid, request.getTimeout(), lockHelper);
+        break;
+      case QUERY:
+        lock.queryLock(cid, tid, lockHelper);
+        break;
+      case INTERRUPT_WAIT:
+        lock.interrupt(cid, tid, lockHelper);
+        break;
+      case RECALL_COMMIT:
+        lock.recallCommit(cid, request.getContexts(), lockHelper);
+        break;
+    }
+  }
+
+  private void dispatch(LockRequest request) {
+    LockID lid = request.getLockID();
+    ClientID cid = request.getClientID();
+    ThreadID tid = request.getThreadID();
+    switch (request.getType()) {
+      case LOCK:
+        lock(lid, cid, tid, request.getLevel());
+        break;
+      case TRY_LOCK:
+        tryLock(lid, cid, tid, request.getLevel(), request.getTimeout());
+        break;
+      case UNLOCK:
+        unlock(lid, cid, tid);
+        break;
+      case WAIT:
+        wait(lid, cid, tid, request.getTimeout());
+        break;
+      case QUERY:
+        queryLock(lid, cid, tid);
+        break;
+      case INTERRUPT_WAIT:
+        interrupt(lid, cid, tid);
+        break;
+      case RECALL_COMMIT:
+        recallCommit(lid, cid, request.getContexts());
+        break;
+    }
+  }
+
   @Override
   public NotifiedWaiters notify(LockID lid, ClientID cid, ThreadID tid, NotifyAction action,
                                 NotifiedWaiters addNotifiedWaitersTo) {
@@ -233,6 +334,16 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
     return beansList.toArray(new LockMBean[beansList.size()]);
   }
 
+  @Override
+  public int getPendingLockTimeoutCount() {
+    return lockHelper.getLockTimer().getScheduledCount();
+  }
+
+  @Override
+  public long getLockTimeoutExpiryLag() {
+    return lockHelper.getLockTimer().getExpiryLag();
+  }
+
   @Override
   public void start() {
     statusLock.writeLock().lock();
@@ -0,0 +1,84 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.locks;
+
+import com.tc.net.ClientID;
+import com.tc.object.locks.ClientServerExchangeLockContext;
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.ServerLockLevel;
+import com.tc.object.locks.ThreadID;
+
+import java.util.Collection;
+
+/**
+ * One client request against a lock, as handed to {@link LockManager#process(Collection)} in a batch.
+ */
+public class LockRequest {
+
+  public enum Type {
+    LOCK, TRY_LOCK, UNLOCK, WAIT, QUERY, INTERRUPT_WAIT, RECALL_COMMIT
+  }
+
+  private final Type                                        type;
+  private final LockID                                      lockID;
+  private final ClientID                                    clientID;
+  private final ThreadID                                    threadID;
+  private final ServerLockLevel                             level;
+  private final long                                        timeout;
+  private final Collection<ClientServerExchangeLockContext> contexts;
+
+  public LockRequest(Type type, LockID lockID, ClientID clientID, ThreadID threadID, ServerLockLevel level,
+                     long timeout) {
+    this(type, lockID, clientID, threadID, level, timeout, null);
+  }
+
+  public LockRequest(LockID lockID, ClientID clientID, Collection<ClientServerExchangeLockContext> contexts) {
+    this(Type.RECALL_COMMIT, lockID, clientID, ThreadID.NULL_ID, null, -1, contexts);
+  }
+
+  private LockRequest(Type type, LockID lockID, ClientID clientID, ThreadID threadID, ServerLockLevel level,
+                      long timeout, Collection<ClientServerExchangeLockContext> contexts) {
+    this.type = type;
+    this.lockID = lockID;
+    this.clientID = clientID;
+    this.threadID = threadID;
+    this.level = level;
+    this.timeout = timeout;
+    this.contexts = contexts;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public LockID getLockID() {
+    return lockID;
+  }
+
+  public ClientID getClientID() {
+    return clientID;
+  }
+
+  public ThreadID getThreadID() {
+    return threadID;
+  }
+
+  public ServerLockLevel getLevel() {
+    return level;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public Collection<ClientServerExchangeLockContext> getContexts() {
+    return contexts;
+  }
+
+  @Override
+  public String toString() {
+    return "LockRequest [ " + type + ", " + lockID + ", " + clientID + ", " + threadID + ", " + level + ", " + timeout
+           + " ]";
+  }
+}
@@ -6,106 +6,119 @@ package com.tc.objectserver.locks;
 import com.tc.object.locks.LockID;
 import com.tc.util.Assert;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * LockStore is used for storing all the locks present in the system. Access to any lock can be obtained by checking out
- * a lock and then by checking it in. Locks will be distributed into segments and the location of the lock will be
- * decided on the basis of the a hash function
+ * a lock and then by checking it in. Checking out a lock only excludes other threads from that one lock, the map itself
+ * is a {@link ConcurrentHashMap} whose concurrency is sized from the number of cores and whose table grows with the
+ * number of locks.
+ * <p>
+ * A lock that is removed while checked out stays visible until it is checked in, so a thread waiting for it never runs
+ * ahead of the thread that emptied it. Threads that were waiting then see it gone and check out a fresh lock.
  * <p>
  * Apart from this getNextLock (for scanning all the locks) has been provided which takes care of the checking out/in of
  * lock.
  */
 public class LockStore {
-  private static final int                  DEFAULT_SEGMENTS = 32;
-  private final HashMap<LockID, ServerLock> segments[];
-  private final ReentrantLock[]             guards;
-  private final int                         segmentShift;
-  private final int                         segmentMask;
-  private final LockFactory                 lockFactory;
+  private static final int                           MIN_CONCURRENCY = 16;
+
+  private final ConcurrentHashMap<LockID, LockEntry> locks;
+  private final LockFactory                          lockFactory;
+  private final ThreadLocal<ArrayList<LockEntry>>    checkedOut      = new ThreadLocal<ArrayList<LockEntry>>() {
+                                                                       @Override
+                                                                       protected ArrayList<LockEntry> initialValue() {
+                                                                         return new ArrayList<LockEntry>(2);
+                                                                       }
+                                                                     };
 
   public LockStore(LockFactory factory) {
-    this(DEFAULT_SEGMENTS, factory);
+    this(Math.max(MIN_CONCURRENCY, Runtime.getRuntime().availableProcessors() * 4), factory);
   }
 
-  public LockStore(int numberOfSegments, LockFactory factory) {
-    if (numberOfSegments <= 0) throw new IllegalArgumentException();
+  /**
+   * @param concurrency the number of threads expected to check out locks at the same time
+   */
+  public LockStore(int concurrency, LockFactory factory) {
+    if (concurrency <= 0) throw new IllegalArgumentException();
 
     this.lockFactory = factory;
-    // Find power-of-two sizes best matching arguments
-    int sshift = 0;
-    int ssize = 1;
-    while (ssize < numberOfSegments) {
-      ++sshift;
-      ssize <<= 1;
-    }
-    segmentShift = 32 - sshift;
-    segmentMask = ssize - 1;
-    numberOfSegments = ssize;
-
-    segments = new HashMap[numberOfSegments];
-    guards = new ReentrantLock[numberOfSegments];
-
-    for (int i = 0; i < segments.length; i++) {
-      segments[i] = new HashMap();
-      guards[i] = new ReentrantLock();
-    }
+    this.locks = new ConcurrentHashMap<LockID, LockEntry>(concurrency * 16, 0.75f, concurrency);
   }
 
   public ServerLock checkOut(LockID lockID) {
-    int index = indexFor(lockID);
-    guards[index].lock();
-    ServerLock lock = segments[index].get(lockID);
-    if (lock == null) {
-      lock = lockFactory.createLock(lockID);
-      segments[index].put(lockID, lock);
+    while (true) {
+      LockEntry entry = locks.get(lockID);
+      if (entry == null) {
+        entry = new LockEntry(lockFactory.createLock(lockID));
+        entry.lock();
+        LockEntry racer = locks.putIfAbsent(lockID, entry);
+        if (racer == null) { return pushCheckedOut(entry); }
+        entry.unlock();
+        entry = racer;
+      }
+
+      boolean heldBefore = entry.isHeldByCurrentThread();
+      entry.lock();
+      if (!entry.removed) { return pushCheckedOut(entry); }
+
+      if (heldBefore) {
+        // removed by this very thread while still checked out, hand out a fresh lock under the same id
+        LockEntry fresh = new LockEntry(lockFactory.createLock(lockID));
+        fresh.lock();
+        entry.unlock();
+        if (locks.replace(lockID, entry, fresh)) { return pushCheckedOut(fresh); }
+        fresh.unlock();
+      } else {
+        entry.unlock();
+      }
     }
-    return lock;
   }
 
   // Assumption that the lock is already held i.e. checked out
   public ServerLock remove(LockID lockID) {
-    int index = indexFor(lockID);
-    Assert.assertTrue(guards[index].isHeldByCurrentThread());
-    ServerLock lock = segments[index].remove(lockID);
-    return lock;
-  }
-
-  public void checkIn(ServerLock lock) {
-    LockID lockID = lock.getLockID();
-    int index = indexFor(lockID);
-    if (!guards[index].isHeldByCurrentThread()) { throw new AssertionError("Server Lock " + lock
-                                                                           + " was not checked out by the same thread"); }
-    guards[index].unlock();
-  }
-
-  private final int indexFor(Object o) {
-    int hash = hash(o);
-    return ((hash >>> segmentShift) & segmentMask);
+    LockEntry entry = findCheckedOut(lockID);
+    Assert.assertNotNull(entry);
+    entry.removed = true;
+    return entry.serverLock;
   }
 
   /**
-   * Currently from CHM
+   * @return true if the lock, checked out by this thread, has been removed since
    */
-  private static int hash(Object x) {
-    int h = x.hashCode();
-    h += ~(h << 9);
-    h ^= (h >>> 14);
-    h += (h << 4);
-    h ^= (h >>> 10);
-    return h;
+  boolean isRemoved(ServerLock lock) {
+    ArrayList<LockEntry> held = checkedOut.get();
+    for (int i = held.size() - 1; i >= 0; i--) {
+      LockEntry entry = held.get(i);
+      if (entry.serverLock == lock) { return entry.removed; }
+    }
+    throw new AssertionError("Server Lock " + lock + " was not checked out by the same thread");
+  }
+
+  public void checkIn(ServerLock lock) {
+    ArrayList<LockEntry> held = checkedOut.get();
+    for (int i = held.size() - 1; i >= 0; i--) {
+      LockEntry entry = held.get(i);
+      if (entry.serverLock == lock) {
+        held.remove(i);
+        release(entry);
+        return;
+      }
+    }
+    throw new AssertionError("Server Lock " + lock + " was not checked out by the same thread");
   }
 
   public void clear() {
-    for (int i = 0; i < guards.length; i++) {
-      guards[i].lock();
+    for (LockEntry entry : locks.values()) {
+      entry.lock();
       try {
-        segments[i].clear();
+        entry.removed = true;
+        locks.remove(entry.serverLock.getLockID(), entry);
       } finally {
-        guards[i].unlock();
+        entry.unlock();
       }
     }
   }
@@ -114,37 +127,77 @@ public class LockStore {
     return new LockIterator();
   }
 
+  private ServerLock pushCheckedOut(LockEntry entry) {
+    checkedOut.get().add(entry);
+    return entry.serverLock;
+  }
+
+  private LockEntry findCheckedOut(LockID lockID) {
+    ArrayList<LockEntry> held = checkedOut.get();
+    for (int i = held.size() - 1; i >= 0; i--) {
+      LockEntry entry = held.get(i);
+      if (entry.serverLock.getLockID().equals(lockID)) { return entry; }
+    }
+    return null;
+  }
+
+  private void release(LockEntry entry) {
+    if (entry.removed && entry.getHoldCount() == 1) {
+      locks.remove(entry.serverLock.getLockID(), entry);
+    }
+    entry.unlock();
+  }
+
+  /**
+   * The lock itself guards the {@link ServerLock}, the flag is only read and written with it held.
+   */
+  private static final class LockEntry extends ReentrantLock {
+    private final ServerLock serverLock;
+    private boolean          removed;
+
+    LockEntry(ServerLock serverLock) {
+      this.serverLock = serverLock;
+    }
+  }
+
   public class LockIterator {
-    private Iterator<Entry<LockID, ServerLock>> currentIter;
-    private int                                 currentIndex = -1;
-    private ServerLock                          oldLock;
+    private final Iterator<LockEntry> currentIter = locks.values().iterator();
+    private ServerLock                oldLock;
 
     /**
      * This method basically fetches the next lock by checking it out and checks back in the oldLock (that was given
      * last by this method). This method is a replacement for iterator keeping in the check out/in logic. NOTE: If you
-     * do not complete the iteration then please check back in the lock. Otherwise it might result in a segment locked
+     * do not complete the iteration then please check back in the lock. Otherwise it might result in a lock held
      * forever.
      */
     public ServerLock getNextLock(ServerLock lock) {
       validateOldLock(lock);
-      while (currentIter == null || !currentIter.hasNext()) {
-        HashMap<LockID, ServerLock> nextSegment = fetchNextSegment();
-        if (nextSegment == null) { return null; }
-        currentIter = nextSegment.entrySet().iterator();
+      if (oldLock != null) {
+        LockStore.this.checkIn(oldLock);
+        oldLock = null;
       }
-      Assert.assertNotNull(currentIter);
-      oldLock = currentIter.next().getValue();
-      return oldLock;
+      while (currentIter.hasNext()) {
+        LockEntry entry = currentIter.next();
+        entry.lock();
+        if (entry.removed) {
+          entry.unlock();
+          continue;
+        }
+        oldLock = pushCheckedOut(entry);
+        return oldLock;
+      }
+      return null;
     }
 
     public void remove() {
-      Assert.assertNotNull(currentIter);
-      currentIter.remove();
+      Assert.assertNotNull(oldLock);
+      LockStore.this.remove(oldLock.getLockID());
     }
 
     public void checkIn(ServerLock lock) {
       Assert.assertEquals(oldLock, lock);
       LockStore.this.checkIn(lock);
+      oldLock = null;
     }
 
     private void validateOldLock(ServerLock lock) {
@@ -155,16 +208,5 @@ public class LockStore {
       }
 
     }
-
-    private HashMap<LockID, ServerLock> fetchNextSegment() {
-      if (currentIndex >= 0 && currentIndex < segments.length) {
-        guards[currentIndex].unlock();
-      }
-      currentIndex++;
-      if (currentIndex >= segments.length) { return null; }
-
-      guards[currentIndex].lock();
-      return segments[currentIndex];
-    }
   }
-}
\ No newline at end of file
+}
@@ -9,67 +9,225 @@ import com.tc.net.ClientID;
 import com.tc.object.locks.LockID;
 import com.tc.object.locks.ThreadID;
 import com.tc.objectserver.locks.LockHelper;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
-import java.util.Timer;
+import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Timer for try lock and wait timeouts, a hashed timing wheel: timeouts are hashed by their expiry tick into one of a
+ * fixed number of slots, those further away than a turn of the wheel carrying the number of turns left. Scheduling and
+ * canceling are constant time and allocate nothing but the task, and a single thread expires all the timeouts of a tick
+ * in one go.
+ */
 public class LockTimer {
-  private static final TCLogger logger    = TCLogging.getLogger(LockTimer.class);
+  private static final TCLogger logger         = TCLogging.getLogger(LockTimer.class);
 
-  private final Timer           timer     = new Timer("DSO Lock Object.wait() timer", true);
-  private boolean               started   = false;
-  private boolean               shutdown  = false;
-  private LinkedList<TaskImpl>  taskQueue = new LinkedList<TaskImpl>();
+  private final long            tickMillis;
+  private final Slot[]          wheel;
+  private final int             mask;
+  private final Thread          worker;
+  private final long            origin         = now();
+  private boolean               started        = false;
+  private boolean               shutdown       = false;
+  private LinkedList<TaskImpl>  taskQueue      = new LinkedList<TaskImpl>();
+  // next tick to expire, since origin
+  private long                  tick           = 0;
+  private int                   scheduledCount = 0;
+  private volatile long         expiryLag      = 0;
 
   public LockTimer() {
-    super();
+    this(TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.L2_LOCKMANAGER_TIMER_TICK_INMILLS, 10),
+         TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_LOCKMANAGER_TIMER_WHEEL_SIZE, 512));
   }
 
-  public Timer getTimer() {
-    return timer;
+  public LockTimer(long tickMillis, int wheelSize) {
+    if (tickMillis <= 0) { throw new IllegalArgumentException("tick must be positive: " + tickMillis); }
+    if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) { throw new IllegalArgumentException(
+                                                                                                 "wheel size must be a power of two: "
+                                                                                                     + wheelSize); }
+    this.tickMillis = tickMillis;
+    this.wheel = new Slot[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      wheel[i] = new Slot();
+    }
+    this.mask = wheelSize - 1;
+    this.worker = new Thread(new Worker(), "DSO Lock Object.wait() timer");
+    this.worker.setDaemon(true);
   }
 
   public synchronized void start() {
     started = true;
     scheduleQueuedTasks();
     taskQueue = null;
+    worker.start();
   }
 
   private void scheduleQueuedTasks() {
     for (TaskImpl task : taskQueue) {
       long timeDelay = task.getScheduleDelay() - (System.currentTimeMillis() - task.scheduledAt());
       timeDelay = timeDelay < 0 ? 0 : timeDelay;
-      timer.schedule(task, timeDelay);
+      insert(task, timeDelay);
     }
   }
 
   public TimerTask scheduleTimer(TimerCallback callback, long timeInMillis, LockTimerContext callbackObject) {
-    final TaskImpl rv = new TaskImpl(callback, timeInMillis, callbackObject);
+    // same contract as java.util.Timer, callers fall back on an untimed request when the timeout overflows
+    if (timeInMillis < 0) { throw new IllegalArgumentException("Negative delay."); }
+    if (System.currentTimeMillis() + timeInMillis < 0) { throw new IllegalArgumentException("Illegal execution time."); }
 
+    final TaskImpl rv = new TaskImpl(callback, timeInMillis, callbackObject);
     synchronized (this) {
+      if (shutdown) { throw new IllegalStateException("Timer already cancelled."); }
       if (!started) {
         taskQueue.addLast(rv);
         return rv;
       }
+      insert(rv, timeInMillis);
     }
-
-    timer.schedule(rv, timeInMillis);
     return rv;
   }
 
   public synchronized void shutdown() {
     if (shutdown) return;
     shutdown = true;
-    this.timer.cancel();
+    this.worker.interrupt();
   }
 
-  private static class TaskImpl extends TimerTask {
+  /**
+   * @return the number of timeouts scheduled and not yet expired or canceled
+   */
+  public synchronized int getScheduledCount() {
+    return scheduledCount + (taskQueue == null ? 0 : taskQueue.size());
+  }
+
+  /**
+   * @return how late, in millis, the most late timeout of the last expired tick fired after its expiry time
+   */
+  public long getExpiryLag() {
+    return expiryLag;
+  }
+
+  private void insert(TaskImpl task, long delay) {
+    task.expiry = now() + delay;
+    // round up so that a timeout never fires early
+    long expiryTick = (task.expiry - origin + tickMillis - 1) / tickMillis;
+    long ticks = Math.max(expiryTick, tick);
+    task.remainingRounds = (ticks - tick) / wheel.length;
+    wheel[(int) (ticks & mask)].add(task);
+    scheduledCount++;
+  }
+
+  private synchronized boolean remove(TaskImpl task) {
+    if (task.slot == null) { return false; }
+    task.slot.remove(task);
+    scheduledCount--;
+    return true;
+  }
+
+  private synchronized List<TaskImpl> expireTick() {
+    List<TaskImpl> expired = new ArrayList<TaskImpl>();
+    Slot slot = wheel[(int) (tick & mask)];
+    for (TaskImpl task = slot.head; task != null;) {
+      TaskImpl next = task.next;
+      if (task.remainingRounds <= 0) {
+        slot.remove(task);
+        scheduledCount--;
+        expired.add(task);
+      } else {
+        task.remainingRounds--;
+      }
+      task = next;
+    }
+    tick++;
+    return expired;
+  }
+
+  private synchronized boolean isShutdown() {
+    return shutdown;
+  }
+
+  private static long now() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  private class Worker implements Runnable {
+    @Override
+    public void run() {
+      long current = 0;
+      while (!isShutdown()) {
+        // a tick is expired once it is entirely in the past
+        long waitTime = origin + (current + 1) * tickMillis - now();
+        if (waitTime > 0) {
+          try {
+            Thread.sleep(waitTime);
+          } catch (InterruptedException e) {
+            continue;
+          }
+        }
+        List<TaskImpl> expired = expireTick();
+        current++;
+        if (expired.isEmpty()) {
+          continue;
+        }
+        long lag = 0;
+        long firedAt = now();
+        for (TaskImpl task : expired) {
+          lag = Math.max(lag, firedAt - task.expiry);
+          task.run();
+        }
+        expiryLag = lag;
+      }
+    }
+  }
+
+  /**
+   * Intrusive doubly linked list of the tasks hashed to a slot, so that a task can unlink itself on cancel.
+   */
+  private static class Slot {
+    private TaskImpl head;
+
+    void add(TaskImpl task) {
+      task.slot = this;
+      task.prev = null;
+      task.next = head;
+      if (head != null) {
+        head.prev = task;
+      }
+      head = task;
+    }
+
+    void remove(TaskImpl task) {
+      if (task.prev != null) {
+        task.prev.next = task.next;
+      } else {
+        head = task.next;
+      }
+      if (task.next != null) {
+        task.next.prev = task.prev;
+      }
+      task.slot = null;
+      task.prev = null;
+      task.next = null;
+    }
+  }
+
+  private class TaskImpl extends TimerTask {
 
     private final TimerCallback    callback;
     private final LockTimerContext callbackObject;
     private final long             scheduleDelayInMillis;
     private final long             scheduledAt;
+    // wheel state, guarded by the LockTimer
+    private long                   expiry;
+    private long                   remainingRounds;
+    private Slot                   slot;
+    private TaskImpl               prev;
+    private TaskImpl               next;
 
     TaskImpl(TimerCallback callback, long timeInMillis, LockTimerContext callbackObject) {
       this.callback = callback;
@@ -97,7 +255,10 @@ public class LockTimer {
 
     @Override
     public boolean cancel() {
-      return super.cancel();
+      synchronized (LockTimer.this) {
+        if (taskQueue != null && taskQueue.remove(this)) { return true; }
+      }
+      return remove(this);
     }
   }
 
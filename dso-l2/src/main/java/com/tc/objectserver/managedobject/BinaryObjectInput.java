@@ -0,0 +1,201 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.managedobject;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.persistence.LiteralSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads what a {@link BinaryObjectOutput} wrote, directly off the backing array.
+ */
+final class BinaryObjectInput implements ObjectInput {
+  private final byte[] buffer;
+  private final int limit;
+  private int position;
+
+  BinaryObjectInput(byte[] buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  private void require(int n) throws EOFException {
+    if (limit - position < n) { throw new EOFException(); }
+  }
+
+  @Override
+  public int read() {
+    return position < limit ? buffer[position++] & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] b) {
+    return read(b, 0, b.length);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) { return 0; }
+    int n = Math.min(len, limit - position);
+    if (n <= 0) { return -1; }
+    System.arraycopy(buffer, position, b, off, n);
+    position += n;
+    return n;
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    require(len);
+    System.arraycopy(buffer, position, b, off, len);
+    position += len;
+  }
+
+  @Override
+  public long skip(long n) {
+    int skipped = (int) Math.max(0, Math.min(n, limit - position));
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int skipBytes(int n) {
+    return (int) skip(n);
+  }
+
+  @Override
+  public int available() {
+    return limit - position;
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    require(1);
+    return buffer[position++];
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    return readByte() & 0xFF;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    return (short) readUnsignedShort();
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    require(2);
+    return ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return (char) readUnsignedShort();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    require(4);
+    return ((buffer[position++] & 0xFF) << 24) | ((buffer[position++] & 0xFF) << 16)
+           | ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  /**
+   * Same as {@link DataInputStream#readLine()}: one char per byte, up to a {@code \n}, {@code \r} or
+   * {@code \r\n}, and null at the end of the input.
+   */
+  @Override
+  public String readLine() {
+    if (position >= limit) { return null; }
+    StringBuilder line = new StringBuilder();
+    while (position < limit) {
+      char c = (char) (buffer[position++] & 0xFF);
+      if (c == '\n') { break; }
+      if (c == '\r') {
+        if (position < limit && buffer[position] == '\n') {
+          position++;
+        }
+        break;
+      }
+      line.append(c);
+    }
+    return line.toString();
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return DataInputStream.readUTF(this);
+  }
+
+  @Override
+  public Object readObject() throws ClassNotFoundException, IOException {
+    byte tag = readByte();
+    switch (tag) {
+      case BinaryObjectOutput.NULL_TAG:
+        return null;
+      case BinaryObjectOutput.OBJECT_ID_TAG:
+        return new ObjectID(readLong());
+      case BinaryObjectOutput.LITERAL_TAG:
+        int literalLength = readInt();
+        require(literalLength);
+        try {
+          return LiteralSerializer.INSTANCE.recover(ByteBuffer.wrap(buffer, position, literalLength));
+        } finally {
+          position += literalLength;
+        }
+      case BinaryObjectOutput.SERIALIZED_TAG:
+        int length = readInt();
+        require(length);
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buffer, position, length));
+        try {
+          return ois.readObject();
+        } finally {
+          position += length;
+          ois.close();
+        }
+      default:
+        throw new StreamCorruptedException("Unknown object tag " + tag);
+    }
+  }
+
+  @Override
+  public void close() {
+    //
+  }
+}
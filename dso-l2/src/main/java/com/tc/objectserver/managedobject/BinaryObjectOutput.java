@@ -0,0 +1,222 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.managedobject;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.persistence.LiteralSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link ObjectOutput} writing straight into a growable byte array without any of the stream header, block data
+ * framing or handle tables of {@link ObjectOutputStream}. Primitives use the {@link java.io.DataOutput} encoding so a
+ * {@link BinaryObjectInput} can read them back; {@link #writeObject(Object)} tags nulls and ObjectIDs, writes the
+ * literals {@link LiteralSerializer} knows (strings, boxed primitives, enums...) in its encoding, and only falls back to
+ * java serialization for everything else. List and stripe states write their elements one by one, so the fallback,
+ * which pays a stream header per object, stays off their common path.
+ * <p>
+ * Instances are not thread safe and are meant to be reset and reused by a single thread.
+ */
+final class BinaryObjectOutput implements ObjectOutput {
+  static final byte NULL_TAG       = 0;
+  static final byte OBJECT_ID_TAG  = 1;
+  static final byte SERIALIZED_TAG = 2;
+  static final byte LITERAL_TAG    = 3;
+
+  private static final int INITIAL_SIZE = 1024;
+
+  private byte[] buffer;
+  private int position;
+
+  BinaryObjectOutput() {
+    this(INITIAL_SIZE);
+  }
+
+  BinaryObjectOutput(int initialSize) {
+    this.buffer = new byte[initialSize];
+  }
+
+  void reset() {
+    position = 0;
+  }
+
+  int size() {
+    return position;
+  }
+
+  int capacity() {
+    return buffer.length;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, position);
+  }
+
+  private void ensureCapacity(int extra) {
+    int required = position + extra;
+    if (required > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+    }
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    buffer[position++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(b, off, buffer, position, len);
+    position += len;
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    ensureCapacity(2);
+    buffer[position++] = (byte) (v >>> 8);
+    buffer[position++] = (byte) v;
+  }
+
+  @Override
+  public void writeChar(int v) {
+    writeShort(v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    ensureCapacity(4);
+    buffer[position++] = (byte) (v >>> 24);
+    buffer[position++] = (byte) (v >>> 16);
+    buffer[position++] = (byte) (v >>> 8);
+    buffer[position++] = (byte) v;
+  }
+
+  @Override
+  public void writeLong(long v) {
+    writeInt((int) (v >>> 32));
+    writeInt((int) v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    int len = s.length();
+    ensureCapacity(len);
+    for (int i = 0; i < len; i++) {
+      buffer[position++] = (byte) s.charAt(i);
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    int len = s.length();
+    ensureCapacity(len * 2);
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      buffer[position++] = (byte) (c >>> 8);
+      buffer[position++] = (byte) c;
+    }
+  }
+
+  /**
+   * Modified UTF-8 exactly as {@link java.io.DataOutputStream#writeUTF(String)} writes it.
+   */
+  @Override
+  public void writeUTF(String s) throws IOException {
+    int len = s.length();
+    int utfLength = 0;
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007F) {
+        utfLength++;
+      } else if (c > 0x07FF) {
+        utfLength += 3;
+      } else {
+        utfLength += 2;
+      }
+    }
+    if (utfLength > 65535) { throw new UTFDataFormatException("encoded string too long: " + utfLength + " bytes"); }
+
+    writeShort(utfLength);
+    ensureCapacity(utfLength);
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007F) {
+        buffer[position++] = (byte) c;
+      } else if (c > 0x07FF) {
+        buffer[position++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        buffer[position++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  @Override
+  public void writeObject(Object obj) throws IOException {
+    if (obj == null) {
+      write(NULL_TAG);
+    } else if (obj.getClass() == ObjectID.class) {
+      write(OBJECT_ID_TAG);
+      writeLong(((ObjectID) obj).toLong());
+    } else if (LiteralSerializer.INSTANCE.canSerialize(obj)) {
+      write(LITERAL_TAG);
+      ByteBuffer literal = LiteralSerializer.INSTANCE.transform(obj);
+      writeInt(literal.remaining());
+      write(literal.array(), literal.arrayOffset() + literal.position(), literal.remaining());
+    } else {
+      write(SERIALIZED_TAG);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(bytes);
+      oos.writeObject(obj);
+      oos.close();
+      writeInt(bytes.size());
+      write(bytes.toByteArray());
+    }
+  }
+
+  @Override
+  public void flush() {
+    //
+  }
+
+  @Override
+  public void close() {
+    //
+  }
+}
@@ -27,7 +27,6 @@ import com.tc.text.PrettyPrintable;
 import com.tc.text.PrettyPrinter;
 import com.tc.text.PrettyPrinterImpl;
 import com.tc.util.Assert;
-import com.tc.util.Conversion;
 import com.tc.util.TCCollections;
 
 import java.io.IOException;
@@ -35,6 +34,7 @@ import java.io.ObjectOutput;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Responsible for maintaining the state of a shared object. Used for broadcasting new instances of an object as well as
@@ -52,14 +52,17 @@ public class ManagedObjectImpl implements ManagedObject, ManagedObjectReference,
 
   private final static byte                INITIAL_FLAG_VALUE       = IS_DIRTY_OFFSET | IS_NEW_OFFSET;
 
+  private static final AtomicIntegerFieldUpdater<ManagedObjectImpl> FLAGS_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(ManagedObjectImpl.class, "flags");
+
   private static final long                UNINITIALIZED_VERSION    = -1;
 
   private final ObjectID                   id;
   private long                             version                  = UNINITIALIZED_VERSION;
   private transient ManagedObjectState     state;
 
-  // TODO::Split this flag into two so that concurrency is maintained
-  private byte                             flags                    = INITIAL_FLAG_VALUE;
+  // Updated with CAS only, so checking out a reference never takes the object's monitor
+  private volatile int                     flags                    = INITIAL_FLAG_VALUE;
 
   private final ManagedObjectPersistor persistor;
 
@@ -94,19 +97,22 @@ public class ManagedObjectImpl implements ManagedObject, ManagedObjectReference,
     setFlag(IS_DIRTY_OFFSET, isDirty);
   }
 
-  private synchronized boolean compareAndSetFlag(final int offset, final boolean expected, final boolean value) {
-    if (getFlag(offset) == expected) {
-      this.flags = Conversion.setFlag(this.flags, offset, value);
-      return true;
+  private boolean compareAndSetFlag(final int offset, final boolean expected, final boolean value) {
+    while (true) {
+      final int current = this.flags;
+      if (((current & offset) == offset) != expected) { return false; }
+      if (FLAGS_UPDATER.compareAndSet(this, current, value ? current | offset : current & ~offset)) { return true; }
     }
-    return false;
   }
 
-  private synchronized void setFlag(final int offset, final boolean value) {
-    this.flags = Conversion.setFlag(this.flags, offset, value);
+  private void setFlag(final int offset, final boolean value) {
+    while (true) {
+      final int current = this.flags;
+      if (FLAGS_UPDATER.compareAndSet(this, current, value ? current | offset : current & ~offset)) { return; }
+    }
   }
 
-  private synchronized boolean getFlag(final int offset) {
+  private boolean getFlag(final int offset) {
     return (this.flags & offset) == offset;
   }
 
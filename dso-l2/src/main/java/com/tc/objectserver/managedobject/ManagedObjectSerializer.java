@@ -10,11 +10,21 @@ import com.tc.objectserver.core.api.ManagedObject;
 import com.tc.objectserver.core.api.ManagedObjectState;
 import com.tc.objectserver.persistence.ManagedObjectPersistor;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 
 public class ManagedObjectSerializer implements Serializer {
+  // Never the first byte of an ObjectOutputStream (0xACED), which is how records written before the binary format
+  // existed are told apart
+  private static final byte BINARY_FORMAT = 0x01;
+  // Reusable buffers that grew past this are dropped instead of being pinned to the thread forever
+  private static final int MAX_CACHED_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<BinaryObjectOutput> OUTPUT = new ThreadLocal<BinaryObjectOutput>();
+
   private final ManagedObjectStateSerializer serializer;
   private final ManagedObjectPersistor persistor;
 
@@ -45,6 +55,47 @@ public class ManagedObjectSerializer implements Serializer {
     return rv;
   }
 
+  /**
+   * Encodes the given object in the compact binary format, using a buffer reused across calls on the same thread.
+   *
+   * @return an exactly sized copy of the encoded bytes
+   */
+  public byte[] serialize(final ManagedObject mo) throws IOException {
+    BinaryObjectOutput out = OUTPUT.get();
+    if (out == null) {
+      out = new BinaryObjectOutput();
+    } else {
+      // reentrant calls get their own buffer
+      OUTPUT.set(null);
+    }
+    try {
+      out.reset();
+      out.writeByte(BINARY_FORMAT);
+      serializeTo(mo, out);
+      return out.toByteArray();
+    } finally {
+      if (out.capacity() <= MAX_CACHED_SIZE) {
+        OUTPUT.set(out);
+      }
+    }
+  }
+
+  /**
+   * Decodes bytes produced by {@link #serialize(ManagedObject)}, or by {@link #serializeTo(Object, ObjectOutput)} over
+   * an {@link java.io.ObjectOutputStream} as older versions did.
+   */
+  public ManagedObject deserialize(final byte[] data) throws IOException {
+    if (data.length > 0 && data[0] == BINARY_FORMAT) {
+      return (ManagedObject) deserializeFrom(new BinaryObjectInput(data, 1, data.length - 1));
+    }
+    ObjectInput in = new ObjectInputStream(new ByteArrayInputStream(data));
+    try {
+      return (ManagedObject) deserializeFrom(in);
+    } finally {
+      in.close();
+    }
+  }
+
   @Override
   public byte getSerializerID() {
     return MANAGED_OBJECT;
@@ -367,6 +367,10 @@ public class LiteralSerializer extends Serializer<Object> {
     return classToType.get(o.getClass()).serialize(o);
   }
 
+  public boolean canSerialize(final Object o) {
+    return o != null && classToType.containsKey(o.getClass());
+  }
+
   @Override
   public boolean equals(final Object left, final ByteBuffer right) {
     return left.equals(recover(right));
@@ -0,0 +1,138 @@
+package com.tc.objectserver.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * A single entry in the segment log.
+ * <p>
+ * On disk a record is laid out as <code>[int bodyLength][int crc][body]</code> where the body is
+ * <code>[byte type][long lsn][byte metadata][int aliasLength][alias][int keyLength][key][int valueLength][value]</code>.
+ * A zero body length or a crc mismatch marks the end of the valid data in a segment.
+ * <p>
+ * A {@link Type#COMMIT} record ends every group of records appended together, so records of a segment that are not
+ * followed by a commit record were torn by a crash and are ignored by recovery.
+ *
+ * @author tim
+ */
+class LogRecord {
+  static final int HEADER_SIZE = 2 * LiteralSerializer.INT_SIZE;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final byte[] EMPTY = new byte[0];
+
+  enum Type {
+    PUT, REMOVE, CLEAR, CREATE, DESTROY, COMMIT;
+
+    boolean isKeyed() {
+      return this == PUT || this == REMOVE;
+    }
+
+    boolean isBarrier() {
+      return this == CLEAR || this == DESTROY;
+    }
+  }
+
+  private final Type type;
+  private final long lsn;
+  private final byte metadata;
+  private final String alias;
+  private final byte[] key;
+  private final ByteBuffer value;
+
+  LogRecord(Type type, long lsn, byte metadata, String alias, byte[] key, ByteBuffer value) {
+    this.type = type;
+    this.lsn = lsn;
+    this.metadata = metadata;
+    this.alias = alias;
+    this.key = key;
+    this.value = value;
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  long getLsn() {
+    return lsn;
+  }
+
+  byte getMetadata() {
+    return metadata;
+  }
+
+  String getAlias() {
+    return alias;
+  }
+
+  byte[] getKey() {
+    return key;
+  }
+
+  /**
+   * @return a read-only view of the encoded value, only valid while the owning segment is open.
+   */
+  ByteBuffer getValue() {
+    return value.duplicate();
+  }
+
+  static ByteBuffer encode(Type type, long lsn, byte metadata, String alias, byte[] key, byte[] value) {
+    byte[] aliasBytes = alias.getBytes(UTF8);
+    key = key == null ? EMPTY : key;
+    value = value == null ? EMPTY : value;
+    int bodyLength = 1 + LiteralSerializer.LONG_SIZE + 1 + 3 * LiteralSerializer.INT_SIZE + aliasBytes.length
+                     + key.length + value.length;
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+    buffer.putInt(bodyLength).putInt(0);
+    buffer.put((byte) type.ordinal()).putLong(lsn).put(metadata);
+    buffer.putInt(aliasBytes.length).put(aliasBytes);
+    buffer.putInt(key.length).put(key);
+    buffer.putInt(value.length).put(value);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), HEADER_SIZE, bodyLength);
+    buffer.putInt(LiteralSerializer.INT_SIZE, (int) crc.getValue());
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Reads the record at the given offset.
+   *
+   * @return the record, or null if there is no intact record at this offset
+   */
+  static LogRecord read(ByteBuffer segment, int offset, int limit) {
+    if (offset + HEADER_SIZE > limit) { return null; }
+    int bodyLength = segment.getInt(offset);
+    if (bodyLength <= 0 || offset + HEADER_SIZE + bodyLength > limit) { return null; }
+    ByteBuffer body = segment.duplicate();
+    body.limit(offset + HEADER_SIZE + bodyLength).position(offset + HEADER_SIZE);
+    body = body.slice();
+
+    CRC32 crc = new CRC32();
+    byte[] scratch = new byte[bodyLength];
+    body.duplicate().get(scratch);
+    crc.update(scratch, 0, bodyLength);
+    if ((int) crc.getValue() != segment.getInt(offset + LiteralSerializer.INT_SIZE)) { return null; }
+
+    Type type = Type.values()[body.get()];
+    long lsn = body.getLong();
+    byte metadata = body.get();
+    byte[] aliasBytes = new byte[body.getInt()];
+    body.get(aliasBytes);
+    byte[] key = new byte[body.getInt()];
+    body.get(key);
+    int valueLength = body.getInt();
+    ByteBuffer value = body.slice();
+    value.limit(valueLength);
+    return new LogRecord(type, lsn, metadata, new String(aliasBytes, UTF8), key, value.asReadOnlyBuffer());
+  }
+
+  static ByteBuffer encodeCommit(long lsn) {
+    return encode(Type.COMMIT, lsn, (byte) 0, "", null, null);
+  }
+
+  static int sizeAt(ByteBuffer segment, int offset) {
+    return HEADER_SIZE + segment.getInt(offset);
+  }
+}
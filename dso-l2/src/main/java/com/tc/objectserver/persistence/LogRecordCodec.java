@@ -0,0 +1,133 @@
+package com.tc.objectserver.persistence;
+
+import com.tc.objectserver.gtx.GlobalTransactionDescriptor;
+import com.tc.objectserver.persistence.TransactionPersistorImpl.GlobalTransactionDescriptorSerializer;
+import com.tc.util.AbstractIdentifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Turns the keys and values held in the L2 {@link org.terracotta.corestorage.KeyValueStorage}s into tagged byte arrays
+ * for the segment log. Encodings are deterministic so that encoded keys can be used directly in the log index.
+ *
+ * @author tim
+ */
+class LogRecordCodec {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final byte BYTES = 0;
+  private static final byte LITERAL = 1;
+  private static final byte IDENTIFIER = 2;
+  private static final byte TRANSACTION_DESCRIPTOR = 3;
+  private static final byte SERIALIZED = 4;
+
+  private static final ConcurrentMap<String, Constructor<?>> identifierConstructors = new ConcurrentHashMap<String, Constructor<?>>();
+
+  private LogRecordCodec() {
+    // static helpers only
+  }
+
+  static byte[] encode(Object o) {
+    if (o instanceof byte[]) {
+      byte[] data = (byte[]) o;
+      byte[] encoded = new byte[data.length + 1];
+      encoded[0] = BYTES;
+      System.arraycopy(data, 0, encoded, 1, data.length);
+      return encoded;
+    } else if (LiteralSerializer.INSTANCE.canSerialize(o)) {
+      return tagged(LITERAL, LiteralSerializer.INSTANCE.transform(o));
+    } else if (o instanceof AbstractIdentifier) {
+      byte[] className = o.getClass().getName().getBytes(UTF8);
+      ByteBuffer buffer = ByteBuffer.allocate(1 + LiteralSerializer.INT_SIZE + className.length + LiteralSerializer.LONG_SIZE);
+      buffer.put(IDENTIFIER).putInt(className.length).put(className).putLong(((AbstractIdentifier) o).toLong());
+      return buffer.array();
+    } else if (o instanceof GlobalTransactionDescriptor) {
+      return tagged(TRANSACTION_DESCRIPTOR,
+                    GlobalTransactionDescriptorSerializer.INSTANCE.transform((GlobalTransactionDescriptor) o));
+    } else if (o instanceof Serializable) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      bytes.write(SERIALIZED);
+      try {
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        try {
+          oos.writeObject(o);
+        } finally {
+          oos.close();
+        }
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      return bytes.toByteArray();
+    } else {
+      throw new IllegalArgumentException("Unknown type " + o + " class " + (o == null ? null : o.getClass()));
+    }
+  }
+
+  static Object decode(ByteBuffer buffer) {
+    byte tag = buffer.get();
+    switch (tag) {
+      case BYTES: {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+      }
+      case LITERAL:
+        return LiteralSerializer.INSTANCE.recover(buffer);
+      case IDENTIFIER: {
+        byte[] className = new byte[buffer.getInt()];
+        buffer.get(className);
+        return newIdentifier(new String(className, UTF8), buffer.getLong());
+      }
+      case TRANSACTION_DESCRIPTOR:
+        return GlobalTransactionDescriptorSerializer.INSTANCE.recover(buffer);
+      case SERIALIZED: {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        try {
+          ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+          try {
+            return ois.readObject();
+          } finally {
+            ois.close();
+          }
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        } catch (ClassNotFoundException e) {
+          throw new AssertionError(e);
+        }
+      }
+      default:
+        throw new AssertionError("Unknown log record encoding " + tag);
+    }
+  }
+
+  private static byte[] tagged(byte tag, ByteBuffer data) {
+    byte[] encoded = new byte[data.remaining() + 1];
+    encoded[0] = tag;
+    data.get(encoded, 1, encoded.length - 1);
+    return encoded;
+  }
+
+  private static Object newIdentifier(String className, long id) {
+    Constructor<?> constructor = identifierConstructors.get(className);
+    try {
+      if (constructor == null) {
+        constructor = Class.forName(className).getConstructor(Long.TYPE);
+        identifierConstructors.put(className, constructor);
+      }
+      return constructor.newInstance(id);
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.tc.objectserver.persistence;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One memory-mapped file of the segment log. Records are only ever appended to the head segment; older segments are
+ * sealed and are either read back during recovery or rewritten by the compactor.
+ *
+ * @author tim
+ */
+class LogSegment {
+  private static final TCLogger logger = TCLogging.getLogger(LogSegment.class);
+
+  private static final String SUFFIX = ".seg";
+
+  private final int id;
+  private final File file;
+  private final RandomAccessFile raf;
+  private final MappedByteBuffer buffer;
+  private final AtomicLong liveBytes = new AtomicLong();
+
+  // guarded by the owning SegmentLog's append lock
+  private int writePosition;
+
+  private LogSegment(int id, File file, int size) throws IOException {
+    this.id = id;
+    this.file = file;
+    this.raf = new RandomAccessFile(file, "rw");
+    this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+  }
+
+  static LogSegment create(File directory, int id, int size) throws IOException {
+    File file = new File(directory, fileName(id));
+    if (file.exists()) {
+      throw new IOException("Log segment " + file + " already exists");
+    }
+    return new LogSegment(id, file, size);
+  }
+
+  static LogSegment open(File file) throws IOException {
+    String name = file.getName();
+    int id = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+    LogSegment segment = new LogSegment(id, file, (int) file.length());
+    int offset = 0;
+    while (segment.read(offset) != null) {
+      offset += segment.recordSize(offset);
+    }
+    segment.writePosition = offset;
+    return segment;
+  }
+
+  static boolean isSegmentFile(File file) {
+    return file.isFile() && file.getName().endsWith(SUFFIX);
+  }
+
+  private static String fileName(int id) {
+    return String.format("%010d%s", id, SUFFIX);
+  }
+
+  int getId() {
+    return id;
+  }
+
+  int getWritePosition() {
+    return writePosition;
+  }
+
+  boolean hasRoomFor(int length) {
+    return buffer.capacity() - writePosition >= length;
+  }
+
+  /**
+   * @return the offset the record was written at
+   */
+  int append(ByteBuffer record) {
+    int offset = writePosition;
+    ByteBuffer target = buffer.duplicate();
+    target.position(offset);
+    target.put(record);
+    writePosition = target.position();
+    return offset;
+  }
+
+  LogRecord read(int offset) {
+    return LogRecord.read(buffer, offset, buffer.capacity());
+  }
+
+  int recordSize(int offset) {
+    return LogRecord.sizeAt(buffer, offset);
+  }
+
+  ByteBuffer copyOf(int offset, int length) {
+    ByteBuffer copy = buffer.duplicate();
+    copy.limit(offset + length).position(offset);
+    return copy.slice();
+  }
+
+  long getLiveBytes() {
+    return liveBytes.get();
+  }
+
+  void addLive(int length) {
+    liveBytes.addAndGet(length);
+  }
+
+  void removeLive(int length) {
+    liveBytes.addAndGet(-length);
+  }
+
+  void force() {
+    buffer.force();
+  }
+
+  void close() {
+    try {
+      raf.close();
+    } catch (IOException e) {
+      logger.warn("Failed to close log segment " + file, e);
+    }
+  }
+
+  void delete() {
+    close();
+    if (!file.delete()) {
+      logger.warn("Failed to delete compacted log segment " + file);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LogSegment[" + file.getName() + ", written=" + writePosition + ", live=" + liveBytes + "]";
+  }
+}
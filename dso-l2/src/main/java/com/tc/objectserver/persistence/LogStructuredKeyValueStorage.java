@@ -0,0 +1,134 @@
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-through {@link KeyValueStorage} that serves reads from an in-memory store and records every mutation in the
+ * {@link SegmentLog}.
+ *
+ * @author tim
+ */
+class LogStructuredKeyValueStorage<K, V> implements KeyValueStorage<K, V> {
+  private static final int STRIPES = 64;
+
+  private final String alias;
+  private final KeyValueStorage<K, V> delegate;
+  private final SegmentLog log;
+
+  private final ReadWriteLock clearLock = new ReentrantReadWriteLock();
+  private final Object[] stripes = new Object[STRIPES];
+
+  LogStructuredKeyValueStorage(String alias, KeyValueStorage<K, V> delegate, SegmentLog log) {
+    this.alias = alias;
+    this.delegate = delegate;
+    this.log = log;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Object();
+    }
+  }
+
+  private Object stripeFor(byte[] key) {
+    return stripes[(Arrays.hashCode(key) & Integer.MAX_VALUE) % STRIPES];
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return delegate.keySet();
+  }
+
+  @Override
+  public Collection<V> values() {
+    return delegate.values();
+  }
+
+  @Override
+  public long size() {
+    return delegate.size();
+  }
+
+  @Override
+  public void put(final K key, final V value) {
+    put(key, value, (byte) 0);
+  }
+
+  @Override
+  public void put(final K key, final V value, final byte metadata) {
+    byte[] k = LogRecordCodec.encode(key);
+    byte[] v = LogRecordCodec.encode(value);
+    clearLock.readLock().lock();
+    try {
+      synchronized (stripeFor(k)) {
+        log.put(alias, k, v, metadata);
+        delegate.put(key, value, metadata);
+      }
+    } finally {
+      clearLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public V get(final K key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  public boolean remove(final K key) {
+    byte[] k = LogRecordCodec.encode(key);
+    clearLock.readLock().lock();
+    try {
+      synchronized (stripeFor(k)) {
+        if (delegate.remove(key)) {
+          log.remove(alias, k);
+          return true;
+        }
+        return false;
+      }
+    } finally {
+      clearLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeAll(final Collection<K> keys) {
+    for (K key : keys) {
+      remove(key);
+    }
+  }
+
+  @Override
+  public boolean containsKey(final K key) {
+    return delegate.containsKey(key);
+  }
+
+  @Override
+  public void clear() {
+    clearLock.writeLock().lock();
+    try {
+      log.clear(alias);
+      delegate.clear();
+    } finally {
+      clearLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Loads the logged contents of this store into the in-memory delegate. Mutation listeners on the delegate see the
+   * replayed entries exactly as they would see fresh puts.
+   */
+  void recover() {
+    log.replay(alias, new SegmentLog.LogVisitor() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public void visit(ByteBuffer key, ByteBuffer value, byte metadata) {
+        delegate.put((K) LogRecordCodec.decode(key), (V) LogRecordCodec.decode(value), metadata);
+      }
+    });
+  }
+}
@@ -0,0 +1,219 @@
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorage;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+import org.terracotta.corestorage.monitoring.MonitoredResource;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.util.concurrent.StoppableThread;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Restartable {@link StorageManager}. The live data is held by an in-memory delegate while every mutation is appended
+ * to a {@link SegmentLog}, which is replayed into the delegate when a store is first looked up after a restart.
+ *
+ * @author tim
+ */
+class LogStructuredStorageManager implements StorageManager {
+  private static final TCLogger logger = TCLogging.getLogger(LogStructuredStorageManager.class);
+
+  // Not a valid ObjectID string, so it can not clash with the dynamically created stores
+  private static final String PROPERTIES_ALIAS = "%properties";
+
+  private final StorageManager delegate;
+  private final SegmentLog log;
+  private final LogStructuredStorageManagerFactory factory;
+  private final boolean syncOnCommit;
+  private final Compactor compactor;
+  private final Map<String, String> properties;
+  private final ConcurrentMap<String, LogStructuredKeyValueStorage<?, ?>> storages = new ConcurrentHashMap<String, LogStructuredKeyValueStorage<?, ?>>();
+
+  LogStructuredStorageManager(StorageManager delegate, SegmentLog log, LogStructuredStorageManagerFactory factory,
+                              boolean syncOnCommit, long compactionInterval, double compactionMinLiveRatio) {
+    this.delegate = delegate;
+    this.log = log;
+    this.factory = factory;
+    this.syncOnCommit = syncOnCommit;
+    this.compactor = new Compactor(compactionInterval, compactionMinLiveRatio);
+    this.properties = new LoggedProperties(delegate.getProperties());
+  }
+
+  @Override
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
+  @Override
+  public <K, V> KeyValueStorage<K, V> getKeyValueStorage(final String alias, final Class<K> keyClass, final Class<V> valueClass) {
+    LogStructuredKeyValueStorage<K, V> storage = (LogStructuredKeyValueStorage<K, V>) storages.get(alias);
+    if (storage != null) {
+      return storage;
+    }
+    synchronized (this) {
+      storage = (LogStructuredKeyValueStorage<K, V>) storages.get(alias);
+      if (storage != null) {
+        return storage;
+      }
+      KeyValueStorage<K, V> heap = delegate.getKeyValueStorage(alias, keyClass, valueClass);
+      if (heap == null) {
+        if (!log.isCreated(alias)) {
+          return null;
+        }
+        // a dynamically created store that only exists in the log so far
+        heap = delegate.createKeyValueStorage(alias, (KeyValueStorageConfig<K, V>) factory.getMapConfig());
+      }
+      storage = new LogStructuredKeyValueStorage<K, V>(alias, heap, log);
+      storage.recover();
+      storages.put(alias, storage);
+      return storage;
+    }
+  }
+
+  @Override
+  public synchronized void destroyKeyValueStorage(final String alias) {
+    delegate.destroyKeyValueStorage(alias);
+    log.destroy(alias);
+    storages.remove(alias);
+  }
+
+  @Override
+  public synchronized <K, V> KeyValueStorage<K, V> createKeyValueStorage(final String alias, final KeyValueStorageConfig<K, V> config) {
+    KeyValueStorage<K, V> heap = delegate.createKeyValueStorage(alias, config);
+    log.create(alias);
+    LogStructuredKeyValueStorage<K, V> storage = new LogStructuredKeyValueStorage<K, V>(alias, heap, log);
+    storages.put(alias, storage);
+    return storage;
+  }
+
+  @Override
+  public void begin() {
+    delegate.begin();
+    log.begin();
+  }
+
+  /**
+   * The mutations made since {@link #begin()} are appended to the log together with a commit record, recovery only
+   * replays transactions whose commit record made it to disk.
+   */
+  @Override
+  public void commit() {
+    delegate.commit();
+    log.commit();
+    if (syncOnCommit) {
+      log.sync();
+    }
+  }
+
+  @Override
+  public Future<?> start() {
+    Future<?> started = delegate.start();
+    try {
+      started.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AssertionError(e);
+    } catch (ExecutionException e) {
+      throw new AssertionError(e);
+    }
+    compactor.start();
+    return started;
+  }
+
+  @Override
+  public void close() {
+    compactor.requestStop();
+    compactor.interrupt();
+    compactor.stopAndWait(10000);
+    log.close();
+    delegate.close();
+  }
+
+  @Override
+  public Collection<MonitoredResource> getMonitoredResources() {
+    return delegate.getMonitoredResources();
+  }
+
+  private class LoggedProperties extends AbstractMap<String, String> {
+    private final Map<String, String> map;
+
+    LoggedProperties(final Map<String, String> map) {
+      this.map = map;
+      log.replay(PROPERTIES_ALIAS, new SegmentLog.LogVisitor() {
+        @Override
+        public void visit(ByteBuffer key, ByteBuffer value, byte metadata) {
+          map.put((String) LogRecordCodec.decode(key), (String) LogRecordCodec.decode(value));
+        }
+      });
+    }
+
+    @Override
+    public synchronized String get(final Object key) {
+      return map.get(key);
+    }
+
+    @Override
+    public synchronized String put(final String key, final String value) {
+      log.put(PROPERTIES_ALIAS, LogRecordCodec.encode(key), LogRecordCodec.encode(value), (byte) 0);
+      log.sync();
+      return map.put(key, value);
+    }
+
+    @Override
+    public synchronized String remove(final Object key) {
+      if (map.containsKey(key)) {
+        log.remove(PROPERTIES_ALIAS, LogRecordCodec.encode(key));
+        log.sync();
+      }
+      return map.remove(key);
+    }
+
+    @Override
+    public synchronized Set<Entry<String, String>> entrySet() {
+      return Collections.unmodifiableMap(map).entrySet();
+    }
+  }
+
+  private class Compactor extends StoppableThread {
+    private final long interval;
+    private final double minLiveRatio;
+
+    Compactor(long interval, double minLiveRatio) {
+      super("L2 Segment Log Compactor");
+      this.interval = interval;
+      this.minLiveRatio = minLiveRatio;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (!isStopRequested()) {
+        try {
+          Thread.sleep(interval);
+        } catch (InterruptedException e) {
+          return;
+        }
+        try {
+          int reclaimed = log.compact(minLiveRatio);
+          if (reclaimed > 0 && logger.isDebugEnabled()) {
+            logger.debug("Reclaimed " + reclaimed + " segments, " + log.getSegmentCount() + " segments holding "
+                         + log.getLiveBytes() + " live of " + log.getWrittenBytes() + " written bytes");
+          }
+        } catch (Throwable t) {
+          logger.error("Segment log compaction failed", t);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.ImmutableKeyValueStorageConfig;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+import org.terracotta.corestorage.TransformerLookup;
+import org.terracotta.corestorage.heap.HeapStorageManager;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Restartable storage for open source servers. Stores are kept on heap and made durable through an append-only,
+ * memory-mapped segment log under the L2 data path, so a restart only needs to replay the live records instead of a
+ * full resync from the active.
+ *
+ * @author tim
+ */
+public class LogStructuredStorageManagerFactory implements StorageManagerFactory {
+  private static final TCLogger logger = TCLogging.getLogger(LogStructuredStorageManagerFactory.class);
+
+  private static final String LOG_DIRECTORY = "segment-log";
+
+  private final File directory;
+  private volatile KeyValueStorageConfig<?, ?> mapConfig;
+
+  public LogStructuredStorageManagerFactory(final File l2DataPath) {
+    this.directory = new File(l2DataPath, LOG_DIRECTORY);
+  }
+
+  @Override
+  public StorageManager createStorageManager(final Map<String, KeyValueStorageConfig<?, ?>> configMap,
+                                             final TransformerLookup transformerLookup) throws IOException {
+    TCProperties props = TCPropertiesImpl.getProperties();
+    int segmentSize = props.getInt(TCPropertiesConsts.L2_LOGSTORE_SEGMENT_SIZE_MB, 64) * 1024 * 1024;
+    logger.info("Using segment log L2 storage at " + directory.getAbsolutePath());
+    return new LogStructuredStorageManager(new HeapStorageManager(configMap), new SegmentLog(directory, segmentSize),
+                                           this, props.getBoolean(TCPropertiesConsts.L2_LOGSTORE_SYNC_ON_COMMIT, true),
+                                           props.getLong(TCPropertiesConsts.L2_LOGSTORE_COMPACTOR_INTERVAL, 5000L),
+                                           props.getFloat(TCPropertiesConsts.L2_LOGSTORE_COMPACTOR_MIN_LIVE_RATIO));
+  }
+
+  /**
+   * Deletes the segment log kept under the given data path. Must only be called while no storage manager is using it.
+   */
+  public static void deleteData(final File l2DataPath) throws IOException {
+    File[] files = new File(l2DataPath, LOG_DIRECTORY).listFiles();
+    if (files == null) { return; }
+    for (File file : files) {
+      if (LogSegment.isSegmentFile(file) && !file.delete()) {
+        throw new IOException("Unable to delete log segment " + file.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * @return the config dynamically created maps were built with, used to recreate them from the log after a restart
+   */
+  KeyValueStorageConfig<?, ?> getMapConfig() {
+    if (mapConfig == null) {
+      throw new IllegalStateException("No map config has been registered");
+    }
+    return mapConfig;
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapObjectDBConfig(final KeyValueStorageConfig<K, V> baseConfig, Type nt) {
+    return baseConfig;
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapMapConfig(final KeyValueStorageConfig<K, V> baseConfig) {
+    mapConfig = baseConfig;
+    return baseConfig;
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapObjectDBConfig(final ImmutableKeyValueStorageConfig.Builder<K, V> builder, Type nt) {
+    return builder.build();
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapMapConfig(final ImmutableKeyValueStorageConfig.Builder<K, V> builder) {
+    return wrapMapConfig(builder.build());
+  }
+}
@@ -11,6 +11,7 @@ import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.BitSetObjectIDSet;
 import com.tc.util.ExpandingBitSetObjectIDSet;
 import com.tc.util.ObjectIDSet;
+import com.tc.util.RoaringObjectIDSet;
 import com.tc.util.TCCollections;
 
 import java.util.Set;
@@ -20,7 +21,7 @@ import java.util.Set;
  */
 public class ObjectIDSetMaintainer implements KeyValueStorageMutationListener<Long, byte[]> {
   private static enum ObjectIDSetType {
-    BITSET_BASED_SET, EXPANDING_BITSET_BASED_SET
+    BITSET_BASED_SET, EXPANDING_BITSET_BASED_SET, ROARING_BASED_SET
   }
 
   private static final TCLogger logger = TCLogging.getLogger(ObjectIDSetMaintainer.class);
@@ -55,11 +56,14 @@ public class ObjectIDSetMaintainer implements KeyValueStorageMutationListener<Lo
         return new BitSetObjectIDSet(clone);
       case EXPANDING_BITSET_BASED_SET:
         return new ExpandingBitSetObjectIDSet(clone);
+      case ROARING_BASED_SET:
+        return new RoaringObjectIDSet(clone);
     }
     throw new UnsupportedOperationException("Unsupported ObjectIDSet type " + getObjectIDSetType());
   }
 
   public synchronized ObjectIDSet evictableObjectIDSetSnapshot() {
+    if (getObjectIDSetType() == ObjectIDSetType.ROARING_BASED_SET) { return new RoaringObjectIDSet(evictableObjectIDSet); }
     return new BitSetObjectIDSet(evictableObjectIDSet);
   }
 
@@ -12,13 +12,7 @@ import com.tc.objectserver.managedobject.ManagedObjectSerializer;
 import com.tc.objectserver.managedobject.ManagedObjectStateSerializer;
 import com.tc.objectserver.managedobject.SerializedClusterObjectState;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -70,21 +64,16 @@ class ObjectMap implements KeyValueStorage<ObjectID, ManagedObject> {
 
   @Override
   public void put(final ObjectID key, final ManagedObject value, byte metadata) {
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    byte[] data;
     try {
-      ObjectOutput oo = new ObjectOutputStream(byteArrayOutputStream);
-      try {
-        serializer.serializeTo(value, oo);
-      } finally {
-        oo.close();
-      }
+      data = serializer.serialize(value);
     } catch (IOException e) {
       throw new AssertionError(e);
     }
     if ( value.getManagedObjectState() instanceof SerializedClusterObjectState  ) {
-        leafObjects.put(key.toLong(), byteArrayOutputStream.toByteArray(), metadata);
+        leafObjects.put(key.toLong(), data, metadata);
     } else {
-        nodeObjects.put(key.toLong(), byteArrayOutputStream.toByteArray(), metadata);
+        nodeObjects.put(key.toLong(), data, metadata);
   }
   }
 
@@ -101,8 +90,7 @@ class ObjectMap implements KeyValueStorage<ObjectID, ManagedObject> {
       return null;
     }
     try {
-      ObjectInput oi = new ObjectInputStream(new ByteArrayInputStream(data));
-      return (ManagedObject)serializer.deserializeFrom(oi);
+      return serializer.deserialize(data);
     } catch (ObjectNotFoundException e) {
       // Clean up the backing map if the object winds up missing (see MNK-5031)
       if ( leaf ) {
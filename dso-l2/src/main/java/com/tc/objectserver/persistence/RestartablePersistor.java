@@ -0,0 +1,28 @@
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+
+import java.util.Map;
+
+/**
+ * {@link Persistor} for restartable servers, which also has to keep the committed transaction descriptors across a
+ * restart so that resent client transactions are not applied twice.
+ *
+ * @author tim
+ */
+public class RestartablePersistor extends Persistor {
+  public RestartablePersistor(StorageManagerFactory storageManagerFactory) {
+    super(storageManagerFactory);
+  }
+
+  @Override
+  protected void addAdditionalConfigs(Map<String, KeyValueStorageConfig<?, ?>> configMap, StorageManagerFactory storageManagerFactory) {
+    TransactionPersistorImpl.addConfigsTo(configMap);
+  }
+
+  @Override
+  protected TransactionPersistor createTransactionPersistor(StorageManager storageManagerParam) {
+    return new TransactionPersistorImpl(storageManagerParam);
+  }
+}
@@ -0,0 +1,571 @@
+package com.tc.objectserver.persistence;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.objectserver.persistence.LogRecord.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of memory-mapped {@link LogSegment}s with an in-memory index of the live record for every key.
+ * <p>
+ * Every record carries a log sequence number, so recovery resolves the live state independently of the order records
+ * appear in on disk. That lets the compactor copy live records forward into the head segment and drop whole sealed
+ * segments once they are mostly garbage, which keeps recovery proportional to the live data set.
+ * <p>
+ * The mutations of a transaction (see {@link #begin()}) get their sequence numbers when they happen but are only
+ * appended at {@link #commit()}, together and followed by a commit record. Mutations outside of a transaction are
+ * appended right away, each with its own commit record. Recovery ignores the records of a segment that are not
+ * followed by a commit record, so a crash never exposes part of a transaction.
+ *
+ * @author tim
+ */
+class SegmentLog {
+  private static final TCLogger logger = TCLogging.getLogger(SegmentLog.class);
+
+  private final File directory;
+  private final int segmentSize;
+
+  private final ConcurrentSkipListMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<Integer, LogSegment>();
+  private final ConcurrentMap<String, ConcurrentMap<Key, Location>> keys = new ConcurrentHashMap<String, ConcurrentMap<Key, Location>>();
+  private final ConcurrentMap<String, Location> creates = new ConcurrentHashMap<String, Location>();
+  private final ConcurrentMap<String, Location> barriers = new ConcurrentHashMap<String, Location>();
+
+  private final Object appendLock = new Object();
+  private final Object syncLock = new Object();
+  private final Object compactionLock = new Object();
+  private final ThreadLocal<Transaction> transaction = new ThreadLocal<Transaction>();
+  private final AtomicLong lsn = new AtomicLong();
+  private final int commitLength = LogRecord.encodeCommit(0).remaining();
+
+  // guarded by appendLock
+  private LogSegment head;
+  // whether records were appended to the head after its last commit record
+  private boolean headUncommitted;
+
+  // appends so far, records are not appended in lsn order
+  private volatile long appended;
+  private volatile long synced;
+
+  SegmentLog(File directory, int segmentSize) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create log directory " + directory);
+    }
+    recover();
+  }
+
+  private void recover() throws IOException {
+    File[] files = directory.listFiles();
+    List<File> segmentFiles = new ArrayList<File>();
+    for (File file : files == null ? new File[0] : files) {
+      if (LogSegment.isSegmentFile(file)) {
+        segmentFiles.add(file);
+      }
+    }
+    Collections.sort(segmentFiles, new Comparator<File>() {
+      @Override
+      public int compare(File o1, File o2) {
+        return o1.getName().compareTo(o2.getName());
+      }
+    });
+
+    long maxLsn = 0;
+    long records = 0;
+    long torn = 0;
+    long start = System.currentTimeMillis();
+    for (File file : segmentFiles) {
+      LogSegment segment = LogSegment.open(file);
+      segments.put(segment.getId(), segment);
+      List<LogRecord> uncommitted = new ArrayList<LogRecord>();
+      List<Location> uncommittedLocations = new ArrayList<Location>();
+      int offset = 0;
+      LogRecord record;
+      while ((record = segment.read(offset)) != null) {
+        Location location = new Location(segment, offset, segment.recordSize(offset), record.getLsn(), record.getType());
+        maxLsn = Math.max(maxLsn, record.getLsn());
+        offset += location.length;
+        records++;
+        if (record.getType() == Type.COMMIT) {
+          for (int i = 0; i < uncommitted.size(); i++) {
+            Location committed = uncommittedLocations.get(i);
+            committed.segment.addLive(committed.length);
+            index(uncommitted.get(i).getAlias(), uncommitted.get(i).getKey(), committed);
+          }
+          uncommitted.clear();
+          uncommittedLocations.clear();
+        } else {
+          uncommitted.add(record);
+          uncommittedLocations.add(location);
+        }
+      }
+      torn += uncommitted.size();
+    }
+
+    lsn.set(maxLsn);
+    head = LogSegment.create(directory, segments.isEmpty() ? 1 : segments.lastKey() + 1, segmentSize);
+    segments.put(head.getId(), head);
+    logger.info("Recovered " + records + " log records from " + segmentFiles.size() + " segments in "
+                + (System.currentTimeMillis() - start) + "ms");
+    if (torn > 0) {
+      logger.warn("Ignored " + torn + " log records of transactions that were not committed");
+    }
+  }
+
+  /**
+   * Makes an appended record the live one for its key or store, unless a record with a higher lsn already is. The
+   * record displaced, or this one if it is not live, no longer counts as live.
+   */
+  private void index(String alias, byte[] key, Location location) {
+    Location barrier = barriers.get(alias);
+    if (barrier != null && barrier.lsn > location.lsn) {
+      // Everything before a clear or destroy of this store is dead
+      release(location);
+      return;
+    }
+    switch (location.type) {
+      case PUT:
+      case REMOVE:
+        indexLatest(keysFor(alias), new Key(key), location);
+        break;
+      case CREATE:
+        indexLatest(creates, alias, location);
+        break;
+      case CLEAR:
+      case DESTROY: {
+        if (!indexLatest(barriers, alias, location)) {
+          break;
+        }
+        ConcurrentMap<Key, Location> storeKeys = keys.get(alias);
+        if (storeKeys != null) {
+          for (Map.Entry<Key, Location> e : storeKeys.entrySet()) {
+            if (e.getValue().lsn < location.lsn && storeKeys.remove(e.getKey(), e.getValue())) {
+              release(e.getValue());
+            }
+          }
+        }
+        Location create = creates.get(alias);
+        if (location.type == Type.DESTROY && create != null && create.lsn < location.lsn
+            && creates.remove(alias, create)) {
+          release(create);
+        }
+        break;
+      }
+      default:
+        throw new AssertionError("Unknown record type " + location.type);
+    }
+  }
+
+  /**
+   * @return whether the location is now the live one
+   */
+  private <K> boolean indexLatest(ConcurrentMap<K, Location> map, K key, Location location) {
+    while (true) {
+      Location current = map.get(key);
+      if (current != null && current.lsn > location.lsn) {
+        release(location);
+        return false;
+      }
+      if (current == null ? map.putIfAbsent(key, location) == null : map.replace(key, current, location)) {
+        release(current);
+        return true;
+      }
+    }
+  }
+
+  private ConcurrentMap<Key, Location> keysFor(String alias) {
+    ConcurrentMap<Key, Location> storeKeys = keys.get(alias);
+    if (storeKeys == null) {
+      storeKeys = new ConcurrentHashMap<Key, Location>();
+      ConcurrentMap<Key, Location> racer = keys.putIfAbsent(alias, storeKeys);
+      if (racer != null) {
+        storeKeys = racer;
+      }
+    }
+    return storeKeys;
+  }
+
+  /**
+   * Starts a transaction on the calling thread, its mutations are appended when the outermost transaction commits.
+   */
+  void begin() {
+    Transaction current = transaction.get();
+    if (current == null) {
+      transaction.set(new Transaction());
+    } else {
+      current.depth++;
+    }
+  }
+
+  /**
+   * Appends the mutations of the calling thread's transaction followed by a commit record. They are durable once
+   * {@link #sync()} returns.
+   */
+  void commit() {
+    Transaction current = transaction.get();
+    if (current == null) { throw new IllegalStateException("No transaction in progress"); }
+    if (--current.depth > 0) { return; }
+    transaction.remove();
+    if (!current.records.isEmpty()) {
+      appendCommitted(current.records);
+    }
+  }
+
+  /**
+   * Callers must serialize mutations of the same key, the log only orders the records themselves.
+   */
+  void put(String alias, byte[] key, byte[] value, byte metadata) {
+    log(Type.PUT, metadata, alias, key, value);
+  }
+
+  void remove(String alias, byte[] key) {
+    log(Type.REMOVE, (byte) 0, alias, key, null);
+  }
+
+  void clear(String alias) {
+    log(Type.CLEAR, (byte) 0, alias, null, null);
+  }
+
+  void create(String alias) {
+    log(Type.CREATE, (byte) 0, alias, null, null);
+  }
+
+  void destroy(String alias) {
+    log(Type.DESTROY, (byte) 0, alias, null, null);
+  }
+
+  /**
+   * The lsn is taken now, so it follows the order mutations of the same key are made in even if their transactions
+   * commit in another order.
+   */
+  private void log(Type type, byte metadata, String alias, byte[] key, byte[] value) {
+    long recordLsn = lsn.incrementAndGet();
+    PendingRecord record = new PendingRecord(LogRecord.encode(type, recordLsn, metadata, alias, key, value), recordLsn,
+                                             type, alias, key);
+    Transaction current = transaction.get();
+    if (current != null) {
+      current.records.add(record);
+    } else {
+      appendCommitted(Collections.singletonList(record));
+    }
+  }
+
+  private void appendCommitted(List<PendingRecord> records) {
+    int length = commitLength;
+    for (PendingRecord record : records) {
+      length += record.buffer.remaining();
+    }
+    Location[] locations = new Location[records.size()];
+    synchronized (appendLock) {
+      // a group never spans segments, so its commit record is always in the same segment
+      if (!head.hasRoomFor(length)) {
+        roll(length);
+      }
+      for (int i = 0; i < locations.length; i++) {
+        PendingRecord record = records.get(i);
+        locations[i] = appendRecord(record.buffer, record.lsn, record.type);
+      }
+      appendCommit();
+    }
+    for (int i = 0; i < locations.length; i++) {
+      index(records.get(i).alias, records.get(i).key, locations[i]);
+    }
+  }
+
+  boolean isCreated(String alias) {
+    return creates.containsKey(alias);
+  }
+
+  /**
+   * Replays the live entries of a store to the given visitor.
+   */
+  void replay(String alias, LogVisitor visitor) {
+    Map<Key, Location> storeKeys = keys.get(alias);
+    if (storeKeys == null) { return; }
+    synchronized (compactionLock) {
+      for (Map.Entry<Key, Location> e : storeKeys.entrySet()) {
+        Location location = e.getValue();
+        if (location.type == Type.PUT) {
+          LogRecord record = location.segment.read(location.offset);
+          visitor.visit(ByteBuffer.wrap(e.getKey().data), record.getValue(), record.getMetadata());
+        }
+      }
+    }
+  }
+
+  // must hold appendLock
+  private Location appendRecord(ByteBuffer record, long recordLsn, Type type) {
+    int length = record.remaining();
+    if (!head.hasRoomFor(length + commitLength)) {
+      roll(length + commitLength);
+    }
+    int offset = head.append(record);
+    Location location = new Location(head, offset, length, recordLsn, type);
+    head.addLive(length);
+    headUncommitted = true;
+    appended++;
+    return location;
+  }
+
+  // must hold appendLock, a commit record is not live
+  private void appendCommit() {
+    head.append(LogRecord.encodeCommit(lsn.get()));
+    headUncommitted = false;
+    appended++;
+  }
+
+  // must hold appendLock
+  private void roll(int length) {
+    LogSegment sealed = head;
+    if (headUncommitted) {
+      // compacted copies, every record appended so far is committed
+      appendCommit();
+    }
+    sealed.force();
+    try {
+      head = LogSegment.create(directory, sealed.getId() + 1, Math.max(segmentSize, length));
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    segments.put(head.getId(), head);
+  }
+
+  /**
+   * Group commit: forces everything appended so far to disk. Threads arriving while a force is in progress wait for it
+   * and then return straight away if that force already covered their records.
+   */
+  void sync() {
+    long target = appended;
+    if (synced >= target) { return; }
+    synchronized (syncLock) {
+      if (synced >= target) { return; }
+      long upTo;
+      LogSegment current;
+      synchronized (appendLock) {
+        upTo = appended;
+        current = head;
+      }
+      current.force();
+      synced = upTo;
+    }
+  }
+
+  private void commitAndForceHead() {
+    LogSegment current;
+    synchronized (appendLock) {
+      if (headUncommitted) {
+        appendCommit();
+      }
+      current = head;
+    }
+    current.force();
+  }
+
+  private void release(Location location) {
+    if (location != null) {
+      location.segment.removeLive(location.length);
+    }
+  }
+
+  /**
+   * Rewrites the live records of every sealed segment whose live ratio dropped below the threshold and deletes it.
+   *
+   * @return the number of segments reclaimed
+   */
+  int compact(double minLiveRatio) {
+    List<LogSegment> candidates = new ArrayList<LogSegment>();
+    int headId;
+    synchronized (appendLock) {
+      headId = head.getId();
+    }
+    for (LogSegment segment : segments.headMap(headId).values()) {
+      if (segment.getLiveBytes() < segment.getWritePosition() * minLiveRatio) {
+        candidates.add(segment);
+      }
+    }
+    for (LogSegment segment : candidates) {
+      compact(segment);
+    }
+    return candidates.size();
+  }
+
+  private void compact(LogSegment segment) {
+    synchronized (compactionLock) {
+      long start = System.currentTimeMillis();
+      long copied = 0;
+      boolean oldest = segments.firstKey() == segment.getId();
+      int offset = 0;
+      LogRecord record;
+      while ((record = segment.read(offset)) != null) {
+        int length = segment.recordSize(offset);
+        if (copyIfLive(segment, offset, length, record, oldest)) {
+          copied += length;
+        }
+        offset += length;
+      }
+      commitAndForceHead();
+      segments.remove(segment.getId());
+      segment.delete();
+      logger.info("Compacted " + segment + " copying " + copied + " live bytes in "
+                  + (System.currentTimeMillis() - start) + "ms");
+    }
+  }
+
+  private boolean copyIfLive(LogSegment segment, int offset, int length, LogRecord record, boolean oldest) {
+    String alias = record.getAlias();
+    if (record.getType() == Type.COMMIT) {
+      return false;
+    } else if (record.getType().isKeyed()) {
+      ConcurrentMap<Key, Location> storeKeys = keys.get(alias);
+      if (storeKeys == null) { return false; }
+      Key key = new Key(record.getKey());
+      Location current = storeKeys.get(key);
+      if (current == null || !current.isAt(segment, offset)) { return false; }
+      if (record.getType() == Type.REMOVE && oldest) {
+        // nothing older left for this tombstone to shadow
+        if (storeKeys.remove(key, current)) {
+          release(current);
+        }
+        return false;
+      }
+      Location copy = copy(segment, offset, length, current);
+      if (!storeKeys.replace(key, current, copy) || keys.get(alias) != storeKeys) {
+        // lost a race with a concurrent mutation or clear of this store
+        release(copy);
+      }
+      return true;
+    } else {
+      ConcurrentMap<String, Location> map = record.getType().isBarrier() ? barriers : creates;
+      Location current = map.get(alias);
+      if (current == null || !current.isAt(segment, offset)) { return false; }
+      if (record.getType().isBarrier() && oldest) {
+        if (map.remove(alias, current)) {
+          release(current);
+        }
+        return false;
+      }
+      Location copy = copy(segment, offset, length, current);
+      if (!map.replace(alias, current, copy)) {
+        release(copy);
+      }
+      return true;
+    }
+  }
+
+  private Location copy(LogSegment segment, int offset, int length, Location current) {
+    synchronized (appendLock) {
+      // copies keep their original lsn so recovery still resolves them correctly
+      return appendRecord(segment.copyOf(offset, length), current.lsn, current.type);
+    }
+  }
+
+  void close() {
+    synchronized (compactionLock) {
+      synchronized (appendLock) {
+        head.force();
+        for (LogSegment segment : segments.values()) {
+          segment.close();
+        }
+        segments.clear();
+      }
+    }
+  }
+
+  long getLiveBytes() {
+    long live = 0;
+    for (LogSegment segment : segments.values()) {
+      live += segment.getLiveBytes();
+    }
+    return live;
+  }
+
+  long getWrittenBytes() {
+    long written = 0;
+    for (LogSegment segment : segments.values()) {
+      written += segment.getWritePosition();
+    }
+    return written;
+  }
+
+  int getSegmentCount() {
+    return segments.size();
+  }
+
+  private static class Transaction {
+    private final List<PendingRecord> records = new ArrayList<PendingRecord>();
+    private int depth = 1;
+  }
+
+  private static class PendingRecord {
+    private final ByteBuffer buffer;
+    private final long lsn;
+    private final Type type;
+    private final String alias;
+    private final byte[] key;
+
+    PendingRecord(ByteBuffer buffer, long lsn, Type type, String alias, byte[] key) {
+      this.buffer = buffer;
+      this.lsn = lsn;
+      this.type = type;
+      this.alias = alias;
+      this.key = key;
+    }
+  }
+
+  interface LogVisitor {
+    void visit(ByteBuffer key, ByteBuffer value, byte metadata);
+  }
+
+  private static class Location {
+    private final LogSegment segment;
+    private final int offset;
+    private final int length;
+    private final long lsn;
+    private final Type type;
+
+    Location(LogSegment segment, int offset, int length, long lsn, Type type) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.lsn = lsn;
+      this.type = type;
+    }
+
+    boolean isAt(LogSegment s, int o) {
+      return segment == s && offset == o;
+    }
+  }
+
+  private static class Key {
+    private final byte[] data;
+    private final int hash;
+
+    Key(byte[] data) {
+      this.data = data;
+      this.hash = Arrays.hashCode(data);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && Arrays.equals(data, ((Key) o).data);
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.search;
+
+import com.tc.object.ObjectID;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.StackOperations;
+import com.terracottatech.search.ValueID;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * The entries of one cache and an index over each of their attributes. Every attribute has a hash index for equality
+ * and, for comparable values, a sorted index for ranges, so a query costs about as much as the keys it matches rather
+ * than the size of the cache.
+ * <p>
+ * Not thread safe by itself, callers take {@link #readLock()} to query and {@link #writeLock()} to modify.
+ */
+final class AttributeIndex {
+
+  /**
+   * Orders attribute values, numbers by value whatever their boxed type. Values that cannot be compared with each other
+   * are ordered by class name so the sorted index stays consistent.
+   */
+  static final Comparator<Object>        VALUE_ORDER = new Comparator<Object>() {
+                                                       @Override
+                                                       public int compare(Object o1, Object o2) {
+                                                         return compareValues(o1, o2);
+                                                       }
+                                                     };
+
+  private final Map<String, Entry>       entries     = new HashMap<String, Entry>();
+  private final Map<ObjectID, Set<String>> segments  = new HashMap<ObjectID, Set<String>>();
+  private final Map<String, Attribute>   attributes  = new HashMap<String, Attribute>();
+  private final ReadWriteLock            lock        = new ReentrantReadWriteLock();
+
+  ReadWriteLock lock() {
+    return lock;
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  Entry get(String key) {
+    return entries.get(key);
+  }
+
+  void put(String key, ValueID value, List<NVPair> attributeList, ObjectID segmentOid) {
+    remove(key);
+
+    Map<String, Object> values = new HashMap<String, Object>();
+    if (attributeList != null) {
+      for (NVPair pair : attributeList) {
+        Object attributeValue = pair.getObjectValue();
+        if (attributeValue == null) {
+          continue;
+        }
+        values.put(pair.getName(), attributeValue);
+        attributeFor(pair.getName()).add(attributeValue, key);
+      }
+    }
+    entries.put(key, new Entry(key, value, attributeList, values, segmentOid));
+
+    Set<String> segmentKeys = segments.get(segmentOid);
+    if (segmentKeys == null) {
+      segmentKeys = new HashSet<String>();
+      segments.put(segmentOid, segmentKeys);
+    }
+    segmentKeys.add(key);
+  }
+
+  Entry remove(String key) {
+    Entry entry = entries.remove(key);
+    if (entry == null) { return null; }
+
+    for (Map.Entry<String, Object> e : entry.values.entrySet()) {
+      Attribute attribute = attributes.get(e.getKey());
+      attribute.remove(e.getValue(), key);
+      if (attribute.isEmpty()) {
+        attributes.remove(e.getKey());
+      }
+    }
+    Set<String> segmentKeys = segments.get(entry.segmentOid);
+    if (segmentKeys != null) {
+      segmentKeys.remove(key);
+      if (segmentKeys.isEmpty()) {
+        segments.remove(entry.segmentOid);
+      }
+    }
+    return entry;
+  }
+
+  void clear(ObjectID segmentOid) {
+    Set<String> segmentKeys = segments.get(segmentOid);
+    if (segmentKeys == null) { return; }
+    for (String key : segmentKeys.toArray(new String[segmentKeys.size()])) {
+      remove(key);
+    }
+  }
+
+  /**
+   * Evaluates a query stack to the keys it matches. The stack is read from its tail, each operation followed by its
+   * operands:
+   * <ul>
+   * <li>ALL</li>
+   * <li>TERM, NOT_TERM, GREATER_THAN, GREATER_THAN_EQUAL, LESS_THAN, LESS_THAN_EQUAL and ILIKE, then an attribute
+   * {@link NVPair}</li>
+   * <li>BETWEEN, then the lower and upper {@link NVPair} and whether each bound is inclusive</li>
+   * <li>NOT, then one expression, AND and OR, then two</li>
+   * <li>BEGIN_GROUP, an optional AND or OR and any number of expressions, then END_GROUP</li>
+   * </ul>
+   * Expressions left side by side at the top level all have to match. The returned set must not be modified.
+   */
+  Set<String> search(List queryStack) throws IndexException {
+    LinkedList stack = new LinkedList(queryStack);
+    if (stack.isEmpty()) { return entries.keySet(); }
+
+    Set<String> matches = null;
+    while (!stack.isEmpty()) {
+      Set<String> next = evaluate(stack);
+      matches = matches == null ? next : and(matches, next);
+    }
+    return matches;
+  }
+
+  private Set<String> evaluate(LinkedList stack) throws IndexException {
+    Object next = stack.removeLast();
+    if (!(next instanceof StackOperations)) { throw new IndexException("Unexpected query stack element: " + next); }
+
+    switch ((StackOperations) next) {
+      case ALL:
+        return entries.keySet();
+      case TERM: {
+        NVPair pair = nextPair(stack);
+        return lookup(pair.getName(), pair.getObjectValue());
+      }
+      case NOT_TERM: {
+        NVPair pair = nextPair(stack);
+        return not(lookup(pair.getName(), pair.getObjectValue()));
+      }
+      case GREATER_THAN: {
+        NVPair pair = nextPair(stack);
+        return range(pair.getName(), pair.getObjectValue(), false, null, false);
+      }
+      case GREATER_THAN_EQUAL: {
+        NVPair pair = nextPair(stack);
+        return range(pair.getName(), pair.getObjectValue(), true, null, false);
+      }
+      case LESS_THAN: {
+        NVPair pair = nextPair(stack);
+        return range(pair.getName(), null, false, pair.getObjectValue(), false);
+      }
+      case LESS_THAN_EQUAL: {
+        NVPair pair = nextPair(stack);
+        return range(pair.getName(), null, false, pair.getObjectValue(), true);
+      }
+      case BETWEEN: {
+        NVPair min = nextPair(stack);
+        NVPair max = nextPair(stack);
+        boolean minInclusive = (Boolean) stack.removeLast();
+        boolean maxInclusive = (Boolean) stack.removeLast();
+        return range(min.getName(), min.getObjectValue(), minInclusive, max.getObjectValue(), maxInclusive);
+      }
+      case ILIKE: {
+        NVPair pair = nextPair(stack);
+        return like(pair.getName(), String.valueOf(pair.getObjectValue()));
+      }
+      case NOT:
+        return not(evaluate(stack));
+      case AND:
+        return and(evaluate(stack), evaluate(stack));
+      case OR:
+        return or(evaluate(stack), evaluate(stack));
+      case BEGIN_GROUP:
+        return group(stack);
+      default:
+        throw new IndexException("Unsupported query operation: " + next);
+    }
+  }
+
+  private Set<String> group(LinkedList stack) throws IndexException {
+    boolean or = false;
+    if (stack.getLast() == StackOperations.OR || stack.getLast() == StackOperations.AND) {
+      or = stack.removeLast() == StackOperations.OR;
+    }
+    Set<String> matches = null;
+    while (stack.getLast() != StackOperations.END_GROUP) {
+      Set<String> next = evaluate(stack);
+      if (matches == null) {
+        matches = next;
+      } else {
+        matches = or ? or(matches, next) : and(matches, next);
+      }
+    }
+    stack.removeLast();
+    return matches == null ? Collections.<String> emptySet() : matches;
+  }
+
+  private static NVPair nextPair(LinkedList stack) throws IndexException {
+    Object next = stack.removeLast();
+    if (!(next instanceof NVPair)) { throw new IndexException("Expected an attribute, got: " + next); }
+    return (NVPair) next;
+  }
+
+  private Set<String> lookup(String name, Object value) {
+    Attribute attribute = attributes.get(name);
+    if (attribute == null) { return Collections.emptySet(); }
+    Set<String> keys = attribute.hash.get(value);
+    return keys == null ? Collections.<String> emptySet() : keys;
+  }
+
+  private Set<String> range(String name, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+    Attribute attribute = attributes.get(name);
+    if (attribute == null) { return Collections.emptySet(); }
+
+    NavigableMap<Object, Set<String>> range = attribute.sorted;
+    if (from != null && to != null) {
+      if (compareValues(from, to) > 0) { return Collections.emptySet(); }
+      range = range.subMap(from, fromInclusive, to, toInclusive);
+    } else if (from != null) {
+      range = range.tailMap(from, fromInclusive);
+    } else if (to != null) {
+      range = range.headMap(to, toInclusive);
+    }
+    return union(range.values());
+  }
+
+  private Set<String> like(String name, String glob) {
+    Attribute attribute = attributes.get(name);
+    if (attribute == null) { return Collections.emptySet(); }
+
+    Pattern pattern = globToPattern(glob);
+    Set<String> matches = new HashSet<String>();
+    for (Map.Entry<Object, Set<String>> e : attribute.hash.entrySet()) {
+      if (e.getKey() instanceof String && pattern.matcher((String) e.getKey()).matches()) {
+        matches.addAll(e.getValue());
+      }
+    }
+    return matches;
+  }
+
+  private Set<String> not(Set<String> excluded) {
+    Set<String> matches = new HashSet<String>(entries.keySet());
+    matches.removeAll(excluded);
+    return matches;
+  }
+
+  private static Set<String> and(Set<String> a, Set<String> b) {
+    Set<String> small = a.size() <= b.size() ? a : b;
+    Set<String> large = small == a ? b : a;
+    Set<String> matches = new HashSet<String>();
+    for (String key : small) {
+      if (large.contains(key)) {
+        matches.add(key);
+      }
+    }
+    return matches;
+  }
+
+  private static Set<String> or(Set<String> a, Set<String> b) {
+    Set<String> matches = new HashSet<String>(a);
+    matches.addAll(b);
+    return matches;
+  }
+
+  private static Set<String> union(Collection<Set<String>> sets) {
+    if (sets.isEmpty()) { return Collections.emptySet(); }
+    if (sets.size() == 1) { return sets.iterator().next(); }
+    Set<String> matches = new HashSet<String>();
+    for (Set<String> keys : sets) {
+      matches.addAll(keys);
+    }
+    return matches;
+  }
+
+  static Pattern globToPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '*') {
+        regex.append(".*");
+      } else if (c == '?') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+  }
+
+  static int compareValues(Object o1, Object o2) {
+    if (o1.getClass() == o2.getClass() && o1 instanceof Comparable) { return ((Comparable) o1).compareTo(o2); }
+    if (o1 instanceof Number && o2 instanceof Number) {
+      int c = Double.compare(((Number) o1).doubleValue(), ((Number) o2).doubleValue());
+      // equal values of different types are different hash keys, keep them apart in the sorted index too
+      if (c != 0) { return c; }
+    }
+    return o1.getClass().getName().compareTo(o2.getClass().getName());
+  }
+
+  private Attribute attributeFor(String name) {
+    Attribute attribute = attributes.get(name);
+    if (attribute == null) {
+      attribute = new Attribute();
+      attributes.put(name, attribute);
+    }
+    return attribute;
+  }
+
+  static final class Entry {
+    final String              key;
+    final ValueID             value;
+    final List<NVPair>        attributes;
+    final Map<String, Object> values;
+    final ObjectID            segmentOid;
+
+    Entry(String key, ValueID value, List<NVPair> attributes, Map<String, Object> values, ObjectID segmentOid) {
+      this.key = key;
+      this.value = value;
+      this.attributes = attributes == null ? Collections.<NVPair> emptyList() : attributes;
+      this.values = values;
+      this.segmentOid = segmentOid;
+    }
+  }
+
+  private static final class Attribute {
+    private final Map<Object, Set<String>>     hash   = new HashMap<Object, Set<String>>();
+    private final TreeMap<Object, Set<String>> sorted = new TreeMap<Object, Set<String>>(VALUE_ORDER);
+
+    void add(Object value, String key) {
+      Set<String> keys = hash.get(value);
+      if (keys == null) {
+        keys = new HashSet<String>();
+        hash.put(value, keys);
+        if (value instanceof Comparable) {
+          // shares the key set with the hash index
+          sorted.put(value, keys);
+        }
+      }
+      keys.add(key);
+    }
+
+    void remove(Object value, String key) {
+      Set<String> keys = hash.get(value);
+      if (keys == null) { return; }
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        hash.remove(value);
+        if (value instanceof Comparable) {
+          sorted.remove(value);
+        }
+      }
+    }
+
+    boolean isEmpty() {
+      return hash.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.search;
+
+import com.tc.l2.context.StateChangedEvent;
+
+import java.io.IOException;
+
+/**
+ * There are no index files to ship, every server builds its in memory index from the search events it applies. A
+ * passive synced from the active gets the objects without their search events, so its index is marked incomplete.
+ */
+public class InMemoryIndexHACoordinator extends InMemoryIndexManager implements IndexHACoordinator {
+
+  @Override
+  public void l2StateChanged(StateChangedEvent sce) {
+    //
+  }
+
+  @Override
+  public void doSyncPrepare() {
+    markIncomplete("this server was synced from the active, synced objects are not indexed");
+  }
+
+  @Override
+  public void applyIndexSync(String cacheName, String indexId, String fileName, byte[] fileData, boolean isTCFile,
+                             boolean isLast) {
+    //
+  }
+
+  @Override
+  public void applyTempJournalsAndSwitch() throws IOException {
+    //
+  }
+
+  @Override
+  public int getNumberOfIndexesPerCache() {
+    return 1;
+  }
+
+}
@@ -0,0 +1,500 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.search;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.net.ClientID;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.metadata.MetaDataProcessingContext;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.search.SearchRequestID;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexFile;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.QueryID;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.SortOperations;
+import com.terracottatech.search.SyncSnapshot;
+import com.terracottatech.search.ValueID;
+import com.terracottatech.search.ValueType;
+import com.terracottatech.search.aggregator.AbstractAggregator;
+import com.terracottatech.search.aggregator.Aggregator;
+import com.terracottatech.search.aggregator.AggregatorOperations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An {@link IndexManager} that keeps the search attributes of every cache on the heap, indexed by
+ * {@link AttributeIndex}. Nothing is written to disk or sent to passives and the index can not be rebuilt from the map
+ * states, which do not keep the search attributes : it only holds what this server indexed from the search events it
+ * applied. Once it is known to miss entries (see {@link #markIncomplete}) searches fail instead of returning partial
+ * results.
+ * <p>
+ * Results beyond the first fetch are kept per request for {@link #getSearchResults} until the client releases them, up
+ * to {@link TCPropertiesConsts#L2_SEARCH_MAX_PAGED_RESULT_SETS} open result sets. Past that pages are answered by
+ * running the query again.
+ */
+public class InMemoryIndexManager implements IndexManager {
+
+  private static final TCLogger                                      logger       = TCLogging
+                                                                                      .getLogger(InMemoryIndexManager.class);
+
+  private final ConcurrentMap<String, AttributeIndex>                indexes      = new ConcurrentHashMap<String, AttributeIndex>();
+  private final ConcurrentMap<PagedResultKey, List<AttributeIndex.Entry>> pagedResults = new ConcurrentHashMap<PagedResultKey, List<AttributeIndex.Entry>>();
+  private final int                                                  maxPagedResultSets;
+  private final int                                                  maxPageSize;
+  private volatile String                                            incompleteReason;
+
+  public InMemoryIndexManager() {
+    this(TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_SEARCH_MAX_PAGED_RESULT_SETS, 1000),
+         TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_SEARCH_MAX_RESULT_PAGE_SIZE, 10000));
+  }
+
+  InMemoryIndexManager(int maxPagedResultSets, int maxPageSize) {
+    this.maxPagedResultSets = maxPagedResultSets;
+    this.maxPageSize = maxPageSize;
+  }
+
+  @Override
+  public void insert(String indexName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                     MetaDataProcessingContext metaDataContext) {
+    AttributeIndex index = indexFor(indexName);
+    Lock lock = index.lock().writeLock();
+    lock.lock();
+    try {
+      index.put(key, value, attributes, segmentOid);
+    } finally {
+      lock.unlock();
+    }
+    metaDataContext.processed();
+  }
+
+  @Override
+  public void update(String indexName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                     MetaDataProcessingContext metaDataContext) {
+    insert(indexName, key, value, attributes, segmentOid, metaDataContext);
+  }
+
+  @Override
+  public void putIfAbsent(String indexName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                          MetaDataProcessingContext metaDataContext) {
+    AttributeIndex index = indexFor(indexName);
+    Lock lock = index.lock().writeLock();
+    lock.lock();
+    try {
+      if (index.get(key) == null) {
+        index.put(key, value, attributes, segmentOid);
+      }
+    } finally {
+      lock.unlock();
+    }
+    metaDataContext.processed();
+  }
+
+  @Override
+  public void replace(String indexName, String key, ValueID value, ValueID previousValue, List<NVPair> attributes,
+                      ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    AttributeIndex index = indexFor(indexName);
+    Lock lock = index.lock().writeLock();
+    lock.lock();
+    try {
+      AttributeIndex.Entry current = index.get(key);
+      if (current != null && current.value.equals(previousValue)) {
+        index.put(key, value, attributes, segmentOid);
+      }
+    } finally {
+      lock.unlock();
+    }
+    metaDataContext.processed();
+  }
+
+  @Override
+  public void remove(String indexName, String key, ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    AttributeIndex index = indexes.get(indexName);
+    if (index != null) {
+      Lock lock = index.lock().writeLock();
+      lock.lock();
+      try {
+        index.remove(key);
+      } finally {
+        lock.unlock();
+      }
+    }
+    metaDataContext.processed();
+  }
+
+  @Override
+  public void removeIfValueEqual(String indexName, Map<String, ValueID> toRemove, ObjectID segmentOid,
+                                 MetaDataProcessingContext metaDataContext, boolean fromEviction) {
+    AttributeIndex index = indexes.get(indexName);
+    if (index != null) {
+      Lock lock = index.lock().writeLock();
+      lock.lock();
+      try {
+        for (Map.Entry<String, ValueID> e : toRemove.entrySet()) {
+          AttributeIndex.Entry current = index.get(e.getKey());
+          if (current != null && current.value.equals(e.getValue())) {
+            index.remove(e.getKey());
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    metaDataContext.processed();
+  }
+
+  @Override
+  public void clear(String indexName, ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    AttributeIndex index = indexes.get(indexName);
+    if (index != null) {
+      Lock lock = index.lock().writeLock();
+      lock.lock();
+      try {
+        index.clear(segmentOid);
+      } finally {
+        lock.unlock();
+      }
+    }
+    metaDataContext.processed();
+  }
+
+  @Override
+  public void deleteIndex(String indexName, MetaDataProcessingContext processingContext) {
+    indexes.remove(indexName);
+    for (Iterator<PagedResultKey> i = pagedResults.keySet().iterator(); i.hasNext();) {
+      if (i.next().indexName.equals(indexName)) {
+        i.remove();
+      }
+    }
+    processingContext.processed();
+  }
+
+  @Override
+  public SearchResult searchIndex(String indexName, ClientID clientId, SearchRequestID reqId, List queryStack,
+                                  boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                                  Set<String> groupByAttributes, List<NVPair> sortAttributes, List<NVPair> aggregators,
+                                  int maxResults, int fetchSize) throws IndexException {
+    checkComplete(indexName);
+    if (groupByAttributes != null && !groupByAttributes.isEmpty()) {
+      throw new IndexException("Group by is not supported by the in memory search index");
+    }
+
+    AttributeIndex index = indexes.get(indexName);
+    if (index == null) { return new SearchResult(Collections.EMPTY_LIST, Collections.EMPTY_LIST, false); }
+
+    List<AttributeIndex.Entry> matches;
+    List<Aggregator> aggregatorResults;
+    Lock lock = index.lock().readLock();
+    lock.lock();
+    try {
+      Set<String> keys = index.search(queryStack);
+      aggregatorResults = aggregate(index, keys, aggregators);
+      matches = select(index, keys, sortAttributes, maxResults);
+    } finally {
+      lock.unlock();
+    }
+
+    int batch = batchSize(fetchSize);
+    if (matches.size() > batch) {
+      if (pagedResults.size() < maxPagedResultSets) {
+        pagedResults.put(new PagedResultKey(indexName, clientId, reqId), matches);
+      }
+      matches = matches.subList(0, batch);
+    }
+    List<IndexQueryResult> results = toResults(matches, includeKeys, includeValues, attributeSet, sortAttributes);
+    return new SearchResult(results, aggregatorResults, !matches.isEmpty());
+  }
+
+  @Override
+  public SearchResult getSearchResults(String indexName, ClientID clientId, SearchRequestID reqId, List queryStack,
+                                       boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                                       List<NVPair> sortAttributes, List<NVPair> aggregators, int maxResults,
+                                       int start, int pageSize) throws IndexException {
+    checkComplete(indexName);
+    List<AttributeIndex.Entry> matches = pagedResults.get(new PagedResultKey(indexName, clientId, reqId));
+    if (matches == null) {
+      AttributeIndex index = indexes.get(indexName);
+      if (index == null) { return new SearchResult(Collections.EMPTY_LIST, Collections.EMPTY_LIST, false); }
+      Lock lock = index.lock().readLock();
+      lock.lock();
+      try {
+        matches = select(index, index.search(queryStack), sortAttributes, maxResults);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    int from = Math.min(Math.max(start, 0), matches.size());
+    int to = (int) Math.min(matches.size(), (long) from + batchSize(pageSize));
+    List<IndexQueryResult> results = toResults(matches.subList(from, to), includeKeys, includeValues, attributeSet,
+                                               sortAttributes);
+    return new SearchResult(results, Collections.EMPTY_LIST, !matches.isEmpty());
+  }
+
+  @Override
+  public void releaseAllResultsFor(ClientID clientId) {
+    for (Iterator<PagedResultKey> i = pagedResults.keySet().iterator(); i.hasNext();) {
+      if (i.next().clientId.equals(clientId)) {
+        i.remove();
+      }
+    }
+  }
+
+  @Override
+  public void pruneSearchResults(Set<ClientID> clientFilter) {
+    for (Iterator<PagedResultKey> i = pagedResults.keySet().iterator(); i.hasNext();) {
+      if (!clientFilter.contains(i.next().clientId)) {
+        i.remove();
+      }
+    }
+  }
+
+  @Override
+  public void snapshotForQuery(String indexName, QueryID query, MetaDataProcessingContext context) {
+    // queries read the live index
+    context.processed();
+  }
+
+  @Override
+  public void releaseSearchResults(String indexName, QueryID query, MetaDataProcessingContext context) {
+    // the query is identified by the client and search request that opened it
+    pagedResults.remove(new PagedResultKey(indexName, new ClientID(query.requesterId),
+                                           new SearchRequestID(query.queryId)));
+    context.processed();
+  }
+
+  @Override
+  public SyncSnapshot snapshot(String id) {
+    return new SyncSnapshot() {
+      @Override
+      public void release() {
+        //
+      }
+
+      @Override
+      public Map<String, List<IndexFile>> getFilesToSync() {
+        return Collections.EMPTY_MAP;
+      }
+    };
+  }
+
+  @Override
+  public void backup(File destDir, SyncSnapshot syncSnapshot) {
+    //
+  }
+
+  @Override
+  public void shutdown() {
+    indexes.clear();
+    pagedResults.clear();
+  }
+
+  @Override
+  public void optimizeSearchIndex(String indexName) {
+    //
+  }
+
+  @Override
+  public String[] getSearchIndexNames() {
+    return indexes.keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public InputStream getIndexFile(String cacheName, String indexId, String fileName) throws IOException {
+    throw new IOException("The in memory search index has no files: " + cacheName + "/" + indexId + "/" + fileName);
+  }
+
+  /**
+   * Entries were added to this server without their search events, searches fail from now on.
+   */
+  void markIncomplete(String reason) {
+    if (incompleteReason == null) {
+      logger.warn("The in memory search index is incomplete, searches will fail: " + reason);
+    }
+    incompleteReason = reason;
+  }
+
+  private void checkComplete(String indexName) throws IndexException {
+    String reason = incompleteReason;
+    if (reason != null) { throw new IndexException("The in memory search index of " + indexName
+                                                   + " is incomplete: " + reason); }
+  }
+
+  private AttributeIndex indexFor(String indexName) {
+    AttributeIndex index = indexes.get(indexName);
+    if (index == null) {
+      AttributeIndex racer = indexes.putIfAbsent(indexName, index = new AttributeIndex());
+      if (racer != null) {
+        index = racer;
+      } else {
+        logger.info("Created in memory search index for " + indexName);
+      }
+    }
+    return index;
+  }
+
+  private int batchSize(int requested) {
+    return requested <= 0 ? maxPageSize : Math.min(requested, maxPageSize);
+  }
+
+  /**
+   * Collects the matching entries, sorted if asked to. Without sorting only maxResults entries are looked at.
+   */
+  private static List<AttributeIndex.Entry> select(AttributeIndex index, Set<String> keys,
+                                                   List<NVPair> sortAttributes, int maxResults) {
+    boolean sorted = sortAttributes != null && !sortAttributes.isEmpty();
+    int limit = maxResults < 0 || sorted ? keys.size() : Math.min(maxResults, keys.size());
+    List<AttributeIndex.Entry> matches = new ArrayList<AttributeIndex.Entry>(limit);
+    for (String key : keys) {
+      if (matches.size() == limit) {
+        break;
+      }
+      matches.add(index.get(key));
+    }
+    if (sorted) {
+      Collections.sort(matches, new EntryOrder(sortAttributes));
+      if (maxResults >= 0 && matches.size() > maxResults) {
+        matches = new ArrayList<AttributeIndex.Entry>(matches.subList(0, maxResults));
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Aggregates over every match, maxResults does not apply.
+   */
+  private static List<Aggregator> aggregate(AttributeIndex index, Set<String> keys, List<NVPair> aggregators) {
+    if (aggregators == null || aggregators.isEmpty()) { return Collections.EMPTY_LIST; }
+
+    List<Aggregator> results = new ArrayList<Aggregator>(aggregators.size());
+    for (NVPair aggregator : aggregators) {
+      AggregatorOperations operation = (AggregatorOperations) aggregator.getObjectValue();
+      String attribute = aggregator.getName();
+      Aggregator result = null;
+      for (String key : keys) {
+        AttributeIndex.Entry entry = index.get(key);
+        Object value = entry.values.get(attribute);
+        if (value == null) {
+          continue;
+        }
+        if (result == null) {
+          result = AbstractAggregator.aggregatorFor(operation, attribute, typeOf(entry, attribute));
+        }
+        result.accept(value);
+      }
+      results.add(result != null ? result : AbstractAggregator.aggregatorFor(operation, attribute, null));
+    }
+    return results;
+  }
+
+  private static ValueType typeOf(AttributeIndex.Entry entry, String attribute) {
+    for (NVPair pair : entry.attributes) {
+      if (pair.getName().equals(attribute)) { return pair.getType(); }
+    }
+    return null;
+  }
+
+  private static List<IndexQueryResult> toResults(List<AttributeIndex.Entry> matches, boolean includeKeys,
+                                                  boolean includeValues, Set<String> attributeSet,
+                                                  List<NVPair> sortAttributes) {
+    List<IndexQueryResult> results = new ArrayList<IndexQueryResult>(matches.size());
+    for (AttributeIndex.Entry match : matches) {
+      List<NVPair> attributes = new ArrayList<NVPair>();
+      List<NVPair> sortValues = new ArrayList<NVPair>();
+      for (NVPair pair : match.attributes) {
+        if (attributeSet != null && attributeSet.contains(pair.getName())) {
+          attributes.add(pair);
+        }
+      }
+      if (sortAttributes != null) {
+        for (NVPair sort : sortAttributes) {
+          for (NVPair pair : match.attributes) {
+            if (pair.getName().equals(sort.getName())) {
+              sortValues.add(pair);
+            }
+          }
+        }
+      }
+      results.add(new NonGroupedIndexQueryResultImpl(includeKeys ? match.key : null, includeValues ? match.value
+          : null, attributes, sortValues));
+    }
+    return results;
+  }
+
+  private static final class EntryOrder implements Comparator<AttributeIndex.Entry> {
+    private final String[]  names;
+    private final boolean[] descending;
+
+    EntryOrder(List<NVPair> sortAttributes) {
+      names = new String[sortAttributes.size()];
+      descending = new boolean[names.length];
+      for (int i = 0; i < names.length; i++) {
+        NVPair sort = sortAttributes.get(i);
+        names[i] = sort.getName();
+        descending[i] = sort.getObjectValue() == SortOperations.DESCENDING;
+      }
+    }
+
+    @Override
+    public int compare(AttributeIndex.Entry e1, AttributeIndex.Entry e2) {
+      for (int i = 0; i < names.length; i++) {
+        Object v1 = e1.values.get(names[i]);
+        Object v2 = e2.values.get(names[i]);
+        int c;
+        if (v1 == null || v2 == null) {
+          // entries without the attribute go last either way
+          c = v1 == v2 ? 0 : (v1 == null ? 1 : -1);
+        } else {
+          c = AttributeIndex.compareValues(v1, v2);
+          if (descending[i]) {
+            c = -c;
+          }
+        }
+        if (c != 0) { return c; }
+      }
+      return 0;
+    }
+  }
+
+  private static final class PagedResultKey {
+    private final String          indexName;
+    private final ClientID        clientId;
+    private final SearchRequestID reqId;
+
+    PagedResultKey(String indexName, ClientID clientId, SearchRequestID reqId) {
+      this.indexName = indexName;
+      this.clientId = clientId;
+      this.reqId = reqId;
+    }
+
+    @Override
+    public int hashCode() {
+      return (indexName.hashCode() * 31 + clientId.hashCode()) * 31 + reqId.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof PagedResultKey)) { return false; }
+      PagedResultKey other = (PagedResultKey) obj;
+      return indexName.equals(other.indexName) && clientId.equals(other.clientId) && reqId.equals(other.reqId);
+    }
+  }
+}
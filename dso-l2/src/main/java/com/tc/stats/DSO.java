@@ -517,6 +517,31 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
     return getStats().getWriteOperationRate();
   }
 
+  @Override
+  public long getInvalidationsReceivedCount() {
+    return getStats().getInvalidationsReceivedCount();
+  }
+
+  @Override
+  public long getInvalidationsSentCount() {
+    return getStats().getInvalidationsSentCount();
+  }
+
+  @Override
+  public long getInvalidationMessagesSentCount() {
+    return getStats().getInvalidationMessagesSentCount();
+  }
+
+  @Override
+  public long getInvalidationBytesSerialized() {
+    return getStats().getInvalidationBytesSerialized();
+  }
+
+  @Override
+  public long getInvalidationBytesSaved() {
+    return getStats().getInvalidationBytesSaved();
+  }
+
   @Override
   public Map<ObjectName, Long> getServerMapGetSizeRequestsCount() {
     Map<ObjectName, Long> result = new HashMap<ObjectName, Long>();
@@ -4,6 +4,7 @@
  */
 package com.tc.stats;
 
+import com.tc.invalidation.Invalidations;
 import com.tc.objectserver.core.api.DSOGlobalServerStats;
 import com.tc.objectserver.core.impl.ServerManagementContext;
 import com.tc.stats.api.DSOStats;
@@ -114,4 +115,29 @@ public class DSOStatsImpl implements DSOStats {
   public long getWriteOperationRate() {
     return serverStats.getOperationCounter().getMostRecentSample().getCounterValue();
   }
+
+  @Override
+  public long getInvalidationsReceivedCount() {
+    return serverStats.getInvalidationsReceivedCounter().getCumulativeValue();
+  }
+
+  @Override
+  public long getInvalidationsSentCount() {
+    return serverStats.getInvalidationsSentCounter().getCumulativeValue();
+  }
+
+  @Override
+  public long getInvalidationMessagesSentCount() {
+    return serverStats.getInvalidationMessagesSentCounter().getCumulativeValue();
+  }
+
+  @Override
+  public long getInvalidationBytesSerialized() {
+    return Invalidations.getSerializedBytes();
+  }
+
+  @Override
+  public long getInvalidationBytesSaved() {
+    return Invalidations.getSerializedBytesSaved();
+  }
 }
@@ -32,4 +32,23 @@ public interface DSOStats {
 
   long getWriteOperationRate();
 
+  /**
+   * @return invalidated server map entries received for the clients, before invalidations of a client are merged
+   */
+  long getInvalidationsReceivedCount();
+
+  /**
+   * @return invalidated server map entries sent to the clients, after invalidations of a client are merged
+   */
+  long getInvalidationsSentCount();
+
+  long getInvalidationMessagesSentCount();
+
+  long getInvalidationBytesSerialized();
+
+  /**
+   * @return bytes the run encoding of invalidations saved over the range encoding of object id sets
+   */
+  long getInvalidationBytesSaved();
+
 }
@@ -0,0 +1,106 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.l2.objectserver;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tc.net.NodeID;
+import com.tc.net.ServerID;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PassiveSyncFlowControlTest {
+
+  private static final long   MILLI = 1000000L;
+
+  private List<Integer>       requested;
+  private L2ObjectSyncRequester requester;
+
+  @Before
+  public void setUp() throws Exception {
+    requested = new ArrayList<Integer>();
+    requester = new L2ObjectSyncRequester() {
+      @Override
+      public void requestSync(NodeID nodeID, int stream) {
+        requested.add(stream);
+      }
+    };
+  }
+
+  @Test
+  public void testStreamsWaitForCredit() throws Exception {
+    PassiveSyncFlowControl flowControl = new PassiveSyncFlowControl(ServerID.NULL_ID, requester, 2, 10);
+    flowControl.ready(0);
+    flowControl.ready(1);
+    flowControl.ready(2);
+    assertEquals(2, requested.size());
+    assertEquals(2, flowControl.getOutstanding());
+
+    flowControl.sent(0);
+    flowControl.acked(10 * MILLI);
+    assertEquals(3, requested.size());
+    assertEquals(Integer.valueOf(2), requested.get(2));
+  }
+
+  @Test
+  public void testCancelledRequestReleasesCredit() throws Exception {
+    PassiveSyncFlowControl flowControl = new PassiveSyncFlowControl(ServerID.NULL_ID, requester, 1, 10);
+    flowControl.ready(0);
+    flowControl.ready(1);
+    assertEquals(1, requested.size());
+
+    flowControl.cancelled();
+    assertEquals(2, requested.size());
+    assertEquals(1, flowControl.getOutstanding());
+  }
+
+  @Test
+  public void testWindowFollowsApplyRate() throws Exception {
+    PassiveSyncFlowControl flowControl = new PassiveSyncFlowControl(ServerID.NULL_ID, requester, 1, 10);
+    // 40ms round trip, the passive applies a batch every 10ms
+    long now = 0;
+    for (int i = 0; i < 8; i++) {
+      flowControl.sent(now);
+    }
+    for (int i = 0; i < 8; i++) {
+      now = 40 * MILLI + i * 10 * MILLI;
+      flowControl.acked(now);
+      flowControl.sent(now);
+    }
+    assertEquals(5, flowControl.getWindow());
+  }
+
+  @Test
+  public void testWindowIsBounded() throws Exception {
+    PassiveSyncFlowControl flowControl = new PassiveSyncFlowControl(ServerID.NULL_ID, requester, 20, 3);
+    assertEquals(3, flowControl.getWindow());
+
+    // acks come in much faster than a round trip
+    for (int i = 0; i < 4; i++) {
+      flowControl.sent(0);
+    }
+    for (int i = 0; i < 4; i++) {
+      flowControl.acked(100 * MILLI + i);
+    }
+    assertEquals(3, flowControl.getWindow());
+  }
+
+  @Test
+  public void testSlowPassiveShrinksWindow() throws Exception {
+    PassiveSyncFlowControl flowControl = new PassiveSyncFlowControl(ServerID.NULL_ID, requester, 4, 10);
+    // 10ms round trip, a batch takes the passive 50ms to apply
+    long now = 0;
+    for (int i = 0; i < 6; i++) {
+      flowControl.sent(now);
+      now += 10 * MILLI;
+      flowControl.acked(now);
+      now += 40 * MILLI;
+    }
+    assertEquals(2, flowControl.getWindow());
+  }
+}
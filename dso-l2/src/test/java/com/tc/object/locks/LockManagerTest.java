@@ -10,6 +10,7 @@ import com.tc.net.NodeID;
 import com.tc.object.locks.ServerLockContext.State;
 import com.tc.objectserver.api.TestSink;
 import com.tc.objectserver.locks.LockManagerImpl;
+import com.tc.objectserver.locks.LockRequest;
 import com.tc.objectserver.locks.LockResponseContext;
 import com.tc.objectserver.locks.NullChannelManager;
 import com.tc.objectserver.locks.factory.NonGreedyLockPolicyFactory;
@@ -437,6 +438,49 @@ public class LockManagerTest extends TestCase {
     lockManager.unlock(l1, c4, s1);
   }
 
+  public void testBatchedRequests() {
+    LockID l1 = new StringLockID("1");
+    LockID l2 = new StringLockID("2");
+    ClientID c1 = new ClientID(1);
+    ClientID c2 = new ClientID(2);
+    ThreadID s1 = new ThreadID(1);
+    lockManager.start();
+
+    // l1 is emptied and created again within the batch
+    lockManager.process(Arrays.asList(new LockRequest(LockRequest.Type.LOCK, l1, c1, s1, ServerLockLevel.WRITE, -1),
+                                      new LockRequest(LockRequest.Type.LOCK, l2, c1, s1, ServerLockLevel.READ, -1),
+                                      new LockRequest(LockRequest.Type.UNLOCK, l1, c1, s1, null, -1),
+                                      new LockRequest(LockRequest.Type.LOCK, l1, c2, s1, ServerLockLevel.WRITE, -1),
+                                      new LockRequest(LockRequest.Type.LOCK, l1, c1, s1, ServerLockLevel.WRITE, -1)));
+    List queue = sink.getInternalQueue();
+    assertEquals(3, queue.size());
+    LockResponseContext award = (LockResponseContext) queue.get(1);
+    assertTrue(award.isLockAward());
+    assertEquals(l1, award.getLockID());
+    assertEquals(c2, award.getNodeID());
+    assertTrue(lockManager.hasPending(l1));
+    assertEquals(2, lockManager.getLockCount());
+    queue.clear();
+
+    lockManager.process(Arrays.asList(new LockRequest(LockRequest.Type.UNLOCK, l1, c2, s1, null, -1),
+                                      new LockRequest(LockRequest.Type.UNLOCK, l2, c1, s1, null, -1),
+                                      new LockRequest(LockRequest.Type.UNLOCK, l1, c1, s1, null, -1)));
+    assertEquals(1, queue.size());
+    assertEquals(c1, ((LockResponseContext) queue.get(0)).getNodeID());
+  }
+
+  public void testBatchedRequestsQueuedUntilStarted() {
+    LockID l1 = new StringLockID("1");
+    ClientID c1 = new ClientID(1);
+    ThreadID s1 = new ThreadID(1);
+
+    lockManager.process(Arrays.asList(new LockRequest(LockRequest.Type.LOCK, l1, c1, s1, ServerLockLevel.WRITE, -1)));
+    assertEquals(0, sink.size());
+    lockManager.start();
+    assertEquals(1, sink.size());
+    lockManager.process(Arrays.asList(new LockRequest(LockRequest.Type.UNLOCK, l1, c1, s1, null, -1)));
+  }
+
   public void testTryLockFairness() throws InterruptedException {
     lockManager.start();
 
@@ -12,6 +12,7 @@ import com.tc.object.locks.ServerLockContext.State;
 import com.tc.object.locks.ServerLockContext.Type;
 import com.tc.object.tx.TimerSpec;
 import com.tc.objectserver.locks.LockMBean;
+import com.tc.objectserver.locks.LockRequest;
 import com.tc.objectserver.locks.LockManager;
 import com.tc.objectserver.locks.NotifiedWaiters;
 import com.tc.objectserver.locks.ServerLock.NotifyAction;
@@ -134,6 +135,11 @@ public class TestLockManager implements LockManager {
 
   }
 
+  @Override
+  public void process(Collection<LockRequest> requests) {
+    throw new ImplementMe();
+  }
+
   @Override
   public void reestablishState(ClientID cid, Collection<ClientServerExchangeLockContext> serverLockContexts) {
     for (ClientServerExchangeLockContext lockContext : serverLockContexts) {
@@ -0,0 +1,180 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.dgc.impl;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.core.api.Filter;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+import com.tc.util.concurrent.LifeCycleState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ParallelMarkerTest extends TestCase {
+
+  private static final int      OBJECTS = 20000;
+  private static final Filter   ALL     = new Filter() {
+                                          @Override
+                                          public boolean shouldVisit(ObjectID referencedObject) {
+                                            return true;
+                                          }
+                                        };
+
+  private List<Set<ObjectID>>   references;
+  private GCHook                gcHook;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Random random = new Random(42);
+    references = new ArrayList<Set<ObjectID>>(OBJECTS);
+    for (int i = 0; i < OBJECTS; i++) {
+      Set<ObjectID> refs = new HashSet<ObjectID>();
+      // sparse enough that a good part of the graph is garbage
+      int count = random.nextInt(3);
+      for (int r = 0; r < count; r++) {
+        refs.add(new ObjectID(random.nextInt(OBJECTS)));
+      }
+      if (random.nextInt(10) == 0) {
+        refs.add(ObjectID.NULL_ID);
+      }
+      references.add(refs);
+    }
+    gcHook = mock(GCHook.class);
+    when(gcHook.getObjectReferencesFrom(any(ObjectID.class))).thenAnswer(new Answer<Set<ObjectID>>() {
+      @Override
+      public Set<ObjectID> answer(InvocationOnMock invocation) {
+        ObjectID id = (ObjectID) invocation.getArguments()[0];
+        return references.get((int) id.toLong());
+      }
+    });
+  }
+
+  public void testMarksSameAsSerialTraversal() {
+    Set<ObjectID> roots = roots(50);
+    ObjectIDSet expected = allObjects();
+    expected.removeAll(reachableFrom(roots));
+
+    for (int threads : new int[] { 1, 2, 4, 8 }) {
+      MarkStats stats = new MarkStats("mark", threads);
+      ObjectIDSet garbage = new ParallelMarker(gcHook, threads, 0, 0)
+          .mark(ALL, roots, allObjects(), AbstractGarbageCollector.NULL_LIFECYCLE_STATE, stats);
+      assertEquals(expected, garbage);
+      assertEquals(OBJECTS - expected.size(), stats.getTraversed());
+    }
+  }
+
+  public void testFilteredObjectsAreMarkedButNotTraversed() {
+    final ObjectID root = new ObjectID(0);
+    final ObjectID skipped = new ObjectID(1);
+    final ObjectID behindSkipped = new ObjectID(2);
+    references.set(0, Collections.singleton(skipped));
+    references.set(1, Collections.singleton(behindSkipped));
+    Filter filter = new Filter() {
+      @Override
+      public boolean shouldVisit(ObjectID referencedObject) {
+        return !skipped.equals(referencedObject);
+      }
+    };
+
+    ObjectIDSet candidates = new BitSetObjectIDSet();
+    candidates.add(root);
+    candidates.add(skipped);
+    candidates.add(behindSkipped);
+    ObjectIDSet garbage = new ParallelMarker(gcHook, 4, 0, 0)
+        .mark(filter, Collections.singleton(root), candidates, AbstractGarbageCollector.NULL_LIFECYCLE_STATE,
+              new MarkStats("mark", 4));
+    assertEquals(1, garbage.size());
+    assertTrue(garbage.contains(behindSkipped));
+  }
+
+  public void testStopRequested() {
+    LifeCycleState stopped = mock(LifeCycleState.class);
+    when(stopped.isStopRequested()).thenReturn(true);
+    assertNull(new ParallelMarker(gcHook, 4, 0, 0).mark(ALL, roots(10), allObjects(), stopped,
+                                                        new MarkStats("mark", 4)));
+  }
+
+  public void testSlicedMarkPauses() {
+    // every object takes longer than a slice
+    when(gcHook.getObjectReferencesFrom(any(ObjectID.class))).thenAnswer(new Answer<Set<ObjectID>>() {
+      @Override
+      public Set<ObjectID> answer(InvocationOnMock invocation) throws Exception {
+        Thread.sleep(2);
+        return references.get((int) ((ObjectID) invocation.getArguments()[0]).toLong());
+      }
+    });
+    Set<ObjectID> roots = roots(20);
+    ObjectIDSet expected = allObjects();
+    expected.removeAll(reachableFrom(roots));
+
+    MarkStats stats = new MarkStats("mark", 2);
+    ObjectIDSet garbage = new ParallelMarker(gcHook, 2, 1, 1)
+        .mark(ALL, roots, allObjects(), AbstractGarbageCollector.NULL_LIFECYCLE_STATE, stats);
+    assertEquals(expected, garbage);
+    assertTrue(stats.getPauses() > 0);
+  }
+
+  public void testBitmapClaimsOnce() {
+    ObjectIDSet ids = new BitSetObjectIDSet();
+    ids.add(new ObjectID(3));
+    ids.add(new ObjectID(70000));
+    ids.add(new ObjectID(1L << 40));
+    ConcurrentObjectIDBitmap bitmap = new ConcurrentObjectIDBitmap(ids);
+    assertEquals(3, bitmap.size());
+    assertTrue(bitmap.contains(new ObjectID(70000)));
+    assertFalse(bitmap.claim(new ObjectID(4)));
+    assertTrue(bitmap.claim(new ObjectID(70000)));
+    assertFalse(bitmap.claim(new ObjectID(70000)));
+    assertFalse(bitmap.contains(new ObjectID(70000)));
+    assertTrue(bitmap.claim(new ObjectID(3)));
+    assertTrue(bitmap.claim(new ObjectID(1L << 40)));
+    assertTrue(bitmap.isEmpty());
+  }
+
+  private Set<ObjectID> roots(int count) {
+    Set<ObjectID> roots = new HashSet<ObjectID>();
+    for (int i = 0; i < count; i++) {
+      roots.add(new ObjectID(i * (OBJECTS / count)));
+    }
+    return roots;
+  }
+
+  private ObjectIDSet allObjects() {
+    ObjectIDSet all = new BitSetObjectIDSet();
+    for (int i = 0; i < OBJECTS; i++) {
+      all.add(new ObjectID(i));
+    }
+    return all;
+  }
+
+  private Set<ObjectID> reachableFrom(Set<ObjectID> roots) {
+    Set<ObjectID> reached = new HashSet<ObjectID>(roots);
+    Deque<ObjectID> toVisit = new ArrayDeque<ObjectID>(roots);
+    while (!toVisit.isEmpty()) {
+      for (ObjectID ref : references.get((int) toVisit.poll().toLong())) {
+        if (!ref.isNull() && reached.add(ref)) {
+          toVisit.add(ref);
+        }
+      }
+    }
+    return reached;
+  }
+}
@@ -9,6 +9,7 @@ import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -69,6 +70,9 @@ public class ApplyTransactionChangeHandlerTest extends TestCase {
   private ArgumentCaptor<NotifiedWaiters> notifiedWaitersArgumentCaptor;
   private ServerEventBuffer               serverEventBuffer;
   private ClientChannelMonitor            clientChannelMonitor;
+  private TransactionProvider             persistenceTransactionProvider;
+  private Transaction                     persistenceTransaction;
+  private TestServerConfigurationContext  context;
 
   @Override
   public void setUp() throws Exception {
@@ -76,19 +80,14 @@ public class ApplyTransactionChangeHandlerTest extends TestCase {
     this.serverEventBuffer = mock(ServerEventBuffer.class);
     this.clientChannelMonitor = mock(ClientChannelMonitor.class);
     this.notifiedWaitersArgumentCaptor = ArgumentCaptor.forClass(NotifiedWaiters.class);
-    TransactionProvider persistenceTransactionProvider = mock(TransactionProvider.class);
-    Transaction persistenceTransaction = mock(Transaction.class);
+    this.persistenceTransactionProvider = mock(TransactionProvider.class);
+    this.persistenceTransaction = mock(Transaction.class);
     when(persistenceTransactionProvider.newTransaction()).thenReturn(persistenceTransaction);
 
-    this.handler = new ApplyTransactionChangeHandler(new ObjectInstanceMonitorImpl(),
-        mock(ServerGlobalTransactionManager.class),mock(ServerMapEvictionManager.class),
-        persistenceTransactionProvider, Runners.newSingleThreadScheduledTaskRunner(),
-        serverEventBuffer, clientChannelMonitor);
-
     this.broadcastSink = mock(Sink.class);
     Stage broadcastStage = mock(Stage.class);
     when(broadcastStage.getSink()).thenReturn(broadcastSink);
-    TestServerConfigurationContext context = new TestServerConfigurationContext();
+    context = new TestServerConfigurationContext();
     context.transactionManager = mock(ServerTransactionManager.class);
     context.txnObjectManager = mock(TransactionalObjectManager.class);
     context.addStage(ServerConfigurationContext.BROADCAST_CHANGES_STAGE, broadcastStage);
@@ -96,7 +95,34 @@ public class ApplyTransactionChangeHandlerTest extends TestCase {
     context.garbageCollectionManager = mock(GarbageCollectionManager.class);
     context.lockManager = this.lockManager;
 
-    this.handler.initializeContext(context);
+    this.handler = newHandler(false);
+  }
+
+  private ApplyTransactionChangeHandler newHandler(boolean commitEachBatch) {
+    ApplyTransactionChangeHandler applyHandler = new ApplyTransactionChangeHandler(new ObjectInstanceMonitorImpl(),
+        mock(ServerGlobalTransactionManager.class), mock(ServerMapEvictionManager.class),
+        persistenceTransactionProvider, Runners.newSingleThreadScheduledTaskRunner(),
+        serverEventBuffer, clientChannelMonitor, commitEachBatch);
+    applyHandler.initializeContext(context);
+    return applyHandler;
+  }
+
+  public void testGroupingStaysOpenAcrossBatches() throws Exception {
+    ServerTransaction tx = createServerTransaction();
+    TxnObjectGrouping grouping = new TxnObjectGrouping(tx.getServerTransactionID());
+    // the grouping is not done, nothing says commit now
+    this.handler.handleEvents(Collections.singletonList(new ApplyTransactionContext(tx, grouping, true,
+                                                                                    Collections.EMPTY_SET)));
+    verify(persistenceTransaction, never()).commit();
+  }
+
+  public void testWorkStealingCommitsEachBatch() throws Exception {
+    this.handler = newHandler(true);
+    ServerTransaction tx = createServerTransaction();
+    TxnObjectGrouping grouping = new TxnObjectGrouping(tx.getServerTransactionID());
+    this.handler.handleEvents(Collections.singletonList(new ApplyTransactionContext(tx, grouping, true,
+                                                                                    Collections.EMPTY_SET)));
+    verify(persistenceTransaction).commit();
   }
 
   public void testLockManagerNotifyOnNoApply() throws Exception {
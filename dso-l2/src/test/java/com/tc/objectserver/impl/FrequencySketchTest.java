@@ -0,0 +1,91 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.impl;
+
+import junit.framework.TestCase;
+
+public class FrequencySketchTest extends TestCase {
+
+  public void testCountsIncrements() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    assertEquals(0, sketch.frequency("key"));
+    for (int i = 1; i <= 5; i++) {
+      sketch.increment("key");
+      assertEquals(i, sketch.frequency("key"));
+    }
+  }
+
+  public void testSaturates() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment("key");
+    }
+    assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency("key"));
+  }
+
+  public void testHotKeysStandOut() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    for (int i = 0; i < 1000; i++) {
+      sketch.increment("cold" + i);
+      if (i % 100 == 0) {
+        for (int j = 0; j < 10; j++) {
+          sketch.increment("hot");
+        }
+      }
+    }
+    assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency("hot"));
+    int overCounted = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (sketch.frequency("cold" + i) > 2) {
+        overCounted++;
+      }
+    }
+    assertTrue(overCounted < 50);
+  }
+
+  public void testAgesCounters() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    for (int i = 0; i < 8; i++) {
+      sketch.increment("old");
+    }
+    // enough other traffic to halve the counters at least once
+    for (int i = 0; i < 10 * sketch.getTableSize(); i++) {
+      sketch.increment(Integer.valueOf(i));
+    }
+    assertTrue(sketch.frequency("old") < 8);
+  }
+
+  public void testEnsureCapacity() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    int size = sketch.getTableSize();
+    assertTrue(size >= 100);
+    sketch.ensureCapacity(10);
+    assertEquals(size, sketch.getTableSize());
+    sketch.ensureCapacity(100000);
+    assertTrue(sketch.getTableSize() >= 100000);
+  }
+
+  public void testConcurrentIncrementsAreNotLost() throws Exception {
+    final FrequencySketch sketch = new FrequencySketch(1 << 16);
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int k = 0; k < 1000; k++) {
+            sketch.increment(Integer.valueOf(k));
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // collisions can only add to a count
+    for (int k = 0; k < 1000; k++) {
+      assertTrue(sketch.frequency(Integer.valueOf(k)) >= threads.length);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.EvictableEntry;
+import com.tc.objectserver.api.EvictableMap;
+import com.tc.objectserver.l1.impl.ClientObjectReferenceSet;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServerMapEvictionPolicyManagerTest extends TestCase {
+
+  private static final ObjectID         MAP_ID = new ObjectID(1);
+
+  private TCProperties                  properties;
+  private ServerMapEvictionStatsManager stats;
+  private ServerMapEvictionPolicyManager manager;
+  private ClientObjectReferenceSet      clients;
+
+  @Override
+  protected void setUp() throws Exception {
+    properties = mock(TCProperties.class);
+    when(properties.getProperty(TCPropertiesConsts.L2_SERVERMAP_EVICTION_POLICY, true)).thenReturn("random");
+    when(properties.getProperty(TCPropertiesConsts.L2_SERVERMAP_EVICTION_POLICY + ".hot", true)).thenReturn("lfu");
+    when(properties.getProperty(TCPropertiesConsts.L2_SERVERMAP_EVICTION_POLICY + ".broken", true)).thenReturn("mru");
+    when(properties.getInt(eq(TCPropertiesConsts.L2_SERVERMAP_EVICTION_LFU_SAMPLE_FACTOR), anyInt())).thenReturn(4);
+    stats = new ServerMapEvictionStatsManager();
+    manager = new ServerMapEvictionPolicyManager(properties, stats);
+    clients = mock(ClientObjectReferenceSet.class);
+  }
+
+  public void testPolicyPerCache() {
+    assertEquals(ServerMapEvictionPolicy.RANDOM, manager.getPolicyFor("plain"));
+    assertEquals(ServerMapEvictionPolicy.LFU, manager.getPolicyFor("hot"));
+    assertEquals(ServerMapEvictionPolicy.RANDOM, manager.getPolicyFor("broken"));
+    assertEquals(ServerMapEvictionPolicy.RANDOM, manager.getPolicyFor(null));
+
+    EvictableMap plain = mapNamed("plain", 10);
+    assertSame(plain, manager.applyTo(MAP_ID, plain));
+    assertTrue(manager.applyTo(MAP_ID, mapNamed("hot", 10)) instanceof FrequencyAwareEvictableMap);
+  }
+
+  public void testInvalidDefaultPolicy() {
+    when(properties.getProperty(TCPropertiesConsts.L2_SERVERMAP_EVICTION_POLICY, true)).thenReturn("mru");
+    try {
+      new ServerMapEvictionPolicyManager(properties, stats);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testLfuEvictsLeastReadEntries() {
+    EvictableMap map = mapNamed("hot", 100);
+    Map<Object, EvictableEntry> all = new HashMap<Object, EvictableEntry>();
+    for (int i = 0; i < 100; i++) {
+      all.put("key" + i, mock(EvictableEntry.class));
+    }
+    when(map.getRandomSamples(40, clients, SamplingType.FOR_EVICTION)).thenReturn(all);
+    // every even key has been read
+    for (int i = 0; i < 100; i += 2) {
+      manager.recordAccess(MAP_ID, map, "key" + i, true);
+      manager.recordAccess(MAP_ID, map, "key" + i, true);
+    }
+
+    Map<Object, EvictableEntry> victims = manager.applyTo(MAP_ID, map)
+        .getRandomSamples(10, clients, SamplingType.FOR_EVICTION);
+    assertEquals(10, victims.size());
+    for (Object key : victims.keySet()) {
+      int i = Integer.parseInt(((String) key).substring(3));
+      assertEquals(1, i % 2);
+      assertSame(all.get(key), victims.get(key));
+    }
+
+    assertEquals(1.0, stats.getHitRatio(), 0.0);
+    assertEquals(0.0, stats.getMeanVictimFrequency(), 0.0);
+    assertEquals(1.0, stats.getMeanCandidateFrequency(), 0.0);
+    assertEquals(1.0, stats.getEvictionQuality(), 0.0);
+  }
+
+  public void testExpirationSamplesPassThrough() {
+    EvictableMap map = mapNamed("hot", 100);
+    Map<Object, EvictableEntry> expired = new HashMap<Object, EvictableEntry>();
+    when(map.getRandomSamples(10, clients, SamplingType.FOR_EXPIRATION)).thenReturn(expired);
+    assertSame(expired, manager.applyTo(MAP_ID, map).getRandomSamples(10, clients, SamplingType.FOR_EXPIRATION));
+    verify(map).getRandomSamples(10, clients, SamplingType.FOR_EXPIRATION);
+    assertEquals(0.0, stats.getEvictionQuality(), 0.0);
+  }
+
+  public void testHitRatio() {
+    EvictableMap map = mapNamed("hot", 10);
+    manager.recordAccess(MAP_ID, map, "a", true);
+    manager.recordAccess(MAP_ID, map, "b", false);
+    manager.recordAccess(MAP_ID, map, "c", true);
+    manager.recordAccess(MAP_ID, map, "d", true);
+    assertEquals(0.75, stats.getHitRatio(), 0.0);
+  }
+
+  public void testRandomMapLookupsAreNotRecorded() {
+    EvictableMap map = mapNamed("plain", 10);
+    manager.recordAccess(MAP_ID, map, "a", false);
+    manager.recordAccess(MAP_ID, map, "b", true);
+    assertEquals(0.0, stats.getHitRatio(), 0.0);
+    verify(map, never()).getSize();
+  }
+
+  private static EvictableMap mapNamed(String cacheName, int size) {
+    EvictableMap map = mock(EvictableMap.class);
+    when(map.getCacheName()).thenReturn(cacheName);
+    when(map.getSize()).thenReturn(size);
+    when(map.getMaxTotalCount()).thenReturn(size);
+    return map;
+  }
+}
@@ -5,9 +5,12 @@ package com.tc.objectserver.impl;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -23,14 +26,19 @@ import com.tc.object.ObjectID;
 import com.tc.object.ServerMapGetValueRequest;
 import com.tc.object.ServerMapGetValueResponse;
 import com.tc.object.ServerMapRequestID;
+import com.tc.object.ServerMapRequestType;
 import com.tc.object.msg.GetValueServerMapResponseMessage;
+import com.tc.object.msg.ObjectNotFoundServerMapResponseMessage;
 import com.tc.object.net.ChannelStats;
 import com.tc.object.net.DSOChannelManager;
 import com.tc.object.net.NoSuchChannelException;
 import com.tc.objectserver.api.ObjectManager;
+import com.tc.objectserver.api.ObjectManagerLookupResults;
 import com.tc.objectserver.context.ObjectManagerResultsContext;
+import com.tc.objectserver.context.ServerMapRequestBulkValueContext;
 import com.tc.objectserver.context.ServerMapRequestContext;
 import com.tc.objectserver.context.ServerMapRequestPrefetchObjectsContext;
+import com.tc.objectserver.context.ServerMapRequestValueContext;
 import com.tc.objectserver.core.api.ManagedObject;
 import com.tc.objectserver.l1.api.ClientStateManager;
 import com.tc.objectserver.managedobject.CDSMValue;
@@ -39,8 +47,13 @@ import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import junit.framework.TestCase;
@@ -65,7 +78,7 @@ public class ServerMapRequestManagerTest extends TestCase {
     clientStateManager = mock(ClientStateManager.class);
     TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_PREFETCH_ENABLED, "false");
     serverMapRequestManager = new ServerMapRequestManagerImpl(objectManager, channelManager, responseSink, prefetchSink,
-         clientStateManager, channelStats);
+         clientStateManager, channelStats, new ServerMapEvictionPolicyManager(new ServerMapEvictionStatsManager()));
   }
 
   public void tests() {
@@ -217,4 +230,143 @@ public class ServerMapRequestManagerTest extends TestCase {
     
     verify(objectManager).lookupObjectsFor(eq(clientID), any(ServerMapRequestPrefetchObjectsContext.class));
   }
+
+  public void testBulkIsOffByDefault() {
+    final ClientID clientID = new ClientID(0);
+    serverMapRequestManager.requestValues(clientID, requests(new ObjectID(1), new ObjectID(2)));
+    verify(objectManager, times(2)).lookupObjectsFor(eq(clientID), isA(ServerMapRequestValueContext.class));
+    verify(objectManager, never()).lookupObjectsFor(eq(clientID), isA(ServerMapRequestBulkValueContext.class));
+  }
+
+  public void testBulkRequestsAreChunked() {
+    final ClientID clientID = new ClientID(0);
+    serverMapRequestManager = bulkRequestManager(2);
+    serverMapRequestManager.requestValues(clientID, requests(new ObjectID(1), new ObjectID(2), new ObjectID(3)));
+
+    verify(objectManager, times(1)).lookupObjectsFor(eq(clientID), isA(ServerMapRequestBulkValueContext.class));
+    // the last map alone goes through the per map path
+    verify(objectManager, times(1)).lookupObjectsFor(eq(clientID), isA(ServerMapRequestValueContext.class));
+  }
+
+  public void testBulkRequestLooksUpAllMapsAtOnce() throws Exception {
+    final ClientID clientID = new ClientID(0);
+    final ObjectID mapID1 = new ObjectID(1);
+    final ObjectID mapID2 = new ObjectID(2);
+    final ObjectID missingMapID = new ObjectID(3);
+    final Map<ObjectID, Collection<ServerMapGetValueRequest>> requests = requests(mapID1, mapID2, missingMapID);
+    serverMapRequestManager = bulkRequestManager(3);
+    serverMapRequestManager.requestValues(clientID, requests);
+
+    final ArgumentCaptor<ServerMapRequestBulkValueContext> requestContextArg = ArgumentCaptor
+        .forClass(ServerMapRequestBulkValueContext.class);
+    verify(objectManager, times(1)).lookupObjectsFor(eq(clientID), requestContextArg.capture());
+    final ServerMapRequestBulkValueContext context = requestContextArg.getValue();
+    assertEquals(new HashSet<ObjectID>(requests.keySet()), context.getLookupIDs());
+
+    final ManagedObject mo1 = mockMap("key1", new ObjectID(1001));
+    final ManagedObject mo2 = mockMap("key2", new ObjectID(1002));
+    setResults(context, mapID1, mo1, mapID2, mo2);
+    verify(responseSink).add(context);
+
+    final MessageChannel messageChannel = mock(MessageChannel.class);
+    when(channelManager.getActiveChannel(clientID)).thenReturn(messageChannel);
+    final ObjectNotFoundServerMapResponseMessage notFound = mock(ObjectNotFoundServerMapResponseMessage.class);
+    when(messageChannel.createMessage(TCMessageType.OBJECT_NOT_FOUND_SERVER_MAP_RESPONSE_MESSAGE)).thenReturn(notFound);
+
+    serverMapRequestManager.sendResponseFor(context);
+
+    verify(objectManager).releaseReadOnly(mo1);
+    verify(objectManager).releaseReadOnly(mo2);
+    verify(notFound).initialize(missingMapID, new ServerMapRequestID(3), ServerMapRequestType.GET_VALUE_FOR_KEY);
+    verify(notFound).send();
+
+    // both maps are answered by a single prefetch context
+    final Map<ObjectID, Collection<ServerMapGetValueResponse>> answers = stagedAnswers();
+    assertEquals(Arrays.asList(mapID1, mapID2), new ArrayList<ObjectID>(answers.keySet()));
+    assertEquals(new ObjectID(1002), ((CompoundResponse) answers.get(mapID2).iterator().next().getValues().get("key2"))
+        .getData());
+  }
+
+  public void testBulkAnswersGatheredBeforeAFailureAreStaged() throws Exception {
+    final ClientID clientID = new ClientID(0);
+    final ObjectID mapID1 = new ObjectID(1);
+    final ObjectID mapID2 = new ObjectID(2);
+    serverMapRequestManager = bulkRequestManager(2);
+    serverMapRequestManager.requestValues(clientID, requests(mapID1, mapID2));
+
+    final ArgumentCaptor<ServerMapRequestBulkValueContext> requestContextArg = ArgumentCaptor
+        .forClass(ServerMapRequestBulkValueContext.class);
+    verify(objectManager).lookupObjectsFor(eq(clientID), requestContextArg.capture());
+    final ServerMapRequestBulkValueContext context = requestContextArg.getValue();
+
+    final ManagedObject mo1 = mockMap("key1", new ObjectID(1001));
+    final ManagedObject mo2 = mockMap("key2", new ObjectID(1002));
+    when(((ConcurrentDistributedServerMapManagedObjectState) mo2.getManagedObjectState()).getValueForKey("key2"))
+        .thenThrow(new IllegalStateException("broken segment"));
+    setResults(context, mapID1, mo1, mapID2, mo2);
+
+    try {
+      serverMapRequestManager.sendResponseFor(context);
+      fail("answering the broken segment did not fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    verify(objectManager).releaseReadOnly(mo1);
+    verify(objectManager).releaseReadOnly(mo2);
+    assertEquals(Collections.singleton(mapID1), stagedAnswers().keySet());
+  }
+
+  private ServerMapRequestManagerImpl bulkRequestManager(int maxSegments) {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_BULK_ENABLED, "true");
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_BULK_MAX_SEGMENTS,
+                                                 String.valueOf(maxSegments));
+    try {
+      return new ServerMapRequestManagerImpl(objectManager, channelManager, responseSink, prefetchSink,
+                                             clientStateManager, channelStats,
+                                             new ServerMapEvictionPolicyManager(new ServerMapEvictionStatsManager()));
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_BULK_ENABLED, "false");
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_OBJECTMANAGER_REQUEST_BULK_MAX_SEGMENTS, "16");
+    }
+  }
+
+  /**
+   * One request per map, for key "key" + map id, with the map id as request id.
+   */
+  private static Map<ObjectID, Collection<ServerMapGetValueRequest>> requests(ObjectID... mapIDs) {
+    final Map<ObjectID, Collection<ServerMapGetValueRequest>> requests = new LinkedHashMap<ObjectID, Collection<ServerMapGetValueRequest>>();
+    for (ObjectID mapID : mapIDs) {
+      requests.put(mapID, Collections.singletonList(new ServerMapGetValueRequest(new ServerMapRequestID(mapID.toLong()),
+                                                                                 Collections.<Object> singleton("key"
+                                                                                                                + mapID
+                                                                                                                    .toLong()))));
+    }
+    return requests;
+  }
+
+  private static void setResults(ServerMapRequestBulkValueContext context, ObjectID mapID1, ManagedObject mo1,
+                                 ObjectID mapID2, ManagedObject mo2) {
+    final Map<ObjectID, ManagedObject> objects = new HashMap<ObjectID, ManagedObject>();
+    objects.put(mapID1, mo1);
+    objects.put(mapID2, mo2);
+    final ObjectManagerLookupResults results = mock(ObjectManagerLookupResults.class);
+    when(results.getObjects()).thenReturn(objects);
+    context.setResults(results);
+  }
+
+  private Map<ObjectID, Collection<ServerMapGetValueResponse>> stagedAnswers() {
+    final ArgumentCaptor<ServerMapRequestPrefetchObjectsContext> capture = ArgumentCaptor
+        .forClass(ServerMapRequestPrefetchObjectsContext.class);
+    verify(prefetchSink, times(1)).add(capture.capture());
+    return capture.getValue().getAnswersByMap();
+  }
+
+  private static ManagedObject mockMap(final Object key, final ObjectID value) {
+    final ConcurrentDistributedServerMapManagedObjectState state = mock(ConcurrentDistributedServerMapManagedObjectState.class);
+    when(state.getValueForKey(key)).thenReturn(new CDSMValue(value, 0, 0, 0, 0));
+    final ManagedObject mo = mock(ManagedObject.class);
+    when(mo.getManagedObjectState()).thenReturn(state);
+    return mo;
+  }
 }
@@ -20,6 +20,8 @@ import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.l1.impl.InvalidateObjectManagerImpl;
 import com.tc.objectserver.tx.ServerTransactionManager;
 import com.tc.stats.Stats;
+import com.tc.stats.counter.Counter;
+import com.tc.stats.counter.CounterImpl;
 import com.tc.test.TCTestCase;
 import com.tc.util.BitSetObjectIDSet;
 import com.tc.util.ObjectIDSet;
@@ -131,6 +133,41 @@ public class InvalidateObjectManagerTest extends TCTestCase {
     Assert.assertTrue(invalidationsGot.equals(invalidationsCheckCid2));
   }
 
+  public void testCoalescingWindow() throws Exception {
+    Counter received = new CounterImpl();
+    Counter sent = new CounterImpl();
+    Counter messages = new CounterImpl();
+    invalidateObjectManager = new InvalidateObjectManagerImpl(Mockito.mock(ServerTransactionManager.class), 200,
+                                                              received, sent, messages);
+    invalidateObjectManager.initializeContext(configurationContext);
+    invalidateObjectManager.start();
+
+    ClientID cid = new ClientID(1);
+    ObjectID mapId = new ObjectID(1001);
+    Invalidations total = new Invalidations();
+    for (int batch = 0; batch < 3; batch++) {
+      Invalidations invalidations = new Invalidations();
+      // overlapping batches
+      for (int i = batch * 5; i < batch * 5 + 10; i++) {
+        invalidations.add(mapId, new ObjectID(i));
+      }
+      total.add(invalidations);
+      invalidateObjectManager.invalidateObjectFor(cid, invalidations);
+    }
+    Assert.assertEquals(0, inValidateSink.getList().size());
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (inValidateSink.getList().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, inValidateSink.getList().size());
+
+    Assert.assertEquals(total, invalidateObjectManager.getObjectsIDsToInvalidate(cid));
+    Assert.assertEquals(30, received.getValue());
+    Assert.assertEquals(20, sent.getValue());
+    Assert.assertEquals(1, messages.getValue());
+  }
+
   public void testValidations() throws Exception {
     // Valid object ids
     ObjectIDSet validOids = new BitSetObjectIDSet();
@@ -203,11 +240,12 @@ public class InvalidateObjectManagerTest extends TCTestCase {
     private final ArrayList list = new ArrayList();
 
     @Override
-    public void add(EventContext context) {
+    public synchronized void add(EventContext context) {
       list.add(context);
     }
 
-    public ArrayList getList() {
+    // synchronized, contexts of a coalescing window are added from the timer thread
+    public synchronized ArrayList getList() {
       return list;
     }
 
@@ -0,0 +1,72 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.locks;
+
+import com.tc.async.impl.NullSink;
+import com.tc.net.ClientID;
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.ServerLockLevel;
+import com.tc.object.locks.StringLockID;
+import com.tc.object.locks.ThreadID;
+import com.tc.objectserver.locks.factory.NonGreedyLockPolicyFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures lock grant throughput of {@link LockManagerImpl}, one write lock and unlock per operation, from 1 to 64
+ * threads. Each thread works its own set of locks so the only contention is in the lock store. Not run as part of the
+ * build, run its main method with the test classpath.
+ */
+public class LockStoreBenchmark {
+
+  private static final long  RUN_NANOS        = TimeUnit.SECONDS.toNanos(2);
+  private static final int   LOCKS_PER_THREAD = 10000;
+  private static final int[] THREADS          = { 1, 2, 4, 8, 16, 32, 64 };
+
+  public static void main(String[] args) throws Exception {
+    final LockManagerImpl lockManager = new LockManagerImpl(new NullSink(), new NullChannelManager(),
+                                                            new NonGreedyLockPolicyFactory());
+    lockManager.start();
+
+    // warm up
+    run(lockManager, THREADS[THREADS.length - 1]);
+    for (int threads : THREADS) {
+      long start = System.nanoTime();
+      long ops = run(lockManager, threads);
+      System.out.printf("%2d threads %12.0f grants/s%n", threads, ops / ((System.nanoTime() - start) / 1e9));
+    }
+  }
+
+  private static long run(final LockManagerImpl lockManager, int threads) throws InterruptedException {
+    final AtomicLong ops = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(threads);
+    final long end = System.nanoTime() + RUN_NANOS;
+    for (int t = 0; t < threads; t++) {
+      final ClientID cid = new ClientID(t);
+      final ThreadID tid = new ThreadID(t);
+      final LockID[] lockIDs = new LockID[LOCKS_PER_THREAD];
+      for (int i = 0; i < LOCKS_PER_THREAD; i++) {
+        lockIDs[i] = new StringLockID("lock-" + t + "-" + i);
+      }
+      Thread thread = new Thread("LockStoreBenchmark-" + t) {
+        @Override
+        public void run() {
+          long count = 0;
+          for (int i = 0; System.nanoTime() < end; i = (i + 1) % LOCKS_PER_THREAD) {
+            lockManager.lock(lockIDs[i], cid, tid, ServerLockLevel.WRITE);
+            lockManager.unlock(lockIDs[i], cid, tid);
+            count++;
+          }
+          ops.addAndGet(count);
+          done.countDown();
+        }
+      };
+      thread.start();
+    }
+    done.await();
+    return ops.get();
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.locks;
+
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.StringLockID;
+import com.tc.objectserver.locks.LockStore.LockIterator;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class LockStoreTest extends TestCase {
+
+  private LockStore store;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    store = new LockStore(new LockFactory() {
+      @Override
+      public ServerLock createLock(LockID lid) {
+        return new ServerLockImpl(lid);
+      }
+    });
+  }
+
+  public void testCheckOutReturnsSameLock() {
+    LockID lid = new StringLockID("a");
+    ServerLock lock = store.checkOut(lid);
+    store.checkIn(lock);
+    ServerLock again = store.checkOut(lid);
+    store.checkIn(again);
+    assertSame(lock, again);
+    assertEquals(lid, lock.getLockID());
+  }
+
+  public void testCheckInFromOtherThreadFails() throws Exception {
+    final ServerLock lock = store.checkOut(new StringLockID("a"));
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        try {
+          store.checkIn(lock);
+        } catch (Throwable th) {
+          error.set(th);
+        }
+      }
+    };
+    t.start();
+    t.join();
+    assertTrue(error.get() instanceof AssertionError);
+    store.checkIn(lock);
+  }
+
+  public void testRemoveTakesEffectOnCheckIn() {
+    LockID lid = new StringLockID("a");
+    ServerLock lock = store.checkOut(lid);
+    assertSame(lock, store.remove(lid));
+    store.checkIn(lock);
+
+    ServerLock fresh = store.checkOut(lid);
+    store.checkIn(fresh);
+    assertNotSame(lock, fresh);
+  }
+
+  public void testCheckOutAfterRemoveInSameThread() {
+    LockID lid = new StringLockID("a");
+    ServerLock lock = store.checkOut(lid);
+    store.remove(lid);
+    ServerLock fresh = store.checkOut(lid);
+    assertNotSame(lock, fresh);
+    store.checkIn(fresh);
+    store.checkIn(lock);
+
+    ServerLock current = store.checkOut(lid);
+    store.checkIn(current);
+    assertSame(fresh, current);
+  }
+
+  public void testCheckOutExcludesOtherThreads() throws Exception {
+    final LockID lid = new StringLockID("a");
+    ServerLock lock = store.checkOut(lid);
+    final CountDownLatch acquired = new CountDownLatch(1);
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        store.checkIn(store.checkOut(lid));
+        acquired.countDown();
+      }
+    };
+    t.start();
+    assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+    store.checkIn(lock);
+    assertTrue(acquired.await(10, TimeUnit.SECONDS));
+  }
+
+  public void testIteratorVisitsEveryLockAndRemoves() {
+    for (int i = 0; i < 100; i++) {
+      store.checkIn(store.checkOut(new StringLockID("lock" + i)));
+    }
+
+    Set<LockID> seen = new HashSet<LockID>();
+    LockIterator iter = store.iterator();
+    ServerLock lock = iter.getNextLock(null);
+    while (lock != null) {
+      assertTrue(seen.add(lock.getLockID()));
+      if (seen.size() % 2 == 0) {
+        iter.remove();
+      }
+      lock = iter.getNextLock(lock);
+    }
+    assertEquals(100, seen.size());
+    assertEquals(50, count());
+  }
+
+  public void testClear() {
+    for (int i = 0; i < 10; i++) {
+      store.checkIn(store.checkOut(new StringLockID("lock" + i)));
+    }
+    store.clear();
+    assertEquals(0, count());
+  }
+
+  public void testConcurrentCheckOutIsExclusive() throws Exception {
+    final int threads = 8;
+    final int iterations = 20000;
+    final AtomicInteger[] holders = new AtomicInteger[4];
+    for (int i = 0; i < holders.length; i++) {
+      holders[i] = new AtomicInteger();
+    }
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < iterations; i++) {
+              LockID lid = new StringLockID("lock" + (i % 4));
+              ServerLock lock = store.checkOut(lid);
+              try {
+                if (holders[i % 4].incrementAndGet() > 1) { throw new AssertionError(lid + " checked out twice"); }
+                if (i % 3 == 0) {
+                  store.remove(lid);
+                }
+              } finally {
+                holders[i % 4].decrementAndGet();
+                store.checkIn(lock);
+              }
+            }
+          } catch (Throwable th) {
+            error.set(th);
+          }
+        }
+      };
+      workers[t].start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertNull(error.get());
+    assertTrue(count() <= 4);
+  }
+
+  private int count() {
+    int count = 0;
+    LockIterator iter = store.iterator();
+    ServerLock lock = iter.getNextLock(null);
+    while (lock != null) {
+      count++;
+      lock = iter.getNextLock(lock);
+    }
+    return count;
+  }
+}
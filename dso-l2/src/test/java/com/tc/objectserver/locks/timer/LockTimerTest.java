@@ -0,0 +1,107 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.locks.timer;
+
+import com.tc.net.ClientID;
+import com.tc.object.locks.StringLockID;
+import com.tc.object.locks.ThreadID;
+import com.tc.objectserver.locks.timer.LockTimer.LockTimerContext;
+
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class LockTimerTest extends TestCase {
+
+  private LockTimer timer;
+
+  @Override
+  protected void setUp() throws Exception {
+    timer = new LockTimer(5, 8);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    timer.shutdown();
+  }
+
+  public void testTimeoutsFireNoEarlierThanScheduled() throws Exception {
+    timer.start();
+    final CountDownLatch fired = new CountDownLatch(3);
+    final long start = System.nanoTime();
+    final long[] delays = new long[] { 20, 60, 150 };
+    final AtomicInteger early = new AtomicInteger();
+    for (final long delay : delays) {
+      timer.scheduleTimer(new TimerCallback() {
+        @Override
+        public void timerTimeout(LockTimerContext callbackObject) {
+          if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < delay) {
+            early.incrementAndGet();
+          }
+          fired.countDown();
+        }
+      }, delay, context(delay));
+    }
+    assertEquals(3, timer.getScheduledCount());
+    // 150ms is more than one turn of an 8 slots wheel of 5ms ticks
+    assertTrue(fired.await(10, TimeUnit.SECONDS));
+    assertEquals(0, early.get());
+    assertEquals(0, timer.getScheduledCount());
+    assertTrue(timer.getExpiryLag() >= 0);
+  }
+
+  public void testCanceledTimeoutsDoNotFire() throws Exception {
+    timer.start();
+    CountingCallback callback = new CountingCallback();
+    TimerTask canceled = timer.scheduleTimer(callback, 30, context(1));
+    TimerTask kept = timer.scheduleTimer(callback, 30, context(2));
+    assertTrue(canceled.cancel());
+    assertFalse(canceled.cancel());
+    assertEquals(1, timer.getScheduledCount());
+
+    Thread.sleep(200);
+    assertEquals(1, callback.count.get());
+    assertFalse(kept.cancel());
+  }
+
+  public void testTimeoutsScheduledBeforeStartFireAfterStart() throws Exception {
+    CountingCallback callback = new CountingCallback();
+    timer.scheduleTimer(callback, 10, context(1));
+    TimerTask canceled = timer.scheduleTimer(callback, 10, context(2));
+    assertTrue(canceled.cancel());
+    assertEquals(1, timer.getScheduledCount());
+
+    Thread.sleep(50);
+    assertEquals(0, callback.count.get());
+    timer.start();
+    Thread.sleep(200);
+    assertEquals(1, callback.count.get());
+  }
+
+  public void testOverflowingTimeoutIsRejected() throws Exception {
+    timer.start();
+    try {
+      timer.scheduleTimer(new CountingCallback(), Long.MAX_VALUE, context(1));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected, the lock falls back on an untimed request
+    }
+  }
+
+  private static LockTimerContext context(long id) {
+    return new LockTimerContext(new StringLockID("lock"), new ThreadID(id), new ClientID(1), null);
+  }
+
+  private static class CountingCallback implements TimerCallback {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public void timerTimeout(LockTimerContext callbackObject) {
+      count.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.managedobject;
+
+import com.tc.object.LogicalOperation;
+import com.tc.object.ObjectID;
+import com.tc.object.TestDNACursor;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.api.NullObjectInstanceMonitor;
+import com.tc.objectserver.api.Transaction;
+import com.tc.objectserver.core.api.ManagedObject;
+import com.tc.objectserver.core.api.TestDNA;
+import com.tc.objectserver.persistence.HeapStorageManagerFactory;
+import com.tc.objectserver.persistence.ManagedObjectPersistor;
+import com.tc.objectserver.persistence.Persistor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compact binary ManagedObject encoding against the ObjectOutputStream based one it replaced, on server
+ * map states, and measures apply-and-persist throughput through the object store. Not run as part of the build, run
+ * its main method with the test classpath.
+ */
+public class ManagedObjectSerializerBenchmark {
+
+  private static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(2);
+  private static final int  OBJECTS   = 1000;
+
+  public static void main(String[] args) throws Exception {
+    ManagedObjectStateFactory.disableSingleton(true);
+    Persistor persistor = new Persistor(HeapStorageManagerFactory.INSTANCE);
+    persistor.start();
+    ManagedObjectStateFactory.createInstance(new NullManagedObjectChangeListenerProvider(), persistor);
+    ManagedObjectPersistor objectPersistor = persistor.getManagedObjectPersistor();
+    final ManagedObjectSerializer serializer = new ManagedObjectSerializer(new ManagedObjectStateSerializer(),
+                                                                           objectPersistor);
+
+    final ManagedObject[] objects = new ManagedObject[OBJECTS];
+    for (int i = 0; i < OBJECTS; i++) {
+      objects[i] = newServerMap(objectPersistor, new ObjectID(1000 + i));
+    }
+
+    final byte[][] binary = new byte[OBJECTS][];
+    final byte[][] legacy = new byte[OBJECTS][];
+    long binaryBytes = 0;
+    long legacyBytes = 0;
+    for (int i = 0; i < OBJECTS; i++) {
+      binary[i] = serializer.serialize(objects[i]);
+      legacy[i] = legacySerialize(serializer, objects[i]);
+      binaryBytes += binary[i].length;
+      legacyBytes += legacy[i].length;
+    }
+    System.out.printf("bytes per object: binary %d, object stream %d%n", binaryBytes / OBJECTS, legacyBytes / OBJECTS);
+
+    report("serialize binary", new Op() {
+      @Override
+      public void run(int i) throws Exception {
+        serializer.serialize(objects[i]);
+      }
+    });
+    report("serialize object stream", new Op() {
+      @Override
+      public void run(int i) throws Exception {
+        legacySerialize(serializer, objects[i]);
+      }
+    });
+    report("deserialize binary", new Op() {
+      @Override
+      public void run(int i) throws Exception {
+        serializer.deserialize(binary[i]);
+      }
+    });
+    report("deserialize object stream", new Op() {
+      @Override
+      public void run(int i) throws Exception {
+        serializer.deserializeFrom(new ObjectInputStream(new ByteArrayInputStream(legacy[i])));
+      }
+    });
+
+    final ManagedObjectPersistor store = objectPersistor;
+    final Persistor p = persistor;
+    report("apply and persist", new Op() {
+      private long txn = 1;
+
+      @Override
+      public void run(int i) throws Exception {
+        ManagedObject mo = objects[i];
+        mo.apply(putDNA(txn), new TransactionID(txn++), new ApplyTransactionInfo(), new NullObjectInstanceMonitor(),
+                 false);
+        Transaction tx = p.getPersistenceTransactionProvider().newTransaction();
+        store.saveObject(tx, mo);
+        tx.commit();
+      }
+    });
+
+    persistor.close();
+  }
+
+  private static void report(String name, Op op) throws Exception {
+    // warm up
+    long end = System.nanoTime() + RUN_NANOS;
+    for (int i = 0; System.nanoTime() < end; i = (i + 1) % OBJECTS) {
+      op.run(i);
+    }
+    long ops = 0;
+    long start = System.nanoTime();
+    end = start + RUN_NANOS;
+    for (int i = 0; System.nanoTime() < end; i = (i + 1) % OBJECTS) {
+      op.run(i);
+      ops++;
+    }
+    System.out.printf("%-26s %12.0f ops/s%n", name, ops / ((System.nanoTime() - start) / 1e9));
+  }
+
+  private static byte[] legacySerialize(ManagedObjectSerializer serializer, ManagedObject mo) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    serializer.serializeTo(mo, out);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static ManagedObject newServerMap(ManagedObjectPersistor persistor, ObjectID id) {
+    TestDNACursor cursor = new TestDNACursor();
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.LOCK_TYPE_FIELDNAME, Integer.valueOf(42),
+                             false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.MAX_TTI_SECONDS_FIELDNAME,
+                             Integer.valueOf(0), false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.MAX_TTL_SECONDS_FIELDNAME,
+                             Integer.valueOf(0), false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.MAX_COUNT_IN_CLUSTER_FIELDNAME,
+                             Integer.valueOf(0), false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.INVALIDATE_ON_CHANGE_FIELDNAME,
+                             Boolean.FALSE, false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.CACHE_NAME_FIELDNAME, "cache" + id,
+                             false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.LOCAL_CACHE_ENABLED_FIELDNAME,
+                             Boolean.TRUE, false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.COMPRESSION_ENABLED_FIELDNAME,
+                             Boolean.FALSE, false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.COPY_ON_READ_ENABLED_FIELDNAME,
+                             Boolean.FALSE, false);
+    cursor.addPhysicalAction(ConcurrentDistributedServerMapManagedObjectState.EVICTION_ENABLED_FIELDNAME,
+                             Boolean.FALSE, false);
+    TestDNA dna = new TestDNA(cursor, ManagedObjectStateStaticConfig.ToolkitTypeNames.SERVER_MAP_TYPE);
+
+    ManagedObjectImpl mo = new ManagedObjectImpl(id, persistor);
+    mo.apply(dna, new TransactionID(0), new ApplyTransactionInfo(), new NullObjectInstanceMonitor(), false);
+    return mo;
+  }
+
+  private static TestDNA putDNA(long txn) {
+    TestDNACursor cursor = new TestDNACursor();
+    cursor.addLogicalAction(LogicalOperation.PUT, new Object[] { "key" + (txn % 100), new ObjectID(1000000 + txn), 0L,
+        0L, 0L, 0L });
+    TestDNA dna = new TestDNA(cursor, ManagedObjectStateStaticConfig.ToolkitTypeNames.SERVER_MAP_TYPE);
+    dna.isDelta = true;
+    return dna;
+  }
+
+  private interface Op {
+    void run(int i) throws Exception;
+  }
+}
@@ -9,6 +9,7 @@ import com.tc.io.serializer.TCObjectOutputStream;
 import com.tc.object.LogicalOperation;
 import com.tc.object.ObjectID;
 import com.tc.object.TestDNACursor;
+import com.tc.object.dna.impl.UTF8ByteDataHolder;
 import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.api.ObjectInstanceMonitor;
 import com.tc.objectserver.core.api.ManagedObject;
@@ -19,6 +20,9 @@ import com.tc.objectserver.persistence.Persistor;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
 
 import junit.framework.TestCase;
 
@@ -26,23 +30,23 @@ public class ManagedObjectSerializerTest extends TestCase {
 
   private ObjectID                     id;
   private ManagedObjectStateSerializer stateSerializer;
+  private Persistor                    persistor;
+  private ManagedObjectSerializer      mos;
 
-  public void test() throws Exception {
+  @Override
+  protected void setUp() throws Exception {
     ManagedObjectStateFactory.disableSingleton(true);
-    Persistor persistor = new Persistor(HeapStorageManagerFactory.INSTANCE);
+    persistor = new Persistor(HeapStorageManagerFactory.INSTANCE);
     persistor.start();
-    
+
     ManagedObjectStateFactory.createInstance(new NullManagedObjectChangeListenerProvider(), persistor);
     this.stateSerializer = new ManagedObjectStateSerializer();
     this.id = new ObjectID(1);
+    this.mos = new ManagedObjectSerializer(this.stateSerializer, persistor.getManagedObjectPersistor());
+  }
 
-    final ManagedObjectSerializer mos = new ManagedObjectSerializer(this.stateSerializer, persistor.getManagedObjectPersistor());
-    final ManagedObjectImpl mo = new ManagedObjectImpl(this.id, persistor.getManagedObjectPersistor());
-    assertTrue(mo.isDirty());
-    assertTrue(mo.isNew());
-    final TestDNA dna = newDNA(1);
-    final ObjectInstanceMonitor imo = new ObjectInstanceMonitorImpl();
-    mo.apply(dna, new TransactionID(1), new ApplyTransactionInfo(), imo, false);
+  public void test() throws Exception {
+    final ManagedObjectImpl mo = newManagedObject();
 
     final ByteArrayOutputStream baout = new ByteArrayOutputStream();
     final TCObjectOutputStream out = new TCObjectOutputStream(baout);
@@ -57,6 +61,74 @@ public class ManagedObjectSerializerTest extends TestCase {
     assertTrue(mo.isEqual(mo2));
   }
 
+  public void testBinaryFormat() throws Exception {
+    final ManagedObjectImpl mo = newManagedObject();
+
+    final byte[] data = mos.serialize(mo);
+    final ManagedObject mo2 = mos.deserialize(data);
+
+    assertFalse(mo2.isDirty());
+    mo.setIsDirty(false);
+    assertNotSame(mo, mo2);
+    assertTrue(mo.isEqual(mo2));
+    assertTrue(data.length < legacyBytes(mo).length);
+
+    // the reused buffer must not leak bytes of a bigger previous object into a smaller one
+    final ManagedObjectImpl small = new ManagedObjectImpl(new ObjectID(2), persistor.getManagedObjectPersistor());
+    small.apply(newDNA(0), new TransactionID(1), new ApplyTransactionInfo(), new ObjectInstanceMonitorImpl(), false);
+    small.setIsDirty(false);
+    assertTrue(small.isEqual(mos.deserialize(mos.serialize(small))));
+    assertTrue(Arrays.equals(data, mos.serialize(mo)));
+  }
+
+  public void testReadsLegacyFormat() throws Exception {
+    final ManagedObjectImpl mo = newManagedObject();
+
+    final ManagedObject mo2 = mos.deserialize(legacyBytes(mo));
+
+    mo.setIsDirty(false);
+    assertTrue(mo.isEqual(mo2));
+  }
+
+  public void testLiteralElementsAreNotJavaSerialized() throws Exception {
+    final Object[] elements = { null, new ObjectID(7), "string", new UTF8ByteDataHolder("utf8"), 42, 42L,
+        (short) 42, (byte) 42, true, new Date(42) };
+
+    final BinaryObjectOutput out = new BinaryObjectOutput();
+    out.writeObject(Long.valueOf(42));
+    // tag, length, then the literal type and the long
+    assertEquals(1 + 4 + 1 + 8, out.size());
+
+    out.reset();
+    for (final Object element : elements) {
+      out.writeObject(element);
+    }
+    final BinaryObjectInput in = new BinaryObjectInput(out.toByteArray(), 0, out.size());
+    for (final Object element : elements) {
+      assertEquals(element, in.readObject());
+    }
+    assertEquals(-1, in.read());
+  }
+
+  private ManagedObjectImpl newManagedObject() throws Exception {
+    final ManagedObjectImpl mo = new ManagedObjectImpl(this.id, persistor.getManagedObjectPersistor());
+    assertTrue(mo.isDirty());
+    assertTrue(mo.isNew());
+    final TestDNA dna = newDNA(1);
+    final ObjectInstanceMonitor imo = new ObjectInstanceMonitorImpl();
+    mo.apply(dna, new TransactionID(1), new ApplyTransactionInfo(), imo, false);
+    return mo;
+  }
+
+  // what ObjectMap stored before the binary format
+  private byte[] legacyBytes(final ManagedObject mo) throws Exception {
+    final ByteArrayOutputStream baout = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(baout);
+    mos.serializeTo(mo, out);
+    out.close();
+    return baout.toByteArray();
+  }
+
   private TestDNA newDNA(final int fieldSetCount) {
     final TestDNACursor cursor = new TestDNACursor();
     cursor.addArrayAction(new Object[] { new ObjectID(5000) });
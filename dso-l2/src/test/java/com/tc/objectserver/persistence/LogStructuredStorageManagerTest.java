@@ -0,0 +1,171 @@
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.ImmutableKeyValueStorageConfig;
+import org.terracotta.corestorage.KeyValueStorage;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.heap.HeapStorageManager;
+
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author tim
+ */
+public class LogStructuredStorageManagerTest extends TCTestCase {
+  private static final String OBJECTS = "objects";
+  private static final int SEGMENT_SIZE = 4096;
+
+  private File directory;
+  private LogStructuredStorageManagerFactory factory;
+  private LogStructuredStorageManager storageManager;
+  private SegmentLog log;
+
+  @Override
+  public void setUp() throws Exception {
+    directory = getTempDirectory();
+    factory = new LogStructuredStorageManagerFactory(directory);
+    factory.wrapMapConfig(ImmutableKeyValueStorageConfig.builder(Object.class, Object.class)
+        .keyTransformer(LiteralSerializer.INSTANCE).valueTransformer(LiteralSerializer.INSTANCE).build());
+    open();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    storageManager.close();
+  }
+
+  private void open() throws Exception {
+    Map<String, KeyValueStorageConfig<?, ?>> configMap = new HashMap<String, KeyValueStorageConfig<?, ?>>();
+    configMap.put(OBJECTS, ImmutableKeyValueStorageConfig.builder(Long.class, byte[].class).build());
+    log = new SegmentLog(directory, SEGMENT_SIZE);
+    storageManager = new LogStructuredStorageManager(new HeapStorageManager(configMap), log, factory, true, Long.MAX_VALUE, 0.5);
+    storageManager.start().get();
+  }
+
+  private void restart() throws Exception {
+    storageManager.close();
+    open();
+  }
+
+  private KeyValueStorage<Long, byte[]> objects() {
+    return storageManager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+  }
+
+  public void testRecoverPutsAndRemoves() throws Exception {
+    storageManager.begin();
+    for (long i = 0; i < 100; i++) {
+      objects().put(i, new byte[] { (byte) i }, (byte) 1);
+    }
+    objects().remove(42L);
+    objects().put(7L, new byte[] { 1, 2, 3 });
+    storageManager.commit();
+
+    restart();
+
+    assertEquals(99, objects().size());
+    assertNull(objects().get(42L));
+    assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, objects().get(7L)));
+    assertTrue(Arrays.equals(new byte[] { 99 }, objects().get(99L)));
+  }
+
+  public void testTornTransactionIsNotRecovered() throws Exception {
+    storageManager.begin();
+    objects().put(1L, new byte[] { 1 });
+    objects().put(2L, new byte[] { 2 });
+    storageManager.commit();
+    storageManager.begin();
+    objects().put(2L, new byte[] { 3 });
+    objects().put(3L, new byte[] { 3 });
+    storageManager.commit();
+    storageManager.close();
+
+    // crash before the commit record of the second transaction reached the disk
+    File head = null;
+    int written = 0;
+    for (File file : directory.listFiles()) {
+      if (LogSegment.isSegmentFile(file)) {
+        LogSegment segment = LogSegment.open(file);
+        if (segment.getWritePosition() > 0 && (head == null || file.getName().compareTo(head.getName()) > 0)) {
+          head = file;
+          written = segment.getWritePosition();
+        }
+        segment.close();
+      }
+    }
+    int commitLength = LogRecord.encodeCommit(0).remaining();
+    RandomAccessFile raf = new RandomAccessFile(head, "rw");
+    try {
+      raf.seek(written - commitLength);
+      raf.write(new byte[commitLength]);
+    } finally {
+      raf.close();
+    }
+    open();
+
+    assertEquals(2, objects().size());
+    assertTrue(Arrays.equals(new byte[] { 1 }, objects().get(1L)));
+    assertTrue(Arrays.equals(new byte[] { 2 }, objects().get(2L)));
+    assertNull(objects().get(3L));
+  }
+
+  public void testTransactionIsOnlyLoggedOnCommit() throws Exception {
+    storageManager.begin();
+    objects().put(1L, new byte[] { 1 });
+    long written = log.getWrittenBytes();
+    storageManager.commit();
+    assertTrue(log.getWrittenBytes() > written);
+  }
+
+  public void testClearHidesOlderRecords() throws Exception {
+    objects().put(1L, new byte[] { 1 });
+    objects().clear();
+    objects().put(2L, new byte[] { 2 });
+
+    restart();
+
+    assertFalse(objects().containsKey(1L));
+    assertTrue(objects().containsKey(2L));
+  }
+
+  public void testDynamicStoresAndProperties() throws Exception {
+    KeyValueStorageConfig<Object, Object> config = (KeyValueStorageConfig<Object, Object>) factory.getMapConfig();
+    ObjectID oid = new ObjectID(1234);
+    KeyValueStorage<Object, Object> map = storageManager.createKeyValueStorage(oid.toString(), config);
+    map.put("foo", new ObjectID(1));
+    storageManager.getProperties().put("state", "ACTIVE");
+    storageManager.createKeyValueStorage("doomed", config).put("bar", "baz");
+    storageManager.destroyKeyValueStorage("doomed");
+
+    restart();
+
+    assertEquals("ACTIVE", storageManager.getProperties().get("state"));
+    assertEquals(new ObjectID(1), storageManager.getKeyValueStorage(oid.toString(), Object.class, Object.class).get("foo"));
+    assertNull(storageManager.getKeyValueStorage("doomed", Object.class, Object.class));
+  }
+
+  public void testCompactionKeepsLiveData() throws Exception {
+    for (int round = 0; round < 20; round++) {
+      for (long i = 0; i < 50; i++) {
+        objects().put(i, new byte[] { (byte) round, (byte) i });
+      }
+    }
+    objects().remove(0L);
+    int before = log.getSegmentCount();
+    assertTrue(log.compact(0.5) > 0);
+    assertTrue(log.getSegmentCount() < before);
+
+    restart();
+
+    assertEquals(49, objects().size());
+    assertNull(objects().get(0L));
+    for (long i = 1; i < 50; i++) {
+      assertTrue(Arrays.equals(new byte[] { 19, (byte) i }, objects().get(i)));
+    }
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.tc.objectserver.search;
+
+import com.tc.net.ClientID;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.metadata.MetaDataProcessingContext;
+import com.tc.search.SearchRequestID;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.QueryID;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.SortOperations;
+import com.terracottatech.search.StackOperations;
+import com.terracottatech.search.ValueID;
+import com.terracottatech.search.aggregator.Aggregator;
+import com.terracottatech.search.aggregator.AggregatorOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class InMemoryIndexManagerTest extends TestCase {
+
+  private static final String       CACHE   = "cache";
+  private static final ObjectID     SEGMENT = new ObjectID(1);
+  private static final ClientID     CLIENT  = new ClientID(1);
+
+  private InMemoryIndexManager      manager;
+  private CountingProcessingContext context;
+  private long                      requests;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    manager = new InMemoryIndexManager(10, 1000);
+    context = new CountingProcessingContext();
+    // age = i % 10, name = "name" + i
+    for (int i = 0; i < 100; i++) {
+      put("k" + i, i, i % 10, i < 50 ? SEGMENT : new ObjectID(2));
+    }
+  }
+
+  public void testEquality() throws Exception {
+    assertEquals(keys(3, 13, 23, 33, 43, 53, 63, 73, 83, 93), search(query(StackOperations.TERM, pair("age", 3))));
+    assertEquals(Collections.EMPTY_SET, search(query(StackOperations.TERM, pair("age", 42))));
+    assertEquals(Collections.EMPTY_SET, search(query(StackOperations.TERM, pair("unknown", 3))));
+    assertEquals(90, search(query(StackOperations.NOT_TERM, pair("age", 3))).size());
+  }
+
+  public void testRanges() throws Exception {
+    assertEquals(20, search(query(StackOperations.GREATER_THAN, pair("age", 7))).size());
+    assertEquals(30, search(query(StackOperations.GREATER_THAN_EQUAL, pair("age", 7))).size());
+    assertEquals(20, search(query(StackOperations.LESS_THAN, pair("age", 2))).size());
+    assertEquals(30, search(query(StackOperations.LESS_THAN_EQUAL, pair("age", 2))).size());
+    assertEquals(30, search(query(StackOperations.BETWEEN, pair("age", 2), pair("age", 4), true, true)).size());
+    assertEquals(10, search(query(StackOperations.BETWEEN, pair("age", 2), pair("age", 4), false, false)).size());
+    assertEquals(0, search(query(StackOperations.BETWEEN, pair("age", 4), pair("age", 2), true, true)).size());
+  }
+
+  public void testLogic() throws Exception {
+    // age = 1 and name like 'name1*'
+    assertEquals(keys(1, 11), search(query(StackOperations.AND, StackOperations.TERM, pair("age", 1),
+                                           StackOperations.ILIKE, pair("name", "NAME1*"))));
+    assertEquals(20, search(query(StackOperations.OR, StackOperations.TERM, pair("age", 1), StackOperations.TERM,
+                                  pair("age", 2))).size());
+    assertEquals(80, search(query(StackOperations.NOT, StackOperations.OR, StackOperations.TERM, pair("age", 1),
+                                  StackOperations.TERM, pair("age", 2))).size());
+    assertEquals(30, search(query(StackOperations.BEGIN_GROUP, StackOperations.OR, StackOperations.TERM,
+                                  pair("age", 1), StackOperations.TERM, pair("age", 2), StackOperations.TERM,
+                                  pair("age", 3), StackOperations.END_GROUP)).size());
+    assertEquals(keys(15), search(query(StackOperations.BEGIN_GROUP, StackOperations.AND, StackOperations.TERM,
+                                       pair("age", 5), StackOperations.LESS_THAN, pair("name", "name2"),
+                                       StackOperations.END_GROUP)));
+    assertEquals(100, search(query(StackOperations.ALL)).size());
+  }
+
+  public void testUpdatesMaintainTheIndexes() throws Exception {
+    manager.update(CACHE, "k3", new ValueID(1003), attributes(4, "name3"), SEGMENT, context);
+    assertFalse(search(query(StackOperations.TERM, pair("age", 3))).contains("k3"));
+    assertTrue(search(query(StackOperations.TERM, pair("age", 4))).contains("k3"));
+    assertEquals(11, search(query(StackOperations.BETWEEN, pair("age", 4), pair("age", 4), true, true)).size());
+
+    manager.remove(CACHE, "k4", SEGMENT, context);
+    assertFalse(search(query(StackOperations.TERM, pair("age", 4))).contains("k4"));
+    assertFalse(search(query(StackOperations.ALL)).contains("k4"));
+
+    // only removed if the value still matches
+    manager.removeIfValueEqual(CACHE, Collections.singletonMap("k5", new ValueID(42)), SEGMENT, context, true);
+    assertTrue(search(query(StackOperations.ALL)).contains("k5"));
+    manager.removeIfValueEqual(CACHE, Collections.singletonMap("k5", new ValueID(5)), SEGMENT, context, true);
+    assertFalse(search(query(StackOperations.ALL)).contains("k5"));
+  }
+
+  public void testConditionalUpdates() throws Exception {
+    manager.replace(CACHE, "k6", new ValueID(1006), new ValueID(42), attributes(0, "name6"), SEGMENT, context);
+    assertTrue(search(query(StackOperations.TERM, pair("age", 6))).contains("k6"));
+    manager.replace(CACHE, "k6", new ValueID(1006), new ValueID(6), attributes(0, "name6"), SEGMENT, context);
+    assertTrue(search(query(StackOperations.TERM, pair("age", 0))).contains("k6"));
+
+    manager.putIfAbsent(CACHE, "k7", new ValueID(1007), attributes(0, "name7"), SEGMENT, context);
+    assertTrue(search(query(StackOperations.TERM, pair("age", 7))).contains("k7"));
+    manager.putIfAbsent(CACHE, "k100", new ValueID(100), attributes(0, "name100"), SEGMENT, context);
+    assertTrue(search(query(StackOperations.TERM, pair("age", 0))).contains("k100"));
+  }
+
+  public void testClearOnlyClearsTheSegment() throws Exception {
+    manager.clear(CACHE, SEGMENT, context);
+    Set<String> remaining = search(query(StackOperations.ALL));
+    assertEquals(50, remaining.size());
+    assertFalse(remaining.contains("k0"));
+    assertTrue(remaining.contains("k50"));
+    assertEquals(5, search(query(StackOperations.TERM, pair("age", 1))).size());
+  }
+
+  public void testDeleteIndex() throws Exception {
+    assertEquals(Arrays.asList(CACHE), Arrays.asList(manager.getSearchIndexNames()));
+    manager.deleteIndex(CACHE, context);
+    assertEquals(0, manager.getSearchIndexNames().length);
+    assertEquals(0, search(query(StackOperations.ALL)).size());
+  }
+
+  public void testSortingAndMaxResults() throws Exception {
+    List<NVPair> sort = Arrays.asList(pair("age", SortOperations.DESCENDING), pair("name", SortOperations.ASCENDING));
+    SearchResult result = manager.searchIndex(CACHE, CLIENT, nextRequest(), query(StackOperations.LESS_THAN,
+                                                                                 pair("age", 5)), true, true,
+                                              Collections.singleton("name"), Collections.<String> emptySet(), sort,
+                                              Collections.<NVPair> emptyList(), 3, 0);
+    List<IndexQueryResult> results = result.getQueryResults();
+    assertEquals(3, results.size());
+    assertEquals("k14", results.get(0).getKey());
+    assertEquals("k24", results.get(1).getKey());
+    assertEquals("k34", results.get(2).getKey());
+    assertEquals(new ValueID(14), results.get(0).getValue());
+    assertEquals("name", results.get(0).getAttributes().get(0).getName());
+    assertEquals(2, results.get(0).getSortAttributes().size());
+  }
+
+  public void testKeysAndValuesOnlyWhenAsked() throws Exception {
+    SearchResult result = manager.searchIndex(CACHE, CLIENT, nextRequest(), query(StackOperations.TERM,
+                                                                                 pair("age", 1)), false, false,
+                                              Collections.<String> emptySet(), Collections.<String> emptySet(),
+                                              Collections.<NVPair> emptyList(), Collections.<NVPair> emptyList(), -1,
+                                              0);
+    IndexQueryResult first = (IndexQueryResult) result.getQueryResults().get(0);
+    assertNull(first.getKey());
+    assertNull(first.getValue());
+    assertTrue(first.getAttributes().isEmpty());
+  }
+
+  public void testPaging() throws Exception {
+    SearchRequestID request = nextRequest();
+    LinkedList query = query(StackOperations.LESS_THAN, pair("age", 5));
+    List<NVPair> sort = Arrays.asList(pair("name", SortOperations.ASCENDING));
+    SearchResult first = manager.searchIndex(CACHE, CLIENT, request, query, true, false,
+                                             Collections.<String> emptySet(), Collections.<String> emptySet(), sort,
+                                             Collections.<NVPair> emptyList(), 25, 10);
+    assertEquals(10, first.getQueryResults().size());
+
+    // a later update does not change the pages of an open result set
+    manager.remove(CACHE, "k10", SEGMENT, context);
+    List<String> pages = new ArrayList<String>();
+    for (int start = 10; start < 30; start += 10) {
+      for (Object r : manager.getSearchResults(CACHE, CLIENT, request, query, true, false,
+                                               Collections.<String> emptySet(), sort, Collections.<NVPair> emptyList(),
+                                               25, start, 10).getQueryResults()) {
+        pages.add(((IndexQueryResult) r).getKey());
+      }
+    }
+    assertEquals(15, pages.size());
+
+    // released results are computed again
+    manager.releaseAllResultsFor(CLIENT);
+    SearchResult again = manager.getSearchResults(CACHE, CLIENT, request, query, true, false,
+                                                  Collections.<String> emptySet(), sort,
+                                                  Collections.<NVPair> emptyList(), 25, 0, 10);
+    assertEquals(10, again.getQueryResults().size());
+    for (Object r : again.getQueryResults()) {
+      assertFalse("k10".equals(((IndexQueryResult) r).getKey()));
+    }
+  }
+
+  public void testReleasedQueryDropsItsResults() throws Exception {
+    SearchRequestID request = nextRequest();
+    LinkedList query = query(StackOperations.LESS_THAN, pair("age", 5));
+    List<NVPair> sort = Arrays.asList(pair("name", SortOperations.ASCENDING));
+    manager.searchIndex(CACHE, CLIENT, request, query, true, false, Collections.<String> emptySet(),
+                        Collections.<String> emptySet(), sort, Collections.<NVPair> emptyList(), 25, 10);
+    manager.remove(CACHE, "k10", SEGMENT, context);
+
+    int before = context.processed;
+    manager.releaseSearchResults(CACHE, new QueryID(CLIENT.toLong(), request.toLong()), context);
+    assertEquals(before + 1, context.processed);
+
+    // the next page is computed again, without the removed entry
+    List<String> keys = new ArrayList<String>();
+    for (Object r : manager.getSearchResults(CACHE, CLIENT, request, query, true, false,
+                                             Collections.<String> emptySet(), sort,
+                                             Collections.<NVPair> emptyList(), 25, 0, 25).getQueryResults()) {
+      keys.add(((IndexQueryResult) r).getKey());
+    }
+    assertEquals(25, keys.size());
+    assertFalse(keys.contains("k10"));
+  }
+
+  public void testAggregatorsSeeEveryMatch() throws Exception {
+    SearchResult result = manager.searchIndex(CACHE, CLIENT, nextRequest(), query(StackOperations.TERM,
+                                                                                 pair("age", 2)), false, false,
+                                              Collections.<String> emptySet(), Collections.<String> emptySet(),
+                                              Collections.<NVPair> emptyList(),
+                                              Arrays.asList(pair("age", AggregatorOperations.COUNT)), 1, 0);
+    assertEquals(1, result.getQueryResults().size());
+    assertEquals(1, result.getAggregators().size());
+    assertEquals(10L, ((Number) ((Aggregator) result.getAggregators().get(0)).getResult()).longValue());
+  }
+
+  public void testEveryEventIsProcessed() throws Exception {
+    int before = context.processed;
+    manager.insert(CACHE, "a", new ValueID(1), attributes(1, "a"), SEGMENT, context);
+    manager.remove(CACHE, "a", SEGMENT, context);
+    manager.remove("unknown", "a", SEGMENT, context);
+    manager.clear("unknown", SEGMENT, context);
+    assertEquals(before + 4, context.processed);
+  }
+
+  public void testSearchesFailOncePassiveSynced() throws Exception {
+    InMemoryIndexHACoordinator coordinator = new InMemoryIndexHACoordinator();
+    manager = coordinator;
+    put("k1", 1, 1, SEGMENT);
+    assertEquals(keys(1), search(query(StackOperations.TERM, pair("age", 1))));
+
+    coordinator.doSyncPrepare();
+    try {
+      search(query(StackOperations.TERM, pair("age", 1)));
+      fail("searched an incomplete index");
+    } catch (IndexException e) {
+      // expected
+    }
+  }
+
+  private void put(String key, long value, int age, ObjectID segment) throws Exception {
+    manager.insert(CACHE, key, new ValueID(value), attributes(age, "name" + key.substring(1)), segment, context);
+  }
+
+  private static List<NVPair> attributes(int age, String name) {
+    return Arrays.asList(pair("age", age), pair("name", name));
+  }
+
+  private static NVPair pair(String name, Object value) {
+    return AbstractNVPair.createNVPair(name, value);
+  }
+
+  private Set<String> search(LinkedList query) throws Exception {
+    SearchResult result = manager.searchIndex(CACHE, CLIENT, nextRequest(), query, true, false,
+                                              Collections.<String> emptySet(), Collections.<String> emptySet(),
+                                              Collections.<NVPair> emptyList(), Collections.<NVPair> emptyList(), -1,
+                                              0);
+    Set<String> keys = new HashSet<String>();
+    for (Object r : result.getQueryResults()) {
+      keys.add(((IndexQueryResult) r).getKey());
+    }
+    return keys;
+  }
+
+  private SearchRequestID nextRequest() {
+    return new SearchRequestID(++requests);
+  }
+
+  /**
+   * Lays the operations out so that they are read in the given order.
+   */
+  private static LinkedList query(Object... operations) {
+    LinkedList stack = new LinkedList();
+    for (Object operation : operations) {
+      stack.addFirst(operation);
+    }
+    return stack;
+  }
+
+  private static Set<String> keys(int... ids) {
+    Set<String> keys = new HashSet<String>();
+    for (int id : ids) {
+      keys.add("k" + id);
+    }
+    return keys;
+  }
+
+  private static final class CountingProcessingContext extends MetaDataProcessingContext {
+    private int processed;
+
+    CountingProcessingContext() {
+      super(null, null);
+    }
+
+    @Override
+    public synchronized void processed() {
+      processed++;
+    }
+  }
+}
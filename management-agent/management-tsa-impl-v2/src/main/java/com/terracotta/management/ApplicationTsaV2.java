@@ -20,6 +20,8 @@ import org.terracotta.management.resource.services.validator.RequestValidator;
 import org.terracotta.session.management.SessionsResourceServiceImplV2;
 import org.terracotta.session.management.SessionsServiceV2;
 
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.terracotta.management.l1bridge.RemoteAgentServiceV2;
 import com.terracotta.management.l1bridge.RemoteRequestValidator;
 import com.terracotta.management.l1bridge.RemoteServiceStubGeneratorV2;
@@ -106,18 +108,22 @@ public class ApplicationTsaV2 extends DefaultApplicationV2 implements Applicatio
 
     Map<Class<?>, Object> serviceClasses = new HashMap<Class<?>, Object>();
 
+    SnapshotCacheV2 snapshotCache = new SnapshotCacheV2(TCPropertiesImpl.getProperties()
+        .getLong(TCPropertiesConsts.MANAGEMENT_REST_SNAPSHOT_TTL, 5000L));
     ServerManagementServiceV2 serverManagementService = new ServerManagementServiceV2(tsaExecutorService,
                                                                                       timeoutService,
                                                                                       localManagementSource,
                                                                                       remoteManagementSource,
-                                                                                      securityContextService);
+                                                                                      securityContextService,
+                                                                                      snapshotCache);
     OperatorEventsServiceImplV2 operatorEventsServiceImplV2 = new OperatorEventsServiceImplV2(serverManagementService);
     ClientManagementServiceV2 clientManagementService = new ClientManagementServiceV2(serverManagementService,
                                                                                       tsaExecutorService,
                                                                                       timeoutService,
                                                                                       localManagementSource,
                                                                                       remoteManagementSource,
-                                                                                      securityContextService);
+                                                                                      securityContextService,
+                                                                                      snapshotCache);
     
     // pure L2 services
     serviceClasses.put(TopologyServiceV2.class, new TopologyServiceImplV2(serverManagementService, clientManagementService, operatorEventsServiceImplV2));
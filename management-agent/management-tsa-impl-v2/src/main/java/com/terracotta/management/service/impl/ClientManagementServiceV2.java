@@ -24,12 +24,10 @@ import com.terracotta.management.service.impl.util.RemoteManagementSource;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
 import javax.management.ObjectName;
 import javax.ws.rs.core.UriBuilder;
@@ -49,14 +47,20 @@ public class ClientManagementServiceV2 {
   private final ExecutorService executorService;
   private final RemoteManagementSource remoteManagementSource;
   private final SecurityContextService securityContextService;
+  private final SnapshotCacheV2 snapshotCache;
 
   public ClientManagementServiceV2(L1MBeansSource l1MBeansSource, ExecutorService executorService, TimeoutService timeoutService, LocalManagementSource localManagementSource, RemoteManagementSource remoteManagementSource, SecurityContextService securityContextService) {
+    this(l1MBeansSource, executorService, timeoutService, localManagementSource, remoteManagementSource, securityContextService, new SnapshotCacheV2(0L));
+  }
+
+  public ClientManagementServiceV2(L1MBeansSource l1MBeansSource, ExecutorService executorService, TimeoutService timeoutService, LocalManagementSource localManagementSource, RemoteManagementSource remoteManagementSource, SecurityContextService securityContextService, SnapshotCacheV2 snapshotCache) {
     this.timeoutService = timeoutService;
     this.l1MBeansSource = l1MBeansSource;
     this.executorService = executorService;
     this.localManagementSource = localManagementSource;
     this.remoteManagementSource = remoteManagementSource;
     this.securityContextService = securityContextService;
+    this.snapshotCache = snapshotCache;
   }
 
 
@@ -97,7 +101,17 @@ public class ClientManagementServiceV2 {
     });
   }
 
-  public ResponseEntityV2<ClientEntityV2> getClients(Set<String> clientIds, Set<ProductID> clientProductIds) throws ServiceExecutionException {
+  public ResponseEntityV2<ClientEntityV2> getClients(final Set<String> clientIds, final Set<ProductID> clientProductIds) throws ServiceExecutionException {
+    return SnapshotCacheV2.copyOf(snapshotCache.get(SnapshotCacheV2.key("getClients", clientIds, clientProductIds),
+        new Callable<ResponseEntityV2<ClientEntityV2>>() {
+          @Override
+          public ResponseEntityV2<ClientEntityV2> call() throws ServiceExecutionException {
+            return fetchClients(clientIds, clientProductIds);
+          }
+        }));
+  }
+
+  private ResponseEntityV2<ClientEntityV2> fetchClients(Set<String> clientIds, Set<ProductID> clientProductIds) throws ServiceExecutionException {
     return forEachClient(clientProductIds, clientIds, "getClients", new ForEachClient<ClientEntityV2>() {
       @Override
       public ClientEntityV2 queryClient(ObjectName clientObjectName, String clientId) {
@@ -134,7 +148,17 @@ public class ClientManagementServiceV2 {
     });
   }
 
-  public ResponseEntityV2<StatisticsEntityV2> getClientsStatistics(Set<String> clientIds, Set<ProductID> clientProductIds, final Set<String> attributesToShow) throws ServiceExecutionException {
+  public ResponseEntityV2<StatisticsEntityV2> getClientsStatistics(final Set<String> clientIds, final Set<ProductID> clientProductIds, final Set<String> attributesToShow) throws ServiceExecutionException {
+    return SnapshotCacheV2.copyOf(snapshotCache.get(SnapshotCacheV2.key("getClientsStatistics", clientIds, clientProductIds, attributesToShow),
+        new Callable<ResponseEntityV2<StatisticsEntityV2>>() {
+          @Override
+          public ResponseEntityV2<StatisticsEntityV2> call() throws ServiceExecutionException {
+            return fetchClientsStatistics(clientIds, clientProductIds, attributesToShow);
+          }
+        }));
+  }
+
+  private ResponseEntityV2<StatisticsEntityV2> fetchClientsStatistics(Set<String> clientIds, Set<ProductID> clientProductIds, final Set<String> attributesToShow) throws ServiceExecutionException {
     final String[] attributeNames = (attributesToShow == null) ?
         CLIENT_STATS_MBEAN_ATTRIBUTE_NAMES :
         new ArrayList<String>(attributesToShow).toArray(new String[attributesToShow.size()]);
@@ -225,7 +249,7 @@ public class ClientManagementServiceV2 {
       return fec.queryActiveServerClients(activeServerName, clientIds, clientProductIds);
     }
 
-    Map<String, Future<T>> futures = new HashMap<String, Future<T>>();
+    FanOutV2<T> fanOut = new FanOutV2<T>(executorService, securityContextService, timeoutService.getCallTimeout(), methodName);
 
     Collection<ObjectName> clientObjectNames = localManagementSource.fetchClientObjectNames(clientProductIds);
     for (final ObjectName clientObjectName : clientObjectNames) {
@@ -234,27 +258,21 @@ public class ClientManagementServiceV2 {
         continue;
       }
 
-      final SecurityContextService.SecurityContext context = securityContextService.getSecurityContext();
-      Future<T> future = executorService.submit(new Callable<T>() {
+      fanOut.submit(clientId, new Callable<T>() {
         @Override
         public T call() throws Exception {
-          securityContextService.setSecurityContext(context);
-          try {
-            return fec.queryClient(clientObjectName, clientId);
-          } finally {
-            securityContextService.clearSecurityContext();
-          }
+          return fec.queryClient(clientObjectName, clientId);
         }
       });
-      futures.put(clientId, future);
     }
 
     try {
       ResponseEntityV2<T> responseEntityV2 = new ResponseEntityV2<T>();
-      responseEntityV2.getEntities().addAll(remoteManagementSource.collectEntitiesFromFutures(futures, timeoutService.getCallTimeout(), methodName, Integer.MAX_VALUE));
+      responseEntityV2.getEntities().addAll(fanOut.collect().values());
+      responseEntityV2.getExceptionEntities().addAll(fanOut.getExceptionEntities());
       return responseEntityV2;
     } catch (Exception e) {
-      remoteManagementSource.cancelFutures(futures.values());
+      fanOut.cancel();
       throw new ServiceExecutionException("error collecting client data via " + methodName, e);
     }
   }
@@ -0,0 +1,131 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.management.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.management.resource.ExceptionEntityV2;
+
+import com.terracotta.management.security.SecurityContextService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs one call per node, servers or clients, all at once on the management executor and collects what came back.
+ * Each node has the call timeout from the moment its own call was submitted, so a slow node costs its own deadline
+ * and not the sum of everyone's. Nodes that did not answer in time, or whose call could not even be queued, are
+ * reported as exception entities next to the results of the others instead of failing the whole request. Calls that
+ * failed are only logged, as they always were.
+ *
+ * @param <R> the result of the call to one node
+ */
+class FanOutV2<R> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FanOutV2.class);
+
+  private final ExecutorService executorService;
+  private final SecurityContextService securityContextService;
+  private final long timeoutMillis;
+  private final String methodName;
+  private final Map<String, Call<R>> calls = new LinkedHashMap<String, Call<R>>();
+  private final Collection<ExceptionEntityV2> exceptionEntities = new ArrayList<ExceptionEntityV2>();
+
+  FanOutV2(ExecutorService executorService, SecurityContextService securityContextService, long timeoutMillis, String methodName) {
+    this.executorService = executorService;
+    this.securityContextService = securityContextService;
+    this.timeoutMillis = timeoutMillis;
+    this.methodName = methodName;
+  }
+
+  /**
+   * Submit the call to the given node, run with the security context of the calling thread.
+   */
+  void submit(String nodeName, final Callable<R> callable) {
+    final SecurityContextService.SecurityContext context = securityContextService.getSecurityContext();
+    try {
+      Future<R> future = executorService.submit(new Callable<R>() {
+        @Override
+        public R call() throws Exception {
+          securityContextService.setSecurityContext(context);
+          try {
+            return callable.call();
+          } finally {
+            securityContextService.clearSecurityContext();
+          }
+        }
+      });
+      calls.put(nodeName, new Call<R>(future, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+    } catch (RejectedExecutionException ree) {
+      LOG.debug("Could not submit {} to {}", methodName, nodeName, ree);
+      exceptionEntities.add(exceptionEntity(nodeName + " skipped in " + methodName + ", too many management calls in progress", ree));
+    }
+  }
+
+  /**
+   * Wait for every node until its deadline.
+   *
+   * @return the non-null results of the nodes that answered in time, by node name in submission order.
+   */
+  Map<String, R> collect() throws InterruptedException {
+    Map<String, R> results = new LinkedHashMap<String, R>();
+    for (Map.Entry<String, Call<R>> entry : calls.entrySet()) {
+      String nodeName = entry.getKey();
+      Call<R> call = entry.getValue();
+      long timeLeft = call.deadline - System.nanoTime();
+      try {
+        R result = call.future.get(Math.max(TimeUnit.MILLISECONDS.toNanos(1L), timeLeft), TimeUnit.NANOSECONDS);
+        if (result != null) {
+          results.put(nodeName, result);
+        }
+      } catch (TimeoutException te) {
+        call.future.cancel(true);
+        LOG.debug("{} did not answer {} within {}ms", nodeName, methodName, timeoutMillis);
+        exceptionEntities.add(exceptionEntity(nodeName + " did not answer " + methodName + " within " + timeoutMillis + "ms, result is partial", te));
+      } catch (ExecutionException ee) {
+        LOG.debug("Future execution error in {}:{}", nodeName, methodName, ee);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return the nodes left out of the results of {@link #collect()} because they were too slow or too busy.
+   */
+  Collection<ExceptionEntityV2> getExceptionEntities() {
+    return exceptionEntities;
+  }
+
+  void cancel() {
+    for (Call<R> call : calls.values()) {
+      call.future.cancel(true);
+    }
+  }
+
+  private static ExceptionEntityV2 exceptionEntity(String message, Throwable t) {
+    ExceptionEntityV2 exceptionEntity = new ExceptionEntityV2(t);
+    exceptionEntity.setMessage(message);
+    return exceptionEntity;
+  }
+
+  private static final class Call<R> {
+    private final Future<R> future;
+    private final long deadline;
+
+    private Call(Future<R> future, long deadline) {
+      this.future = future;
+      this.deadline = deadline;
+    }
+  }
+
+}
@@ -46,7 +46,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.management.Notification;
@@ -75,13 +74,19 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
   private final TimeoutService timeoutService;
   private final RemoteManagementSource remoteManagementSource;
   private final SecurityContextService securityContextService;
+  private final SnapshotCacheV2 snapshotCache;
 
   public ServerManagementServiceV2(ExecutorService executorService, TimeoutService timeoutService, LocalManagementSource localManagementSource, RemoteManagementSource remoteManagementSource, SecurityContextService securityContextService) {
+    this(executorService, timeoutService, localManagementSource, remoteManagementSource, securityContextService, new SnapshotCacheV2(0L));
+  }
+
+  public ServerManagementServiceV2(ExecutorService executorService, TimeoutService timeoutService, LocalManagementSource localManagementSource, RemoteManagementSource remoteManagementSource, SecurityContextService securityContextService, SnapshotCacheV2 snapshotCache) {
     this.executorService = executorService;
     this.timeoutService = timeoutService;
     this.localManagementSource = localManagementSource;
     this.remoteManagementSource = remoteManagementSource;
     this.securityContextService = securityContextService;
+    this.snapshotCache = snapshotCache;
   }
 
   public boolean isEnterpriseEdition() throws ServiceExecutionException {
@@ -140,7 +145,17 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
     });
   }
 
-  public ResponseEntityV2<StatisticsEntityV2> getServersStatistics(Set<String> serverNames, final Set<String> attributesToShow) throws ServiceExecutionException {
+  public ResponseEntityV2<StatisticsEntityV2> getServersStatistics(final Set<String> serverNames, final Set<String> attributesToShow) throws ServiceExecutionException {
+    return SnapshotCacheV2.copyOf(snapshotCache.get(SnapshotCacheV2.key("getServersStatistics", serverNames, attributesToShow),
+        new Callable<ResponseEntityV2<StatisticsEntityV2>>() {
+          @Override
+          public ResponseEntityV2<StatisticsEntityV2> call() throws ServiceExecutionException {
+            return fetchServersStatistics(serverNames, attributesToShow);
+          }
+        }));
+  }
+
+  private ResponseEntityV2<StatisticsEntityV2> fetchServersStatistics(Set<String> serverNames, final Set<String> attributesToShow) throws ServiceExecutionException {
     final String[] mbeanAttributeNames = (attributesToShow == null) ?
         SERVER_STATS_ATTRIBUTE_NAMES :
         new ArrayList<String>(attributesToShow).toArray(new String[attributesToShow.size()]);
@@ -173,7 +188,17 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
     });
   }
 
-  public ResponseEntityV2<StatisticsEntityV2> getDgcStatistics(Set<String> serverNames, int maxDgcStatsEntries) throws ServiceExecutionException {
+  public ResponseEntityV2<StatisticsEntityV2> getDgcStatistics(final Set<String> serverNames, final int maxDgcStatsEntries) throws ServiceExecutionException {
+    return SnapshotCacheV2.copyOf(snapshotCache.get(SnapshotCacheV2.key("getDgcStatistics", serverNames, maxDgcStatsEntries),
+        new Callable<ResponseEntityV2<StatisticsEntityV2>>() {
+          @Override
+          public ResponseEntityV2<StatisticsEntityV2> call() throws ServiceExecutionException {
+            return fetchDgcStatistics(serverNames, maxDgcStatsEntries);
+          }
+        }));
+  }
+
+  private ResponseEntityV2<StatisticsEntityV2> fetchDgcStatistics(Set<String> serverNames, int maxDgcStatsEntries) throws ServiceExecutionException {
     return forEachServer("getDgcStatistics", serverNames, maxDgcStatsEntries, new ForEachServer<StatisticsEntityV2>() {
       @Override
       public Collection<StatisticsEntityV2> queryLocalServer(L2Info member) {
@@ -468,10 +493,21 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
     });
   }
 
+  public Collection<ServerGroupEntityV2> getServerGroups(final Set<String> serverNames) throws ServiceExecutionException {
+    return new ArrayList<ServerGroupEntityV2>(snapshotCache.get(SnapshotCacheV2.key("getServerGroups", serverNames),
+        new Callable<Collection<ServerGroupEntityV2>>() {
+          @Override
+          public Collection<ServerGroupEntityV2> call() throws ServiceExecutionException {
+            return fetchServerGroups(serverNames);
+          }
+        }));
+  }
+
   // this method duplicates the logic in forEachServer()
-  public Collection<ServerGroupEntityV2> getServerGroups(Set<String> serverNames) throws ServiceExecutionException {
+  private Collection<ServerGroupEntityV2> fetchServerGroups(Set<String> serverNames) throws ServiceExecutionException {
     Collection<ServerGroupEntityV2> localServerGroupEntities = new ArrayList<ServerGroupEntityV2>();
-    Map<String, Future<Collection<ServerGroupEntityV2>>> futures = new HashMap<String, Future<Collection<ServerGroupEntityV2>>>();
+    FanOutV2<Collection<ServerGroupEntityV2>> fanOut = new FanOutV2<Collection<ServerGroupEntityV2>>(executorService,
+        securityContextService, timeoutService.getCallTimeout(), "getServerGroups");
 
     ServerGroupInfo[] serverGroupInfos = localManagementSource.getServerGroupInfos();
     for (final ServerGroupInfo serverGroupInfo : serverGroupInfos) {
@@ -488,7 +524,7 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
         if (member.name().equals(localManagementSource.getLocalServerName())) {
           getServerGroups_local(localServerGroupEntities, serverGroupEntityV2, member);
         } else {
-          getServerGroups_remote(futures, serverGroupInfo, member);
+          getServerGroups_remote(fanOut, serverGroupInfo, member);
         }
       }
     }
@@ -496,8 +532,10 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
     try {
       Map<String, ServerGroupEntityV2> mergedResult = new HashMap<String, ServerGroupEntityV2>();
 
-      Collection<ServerGroupEntityV2> remoteServerGroupEntities = remoteManagementSource.collectEntitiesCollectionFromFutures(futures, timeoutService
-          .getCallTimeout(), "getServerGroups", Integer.MAX_VALUE);
+      Collection<ServerGroupEntityV2> remoteServerGroupEntities = new ArrayList<ServerGroupEntityV2>();
+      for (Collection<ServerGroupEntityV2> serverGroupEntities : fanOut.collect().values()) {
+        remoteServerGroupEntities.addAll(serverGroupEntities);
+      }
       for (ServerGroupEntityV2 serverGroupEntityV2 : remoteManagementSource.merge(localServerGroupEntities, remoteServerGroupEntities)) {
         ServerGroupEntityV2 existingSge = mergedResult.get(serverGroupEntityV2.getName());
         if (existingSge == null) {
@@ -509,50 +547,44 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
 
       return mergedResult.values();
     } catch (Exception e) {
+      fanOut.cancel();
       throw new ServiceExecutionException("error executing remote getServerGroups", e);
     }
   }
 
-  private void getServerGroups_remote(Map<String, Future<Collection<ServerGroupEntityV2>>> futures, final ServerGroupInfo serverGroupInfo, final L2Info member) {
-    final SecurityContextService.SecurityContext context = securityContextService.getSecurityContext();
-    Future<Collection<ServerGroupEntityV2>> future = executorService.submit(new Callable<Collection<ServerGroupEntityV2>>() {
+  private void getServerGroups_remote(FanOutV2<Collection<ServerGroupEntityV2>> fanOut, final ServerGroupInfo serverGroupInfo, final L2Info member) {
+    fanOut.submit(member.name(), new Callable<Collection<ServerGroupEntityV2>>() {
       @Override
       public Collection<ServerGroupEntityV2> call() throws Exception {
-        securityContextService.setSecurityContext(context);
+        UriBuilder uriBuilder = UriBuilder.fromPath("tc-management-api")
+            .path("v2")
+            .path("agents")
+            .path("topologies")
+            .path("servers")
+            .matrixParam("names", member.name());
+
         try {
-          UriBuilder uriBuilder = UriBuilder.fromPath("tc-management-api")
-              .path("v2")
-              .path("agents")
-              .path("topologies")
-              .path("servers")
-              .matrixParam("names", member.name());
-
-          try {
-            ResponseEntityV2<TopologyEntityV2> resp = remoteManagementSource.getFromRemoteL2(member.name(),
-                uriBuilder.build(), ResponseEntityV2.class, TopologyEntityV2.class);
-            return Collections.singleton(findServerGroupEntityV2ContainingServerWithName(resp.getEntities(), member.name()));
-          } catch (ProcessingException che) {
-            ServerGroupEntityV2 sgEntityV2 = new ServerGroupEntityV2();
-            sgEntityV2.setName(serverGroupInfo.name());
-            sgEntityV2.setCoordinator(serverGroupInfo.isCoordinator());
-            sgEntityV2.setId(serverGroupInfo.id());
-
-            ServerEntityV2 sEntityV2 = new ServerEntityV2();
-            sEntityV2.setProductVersion(localManagementSource.getVersion());
-            sEntityV2.getAttributes().put("Name", member.name());
-            sEntityV2.getAttributes().put("Host", member.host());
-            sEntityV2.getAttributes().put("ManagementPort", member.managementPort());
-            sEntityV2.getAttributes().put("HostAddress", member.safeGetHostAddress());
-
-            sgEntityV2.getServers().add(sEntityV2);
-            return Collections.singleton(sgEntityV2);
-          }
-        } finally {
-          securityContextService.clearSecurityContext();
+          ResponseEntityV2<TopologyEntityV2> resp = remoteManagementSource.getFromRemoteL2(member.name(),
+              uriBuilder.build(), ResponseEntityV2.class, TopologyEntityV2.class);
+          return Collections.singleton(findServerGroupEntityV2ContainingServerWithName(resp.getEntities(), member.name()));
+        } catch (ProcessingException che) {
+          ServerGroupEntityV2 sgEntityV2 = new ServerGroupEntityV2();
+          sgEntityV2.setName(serverGroupInfo.name());
+          sgEntityV2.setCoordinator(serverGroupInfo.isCoordinator());
+          sgEntityV2.setId(serverGroupInfo.id());
+
+          ServerEntityV2 sEntityV2 = new ServerEntityV2();
+          sEntityV2.setProductVersion(localManagementSource.getVersion());
+          sEntityV2.getAttributes().put("Name", member.name());
+          sEntityV2.getAttributes().put("Host", member.host());
+          sEntityV2.getAttributes().put("ManagementPort", member.managementPort());
+          sEntityV2.getAttributes().put("HostAddress", member.safeGetHostAddress());
+
+          sgEntityV2.getServers().add(sEntityV2);
+          return Collections.singleton(sgEntityV2);
         }
       }
     });
-    futures.put(member.name(), future);
   }
 
   private void getServerGroups_local(Collection<ServerGroupEntityV2> localServerGroupEntities, ServerGroupEntityV2 serverGroupEntityV2, L2Info member) {
@@ -648,6 +680,7 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
         return null;
       }
     });
+    snapshotCache.clear();
   }
 
   public void dumpClusterState(Set<String> serverNames) throws ServiceExecutionException {
@@ -737,6 +770,8 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
       }
     });
 
+    snapshotCache.clear();
+
     // the local server must always be the last one to shutdown
     if (includeLocalServer.get()) {
       localManagementSource.shutdownServer();
@@ -765,7 +800,7 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
   }
 
   public ResponseEntityV2<TopologyReloadStatusEntityV2> reloadConfiguration(Set<String> serverNames) throws ServiceExecutionException {
-    return forEachServer("reloadConfiguration", serverNames, new ForEachServer<TopologyReloadStatusEntityV2>() {
+    ResponseEntityV2<TopologyReloadStatusEntityV2> response = forEachServer("reloadConfiguration", serverNames, new ForEachServer<TopologyReloadStatusEntityV2>() {
       @Override
       public Collection<TopologyReloadStatusEntityV2> queryLocalServer(L2Info member) {
         TopologyReloadStatusEntityV2 topologyReloadStatusEntityV2 = new TopologyReloadStatusEntityV2();
@@ -791,6 +826,10 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
         return remoteManagementSource.postToRemoteL2(member.name(), uriBuilder.build(), ResponseEntityV2.class, TopologyReloadStatusEntityV2.class);
       }
     });
+
+    // the topology may have changed under the snapshots
+    snapshotCache.clear();
+    return response;
   }
 
   interface ForEachServer<T extends AbstractEntityV2> {
@@ -805,7 +844,8 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
   // the logic of this method has been duplicated in getServerGroups()
   private <T extends AbstractEntityV2> ResponseEntityV2<T> forEachServer(String methodName, Set<String> serverNames, int maxEntries, final ForEachServer<T> fes) throws ServiceExecutionException {
     ResponseEntityV2<T> result = new ResponseEntityV2<T>();
-    Map<String, Future<ResponseEntityV2<T>>> futures = new HashMap<String, Future<ResponseEntityV2<T>>>();
+    FanOutV2<ResponseEntityV2<T>> fanOut = new FanOutV2<ResponseEntityV2<T>>(executorService, securityContextService,
+        timeoutService.getCallTimeout(), methodName);
 
     L2Info[] members = localManagementSource.getL2Infos();
     for (final L2Info member : members) {
@@ -817,32 +857,27 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
           result.getEntities().addAll(c);
         }
       } else {
-        final SecurityContextService.SecurityContext context = securityContextService.getSecurityContext();
-        Future<ResponseEntityV2<T>> future = executorService.submit(new Callable<ResponseEntityV2<T>>() {
+        fanOut.submit(member.name(), new Callable<ResponseEntityV2<T>>() {
           @Override
           public ResponseEntityV2<T> call() throws Exception {
-            securityContextService.setSecurityContext(context);
-            try {
-              return fes.queryRemoteServer(member);
-            } finally {
-              securityContextService.clearSecurityContext();
-            }
+            return fes.queryRemoteServer(member);
           }
         });
-        futures.put(member.name(), future);
       }
     }
 
     try {
-      Collection<ResponseEntityV2<T>> responseEntityV2s = remoteManagementSource.collectEntitiesFromFutures(futures,
-          timeoutService.getCallTimeout(), methodName, maxEntries);
-      for (ResponseEntityV2<T> remoteResponse : responseEntityV2s) {
-        result.getEntities().addAll(remoteResponse.getEntities());
-        result.getExceptionEntities().addAll(remoteResponse.getExceptionEntities());
+      int remoteResponses = 0;
+      for (ResponseEntityV2<T> remoteResponse : fanOut.collect().values()) {
+        if (remoteResponses++ < maxEntries) {
+          result.getEntities().addAll(remoteResponse.getEntities());
+          result.getExceptionEntities().addAll(remoteResponse.getExceptionEntities());
+        }
       }
+      result.getExceptionEntities().addAll(fanOut.getExceptionEntities());
       return result;
     } catch (Exception e) {
-      remoteManagementSource.cancelFutures(futures.values());
+      fanOut.cancel();
       throw new ServiceExecutionException("error executing remote " + methodName, e);
     }
   }
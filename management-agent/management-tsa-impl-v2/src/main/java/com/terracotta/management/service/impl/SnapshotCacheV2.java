@@ -0,0 +1,142 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.management.service.impl;
+
+import org.terracotta.management.ServiceExecutionException;
+import org.terracotta.management.resource.AbstractEntityV2;
+import org.terracotta.management.resource.ResponseEntityV2;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short lived snapshots of statistics and topology, so that dashboards polling the same resources do not each go to
+ * every server and client over JMX. A snapshot is shared by all the requests made within the time to live of the
+ * first one, including those arriving while it is still being taken, which wait for it instead of starting their own.
+ * A snapshot that failed is dropped straight away. A time to live of zero disables the cache.
+ */
+public class SnapshotCacheV2 {
+
+  private final long ttlNanos;
+  private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+
+  public SnapshotCacheV2(long ttlMillis) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /**
+   * Get the snapshot stored under the given key, taking it with the loader if there is none or it expired. The same
+   * instance is handed out to every caller, who must copy it before changing it.
+   */
+  public <V> V get(String key, Callable<V> loader) throws ServiceExecutionException {
+    if (ttlNanos <= 0) {
+      return call(key, loader);
+    }
+
+    long now = System.nanoTime();
+    Snapshot snapshot = snapshots.get(key);
+    while (snapshot == null || snapshot.isExpired(now)) {
+      Snapshot fresh = new Snapshot(loader, now + ttlNanos);
+      boolean installed = snapshot == null ? snapshots.putIfAbsent(key, fresh) == null : snapshots.replace(key, snapshot, fresh);
+      if (installed) {
+        expunge(now);
+        fresh.task.run();
+        // live for the time to live from when it was taken, however long taking it was
+        fresh.expiry = System.nanoTime() + ttlNanos;
+        snapshot = fresh;
+      } else {
+        snapshot = snapshots.get(key);
+      }
+    }
+
+    try {
+      return (V)snapshot.task.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new ServiceExecutionException("interrupted waiting for " + key, ie);
+    } catch (ExecutionException ee) {
+      snapshots.remove(key, snapshot);
+      Throwable cause = ee.getCause();
+      if (cause instanceof ServiceExecutionException) {
+        throw (ServiceExecutionException)cause;
+      }
+      throw new ServiceExecutionException("error taking snapshot of " + key, cause);
+    }
+  }
+
+  /**
+   * Drop every snapshot, for when something changed the cluster under them.
+   */
+  public void clear() {
+    snapshots.clear();
+  }
+
+  /**
+   * Build the key of a snapshot from the method taking it and its arguments, sets being compared whatever their order.
+   */
+  static String key(String methodName, Object... arguments) {
+    StringBuilder sb = new StringBuilder(methodName);
+    for (Object argument : arguments) {
+      sb.append('|');
+      if (argument == null) {
+        sb.append('*');
+      } else if (argument instanceof Collection) {
+        sb.append(new TreeSet<Object>((Collection<?>)argument));
+      } else {
+        sb.append(argument);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Copy a response handed out by {@link #get}, so that the caller can add to it.
+   */
+  static <T extends AbstractEntityV2> ResponseEntityV2<T> copyOf(ResponseEntityV2<T> response) {
+    ResponseEntityV2<T> copy = new ResponseEntityV2<T>();
+    copy.getEntities().addAll(response.getEntities());
+    copy.getExceptionEntities().addAll(response.getExceptionEntities());
+    return copy;
+  }
+
+  private void expunge(long now) {
+    for (Iterator<Snapshot> it = snapshots.values().iterator(); it.hasNext(); ) {
+      if (it.next().isExpired(now)) {
+        it.remove();
+      }
+    }
+  }
+
+  private static <V> V call(String key, Callable<V> loader) throws ServiceExecutionException {
+    try {
+      return loader.call();
+    } catch (ServiceExecutionException see) {
+      throw see;
+    } catch (Exception e) {
+      throw new ServiceExecutionException("error taking snapshot of " + key, e);
+    }
+  }
+
+  private static final class Snapshot {
+    private final FutureTask<Object> task;
+    private volatile long expiry;
+
+    private Snapshot(Callable<?> loader, long expiry) {
+      this.task = new FutureTask<Object>((Callable<Object>)loader);
+      this.expiry = expiry;
+    }
+
+    private boolean isExpired(long now) {
+      return task.isDone() && now - expiry >= 0;
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+package com.terracotta.management.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.terracotta.management.security.impl.DfltSecurityContextService;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutV2Test {
+
+  private ExecutorService executorService;
+  private final CountDownLatch never = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    never.countDown();
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testSlowNodeOnlyCostsItsOwnDeadline() throws Exception {
+    FanOutV2<String> fanOut = new FanOutV2<String>(executorService, new DfltSecurityContextService(), 200L, "getServersStatistics");
+    fanOut.submit("s1", answer("stats1"));
+    fanOut.submit("s2", new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        never.await();
+        return "stats2";
+      }
+    });
+    fanOut.submit("s3", answer("stats3"));
+
+    long before = System.nanoTime();
+    Map<String, String> results = fanOut.collect();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+
+    assertThat(results.size(), is(2));
+    assertThat(results.get("s1"), equalTo("stats1"));
+    assertThat(results.get("s3"), equalTo("stats3"));
+    assertTrue("took " + elapsed + "ms", elapsed < 2000L);
+    assertThat(fanOut.getExceptionEntities().size(), is(1));
+    assertTrue(fanOut.getExceptionEntities().iterator().next().getMessage().startsWith("s2 did not answer getServersStatistics"));
+  }
+
+  @Test
+  public void testFailedNodeIsLeftOut() throws Exception {
+    FanOutV2<String> fanOut = new FanOutV2<String>(executorService, new DfltSecurityContextService(), 1000L, "getClients");
+    fanOut.submit("c1", new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        throw new IllegalStateException("client gone");
+      }
+    });
+    fanOut.submit("c2", answer("client2"));
+
+    Map<String, String> results = fanOut.collect();
+    assertThat(results.size(), is(1));
+    assertThat(results.get("c2"), equalTo("client2"));
+    assertThat(fanOut.getExceptionEntities().size(), is(0));
+  }
+
+  @Test
+  public void testRejectedNodeIsReported() throws Exception {
+    ThreadPoolExecutor saturated = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+    try {
+      FanOutV2<String> fanOut = new FanOutV2<String>(saturated, new DfltSecurityContextService(), 1000L, "getClientsStatistics");
+      final CountDownLatch release = new CountDownLatch(1);
+      Callable<String> blocked = new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          release.await();
+          return "stats";
+        }
+      };
+      fanOut.submit("c1", blocked);
+      fanOut.submit("c2", blocked);
+      fanOut.submit("c3", blocked);
+      release.countDown();
+
+      assertThat(fanOut.collect().size(), is(2));
+      assertThat(fanOut.getExceptionEntities().size(), is(1));
+      assertTrue(fanOut.getExceptionEntities().iterator().next().getMessage().startsWith("c3 skipped"));
+    } finally {
+      saturated.shutdownNow();
+    }
+  }
+
+  private static Callable<String> answer(final String result) {
+    return new Callable<String>() {
+      @Override
+      public String call() {
+        return result;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,128 @@
+package com.terracotta.management.service.impl;
+
+import org.junit.Test;
+import org.terracotta.management.ServiceExecutionException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SnapshotCacheV2Test {
+
+  @Test
+  public void testSnapshotIsReusedUntilItExpires() throws Exception {
+    SnapshotCacheV2 cache = new SnapshotCacheV2(200L);
+    CountingLoader loader = new CountingLoader();
+
+    assertThat(cache.get("stats", loader), is(1));
+    assertThat(cache.get("stats", loader), is(1));
+    assertThat(cache.get("other", loader), is(2));
+
+    Thread.sleep(300L);
+    assertThat(cache.get("stats", loader), is(3));
+  }
+
+  @Test
+  public void testZeroTtlDisablesTheCache() throws Exception {
+    SnapshotCacheV2 cache = new SnapshotCacheV2(0L);
+    CountingLoader loader = new CountingLoader();
+
+    assertThat(cache.get("stats", loader), is(1));
+    assertThat(cache.get("stats", loader), is(2));
+  }
+
+  @Test
+  public void testConcurrentRequestsShareOneSnapshot() throws Exception {
+    final SnapshotCacheV2 cache = new SnapshotCacheV2(60000L);
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final Callable<Integer> slowLoader = new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        loading.countDown();
+        release.await();
+        return loads.incrementAndGet();
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<?>[] futures = new Future<?>[4];
+      futures[0] = executor.submit(new Getter(cache, slowLoader));
+      loading.await();
+      for (int i = 1; i < futures.length; i++) {
+        futures[i] = executor.submit(new Getter(cache, slowLoader));
+      }
+      release.countDown();
+      for (Future<?> future : futures) {
+        assertThat((Integer)future.get(10, TimeUnit.SECONDS), is(1));
+      }
+      assertThat(loads.get(), is(1));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testFailedSnapshotIsNotKept() throws Exception {
+    SnapshotCacheV2 cache = new SnapshotCacheV2(60000L);
+    try {
+      cache.get("stats", new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          throw new ServiceExecutionException("no server answered", null);
+        }
+      });
+      fail("expected ServiceExecutionException");
+    } catch (ServiceExecutionException see) {
+      assertThat(see.getMessage(), equalTo("no server answered"));
+    }
+
+    assertThat(cache.get("stats", new CountingLoader()), is(1));
+  }
+
+  @Test
+  public void testKeyIgnoresSetOrder() throws Exception {
+    assertThat(SnapshotCacheV2.key("getServersStatistics", new HashSet<String>(Arrays.asList("s1", "s2", "s3")), null),
+        equalTo(SnapshotCacheV2.key("getServersStatistics", new HashSet<String>(Arrays.asList("s3", "s1", "s2")), null)));
+    assertThat(SnapshotCacheV2.key("getServersStatistics", null, null).equals(
+        SnapshotCacheV2.key("getServersStatistics", new HashSet<String>(), null)), is(false));
+  }
+
+  private static class CountingLoader implements Callable<Integer> {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Integer call() {
+      return count.incrementAndGet();
+    }
+  }
+
+  private static class Getter implements Callable<Integer> {
+    private final SnapshotCacheV2 cache;
+    private final Callable<Integer> loader;
+
+    private Getter(SnapshotCacheV2 cache, Callable<Integer> loader) {
+      this.cache = cache;
+      this.loader = loader;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+      return cache.get("stats", loader);
+    }
+  }
+
+}
@@ -23,6 +23,7 @@ public class L2MBeanNames {
   public static final ObjectName DUMPER;
   public static final ObjectName SERVER_DB_BACKUP;
   public static final ObjectName ENTERPRISE_TC_SERVER;
+  public static final ObjectName PASSIVE_SYNC;
 
   static {
     try {
@@ -34,6 +35,7 @@ public class L2MBeanNames {
       DUMPER = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "L2Dumper", TerracottaManagement.MBeanDomain.INTERNAL);
       SERVER_DB_BACKUP = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "Terracotta Server Backup", TerracottaManagement.MBeanDomain.INTERNAL);
       ENTERPRISE_TC_SERVER = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "Enterprise Terracotta Server", TerracottaManagement.MBeanDomain.INTERNAL);
+      PASSIVE_SYNC = TerracottaManagement.createObjectName(Type.Server, Subsystem.None, null, "Passive Sync", TerracottaManagement.MBeanDomain.INTERNAL);
     } catch (MalformedObjectNameException mone) {
       throw new RuntimeException(mone);
     } catch (NullPointerException npe) {
@@ -39,6 +39,7 @@ import com.google.common.base.Preconditions;
 import com.tc.abortable.AbortableOperationManager;
 import com.tc.abortable.AbortedOperationException;
 import com.tc.platform.PlatformService;
+import com.tc.properties.TCPropertiesConsts;
 import com.terracotta.toolkit.abortable.ToolkitAbortableOperationException;
 import com.terracotta.toolkit.atomic.ToolkitTransactionFeatureImpl;
 import com.terracotta.toolkit.cluster.TerracottaClusterInfo;
@@ -49,8 +50,11 @@ import com.terracotta.toolkit.collections.ToolkitBlockingQueueImpl;
 import com.terracotta.toolkit.collections.ToolkitMapBlockingQueue;
 import com.terracotta.toolkit.collections.ToolkitSetImpl;
 import com.terracotta.toolkit.collections.ToolkitSortedSetImpl;
+import com.terracotta.toolkit.collections.ToolkitStripedBlockingQueue;
 import com.terracotta.toolkit.collections.map.ToolkitCacheImpl;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFactory;
 import com.terracotta.toolkit.collections.servermap.api.ehcacheimpl.EhcacheSMLocalStoreFactory;
+import com.terracotta.toolkit.collections.servermap.api.offheapimpl.OffHeapSMLocalStoreFactory;
 import com.terracotta.toolkit.concurrent.locks.ToolkitLockImpl;
 import com.terracotta.toolkit.concurrent.locks.ToolkitReadWriteLockImpl;
 import com.terracotta.toolkit.config.UnclusteredConfiguration;
@@ -73,6 +77,7 @@ import com.terracotta.toolkit.factory.impl.ToolkitSetFactoryImpl;
 import com.terracotta.toolkit.factory.impl.ToolkitSortedMapFactoryImpl;
 import com.terracotta.toolkit.factory.impl.ToolkitSortedSetFactoryImpl;
 import com.terracotta.toolkit.factory.impl.ToolkitStoreFactoryImpl;
+import com.terracotta.toolkit.factory.impl.ToolkitStripedBlockingQueueFactoryImpl;
 import com.terracotta.toolkit.feature.NoopLicenseFeature;
 import com.terracotta.toolkit.object.serialization.SerializationStrategy;
 import com.terracotta.toolkit.object.serialization.SerializationStrategyImpl;
@@ -100,6 +105,8 @@ public class TerracottaToolkit implements ToolkitInternal {
   private final ToolkitObjectFactory<DestroyableToolkitNotifier>  clusteredNotifierFactory;
   private final ToolkitObjectFactory<ToolkitBlockingQueueImpl>    clusteredBlockingQueueFactory;
   private final ToolkitObjectFactory<ToolkitMapBlockingQueue>     clusteredMapBlockingQueueFactory;
+  private final ToolkitObjectFactory<ToolkitStripedBlockingQueue> clusteredStripedBlockingQueueFactory;
+  private final int                                               blockingQueueStripes;
   private final ToolkitObjectFactory<ToolkitSortedSetImpl>        clusteredSortedSetFactory;
   private final ToolkitObjectFactory<ToolkitSetImpl>              clusteredSetFactory;
   private final ToolkitObjectFactory<ToolkitLockImpl>             lockFactory;
@@ -136,7 +143,7 @@ public class TerracottaToolkit implements ToolkitInternal {
     final ToolkitFactoryInitializationContext context = builder.weakValueMapManager(weakValueMapManager)
         .platformService(platformService)
         .toolkitTypeRootsFactory(new ToolkitTypeRootsStaticFactory(weakValueMapManager))
-        .serverMapLocalStoreFactory(new EhcacheSMLocalStoreFactory(defaultToolkitCacheManager))
+        .serverMapLocalStoreFactory(createServerMapLocalStoreFactory())
         .searchFactory(createSearchFactory()).build();
 
     lockFactory = new ToolkitLockFactoryImpl(context);
@@ -151,6 +158,8 @@ public class TerracottaToolkit implements ToolkitInternal {
     clusteredStoreFactory = ToolkitStoreFactoryImpl.newToolkitStoreFactory(this, context);
     clusteredBlockingQueueFactory = new ToolkitBlockingQueueFactoryImpl(this, context);
     clusteredMapBlockingQueueFactory = new ToolkitMapBlockingQueueFactoryImpl(this, context);
+    clusteredStripedBlockingQueueFactory = new ToolkitStripedBlockingQueueFactoryImpl(this, context);
+    blockingQueueStripes = toolkitProperties.getInteger(TCPropertiesConsts.TOOLKIT_BLOCKINGQUEUE_STRIPES, 0);
 
     ToolkitStore atomicLongs = clusteredStoreFactory.getOrCreate(ToolkitTypeConstants.TOOLKIT_ATOMIC_LONG_MAP_NAME,
                                                                  new ToolkitStoreConfigBuilder()
@@ -261,7 +270,13 @@ public class TerracottaToolkit implements ToolkitInternal {
   @Override
   public <E> ToolkitBlockingQueue<E> getBlockingQueue(String name, int capacity, Class<E> klazz) {
     if (capacity < 1) { throw new IllegalArgumentException("Capacity should be at least 1 - " + capacity); }
-    if (capacity > QUEUE_THRESHOLD) {
+    if (blockingQueueStripes > 0) {
+      // producers and consumers do not contend, at the cost of FIFO ordering across stripes
+      UnclusteredConfiguration config = new UnclusteredConfiguration();
+      config.setInt(ToolkitStripedBlockingQueueFactoryImpl.CAPACITY_FIELD_NAME, capacity);
+      config.setInt(ToolkitStripedBlockingQueueFactoryImpl.STRIPES_FIELD_NAME, blockingQueueStripes);
+      return clusteredStripedBlockingQueueFactory.getOrCreate(name, config);
+    } else if (capacity > QUEUE_THRESHOLD) {
       // scales better for big queues, but has significantly lower throughput
       return clusteredMapBlockingQueueFactory.getOrCreate(name, new UnclusteredConfiguration()
           .setInt(ToolkitMapBlockingQueueFactoryImpl.CAPACITY_FIELD_NAME, capacity));
@@ -327,6 +342,16 @@ public class TerracottaToolkit implements ToolkitInternal {
     return UnsupportedSearchFactory.INSTANCE;
   }
 
+  private ServerMapLocalStoreFactory createServerMapLocalStoreFactory() {
+    ServerMapLocalStoreFactory ehcacheFactory = new EhcacheSMLocalStoreFactory(defaultToolkitCacheManager);
+    if (!toolkitProperties.getBoolean(TCPropertiesConsts.TOOLKIT_LOCALCACHE_OFFHEAP_ENABLED)) { return ehcacheFactory; }
+    int slabSize = toolkitProperties.getInteger(TCPropertiesConsts.TOOLKIT_LOCALCACHE_OFFHEAP_SLAB_SIZE,
+                                                OffHeapSMLocalStoreFactory.DEFAULT_SLAB_SIZE);
+    int blockSize = toolkitProperties.getInteger(TCPropertiesConsts.TOOLKIT_LOCALCACHE_OFFHEAP_BLOCK_SIZE,
+                                                 OffHeapSMLocalStoreFactory.DEFAULT_BLOCK_SIZE);
+    return new OffHeapSMLocalStoreFactory(ehcacheFactory, slabSize, blockSize);
+  }
+
   @Override
   public synchronized void shutdown() {
     weakValueMapManager.cancel();
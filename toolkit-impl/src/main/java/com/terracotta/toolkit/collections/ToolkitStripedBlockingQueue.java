@@ -0,0 +1,761 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+
+package com.terracotta.toolkit.collections;
+
+import org.terracotta.toolkit.collections.ToolkitBlockingQueue;
+import org.terracotta.toolkit.concurrent.locks.ToolkitLock;
+import org.terracotta.toolkit.concurrent.locks.ToolkitReadWriteLock;
+import org.terracotta.toolkit.internal.cache.ToolkitCacheInternal;
+import org.terracotta.toolkit.store.ToolkitStore;
+
+import com.terracotta.toolkit.rejoin.RejoinAwareToolkitObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * A distributed blocking queue whose elements are striped across several segments of a clustered {@link ToolkitStore}.
+ * Every stripe is a FIFO sequence guarded by two locks, one for the put side and one for the take side, so that
+ * producers and consumers on different nodes do not contend for the same lock, and so that nodes working on different
+ * stripes do not contend at all. A node keeps putting to (taking from) the same stripe while it has room (elements),
+ * which keeps the stripe locks greedily held by that node.
+ * <p>
+ * The price is that ordering is only FIFO within a stripe, a queue with a single stripe is a plain two lock FIFO queue.
+ * The capacity is split between the stripes, the queue is full when all of them are. {@link #offerAll(Collection)} and
+ * {@link #drainTo(Collection, int)} move as many elements as a stripe allows under a single lock acquisition, which is a
+ * single transaction.
+ * <p>
+ * Blocked producers and consumers wait on the condition of a separate lock, which is only signalled when a stripe
+ * becomes non empty or non full, and only taken for that when the store counts threads waiting on it. Waits are
+ * bounded to a short slice after which stripes are scanned again, as the counters of the other side of a stripe, and
+ * the count of waiting threads, are read without holding their lock.
+ *
+ * @see ToolkitMapBlockingQueue
+ * @see java.util.concurrent.LinkedBlockingQueue
+ */
+public class ToolkitStripedBlockingQueue<E> implements ToolkitBlockingQueue<E>, RejoinAwareToolkitObject {
+
+  private static final String                   CAPACITY_KEY     = "__capacity";
+  private static final String                   STRIPES_KEY      = "__stripes";
+  private static final String                   WAITING_KEY      = "__waiting";
+
+  private static final long                     WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+  private final String                          name;
+  // to access unlocked store operations
+  private final ToolkitCacheInternal<String, E> map;
+  private final int                             capacity;
+  private final List<Stripe>                    stripes;
+  private final ToolkitReadWriteLock            waitLock;
+  // ToolkitLock supports a single condition, shared by waiting producers and consumers
+  private final Condition                       notEmptyOrFull;
+
+  // stripes this node last put to and took from
+  private volatile int                          putIndex;
+  private volatile int                          takeIndex;
+
+  public ToolkitStripedBlockingQueue(final String name, final int capacity, final ToolkitStore<String, E> map,
+                                     final ToolkitReadWriteLock[] putLocks, final ToolkitReadWriteLock[] takeLocks,
+                                     final ToolkitReadWriteLock waitLock) {
+    if (capacity <= 0) throw new IllegalArgumentException("Capacity should be a positive integer");
+    if (map == null) throw new NullPointerException("Store is not specified");
+    if (putLocks == null || takeLocks == null || waitLock == null) throw new NullPointerException("Locks are not specified");
+    if (putLocks.length == 0 || putLocks.length != takeLocks.length) throw new IllegalArgumentException(
+        "Expected as many put as take locks, and at least one - " + putLocks.length + ", " + takeLocks.length);
+
+    this.name = name;
+    this.map = (ToolkitCacheInternal<String, E>) map;
+    this.capacity = capacity;
+    this.waitLock = waitLock;
+    this.notEmptyOrFull = waitLock.writeLock().getCondition();
+    this.stripes = new ArrayList<Stripe>(putLocks.length);
+    for (int i = 0; i < putLocks.length; i++) {
+      // spread the remainder over the first stripes, so that the stripe capacities add up to the queue capacity
+      int stripeCapacity = capacity / putLocks.length + (i < capacity % putLocks.length ? 1 : 0);
+      stripes.add(new Stripe(i, stripeCapacity, putLocks[i].writeLock(), takeLocks[i].writeLock()));
+    }
+    // spread nodes over the stripes
+    final int start = new Random().nextInt(stripes.size());
+    this.putIndex = start;
+    this.takeIndex = start;
+
+    final Integer oldCapacity = (Integer) map.get(CAPACITY_KEY);
+    if (oldCapacity == null) {
+      initNewMap();
+    } else {
+      final Integer oldStripes = (Integer) map.get(STRIPES_KEY);
+      if (capacity != oldCapacity || stripes.size() != oldStripes) { throw new IllegalArgumentException(
+          "A " + ToolkitStripedBlockingQueue.class.getSimpleName() + " with name '" + name
+              + "' already exists with different capacity or stripes - " + oldCapacity + "/" + oldStripes
+              + ", requested - " + capacity + "/" + stripes.size()); }
+    }
+  }
+
+  // to get rid of internal store lock
+  private void unlockedPutNoReturn(String key, E value) {
+    map.unlockedPutNoReturn(key, value, 0, 0, 0);
+  }
+
+  private E unlockedGet(String key) {
+    return map.unlockedGet(key, true);
+  }
+
+  private void unlockedRemoveNoReturn(String key) {
+    map.unlockedRemoveNoReturn(key);
+  }
+
+  private void initNewMap() {
+    waitLock.writeLock().lock();
+    try {
+      // double checked locking to prevent initialization race
+      if (map.get(CAPACITY_KEY) != null) { return; }
+
+      for (final Stripe stripe : stripes) {
+        stripe.setHead(0);
+        stripe.setTail(0);
+      }
+      unlockedPutNoReturn(WAITING_KEY, (E) Integer.valueOf(0));
+      unlockedPutNoReturn(STRIPES_KEY, (E) Integer.valueOf(stripes.size()));
+      unlockedPutNoReturn(CAPACITY_KEY, (E) Integer.valueOf(capacity));
+    } finally {
+      waitLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public final int getCapacity() {
+    return capacity;
+  }
+
+  public int getStripeCount() {
+    return stripes.size();
+  }
+
+  /**
+   * The returned lock is the one blocked producers and consumers wait on, holding it does not exclude queue operations
+   * that do not block.
+   */
+  @Override
+  public ToolkitReadWriteLock getReadWriteLock() {
+    return waitLock;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The size is the sum of the stripe sizes, each read without locking.
+   */
+  @Override
+  public int size() {
+    long size = 0;
+    for (final Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (final Stripe stripe : stripes) {
+      if (stripe.size() > 0) { return false; }
+    }
+    return true;
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return Math.max(0, capacity - size());
+  }
+
+  @Override
+  public boolean add(final E e) {
+    if (offer(e)) {
+      return true;
+    } else {
+      throw new IllegalStateException("Queue is full");
+    }
+  }
+
+  @Override
+  public boolean addAll(final Collection<? extends E> c) {
+    final List<E> elements = checkedCopy(c);
+    if (append(elements) < elements.size()) { throw new IllegalStateException("Queue is full"); }
+    return !elements.isEmpty();
+  }
+
+  /**
+   * Inserts as many of the given elements as the queue has room for, without blocking. Elements are appended to a
+   * stripe in batches, each batch under a single lock acquisition.
+   *
+   * @return the number of elements inserted, the first ones in the iteration order of the given collection
+   * @throws NullPointerException if the collection or any of its elements is null
+   */
+  public int offerAll(final Collection<? extends E> c) {
+    return append(checkedCopy(c));
+  }
+
+  private List<E> checkedCopy(final Collection<? extends E> c) {
+    if (c == null) throw new NullPointerException();
+    if (c == this) throw new IllegalArgumentException();
+
+    final List<E> elements = new ArrayList<E>(c);
+    for (final E element : elements) {
+      if (element == null) throw new NullPointerException();
+    }
+    return elements;
+  }
+
+  @Override
+  public boolean offer(final E e) {
+    if (e == null) throw new NullPointerException();
+
+    return append(Collections.singletonList(e)) == 1;
+  }
+
+  @Override
+  public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+    if (e == null) throw new NullPointerException();
+
+    return offer(Collections.singletonList(e), true, unit.toNanos(timeout));
+  }
+
+  @Override
+  public void put(final E e) throws InterruptedException {
+    if (e == null) throw new NullPointerException();
+
+    offer(Collections.singletonList(e), false, 0);
+  }
+
+  private boolean offer(final List<E> one, final boolean timed, long nanos) throws InterruptedException {
+    if (append(one) == 1) { return true; }
+
+    waitLock.writeLock().lockInterruptibly();
+    try {
+      addWaiters(1);
+      try {
+        // scan again under the wait lock, a consumer making room can no longer signal before we wait
+        while (append(one) == 0) {
+          if (timed && nanos <= 0) { return false; }
+          nanos = awaitNanos(timed ? nanos : Long.MAX_VALUE);
+        }
+      } finally {
+        addWaiters(-1);
+      }
+      // pass the signal on to the other producers if there is room left
+      if (stripes.get(putIndex).hasRoom()) {
+        notEmptyOrFull.signalAll();
+      }
+      return true;
+    } finally {
+      waitLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public E poll() {
+    final List<E> one = new ArrayList<E>(1);
+    return drain(one, 1) == 0 ? null : one.get(0);
+  }
+
+  @Override
+  public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    return poll(true, unit.toNanos(timeout));
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    return poll(false, 0);
+  }
+
+  private E poll(final boolean timed, long nanos) throws InterruptedException {
+    final List<E> one = new ArrayList<E>(1);
+    if (drain(one, 1) == 1) { return one.get(0); }
+
+    waitLock.writeLock().lockInterruptibly();
+    try {
+      addWaiters(1);
+      try {
+        // scan again under the wait lock, a producer inserting can no longer signal before we wait
+        while (drain(one, 1) == 0) {
+          if (timed && nanos <= 0) { return null; }
+          nanos = awaitNanos(timed ? nanos : Long.MAX_VALUE);
+        }
+      } finally {
+        addWaiters(-1);
+      }
+      // pass the signal on to the other consumers if there are elements left
+      if (stripes.get(takeIndex).size() > 0) {
+        notEmptyOrFull.signalAll();
+      }
+      return one.get(0);
+    } finally {
+      waitLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Waits for a stripe to become non empty or non full, at most a slice of the given time. Should be invoked under the
+   * wait lock.
+   *
+   * @return the time left
+   */
+  private long awaitNanos(final long nanos) throws InterruptedException {
+    final long slice = Math.min(nanos, WAIT_SLICE_NANOS);
+    try {
+      return nanos - slice + notEmptyOrFull.awaitNanos(slice);
+    } catch (InterruptedException ie) {
+      // propagate to non-interrupted thread
+      notEmptyOrFull.signalAll();
+      throw ie;
+    }
+  }
+
+  /**
+   * Counts threads waiting on the condition, across the cluster. Should be invoked under the wait lock.
+   */
+  private void addWaiters(final int delta) {
+    final Integer waiting = (Integer) unlockedGet(WAITING_KEY);
+    unlockedPutNoReturn(WAITING_KEY, (E) Integer.valueOf((waiting == null ? 0 : waiting) + delta));
+  }
+
+  /**
+   * Signals the waiting producers and consumers, if any. The count is read without the wait lock, a waiter it misses
+   * is woken up at the end of its wait slice.
+   */
+  private void signalWaiters() {
+    final Integer waiting = (Integer) unlockedGet(WAITING_KEY);
+    // queues created before the count was kept have none
+    if (waiting != null && waiting <= 0) { return; }
+
+    waitLock.writeLock().lock();
+    try {
+      notEmptyOrFull.signalAll();
+    } finally {
+      waitLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Appends the given elements to the stripes with room, starting with the one this node last put to.
+   */
+  private int append(final List<E> elements) {
+    int added = 0;
+    final int start = putIndex;
+    for (int k = 0; k < stripes.size() && added < elements.size(); k++) {
+      final int i = (start + k) % stripes.size();
+      final int n = stripes.get(i).append(elements, added);
+      if (n > 0) {
+        added += n;
+        putIndex = i;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Drains up to the given number of elements from the stripes, starting with the one this node last took from.
+   */
+  private int drain(final Collection<? super E> c, final int maxElements) {
+    int drained = 0;
+    final int start = takeIndex;
+    for (int k = 0; k < stripes.size() && drained < maxElements; k++) {
+      final int i = (start + k) % stripes.size();
+      final int n = stripes.get(i).drain(c, maxElements - drained);
+      if (n > 0) {
+        drained += n;
+        takeIndex = i;
+      }
+    }
+    return drained;
+  }
+
+  @Override
+  public int drainTo(final Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Elements are drained from a stripe in batches, each batch under a single lock acquisition.
+   */
+  @Override
+  public int drainTo(final Collection<? super E> c, final int maxElements) {
+    if (c == null) throw new NullPointerException();
+    if (c == this) throw new IllegalArgumentException();
+    if (maxElements <= 0) return 0;
+
+    return drain(c, maxElements);
+  }
+
+  @Override
+  public E remove() {
+    final E x = poll();
+    if (x != null) {
+      return x;
+    } else {
+      throw new NoSuchElementException();
+    }
+  }
+
+  @Override
+  public E element() {
+    final E x = peek();
+    if (x != null) {
+      return x;
+    } else {
+      throw new NoSuchElementException();
+    }
+  }
+
+  @Override
+  public E peek() {
+    final int start = takeIndex;
+    for (int k = 0; k < stripes.size(); k++) {
+      final E x = stripes.get((start + k) % stripes.size()).peek();
+      if (x != null) { return x; }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean remove(final Object o) {
+    if (o == null) return false;
+
+    for (final Stripe stripe : stripes) {
+      if (stripe.filter(Collections.singleton(o), false, true) > 0) { return true; }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean removeAll(final Collection<?> c) {
+    if (c == null) throw new NullPointerException();
+
+    boolean modified = false;
+    for (final Stripe stripe : stripes) {
+      if (stripe.filter(c, false, false) > 0) {
+        modified = true;
+      }
+    }
+    return modified;
+  }
+
+  @Override
+  public boolean retainAll(final Collection<?> c) {
+    if (c == null) throw new NullPointerException();
+
+    boolean modified = false;
+    for (final Stripe stripe : stripes) {
+      if (stripe.filter(c, true, false) > 0) {
+        modified = true;
+      }
+    }
+    return modified;
+  }
+
+  @Override
+  public void clear() {
+    for (final Stripe stripe : stripes) {
+      stripe.filter(Collections.emptySet(), true, false);
+    }
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    if (o == null) return false;
+
+    for (final Stripe stripe : stripes) {
+      if (stripe.snapshot().contains(o)) { return true; }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean containsAll(final Collection<?> c) {
+    return snapshot().containsAll(c);
+  }
+
+  @Override
+  public Object[] toArray() {
+    return snapshot().toArray();
+  }
+
+  @Override
+  public <T> T[] toArray(final T[] a) {
+    return snapshot().toArray(a);
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+
+  /**
+   * Returns an iterator over a snapshot of the elements, stripe after stripe. The iterator never throws
+   * {@link java.util.ConcurrentModificationException}, and its <tt>remove</tt> removes an element equal to the last
+   * returned one from the queue.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    final Iterator<E> snapshot = snapshot().iterator();
+    return new Iterator<E>() {
+      private E lastItem;
+
+      @Override
+      public boolean hasNext() {
+        return snapshot.hasNext();
+      }
+
+      @Override
+      public E next() {
+        lastItem = snapshot.next();
+        return lastItem;
+      }
+
+      @Override
+      public void remove() {
+        if (lastItem == null) throw new IllegalStateException("remove() should only be invoked after next(). "
+                                                              + "This call can only be made once per call to next()");
+        ToolkitStripedBlockingQueue.this.remove(lastItem);
+        lastItem = null;
+      }
+    };
+  }
+
+  private List<E> snapshot() {
+    final List<E> elements = new ArrayList<E>();
+    for (final Stripe stripe : stripes) {
+      elements.addAll(stripe.snapshot());
+    }
+    return elements;
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return map.isDestroyed();
+  }
+
+  @Override
+  public void destroy() {
+    map.destroy();
+  }
+
+  @Override
+  public void rejoinStarted() {
+    //
+  }
+
+  @Override
+  public void rejoinCompleted() {
+    //
+  }
+
+  /**
+   * A FIFO segment of the queue. Elements are stored under monotonic sequence numbers between the head, updated under
+   * the take lock, and the tail, updated under the put lock.
+   */
+  private final class Stripe {
+
+    private final int        index;
+    private final int        capacity;
+    private final ToolkitLock putLock;
+    private final ToolkitLock takeLock;
+    private final String     headKey;
+    private final String     tailKey;
+
+    private Stripe(final int index, final int capacity, final ToolkitLock putLock, final ToolkitLock takeLock) {
+      this.index = index;
+      this.capacity = capacity;
+      this.putLock = putLock;
+      this.takeLock = takeLock;
+      this.headKey = "__head" + index;
+      this.tailKey = "__tail" + index;
+    }
+
+    /**
+     * {@link ToolkitStore} currently supports only {@link String} keys, so we have to use some kind of converter.
+     */
+    private String toKey(final long sequence) {
+      return index + ":" + sequence;
+    }
+
+    private long getHead() {
+      return (Long) unlockedGet(headKey);
+    }
+
+    private void setHead(final long head) {
+      unlockedPutNoReturn(headKey, (E) Long.valueOf(head));
+    }
+
+    private long getTail() {
+      return (Long) unlockedGet(tailKey);
+    }
+
+    private void setTail(final long tail) {
+      unlockedPutNoReturn(tailKey, (E) Long.valueOf(tail));
+    }
+
+    private long size() {
+      // read the head first, a concurrent take can only make the size look bigger than it is
+      final long head = getHead();
+      return Math.max(0, getTail() - head);
+    }
+
+    private boolean hasRoom() {
+      return size() < capacity;
+    }
+
+    /**
+     * Appends elements, starting at the given one, as long as there is room, in a single transaction.
+     */
+    private int append(final List<E> elements, final int from) {
+      if (capacity == 0) { return 0; }
+
+      final boolean wasEmpty;
+      final int n;
+      putLock.lock();
+      try {
+        final long tail = getTail();
+        // a stale head only makes the stripe look fuller than it is
+        final long size = tail - getHead();
+        n = (int) Math.min(capacity - size, elements.size() - from);
+        if (n <= 0) { return 0; }
+        for (int k = 0; k < n; k++) {
+          unlockedPutNoReturn(toKey(tail + k), elements.get(from + k));
+        }
+        setTail(tail + n);
+        wasEmpty = size == 0;
+      } finally {
+        putLock.unlock();
+      }
+      // consumers only wait once they saw all stripes empty
+      if (wasEmpty) {
+        signalWaiters();
+      }
+      return n;
+    }
+
+    /**
+     * Moves up to the given number of elements from the head of the stripe to the collection, in a single transaction.
+     */
+    private int drain(final Collection<? super E> c, final int maxElements) {
+      if (capacity == 0) { return 0; }
+
+      final boolean wasFull;
+      int drained = 0;
+      takeLock.lock();
+      try {
+        final long head = getHead();
+        // a stale tail only makes the stripe look emptier than it is
+        final long size = getTail() - head;
+        final long n = Math.min(size, maxElements);
+        try {
+          while (drained < n) {
+            final String key = toKey(head + drained);
+            c.add(unlockedGet(key));
+            unlockedRemoveNoReturn(key);
+            ++drained;
+          }
+        } finally {
+          if (drained > 0) {
+            setHead(head + drained);
+          }
+        }
+        wasFull = size >= capacity;
+      } finally {
+        takeLock.unlock();
+      }
+      // producers only wait once they saw all stripes full
+      if (drained > 0 && wasFull) {
+        signalWaiters();
+      }
+      return drained;
+    }
+
+    private E peek() {
+      takeLock.lock();
+      try {
+        final long head = getHead();
+        return head < getTail() ? unlockedGet(toKey(head)) : null;
+      } finally {
+        takeLock.unlock();
+      }
+    }
+
+    private List<E> snapshot() {
+      takeLock.lock();
+      try {
+        final long head = getHead();
+        final long tail = getTail();
+        final List<E> elements = new ArrayList<E>((int) Math.max(0, tail - head));
+        for (long i = head; i < tail; i++) {
+          elements.add(unlockedGet(toKey(i)));
+        }
+        return elements;
+      } finally {
+        takeLock.unlock();
+      }
+    }
+
+    /**
+     * Removes the elements contained (or, when retaining, not contained) in the given collection, sliding the others
+     * over. Takes both locks, the put lock first.
+     *
+     * @return the number of elements removed
+     */
+    private int filter(final Collection<?> c, final boolean retain, final boolean firstOnly) {
+      int removed = 0;
+      putLock.lock();
+      try {
+        takeLock.lock();
+        try {
+          final long head = getHead();
+          final long tail = getTail();
+          long write = head;
+          for (long read = head; read < tail; read++) {
+            final String key = toKey(read);
+            final E element = unlockedGet(key);
+            if ((!firstOnly || removed == 0) && c.contains(element) != retain) {
+              ++removed;
+            } else {
+              if (write != read) {
+                unlockedPutNoReturn(toKey(write), element);
+              }
+              ++write;
+            }
+          }
+          if (removed > 0) {
+            for (long i = write; i < tail; i++) {
+              unlockedRemoveNoReturn(toKey(i));
+            }
+            setTail(write);
+          }
+        } finally {
+          takeLock.unlock();
+        }
+      } finally {
+        putLock.unlock();
+      }
+      if (removed > 0) {
+        signalWaiters();
+      }
+      return removed;
+    }
+  }
+
+}
@@ -88,6 +88,8 @@ import com.terracotta.toolkit.config.UnclusteredConfiguration;
 import com.terracotta.toolkit.config.cache.InternalCacheConfigurationType;
 import com.terracotta.toolkit.object.DestroyApplicator;
 import com.terracotta.toolkit.object.ToolkitObjectStripe;
+import com.terracotta.toolkit.object.serialization.CompressionCodec;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 import com.terracotta.toolkit.object.serialization.SerializationStrategy;
 import com.terracotta.toolkit.object.serialization.SerializedMapValue;
 import com.terracotta.toolkit.object.serialization.SerializedMapValueParameters;
@@ -213,9 +215,12 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
   private void setupStripeObjects(ToolkitObjectStripe<InternalToolkitMap<K, V>>[] stripeObjects) {
     this.stripeObjects = stripeObjects;
     List<InternalToolkitMap<K, V>> list = new ArrayList<InternalToolkitMap<K, V>>();
+    final CompressionCodec compressionCodec = CompressionCodecs
+        .forName((String) InternalCacheConfigurationType.COMPRESSION_CODEC.getValueIfExistsOrDefault(config));
     for (ToolkitObjectStripe<InternalToolkitMap<K, V>> stripeObject : stripeObjects) {
       for (InternalToolkitMap<K, V> serverMap : stripeObject) {
         serverMap.setLockStrategy(lockStrategy);
+        serverMap.setCompressionCodec(compressionCodec);
         list.add(serverMap);
       }
     }
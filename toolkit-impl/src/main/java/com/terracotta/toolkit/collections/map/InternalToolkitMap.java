@@ -20,6 +20,7 @@ import com.tc.server.ServerEventType;
 import com.terracotta.toolkit.bulkload.BufferBackend;
 import com.terracotta.toolkit.collections.map.ServerMap.GetType;
 import com.terracotta.toolkit.object.TCToolkitObject;
+import com.terracotta.toolkit.object.serialization.CompressionCodec;
 
 import java.util.Collection;
 import java.util.Map;
@@ -70,6 +71,12 @@ public interface InternalToolkitMap<K, V> extends ConcurrentMap<K, V>, TCServerM
   void initializeLocalCache(L1ServerMapLocalCacheStore<K, V> localCacheStore, PinnedEntryFaultCallback callback,
                             boolean localCacheEnabled);
 
+  /**
+   * Sets the codec values are compressed with when compression is enabled. This is a local setting, values are always
+   * read back with the codec they were written with.
+   */
+  void setCompressionCodec(CompressionCodec codec);
+
   void removeNoReturn(Object key);
 
   void removeNoReturnVersioned(Object key, long version);
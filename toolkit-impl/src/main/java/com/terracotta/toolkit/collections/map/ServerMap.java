@@ -56,6 +56,8 @@ import com.terracotta.toolkit.meta.MetaData;
 import com.terracotta.toolkit.meta.MetaDataImpl;
 import com.terracotta.toolkit.meta.ToolkitCacheMetaDataCallback;
 import com.terracotta.toolkit.object.AbstractTCToolkitObject;
+import com.terracotta.toolkit.object.serialization.CompressionCodec;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 import com.terracotta.toolkit.object.serialization.CustomLifespanSerializedMapValue;
 import com.terracotta.toolkit.object.serialization.SerializedMapValue;
 import com.terracotta.toolkit.object.serialization.SerializedMapValueParameters;
@@ -88,6 +90,7 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
   private final ToolkitLockTypeInternal                     lockType;
   private volatile boolean                                  localCacheEnabled;
   private volatile boolean                                  compressionEnabled;
+  private volatile CompressionCodec                         compressionCodec;
   private volatile boolean                                  copyOnReadEnabled;
   private volatile int                                      maxTTISeconds;
   private volatile int                                      maxTTLSeconds;
@@ -142,6 +145,8 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     this.timeSource = new SystemTimeSource();
     this.compressionEnabled = (Boolean) InternalCacheConfigurationType.COMPRESSION_ENABLED
         .getExistingValueOrException(config);
+    this.compressionCodec = CompressionCodecs.forName((String) InternalCacheConfigurationType.COMPRESSION_CODEC
+        .getValueIfExistsOrDefault(config));
     this.copyOnReadEnabled = (Boolean) InternalCacheConfigurationType.COPY_ON_READ_ENABLED
         .getExistingValueOrException(config);
     this.metaDataCallback = new ToolkitCacheMetaDataCallback() {
@@ -159,6 +164,11 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
 
   }
 
+  @Override
+  public void setCompressionCodec(CompressionCodec codec) {
+    this.compressionCodec = codec;
+  }
+
   @Override
   public void initializeLocalCache(L1ServerMapLocalCacheStore<K, V> localCacheStore, PinnedEntryFaultCallback callback,
                                    boolean localCacheEnabledParam) {
@@ -620,7 +630,7 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     params.createTime(createTimeInSecs).deserialized(value).lastAccessedTime(createTimeInSecs);
     params.setCustomTTI(customMaxTTISeconds).setCustomTTL(customMaxTTLSeconds);
 
-    params.serialized(serStrategy.serialize(value, compressionEnabled));
+    params.serialized(serStrategy.serialize(value, compressionEnabled ? compressionCodec : null));
     return params;
   }
 
@@ -0,0 +1,479 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.collections.servermap.api.offheapimpl;
+
+import com.tc.object.ObjectID;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStore;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFullException;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A local store keeping serialized values in direct memory handed out by a {@link SlabAllocator}, so a large local
+ * cache costs the client heap only its index.
+ * <p>
+ * The index is split in lock striped segments, each an insertion ordered map from key to the chain holding the value.
+ * Values are serialized before and outside of any segment lock, and the segment lock only guards installing the chain
+ * and reading it back. When the allocator runs out of blocks entries are evicted with a clock sweep over the segments
+ * (an entry read since the hand last passed gets a second chance) and handed to the
+ * {@link ServerMapLocalStoreListener}s. A pinned store never evicts, a put that does not fit throws
+ * {@link ServerMapLocalStoreFullException} instead.
+ * <p>
+ * The value object id to key mappings the local cache keeps for invalidation are held on heap next to the index and
+ * are never evicted by the sweep, the cache drops them itself together with the entry they point to. Losing one early
+ * would leave its entry behind when the value gets invalidated.
+ * <p>
+ * Nothing else is kept on heap, so the store reports every entry as off heap and its on heap size in bytes is the size
+ * of the index and the id mappings.
+ */
+public class OffHeapSMLocalStore implements ServerMapLocalStore<Object, Object> {
+
+  private static final int                                      SEGMENTS       = 16;
+  // hash map node, index entry and the segment's linked list pointers
+  static final int                                              ENTRY_OVERHEAD = 88;
+
+  private final SlabAllocator                                   allocator;
+  private final Segment[]                                       segments;
+  private final ConcurrentMap<Object, Object>                   idMappings     = new ConcurrentHashMap<Object, Object>();
+  private final boolean                                         pinned;
+  private final ClassLoader                                     loader;
+  private final List<ServerMapLocalStoreListener<Object, Object>> listeners    = new CopyOnWriteArrayList<ServerMapLocalStoreListener<Object, Object>>();
+  private final AtomicInteger                                   size           = new AtomicInteger();
+  private final AtomicLong                                      onHeapBytes    = new AtomicLong();
+  private final AtomicInteger                                   clockHand      = new AtomicInteger();
+  private volatile int                                          maxEntriesLocalHeap;
+  private volatile long                                         maxBytesLocalHeap;
+  private volatile boolean                                      disposed;
+
+  public OffHeapSMLocalStore(long maxBytesLocalOffheap, int slabSize, int blockSize, boolean pinned,
+                             ClassLoader loader) {
+    this.allocator = new SlabAllocator(maxBytesLocalOffheap, slabSize, blockSize);
+    this.pinned = pinned;
+    this.loader = loader;
+    this.segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  private Segment segmentFor(Object key) {
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[hash & (SEGMENTS - 1)];
+  }
+
+  @Override
+  public boolean addListener(ServerMapLocalStoreListener<Object, Object> listener) {
+    return listeners.add(listener);
+  }
+
+  @Override
+  public boolean removeListener(ServerMapLocalStoreListener<Object, Object> listener) {
+    return listeners.remove(listener);
+  }
+
+  private static boolean isIdMapping(Object key) {
+    return key instanceof ObjectID;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (isIdMapping(key)) { return idMappings.get(key); }
+    Segment segment = segmentFor(key);
+    byte[] data;
+    segment.readLock().lock();
+    try {
+      Entry entry = segment.map.get(key);
+      if (entry == null) { return null; }
+      entry.referenced = true;
+      data = allocator.read(entry.block);
+    } finally {
+      segment.readLock().unlock();
+    }
+    return deserialize(data);
+  }
+
+  @Override
+  public List<Object> getKeys() {
+    List<Object> keys = new ArrayList<Object>(size.get());
+    for (Segment segment : segments) {
+      segment.readLock().lock();
+      try {
+        keys.addAll(segment.map.keySet());
+      } finally {
+        segment.readLock().unlock();
+      }
+    }
+    keys.addAll(idMappings.keySet());
+    return keys;
+  }
+
+  @Override
+  public Object put(Object key, Object value) throws ServerMapLocalStoreFullException {
+    if (isIdMapping(key)) { return putIdMapping(key, value); }
+    byte[] data = serialize(value);
+    int block = allocate(data.length);
+    allocator.write(block, data);
+
+    Entry entry = new Entry(block, ENTRY_OVERHEAD + estimateKeySize(key));
+    Segment segment = segmentFor(key);
+    Entry old;
+    segment.writeLock().lock();
+    try {
+      if (disposed) {
+        allocator.free(block);
+        return null;
+      }
+      old = segment.map.put(key, entry);
+    } finally {
+      segment.writeLock().unlock();
+    }
+    onHeapBytes.addAndGet(entry.heapSize);
+    if (old == null) {
+      size.incrementAndGet();
+      return null;
+    }
+    // unreachable from the index now, nobody else can read or free it
+    onHeapBytes.addAndGet(-old.heapSize);
+    return release(old);
+  }
+
+  private Object putIdMapping(Object key, Object value) {
+    if (disposed) { return null; }
+    Object old = idMappings.put(key, value);
+    if (old == null) {
+      size.incrementAndGet();
+      onHeapBytes.addAndGet(ENTRY_OVERHEAD);
+    }
+    return old;
+  }
+
+  /**
+   * Allocates a chain for a record of the given length, evicting as long as the allocator is out of blocks.
+   */
+  private int allocate(int length) throws ServerMapLocalStoreFullException {
+    if (!allocator.fits(length)) { throw new ServerMapLocalStoreFullException(); }
+    int block;
+    while ((block = allocator.allocate(length)) == SlabAllocator.NULL_BLOCK) {
+      if (pinned || !evictOne()) { throw new ServerMapLocalStoreFullException(); }
+    }
+    return block;
+  }
+
+  /**
+   * Advances the clock hand over the segments until one of them gives up an entry.
+   *
+   * @return false if there was nothing left to evict
+   */
+  private boolean evictOne() {
+    for (int i = 0; i < SEGMENTS; i++) {
+      Segment segment = segments[clockHand.getAndIncrement() & (SEGMENTS - 1)];
+      Object key = null;
+      Entry victim = null;
+      segment.writeLock().lock();
+      try {
+        // every referenced entry moves to the back once, so the sweep ends within two passes
+        for (int scanned = 0, limit = segment.map.size(); scanned <= limit && !segment.map.isEmpty(); scanned++) {
+          Iterator<Map.Entry<Object, Entry>> it = segment.map.entrySet().iterator();
+          Map.Entry<Object, Entry> eldest = it.next();
+          it.remove();
+          if (eldest.getValue().referenced) {
+            eldest.getValue().referenced = false;
+            segment.map.put(eldest.getKey(), eldest.getValue());
+          } else {
+            key = eldest.getKey();
+            victim = eldest.getValue();
+            break;
+          }
+        }
+      } finally {
+        segment.writeLock().unlock();
+      }
+      if (victim != null) {
+        size.decrementAndGet();
+        onHeapBytes.addAndGet(-victim.heapSize);
+        if (listeners.isEmpty()) {
+          allocator.free(victim.block);
+        } else {
+          Object value = release(victim);
+          for (ServerMapLocalStoreListener<Object, Object> listener : listeners) {
+            listener.notifyElementEvicted(key, value);
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads back and frees the chain of an entry already taken out of the index.
+   */
+  private Object release(Entry entry) {
+    byte[] data = allocator.read(entry.block);
+    allocator.free(entry.block);
+    return deserialize(data);
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (isIdMapping(key)) {
+      Object old = idMappings.remove(key);
+      if (old != null) {
+        idMappingRemoved();
+      }
+      return old;
+    }
+    Segment segment = segmentFor(key);
+    Entry entry;
+    segment.writeLock().lock();
+    try {
+      entry = segment.map.remove(key);
+    } finally {
+      segment.writeLock().unlock();
+    }
+    if (entry == null) { return null; }
+    size.decrementAndGet();
+    onHeapBytes.addAndGet(-entry.heapSize);
+    return release(entry);
+  }
+
+  @Override
+  public Object remove(Object key, Object value) {
+    if (isIdMapping(key)) {
+      if (!idMappings.remove(key, value)) { return null; }
+      idMappingRemoved();
+      return value;
+    }
+    Segment segment = segmentFor(key);
+    Entry entry;
+    Object current;
+    segment.writeLock().lock();
+    try {
+      entry = segment.map.get(key);
+      if (entry == null) { return null; }
+      current = deserialize(allocator.read(entry.block));
+      if (!value.equals(current)) { return null; }
+      segment.map.remove(key);
+    } finally {
+      segment.writeLock().unlock();
+    }
+    size.decrementAndGet();
+    onHeapBytes.addAndGet(-entry.heapSize);
+    allocator.free(entry.block);
+    return current;
+  }
+
+  private void idMappingRemoved() {
+    size.decrementAndGet();
+    onHeapBytes.addAndGet(-ENTRY_OVERHEAD);
+  }
+
+  @Override
+  public int getMaxEntriesLocalHeap() {
+    return maxEntriesLocalHeap;
+  }
+
+  /**
+   * Recorded only, entries are not kept on heap so there is nothing to cap.
+   */
+  @Override
+  public void setMaxEntriesLocalHeap(int newValue) {
+    this.maxEntriesLocalHeap = newValue;
+  }
+
+  @Override
+  public void clear() {
+    // listeners only hear about evictions, same as with the ehcache backed store
+    removeAll();
+  }
+
+  @Override
+  public void cleanLocalState() {
+    removeAll();
+  }
+
+  private void removeAll() {
+    for (Segment segment : segments) {
+      List<Map.Entry<Object, Entry>> removed;
+      segment.writeLock().lock();
+      try {
+        removed = new ArrayList<Map.Entry<Object, Entry>>(segment.map.entrySet());
+        segment.map.clear();
+      } finally {
+        segment.writeLock().unlock();
+      }
+      for (Map.Entry<Object, Entry> e : removed) {
+        size.decrementAndGet();
+        onHeapBytes.addAndGet(-e.getValue().heapSize);
+        allocator.free(e.getValue().block);
+      }
+    }
+    for (Object key : idMappings.keySet()) {
+      if (idMappings.remove(key) != null) {
+        idMappingRemoved();
+      }
+    }
+  }
+
+  @Override
+  public long getOnHeapSizeInBytes() {
+    return onHeapBytes.get();
+  }
+
+  @Override
+  public long getOffHeapSizeInBytes() {
+    return allocator.getOccupiedBytes();
+  }
+
+  @Override
+  public int getOffHeapSize() {
+    return size.get();
+  }
+
+  @Override
+  public int getOnHeapSize() {
+    return 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size.get();
+  }
+
+  @Override
+  public void dispose() {
+    disposed = true;
+    removeAll();
+  }
+
+  @Override
+  public boolean containsKeyOnHeap(Object key) {
+    return false;
+  }
+
+  @Override
+  public boolean containsKeyOffHeap(Object key) {
+    if (isIdMapping(key)) { return idMappings.containsKey(key); }
+    Segment segment = segmentFor(key);
+    segment.readLock().lock();
+    try {
+      return segment.map.containsKey(key);
+    } finally {
+      segment.readLock().unlock();
+    }
+  }
+
+  /**
+   * Recorded only, the heap taken by the index is reported through {@link #getOnHeapSizeInBytes()}.
+   */
+  @Override
+  public void setMaxBytesLocalHeap(long newMaxBytesLocalHeap) {
+    this.maxBytesLocalHeap = newMaxBytesLocalHeap;
+  }
+
+  @Override
+  public long getMaxBytesLocalHeap() {
+    return maxBytesLocalHeap;
+  }
+
+  @Override
+  public void recalculateSize(Object key) {
+    // values are copied in on put, their size cannot change afterwards
+  }
+
+  @Override
+  public boolean isPinned() {
+    return pinned;
+  }
+
+  /**
+   * @return direct memory reserved by this store so far, including free blocks
+   */
+  long getReservedOffHeapBytes() {
+    return allocator.getReservedBytes();
+  }
+
+  private static long estimateKeySize(Object key) {
+    if (key instanceof String) {
+      // String object plus its char array
+      return 40 + 2L * ((String) key).length();
+    }
+    return 32;
+  }
+
+  private static byte[] serialize(Object value) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(bytes);
+      oos.writeObject(value);
+      oos.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private Object deserialize(byte[] data) {
+    try {
+      ObjectInputStream ois = new LoaderObjectInputStream(new ByteArrayInputStream(data), loader);
+      return ois.readObject();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static final class Entry {
+    private final int      block;
+    private final long     heapSize;
+    private volatile boolean referenced;
+
+    Entry(int block, long heapSize) {
+      this.block = block;
+      this.heapSize = heapSize;
+    }
+  }
+
+  private static final class Segment extends ReentrantReadWriteLock {
+    private final LinkedHashMap<Object, Entry> map = new LinkedHashMap<Object, Entry>();
+  }
+
+  private static final class LoaderObjectInputStream extends ObjectInputStream {
+    private final ClassLoader loader;
+
+    LoaderObjectInputStream(InputStream in, ClassLoader loader) throws IOException {
+      super(in);
+      this.loader = loader;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      try {
+        return Class.forName(desc.getName(), false, loader);
+      } catch (ClassNotFoundException e) {
+        return super.resolveClass(desc);
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.collections.servermap.api.offheapimpl;
+
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStore;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreConfig;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates {@link OffHeapSMLocalStore}s for local caches configured to overflow to off heap, and leaves every other
+ * local cache to the given on heap factory.
+ */
+public class OffHeapSMLocalStoreFactory implements ServerMapLocalStoreFactory {
+  public static final int                        DEFAULT_SLAB_SIZE  = 4 * 1024 * 1024;
+  public static final int                        DEFAULT_BLOCK_SIZE = 128;
+
+  private final ServerMapLocalStoreFactory       onHeapFactory;
+  private final int                              slabSize;
+  private final int                              blockSize;
+  private final Map<String, OffHeapSMLocalStore> stores             = new HashMap<String, OffHeapSMLocalStore>();
+
+  public OffHeapSMLocalStoreFactory(ServerMapLocalStoreFactory onHeapFactory) {
+    this(onHeapFactory, DEFAULT_SLAB_SIZE, DEFAULT_BLOCK_SIZE);
+  }
+
+  public OffHeapSMLocalStoreFactory(ServerMapLocalStoreFactory onHeapFactory, int slabSize, int blockSize) {
+    this.onHeapFactory = onHeapFactory;
+    this.slabSize = slabSize;
+    this.blockSize = blockSize;
+  }
+
+  @Override
+  public <K, V> ServerMapLocalStore<K, V> getOrCreateServerMapLocalStore(ServerMapLocalStoreConfig config) {
+    if (!config.isOverflowToOffheap() || config.getMaxBytesLocalOffheap() < blockSize) {
+      return onHeapFactory.getOrCreateServerMapLocalStore(config);
+    }
+    return (ServerMapLocalStore<K, V>) getOrCreateOffHeapStore(config);
+  }
+
+  private synchronized OffHeapSMLocalStore getOrCreateOffHeapStore(ServerMapLocalStoreConfig config) {
+    final String name = config.getLocalStoreManagerName() + "_" + config.getLocalStoreName();
+    OffHeapSMLocalStore store = stores.get(name);
+    if (store == null) {
+      store = new DisposableOffHeapSMLocalStore(name, config);
+      stores.put(name, store);
+    }
+    return store;
+  }
+
+  private synchronized void disposed(String name, OffHeapSMLocalStore store) {
+    if (stores.get(name) == store) {
+      stores.remove(name);
+    }
+  }
+
+  private class DisposableOffHeapSMLocalStore extends OffHeapSMLocalStore {
+    private final String name;
+
+    DisposableOffHeapSMLocalStore(String name, ServerMapLocalStoreConfig config) {
+      // classloader for these stores needs to see toolkit internal types
+      super(config.getMaxBytesLocalOffheap(), slabSize, blockSize, config.isPinnedInLocalMemory(),
+            OffHeapSMLocalStoreFactory.class.getClassLoader());
+      this.name = name;
+    }
+
+    @Override
+    public void dispose() {
+      super.dispose();
+      // drops the last reference to the slabs, their direct memory goes with the next GC
+      disposed(name, this);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.collections.servermap.api.offheapimpl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hands out fixed size blocks carved from direct {@link ByteBuffer} slabs. A record larger than one block is stored in
+ * a chain of blocks, each block starting with the index of the next one, so any freed block can be reused by any
+ * record and there is no per size class fragmentation.
+ * <p>
+ * Slabs are allocated lazily, up to the configured capacity. Free blocks are chained through their own headers, so the
+ * only heap the allocator needs is the slab table.
+ * <p>
+ * Allocation and freeing are synchronized. Reading and writing the blocks of a record are not: callers own a chain from
+ * the moment it is allocated until they free it and must publish it to readers safely.
+ */
+class SlabAllocator {
+  static final int          NULL_BLOCK  = -1;
+
+  // next block index in every block, record length in the first block of a chain
+  private static final int  HEADER_SIZE = 4;
+
+  private final int         blockSize;
+  private final int         payloadSize;
+  private final int         blocksPerSlab;
+  private final int         totalBlocks;
+  private final ByteBuffer[] slabs;
+
+  private int               slabCount;
+  // blocks below this index have been handed out at least once
+  private int               nextUnusedBlock;
+  private int               freeHead    = NULL_BLOCK;
+  private int               usedBlocks;
+
+  SlabAllocator(long capacity, int slabSize, int blockSize) {
+    if (blockSize <= 2 * HEADER_SIZE) { throw new IllegalArgumentException("block size too small: " + blockSize); }
+    if (capacity < blockSize) { throw new IllegalArgumentException("capacity smaller than a block: " + capacity); }
+    this.blockSize = blockSize;
+    this.payloadSize = blockSize - HEADER_SIZE;
+    this.blocksPerSlab = (int) Math.max(1, Math.min(slabSize, capacity) / blockSize);
+    long slabCapacity = (long) blocksPerSlab * blockSize;
+    this.slabs = new ByteBuffer[(int) Math.min(capacity / slabCapacity, Integer.MAX_VALUE / blocksPerSlab)];
+    this.totalBlocks = slabs.length * blocksPerSlab;
+  }
+
+  /**
+   * @return the number of blocks a record of the given length occupies
+   */
+  int blocksFor(int length) {
+    return (int) (((long) length + HEADER_SIZE + payloadSize - 1) / payloadSize);
+  }
+
+  /**
+   * @return true if a record of the given length can fit in this allocator at all
+   */
+  boolean fits(int length) {
+    return blocksFor(length) <= totalBlocks;
+  }
+
+  /**
+   * @return the first block of a chain big enough for a record of the given length, or {@link #NULL_BLOCK} if there
+   *         are not enough free blocks left
+   */
+  synchronized int allocate(int length) {
+    int needed = blocksFor(length);
+    if (needed > totalBlocks - usedBlocks) { return NULL_BLOCK; }
+
+    int head = NULL_BLOCK;
+    int tail = NULL_BLOCK;
+    for (int i = 0; i < needed; i++) {
+      int block = takeBlock();
+      if (block == NULL_BLOCK) {
+        // direct memory ran out before the configured capacity did
+        if (head != NULL_BLOCK) {
+          setNext(tail, NULL_BLOCK);
+          free0(head);
+        }
+        return NULL_BLOCK;
+      }
+      usedBlocks++;
+      if (head == NULL_BLOCK) {
+        head = block;
+      } else {
+        setNext(tail, block);
+      }
+      tail = block;
+    }
+    setNext(tail, NULL_BLOCK);
+    slabOf(head).putInt(offsetOf(head) + HEADER_SIZE, length);
+    return head;
+  }
+
+  private int takeBlock() {
+    if (freeHead != NULL_BLOCK) {
+      int block = freeHead;
+      freeHead = getNext(block);
+      return block;
+    }
+    if (nextUnusedBlock == slabCount * blocksPerSlab) {
+      try {
+        slabs[slabCount] = ByteBuffer.allocateDirect(blocksPerSlab * blockSize);
+      } catch (OutOfMemoryError e) {
+        return NULL_BLOCK;
+      }
+      slabCount++;
+    }
+    return nextUnusedBlock++;
+  }
+
+  /**
+   * Returns every block of the chain starting at head to the free list.
+   */
+  synchronized void free(int head) {
+    free0(head);
+  }
+
+  private void free0(int head) {
+    int block = head;
+    while (true) {
+      usedBlocks--;
+      int next = getNext(block);
+      if (next == NULL_BLOCK) {
+        setNext(block, freeHead);
+        freeHead = head;
+        return;
+      }
+      block = next;
+    }
+  }
+
+  /**
+   * Copies a record into the chain allocated for it.
+   */
+  void write(int head, byte[] data) {
+    int block = head;
+    int offset = 2 * HEADER_SIZE;
+    int written = 0;
+    while (written < data.length) {
+      if (offset == blockSize) {
+        block = getNext(block);
+        offset = HEADER_SIZE;
+      }
+      int n = Math.min(blockSize - offset, data.length - written);
+      ByteBuffer slab = slabOf(block).duplicate();
+      slab.position(offsetOf(block) + offset);
+      slab.put(data, written, n);
+      written += n;
+      offset += n;
+    }
+  }
+
+  /**
+   * @return a copy of the record stored in the chain starting at head
+   */
+  byte[] read(int head) {
+    byte[] data = new byte[slabOf(head).getInt(offsetOf(head) + HEADER_SIZE)];
+    int block = head;
+    int offset = 2 * HEADER_SIZE;
+    int read = 0;
+    while (read < data.length) {
+      if (offset == blockSize) {
+        block = getNext(block);
+        offset = HEADER_SIZE;
+      }
+      int n = Math.min(blockSize - offset, data.length - read);
+      ByteBuffer slab = slabOf(block).duplicate();
+      slab.position(offsetOf(block) + offset);
+      slab.get(data, read, n);
+      read += n;
+      offset += n;
+    }
+    return data;
+  }
+
+  private int getNext(int block) {
+    return slabOf(block).getInt(offsetOf(block));
+  }
+
+  private void setNext(int block, int next) {
+    slabOf(block).putInt(offsetOf(block), next);
+  }
+
+  private ByteBuffer slabOf(int block) {
+    return slabs[block / blocksPerSlab];
+  }
+
+  private int offsetOf(int block) {
+    return (block % blocksPerSlab) * blockSize;
+  }
+
+  int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * @return bytes taken by the blocks currently holding records
+   */
+  synchronized long getOccupiedBytes() {
+    return (long) usedBlocks * blockSize;
+  }
+
+  /**
+   * @return bytes of direct memory reserved by the slabs allocated so far
+   */
+  synchronized long getReservedBytes() {
+    return (long) slabCount * blocksPerSlab * blockSize;
+  }
+
+  /**
+   * @return bytes of direct memory this allocator may reserve at most
+   */
+  long getCapacity() {
+    return (long) totalBlocks * blockSize;
+  }
+}
@@ -20,7 +20,7 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class DestroyableToolkitNotifier<T> extends AbstractDestroyableToolkitObject<ToolkitNotifier> implements
-    ToolkitNotifier<T>, ToolkitNotificationListener<T>, RejoinAwareToolkitObject {
+    ToolkitNotifier<T>, ToolkitNotificationBatchListener<T>, RejoinAwareToolkitObject {
 
   private volatile ToolkitNotifier<T>                                notifier;
   private final String                                               name;
@@ -110,4 +110,11 @@ public class DestroyableToolkitNotifier<T> extends AbstractDestroyableToolkitObj
       listener.onNotification(event);
     }
   }
+
+  @Override
+  public void onNotifications(List<ToolkitNotificationEvent<T>> events) {
+    for (ToolkitNotificationListener<T> listener : listeners) {
+      ToolkitNotifierImpl.notifyListener(listener, events);
+    }
+  }
 }
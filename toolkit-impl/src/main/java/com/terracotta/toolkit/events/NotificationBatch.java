@@ -0,0 +1,59 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.events;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wire form of a batch of serialized notification messages, sent as a single byte array parameter of a
+ * {@code CLUSTERED_NOTIFIER} logical action: the message count, then each message as its length and bytes.
+ */
+final class NotificationBatch {
+
+  private NotificationBatch() {
+    //
+  }
+
+  static int encodedSize(byte[] msg) {
+    return 4 + msg.length;
+  }
+
+  static byte[] encode(List<byte[]> msgs) {
+    int size = 4;
+    for (byte[] msg : msgs) {
+      size += encodedSize(msg);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(msgs.size());
+    for (byte[] msg : msgs) {
+      buffer.putInt(msg.length);
+      buffer.put(msg);
+    }
+    return buffer.array();
+  }
+
+  static List<byte[]> decode(byte[] batch) {
+    ByteBuffer buffer = ByteBuffer.wrap(batch);
+    try {
+      int count = buffer.getInt();
+      if (count < 0) { throw new IllegalArgumentException("Corrupt notification batch, message count: " + count); }
+      if (count == 0) { return Collections.emptyList(); }
+      List<byte[]> msgs = new ArrayList<byte[]>(count);
+      for (int i = 0; i < count; i++) {
+        byte[] msg = new byte[buffer.getInt()];
+        buffer.get(msg);
+        msgs.add(msg);
+      }
+      return msgs;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Corrupt notification batch of " + batch.length + " bytes", e);
+    } catch (NegativeArraySizeException e) {
+      throw new IllegalArgumentException("Corrupt notification batch of " + batch.length + " bytes", e);
+    }
+  }
+}
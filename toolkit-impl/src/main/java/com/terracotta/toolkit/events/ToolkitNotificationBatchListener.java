@@ -0,0 +1,22 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.events;
+
+import org.terracotta.toolkit.events.ToolkitNotificationEvent;
+import org.terracotta.toolkit.events.ToolkitNotificationListener;
+
+import java.util.List;
+
+/**
+ * A {@link ToolkitNotificationListener} that takes the notifications received together in a single call. Other
+ * listeners are called once per notification.
+ */
+public interface ToolkitNotificationBatchListener<T> extends ToolkitNotificationListener<T> {
+
+  /**
+   * @param events notifications in the order they were sent, never empty
+   */
+  void onNotifications(List<ToolkitNotificationEvent<T>> events);
+
+}
@@ -14,11 +14,11 @@ public class ToolkitNotificationEventImpl<T> implements ToolkitNotificationEvent
   private static final TCLogger       LOGGER = TCLogging.getLogger(ToolkitNotificationEventImpl.class);
   private final SerializationStrategy strategy;
   private final String                remoteNodeSerializedForm;
-  private final String                msgSerializedForm;
+  private final byte[]                msgSerializedForm;
   private volatile ClusterNode        remoteNode;
   private volatile T                  msg;
 
-  public ToolkitNotificationEventImpl(SerializationStrategy strategy, String remoteNode, String msg) {
+  public ToolkitNotificationEventImpl(SerializationStrategy strategy, String remoteNode, byte[] msg) {
     this.strategy = strategy;
     this.remoteNodeSerializedForm = remoteNode;
     this.msgSerializedForm = msg;
@@ -28,10 +28,10 @@ public class ToolkitNotificationEventImpl<T> implements ToolkitNotificationEvent
   public T getMessage() {
     if (msg == null) {
       try {
-        msg = (T) strategy.deserializeFromString(msgSerializedForm, false);
+        msg = (T) strategy.deserialize(msgSerializedForm, false, false);
       } catch (Exception e) {
-        LOGGER.warn("Ignoring toolkit notifier notification. Failed to deserialize notification msg - "
-                    + msgSerializedForm, e);
+        LOGGER.warn("Ignoring toolkit notifier notification. Failed to deserialize notification msg of "
+                    + msgSerializedForm.length + " bytes", e);
       }
     }
     return msg;
@@ -3,6 +3,7 @@
  */
 package com.terracotta.toolkit.events;
 
+import org.terracotta.toolkit.events.ToolkitNotificationEvent;
 import org.terracotta.toolkit.events.ToolkitNotificationListener;
 import org.terracotta.toolkit.events.ToolkitNotifier;
 import org.terracotta.toolkit.internal.concurrent.locks.ToolkitLockTypeInternal;
@@ -11,13 +12,19 @@ import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.object.LogicalOperation;
 import com.tc.platform.PlatformService;
+import com.tc.properties.TCPropertiesConsts;
+import com.terracotta.toolkit.TerracottaProperties;
 import com.terracotta.toolkit.cluster.TerracottaNode;
 import com.terracotta.toolkit.concurrent.locks.ToolkitLockingApi;
 import com.terracotta.toolkit.factory.impl.ToolkitNotifierFactoryImpl;
 import com.terracotta.toolkit.object.AbstractTCToolkitObject;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
@@ -26,11 +33,24 @@ public class ToolkitNotifierImpl<T> extends AbstractTCToolkitObject implements T
 
   private static final TCLogger                                                LOGGER    = TCLogging
                                                                                              .getLogger(ToolkitNotifierImpl.class);
+  // how many batches may be queued before notifyListeners blocks
+  private static final int                                                     PENDING_BATCHES = 4;
 
   private final transient CopyOnWriteArrayList<ToolkitNotificationListener<T>> listeners = new CopyOnWriteArrayList<ToolkitNotificationListener<T>>();
   private final String                                                         currentNodeIdStringForm;
   private volatile String                                                      lockid;
   private final ExecutorService                                                notifierService;
+  private final ExecutorService                                                flushService;
+  private final int                                                            maxBatchBytes;
+
+  // serialized messages waiting for the next flush, guarded by itself
+  private final List<QueuedMessage>                                            pending   = new ArrayList<QueuedMessage>();
+  private int                                                                  pendingBytes;
+  private boolean                                                              flushScheduled;
+  // why a batch holding a message of the thread could not be sent, thrown to its next notifyListeners
+  private final Map<Thread, RuntimeException>                                  failures  = new WeakHashMap<Thread, RuntimeException>();
+  // held while a batch is taken off the queue and sent, so batches of this node go out in order
+  private final Object                                                         sendLock  = new Object();
 
   public ToolkitNotifierImpl(PlatformService platformService) {
     super(platformService);
@@ -38,6 +58,10 @@ public class ToolkitNotifierImpl<T> extends AbstractTCToolkitObject implements T
     this.notifierService = platformService
         .lookupRegisteredObjectByName(ToolkitNotifierFactoryImpl.TOOLKIT_NOTIFIER_EXECUTOR_SERVICE,
                                       ExecutorService.class);
+    this.flushService = platformService
+        .lookupRegisteredObjectByName(ToolkitNotifierFactoryImpl.TOOLKIT_NOTIFIER_FLUSH_SERVICE, ExecutorService.class);
+    this.maxBatchBytes = new TerracottaProperties(platformService)
+        .getInteger(TCPropertiesConsts.TOOLKIT_NOTIFIER_BATCH_MAX_BYTES, 262144);
   }
 
   @Override
@@ -55,41 +79,224 @@ public class ToolkitNotifierImpl<T> extends AbstractTCToolkitObject implements T
     listeners.remove(listener);
   }
 
+  /**
+   * Messages are serialized right away and queued, the flush thread then sends everything queued since its last flush
+   * as a single logical action, so a busy notifier costs one transaction per batch instead of one per message. Messages
+   * of a node are received in the order they were queued.
+   * <p>
+   * A caller holding an explicit cluster lock sends its message, after those already queued, from its own thread and
+   * under that lock instead, so the notification is ordered with the transactions of the lock, and a failure to send it
+   * is thrown right away.
+   * <p>
+   * A queued batch that could not be sent stays queued, the failure is thrown to the next call of each thread that had
+   * a message in it, and that call does not queue its own message. The following call sends the queued messages again.
+   */
   @Override
   public void notifyListeners(T msg) {
-    begin();
+    QueuedMessage message = new QueuedMessage(serStrategy.serialize(msg, false));
+    if (platformService.isExplicitlyLocked()) {
+      sendFromCaller(message);
+      return;
+    }
+
+    boolean schedule;
+    synchronized (pending) {
+      throwFailureOfCurrentThread();
+      // producers faster than the flush thread wait here, instead of queueing without bound
+      boolean interrupted = false;
+      try {
+        while (flushScheduled && pendingBytes >= PENDING_BATCHES * maxBatchBytes) {
+          try {
+            pending.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      enqueue(message);
+      schedule = !flushScheduled;
+      flushScheduled = true;
+    }
+    if (schedule) {
+      scheduleFlush();
+    }
+  }
+
+  /**
+   * Sends the queued messages then the given one from the calling thread, throwing the failure of any batch it sends.
+   */
+  private void sendFromCaller(QueuedMessage message) {
+    synchronized (sendLock) {
+      synchronized (pending) {
+        throwFailureOfCurrentThread();
+        enqueue(message);
+      }
+      while (true) {
+        List<QueuedMessage> batch = takeBatch();
+        RuntimeException failure = send(batch);
+        boolean last = batch.contains(message);
+        synchronized (pending) {
+          if (failure != null) {
+            // the message of a failed call is not sent later, whichever batch it was left in
+            if (last) {
+              batch.remove(message);
+            } else if (pending.remove(message)) {
+              pendingBytes -= NotificationBatch.encodedSize(message.bytes);
+            }
+            requeue(batch, failure);
+            // thrown now, for this message and for the earlier ones of this thread that are still queued
+            failures.remove(Thread.currentThread());
+          }
+          pending.notifyAll();
+        }
+        if (failure != null) { throw failure; }
+        if (last) { return; }
+      }
+    }
+  }
+
+  private void throwFailureOfCurrentThread() {
+    RuntimeException failure = failures.remove(Thread.currentThread());
+    if (failure != null) { throw failure; }
+  }
+
+  private void enqueue(QueuedMessage message) {
+    pending.add(message);
+    pendingBytes += NotificationBatch.encodedSize(message.bytes);
+  }
+
+  private void scheduleFlush() {
     try {
-      unlockedNotifyListeners(msg);
-    } finally {
-      commit();
+      flushService.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            flushQueued();
+          } catch (Throwable t) {
+            LOGGER.warn("Exception while trying to send notifications, they stay queued ", t);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      if (!flushService.isShutdown()) { throw e; }
+      // shutting down, send what is left from this thread
+      flushQueued();
     }
   }
 
-  private void unlockedNotifyListeners(T msg) {
-    String stringMsg = null;
-    stringMsg = serStrategy.serializeToString(msg);
-    platformService.logicalInvoke(this, LogicalOperation.CLUSTERED_NOTIFIER, new Object[] { stringMsg,
-        currentNodeIdStringForm });
+  /**
+   * Sends a batch, then yields the flush thread to the other notifiers if more messages are queued.
+   */
+  private void flushQueued() {
+    while (flushBatch()) {
+      if (!flushService.isShutdown()) {
+        scheduleFlush();
+        return;
+      }
+    }
   }
 
   /**
-   * Called by applicator on receiving a remote msg
+   * @return true if more messages are queued, a flush stays scheduled for them
    */
-  protected void onNotification(final String remoteMsg, final String remoteNodeID) {
+  private boolean flushBatch() {
+    synchronized (sendLock) {
+      List<QueuedMessage> batch = takeBatch();
+      RuntimeException failure = send(batch);
+      synchronized (pending) {
+        if (failure != null) {
+          requeue(batch, failure);
+        }
+        boolean more = failure == null && !pending.isEmpty();
+        flushScheduled = more;
+        pending.notifyAll();
+        return more;
+      }
+    }
+  }
+
+  /**
+   * Takes the messages at the head of the queue, up to the batch size.
+   */
+  private List<QueuedMessage> takeBatch() {
+    List<QueuedMessage> batch = new ArrayList<QueuedMessage>();
+    int batchBytes = 0;
+    synchronized (pending) {
+      Iterator<QueuedMessage> i = pending.iterator();
+      while (i.hasNext()) {
+        QueuedMessage msg = i.next();
+        if (!batch.isEmpty() && batchBytes + NotificationBatch.encodedSize(msg.bytes) > maxBatchBytes) {
+          break;
+        }
+        batchBytes += NotificationBatch.encodedSize(msg.bytes);
+        batch.add(msg);
+        i.remove();
+      }
+      pendingBytes -= batchBytes;
+      pending.notifyAll();
+    }
+    return batch;
+  }
+
+  /**
+   * @return why the batch could not be sent, or null once it is
+   */
+  private RuntimeException send(List<QueuedMessage> batch) {
+    if (batch.isEmpty()) { return null; }
+    List<byte[]> msgs = new ArrayList<byte[]>(batch.size());
+    for (QueuedMessage msg : batch) {
+      msgs.add(msg.bytes);
+    }
+    try {
+      begin();
+      try {
+        platformService.logicalInvoke(this, LogicalOperation.CLUSTERED_NOTIFIER,
+                                      new Object[] { NotificationBatch.encode(msgs), currentNodeIdStringForm });
+      } finally {
+        commit();
+      }
+      return null;
+    } catch (RuntimeException e) {
+      return e;
+    } catch (Error e) {
+      synchronized (pending) {
+        requeue(batch, new RuntimeException("Failed to send notifications", e));
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Puts a batch that could not be sent back at the head of the queue, and records the failure for its producers.
+   */
+  private void requeue(List<QueuedMessage> batch, RuntimeException failure) {
+    pending.addAll(0, batch);
+    for (QueuedMessage msg : batch) {
+      pendingBytes += NotificationBatch.encodedSize(msg.bytes);
+      failures.put(msg.producer, failure);
+    }
+  }
+
+  /**
+   * Called by applicator on receiving a remote batch of msgs
+   */
+  protected void onNotification(final byte[] remoteMsgs, final String remoteNodeID) {
     try {
       notifierService.execute(new Runnable() {
         @Override
         public void run() {
-          ToolkitNotificationEventImpl<T> event = new ToolkitNotificationEventImpl<T>(serStrategy, remoteNodeID, remoteMsg);
+          List<ToolkitNotificationEvent<T>> events = new ArrayList<ToolkitNotificationEvent<T>>();
+          for (byte[] msg : NotificationBatch.decode(remoteMsgs)) {
+            events.add(new ToolkitNotificationEventImpl<T>(serStrategy, remoteNodeID, msg));
+          }
+          if (events.isEmpty()) { return; }
           for (ToolkitNotificationListener<T> listener : listeners) {
-            try {
-              listener.onNotification(event);
-            } catch (Throwable t) {
-              // ignore any exception happening on listeners
-              LOGGER.warn("Exception while trying to notify listener ", t);
-            }
+            notifyListener(listener, events);
           }
-
         }
       });
     } catch (RejectedExecutionException e) {
@@ -101,6 +308,26 @@ public class ToolkitNotifierImpl<T> extends AbstractTCToolkitObject implements T
     }
   }
 
+  static <T> void notifyListener(ToolkitNotificationListener<T> listener, List<ToolkitNotificationEvent<T>> events) {
+    if (listener instanceof ToolkitNotificationBatchListener) {
+      try {
+        ((ToolkitNotificationBatchListener<T>) listener).onNotifications(events);
+      } catch (Throwable t) {
+        // ignore any exception happening on listeners
+        LOGGER.warn("Exception while trying to notify listener ", t);
+      }
+    } else {
+      for (ToolkitNotificationEvent<T> event : events) {
+        try {
+          listener.onNotification(event);
+        } catch (Throwable t) {
+          // ignore any exception happening on listeners
+          LOGGER.warn("Exception while trying to notify listener ", t);
+        }
+      }
+    }
+  }
+
   private void begin() {
     ToolkitLockingApi.lock(getLockID(), ToolkitLockTypeInternal.CONCURRENT, platformService);
   }
@@ -116,6 +343,15 @@ public class ToolkitNotifierImpl<T> extends AbstractTCToolkitObject implements T
     return lockid;
   }
 
+  private static final class QueuedMessage {
+    private final byte[] bytes;
+    private final Thread producer = Thread.currentThread();
+
+    private QueuedMessage(byte[] bytes) {
+      this.bytes = bytes;
+    }
+  }
+
   @Override
   public List<ToolkitNotificationListener<T>> getNotificationListeners() {
     return Collections.unmodifiableList(this.listeners);
@@ -123,6 +359,11 @@ public class ToolkitNotifierImpl<T> extends AbstractTCToolkitObject implements T
 
   @Override
   public void cleanupOnDestroy() {
-    //
+    synchronized (pending) {
+      pending.clear();
+      pendingBytes = 0;
+      failures.clear();
+      pending.notifyAll();
+    }
   }
 }
@@ -42,7 +42,7 @@ public class ToolkitNotifierImplApplicator extends BaseApplicator {
                                                                      + parameters.length + " : "
                                                                      + Arrays.asList(parameters)); }
 
-          clusteredNotifierImpl.onNotification((String) parameters[0], (String) parameters[1]);
+          clusteredNotifierImpl.onNotification((byte[]) parameters[0], (String) parameters[1]);
         } else if (LogicalOperation.DESTROY.equals(la.getLogicalOperation())) {
           clusteredNotifierImpl.applyDestroy();
         }
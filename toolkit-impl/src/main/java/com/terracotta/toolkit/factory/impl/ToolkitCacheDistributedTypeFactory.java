@@ -14,6 +14,7 @@ import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFacto
 import com.terracotta.toolkit.config.ConfigUtil;
 import com.terracotta.toolkit.config.UnclusteredConfiguration;
 import com.terracotta.toolkit.config.cache.InternalCacheConfigurationType;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 import com.terracotta.toolkit.search.SearchFactory;
 import com.terracotta.toolkit.type.DistributedToolkitTypeFactory;
 
@@ -57,6 +58,7 @@ public class ToolkitCacheDistributedTypeFactory<K extends Serializable, V extend
     builder.maxCountLocalHeap(ToolkitConfigFields.DEFAULT_MAX_COUNT_LOCAL_HEAP);
     builder.compressionEnabled(ToolkitConfigFields.DEFAULT_COMPRESSION_ENABLED);
     builder.copyOnReadEnabled(ToolkitConfigFields.DEFAULT_COPY_ON_READ_ENABLED);
+    builder.configField(CompressionCodecs.COMPRESSION_CODEC_FIELD_NAME, CompressionCodecs.DEFAULT_COMPRESSION_CODEC);
     builder.maxTotalCount(ToolkitConfigFields.DEFAULT_MAX_TOTAL_COUNT);
     builder.evictionEnabled(ToolkitConfigFields.DEFAULT_EVICTION_ENABLED);
     builder.maxTTISeconds(ToolkitConfigFields.DEFAULT_MAX_TTI_SECONDS);
@@ -34,6 +34,7 @@ public class ToolkitNotifierFactoryImpl extends
   private static final TCLogger                    LOGGER                            = TCLogging
                                                                                          .getLogger(ToolkitNotifierFactoryImpl.class);
   public static final String                       TOOLKIT_NOTIFIER_EXECUTOR_SERVICE = "toolkitNotifierExecutorService";
+  public static final String                       TOOLKIT_NOTIFIER_FLUSH_SERVICE    = "toolkitNotifierFlushService";
 
   public ToolkitNotifierFactoryImpl(ToolkitInternal toolkit, ToolkitFactoryInitializationContext context) {
     super(toolkit, context.getToolkitTypeRootsFactory()
@@ -45,20 +46,46 @@ public class ToolkitNotifierFactoryImpl extends
     ExecutorService service = context.getPlatformService()
         .registerObjectByNameIfAbsent(TOOLKIT_NOTIFIER_EXECUTOR_SERVICE, notifierService);
     if (service == notifierService) {
-      registerForShutdown(notifierService);
+      registerForShutdown(notifierService, "Notifier");
+    }
+
+    final ExecutorService flushService = createFlushService();
+    service = context.getPlatformService().registerObjectByNameIfAbsent(TOOLKIT_NOTIFIER_FLUSH_SERVICE, flushService);
+    if (service == flushService) {
+      registerForShutdown(flushService, "Notifier Flush");
+    } else {
+      flushService.shutdown();
     }
   }
 
-  private void registerForShutdown(final ExecutorService notifierService) {
+  private void registerForShutdown(final ExecutorService executorService, final String name) {
     toolkit.registerBeforeShutdownHook(new Runnable() {
       @Override
       public void run() {
-        LOGGER.info("Shutting Down Notifier Thread Pool");
-        notifierService.shutdown();
+        LOGGER.info("Shutting Down " + name + " Thread Pool");
+        executorService.shutdown();
       }
     });
   }
 
+  /**
+   * A single thread sends the queued notifications of all the notifiers, one batch at a time.
+   */
+  private ExecutorService createFlushService() {
+    ThreadPoolExecutor flushService = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                                                             new LinkedBlockingDeque<Runnable>(), new ThreadFactory() {
+                                                               @Override
+                                                               public Thread newThread(Runnable runnable) {
+                                                                 Thread thread = new Thread(runnable,
+                                                                                            "ToolkitNotifierFlush");
+                                                                 thread.setDaemon(true);
+                                                                 return thread;
+                                                               }
+                                                             });
+    flushService.allowCoreThreadTimeOut(true);
+    return flushService;
+  }
+
   private ExecutorService createExecutorService(PlatformService platformService) {
     int maxNotifierThreadCount = new TerracottaProperties(platformService).getInteger("maxToolkitNotifierThreadCount",
                                                                                       20);
@@ -13,6 +13,7 @@ import org.terracotta.toolkit.store.ToolkitConfigFields;
 import com.google.common.base.Preconditions;
 import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFactory;
 import com.terracotta.toolkit.config.cache.InternalCacheConfigurationType;
+import com.terracotta.toolkit.object.serialization.CompressionCodecs;
 import com.terracotta.toolkit.search.SearchFactory;
 
 import java.io.Serializable;
@@ -60,6 +61,7 @@ public class ToolkitStoreDistributedTypeFactory<K extends Serializable, V extend
     builder.maxCountLocalHeap(ToolkitConfigFields.DEFAULT_MAX_COUNT_LOCAL_HEAP);
     builder.compressionEnabled(ToolkitConfigFields.DEFAULT_COMPRESSION_ENABLED);
     builder.copyOnReadEnabled(ToolkitConfigFields.DEFAULT_COPY_ON_READ_ENABLED);
+    builder.configField(CompressionCodecs.COMPRESSION_CODEC_FIELD_NAME, CompressionCodecs.DEFAULT_COMPRESSION_CODEC);
     builder.pinnedInLocalMemory(ToolkitConfigFields.DEFAULT_PINNED_IN_LOCAL_MEMORY);
     builder.configField(ConfigFieldsInternal.LOCAL_STORE_MANAGER_NAME_NAME,
         ConfigFieldsInternal.DEFAULT_LOCAL_STORE_MANAGER_NAME);
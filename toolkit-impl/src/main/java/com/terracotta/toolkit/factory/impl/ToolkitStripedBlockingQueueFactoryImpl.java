@@ -0,0 +1,106 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+
+package com.terracotta.toolkit.factory.impl;
+
+import org.terracotta.toolkit.ToolkitObjectType;
+import org.terracotta.toolkit.builder.ToolkitStoreConfigBuilder;
+import org.terracotta.toolkit.concurrent.locks.ToolkitReadWriteLock;
+import org.terracotta.toolkit.config.Configuration;
+import org.terracotta.toolkit.internal.ToolkitInternal;
+import org.terracotta.toolkit.internal.concurrent.locks.ToolkitLockTypeInternal;
+import org.terracotta.toolkit.store.ToolkitConfigFields;
+import org.terracotta.toolkit.store.ToolkitStore;
+
+import com.tc.platform.PlatformService;
+import com.terracotta.toolkit.collections.ToolkitStripedBlockingQueue;
+import com.terracotta.toolkit.concurrent.locks.ToolkitLockingApi;
+import com.terracotta.toolkit.factory.ToolkitFactoryInitializationContext;
+import com.terracotta.toolkit.factory.ToolkitObjectFactory;
+import com.terracotta.toolkit.util.collections.WeakValueMap;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ToolkitStripedBlockingQueueFactoryImpl implements ToolkitObjectFactory<ToolkitStripedBlockingQueue> {
+
+  public static final String                             CAPACITY_FIELD_NAME = "capacity";
+  public static final String                             STRIPES_FIELD_NAME  = "stripes";
+  private static final String                            LOCK_POSTFIX        = "_lock";
+  private static final String                            PUT_LOCK_POSTFIX    = "_put_";
+  private static final String                            TAKE_LOCK_POSTFIX   = "_take_";
+  private static final String                            STORE_POSTFIX       = "_striped_store";
+
+  private final ToolkitInternal                          toolkit;
+  private final WeakValueMap<ToolkitStripedBlockingQueue> localCache;
+  private final Lock                                     localLock;
+  private final PlatformService                          platformService;
+
+  public ToolkitStripedBlockingQueueFactoryImpl(final ToolkitInternal toolkit,
+                                                final ToolkitFactoryInitializationContext context) {
+    this.toolkit = toolkit;
+    localCache = context.getWeakValueMapManager().createWeakValueMap();
+    platformService = context.getPlatformService();
+    localLock = new ReentrantLock();
+  }
+
+  @Override
+  public ToolkitStripedBlockingQueue getOrCreate(String name, Configuration config) {
+    final int capacity = config.getInt(CAPACITY_FIELD_NAME);
+    final int stripes = config.getInt(STRIPES_FIELD_NAME);
+    ToolkitStripedBlockingQueue queue = null;
+    localLock.lock();
+    try {
+      queue = localCache.get(name);
+      if (queue == null) {
+        queue = createQueue(name, capacity, stripes);
+      } else {
+        if (queue.isDestroyed()) {
+          queue = createQueue(name, capacity, stripes);
+        } else if (queue.getCapacity() != capacity || queue.getStripeCount() != stripes) {
+          throw new IllegalArgumentException("ToolkitBlockingQueue already exists for name '"
+                                             + name + "' with different capacity or stripes requested: "
+                                             + capacity + "/" + stripes + ", existing: " + queue.getCapacity()
+                                             + "/" + queue.getStripeCount());
+        }
+      }
+    } finally {
+      localLock.unlock();
+    }
+    return queue;
+  }
+
+  private ToolkitStripedBlockingQueue createQueue(final String name, final int capacity, final int stripes) {
+    // elements are mostly taken on another node than the one that put them, caching them locally is useless, and
+    // both sides of a stripe must read the counters the other side updates from the server
+    final Configuration storeConfig = new ToolkitStoreConfigBuilder()
+        .consistency(ToolkitConfigFields.Consistency.STRONG)
+        .concurrency(stripes)
+        .localCacheEnabled(false)
+        .build();
+
+    final ToolkitReadWriteLock[] putLocks = new ToolkitReadWriteLock[stripes];
+    final ToolkitReadWriteLock[] takeLocks = new ToolkitReadWriteLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      putLocks[i] = createLock(name + PUT_LOCK_POSTFIX + i);
+      takeLocks[i] = createLock(name + TAKE_LOCK_POSTFIX + i);
+    }
+    final ToolkitStore<String, Object> backedStore = toolkit.getStore(name + STORE_POSTFIX, storeConfig, null);
+    final ToolkitStripedBlockingQueue queue = new ToolkitStripedBlockingQueue(name, capacity, backedStore, putLocks,
+                                                                              takeLocks, createLock(name
+                                                                                                    + LOCK_POSTFIX));
+    localCache.put(name, queue);
+    return queue;
+  }
+
+  private ToolkitReadWriteLock createLock(final String lockName) {
+    return ToolkitLockingApi.createUnnamedReadWriteLock(ToolkitObjectType.BLOCKING_QUEUE, lockName, platformService,
+                                                        ToolkitLockTypeInternal.WRITE);
+  }
+
+  @Override
+  public ToolkitObjectType getManufacturedToolkitObjectType() {
+    return ToolkitObjectType.BLOCKING_QUEUE;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Base for the fast LZ77 family codecs. Matches are found greedily through a single entry hash table over 4 byte
+ * sequences, which trades some compression ratio for a compressor that touches every input byte about once. Subclasses
+ * only differ in how literal runs and back references are encoded.
+ * <p>
+ * Compressed layout: id byte, uncompressed length as a varint, then the encoded sequences.
+ */
+abstract class AbstractLZCompressionCodec implements CompressionCodec {
+
+  static final int         MIN_MATCH    = 4;
+  static final int         MAX_OFFSET   = 0xFFFF;
+
+  private static final int MIN_HASH_LOG = 8;
+  private static final int MAX_HASH_LOG = 14;
+  // the last bytes are always emitted as literals, which keeps the match loops free of bounds checks
+  private static final int TAIL         = 12;
+
+  private final String     name;
+  private final byte       id;
+
+  AbstractLZCompressionCodec(String name, byte id) {
+    this.name = name;
+    this.id = id;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public byte getId() {
+    return id;
+  }
+
+  /**
+   * @return an upper bound of the encoded size of {@code length} input bytes, excluding the header
+   */
+  abstract int maxEncodedLength(int length);
+
+  /**
+   * Encodes the literals {@code src[literalStart, literalStart + literalLength)} followed by a back reference of
+   * {@code matchLength} bytes at distance {@code offset}.
+   * 
+   * @return the new output position
+   */
+  abstract int encodeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength,
+                              byte[] dest, int destPos);
+
+  /**
+   * Encodes the trailing literals {@code src[literalStart, literalStart + literalLength)}.
+   * 
+   * @return the new output position
+   */
+  abstract int encodeLastLiterals(byte[] src, int literalStart, int literalLength, byte[] dest, int destPos);
+
+  /**
+   * Decodes the sequences in {@code src[srcPos, srcEnd)} into {@code dest}, which has exactly the uncompressed length.
+   */
+  abstract void decodeSequences(byte[] src, int srcPos, int srcEnd, byte[] dest) throws IOException;
+
+  @Override
+  public byte[] compress(byte[] data, int offset, int length) {
+    byte[] dest = new byte[1 + 5 + maxEncodedLength(length)];
+    dest[0] = id;
+    int destPos = writeVarInt(length, dest, 1);
+
+    final int end = offset + length;
+    final int matchLimit = end - TAIL;
+    int anchor = offset;
+
+    if (length > TAIL) {
+      // size the table to the input so small values don't pay for clearing a large one
+      final int hashLog = Math.max(MIN_HASH_LOG, Math.min(MAX_HASH_LOG, 32 - Integer.numberOfLeadingZeros(length)));
+      final int[] table = new int[1 << hashLog];
+      Arrays.fill(table, -1);
+      int ip = offset;
+      while (ip < matchLimit) {
+        final int sequence = readInt(data, ip);
+        final int h = hash(sequence, hashLog);
+        final int ref = table[h];
+        table[h] = ip;
+        if (ref < 0 || ip - ref > MAX_OFFSET || readInt(data, ref) != sequence) {
+          ip++;
+          continue;
+        }
+
+        int matchLength = MIN_MATCH;
+        while (ip + matchLength < matchLimit && data[ref + matchLength] == data[ip + matchLength]) {
+          matchLength++;
+        }
+        destPos = encodeSequence(data, anchor, ip - anchor, ip - ref, matchLength, dest, destPos);
+        ip += matchLength;
+        anchor = ip;
+      }
+    }
+
+    destPos = encodeLastLiterals(data, anchor, end - anchor, dest, destPos);
+    return Arrays.copyOf(dest, destPos);
+  }
+
+  @Override
+  public byte[] decompress(byte[] data) throws IOException {
+    if (data.length < 2 || data[0] != id) { throw new IOException("Not a " + name + " compressed value"); }
+    int pos = 1;
+    int length = 0;
+    for (int shift = 0;; shift += 7) {
+      if (pos >= data.length || shift > 28) { throw corrupt(); }
+      int b = data[pos++];
+      length |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    // no sequence expands to more than 255 bytes per encoded byte, don't let a corrupt length exhaust the heap
+    if (length < 0 || length > (long) (data.length - pos) * 256) { throw corrupt(); }
+
+    byte[] dest = new byte[length];
+    try {
+      decodeSequences(data, pos, data.length, dest);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw corrupt();
+    }
+    return dest;
+  }
+
+  IOException corrupt() {
+    return new IOException("Corrupt " + name + " compressed value");
+  }
+
+  /**
+   * Copies a back reference, byte by byte since source and destination may overlap.
+   */
+  void copyMatch(byte[] dest, int destPos, int offset, int matchLength) throws IOException {
+    int from = destPos - offset;
+    if (offset <= 0 || from < 0 || destPos + matchLength > dest.length) { throw corrupt(); }
+    for (int i = 0; i < matchLength; i++) {
+      dest[destPos + i] = dest[from + i];
+    }
+  }
+
+  static int writeVarInt(int value, byte[] dest, int destPos) {
+    while ((value & ~0x7F) != 0) {
+      dest[destPos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    dest[destPos++] = (byte) value;
+    return destPos;
+  }
+
+  private static int readInt(byte[] data, int pos) {
+    return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8 | (data[pos + 2] & 0xFF) << 16 | (data[pos + 3] & 0xFF) << 24;
+  }
+
+  private static int hash(int sequence, int hashLog) {
+    return (sequence * -1640531535) >>> (32 - hashLog);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.IOException;
+
+/**
+ * Compresses serialized values. Implementations are registered with {@link CompressionCodecs}, either as one of the
+ * built-in codecs or through a {@code META-INF/services/com.terracotta.toolkit.object.serialization.CompressionCodec}
+ * entry, and are selected per cache by name.
+ * <p>
+ * The compressed form of a value must start with the codec's {@link #getId() id} byte so that readers can decode
+ * values written with any registered codec regardless of the codec their own cache is configured with.
+ */
+public interface CompressionCodec {
+
+  /**
+   * @return the name used to select this codec in the cache configuration
+   */
+  String getName();
+
+  /**
+   * @return the header byte that starts every value compressed by this codec
+   */
+  byte getId();
+
+  /**
+   * Compress the given serialized form.
+   * 
+   * @param data array holding the serialized form
+   * @param offset start of the serialized form
+   * @param length length of the serialized form
+   * @return the compressed form, starting with {@link #getId()}
+   */
+  byte[] compress(byte[] data, int offset, int length);
+
+  /**
+   * Decompress a value previously produced by {@link #compress(byte[], int, int)}.
+   * 
+   * @param data compressed form, starting with {@link #getId()}
+   * @return the serialized form
+   * @throws IOException if the data is corrupt
+   */
+  byte[] decompress(byte[] data) throws IOException;
+
+}
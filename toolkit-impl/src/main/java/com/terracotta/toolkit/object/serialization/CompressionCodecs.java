@@ -0,0 +1,110 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Registry of the available {@link CompressionCodec}s: gzip, lz4 and snappy, plus any codec found through
+ * {@link ServiceLoader}.
+ */
+public final class CompressionCodecs {
+
+  /**
+   * Name of the cache config field selecting the codec used when compression is enabled
+   */
+  public static final String                         COMPRESSION_CODEC_FIELD_NAME = "compressionCodec";
+  public static final String                         DEFAULT_COMPRESSION_CODEC    = GzipCompressionCodec.NAME;
+
+  private static final TCLogger                      LOGGER                       = TCLogging
+                                                                                      .getLogger(CompressionCodecs.class);
+
+  // uncompressed values start with the serialization stream magic
+  private static final byte                          UNCOMPRESSED_ID              = (byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8);
+
+  private static final CompressionCodec[]            BY_ID                        = new CompressionCodec[256];
+  private static final Map<String, CompressionCodec> BY_NAME                      = new TreeMap<String, CompressionCodec>();
+
+  static {
+    register(new GzipCompressionCodec());
+    register(new LZ4CompressionCodec());
+    register(new SnappyCompressionCodec());
+
+    Iterator<CompressionCodec> plugins = ServiceLoader.load(CompressionCodec.class,
+                                                            CompressionCodecs.class.getClassLoader()).iterator();
+    while (true) {
+      try {
+        if (!plugins.hasNext()) {
+          break;
+        }
+        CompressionCodec codec = plugins.next();
+        register(codec);
+        LOGGER.info("Registered compression codec '" + codec.getName() + "'");
+      } catch (ServiceConfigurationError e) {
+        LOGGER.warn("Unable to load compression codec", e);
+      } catch (IllegalArgumentException e) {
+        LOGGER.warn("Ignoring compression codec: " + e.getMessage());
+      }
+    }
+  }
+
+  private CompressionCodecs() {
+    //
+  }
+
+  private static void register(CompressionCodec codec) {
+    int index = codec.getId() & 0xFF;
+    if (codec.getId() == UNCOMPRESSED_ID) {
+      throw new IllegalArgumentException(codec.getName() + " uses the id reserved for uncompressed values");
+    }
+    if (BY_ID[index] != null) {
+      throw new IllegalArgumentException(codec.getName() + " uses the id of " + BY_ID[index].getName());
+    }
+    if (BY_NAME.containsKey(codec.getName())) {
+      throw new IllegalArgumentException("Duplicate compression codec name " + codec.getName());
+    }
+    BY_ID[index] = codec;
+    BY_NAME.put(codec.getName(), codec);
+  }
+
+  /**
+   * @throws IllegalArgumentException if there is no codec of the given name
+   */
+  public static CompressionCodec forName(String name) {
+    CompressionCodec codec = BY_NAME.get(name);
+    if (codec == null) {
+      throw new IllegalArgumentException("Unknown compression codec '" + name + "', available codecs: "
+                                         + BY_NAME.keySet());
+    }
+    return codec;
+  }
+
+  /**
+   * Finds the codec a serialized value was compressed with.
+   * 
+   * @return the codec or null if the value is not compressed
+   * @throws IOException if the value was compressed with an unknown codec
+   */
+  static CompressionCodec forValue(byte[] data) throws IOException {
+    if (data.length == 0 || data[0] == UNCOMPRESSED_ID) { return null; }
+    CompressionCodec codec = BY_ID[data[0] & 0xFF];
+    if (codec == null) { throw new IOException("Value compressed with an unknown codec, header byte: " + (data[0] & 0xFF)); }
+    return codec;
+  }
+
+  public static Set<String> getNames() {
+    return Collections.unmodifiableSet(BY_NAME.keySet());
+  }
+}
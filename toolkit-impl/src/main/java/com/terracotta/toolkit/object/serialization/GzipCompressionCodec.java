@@ -0,0 +1,60 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The original GZIP compression. Its id is the first byte of the GZIP magic number, so values written before codecs
+ * were pluggable decode unchanged.
+ */
+class GzipCompressionCodec implements CompressionCodec {
+
+  static final String NAME = "gzip";
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public byte getId() {
+    return (byte) GZIPInputStream.GZIP_MAGIC;
+  }
+
+  @Override
+  public byte[] compress(byte[] data, int offset, int length) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(32, length / 2));
+    try {
+      GZIPOutputStream out = new GZIPOutputStream(baos);
+      out.write(data, offset, length);
+      out.close();
+    } catch (IOException e) {
+      // not possible with an in-memory stream
+      throw new AssertionError(e);
+    }
+    return baos.toByteArray();
+  }
+
+  @Override
+  public byte[] decompress(byte[] data) throws IOException {
+    InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length * 3);
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        baos.write(buffer, 0, read);
+      }
+      return baos.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
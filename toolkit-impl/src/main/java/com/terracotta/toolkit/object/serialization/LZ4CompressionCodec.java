@@ -0,0 +1,105 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.IOException;
+
+/**
+ * Codec using the LZ4 block format: every sequence is a token holding the literal run length and the match length in
+ * a nibble each, extended by 255 valued bytes when they overflow, followed by the literals and a two byte offset.
+ */
+class LZ4CompressionCodec extends AbstractLZCompressionCodec {
+
+  static final String      NAME    = "lz4";
+  static final byte        ID      = 'L';
+
+  private static final int RUN_MASK = 0x0F;
+
+  LZ4CompressionCodec() {
+    super(NAME, ID);
+  }
+
+  @Override
+  int maxEncodedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  @Override
+  int encodeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength, byte[] dest,
+                     int destPos) {
+    final int tokenPos = destPos;
+    destPos = writeLiterals(src, literalStart, literalLength, dest, destPos + 1);
+    dest[destPos++] = (byte) offset;
+    dest[destPos++] = (byte) (offset >>> 8);
+    final int matchRun = matchLength - MIN_MATCH;
+    if (matchRun >= RUN_MASK) {
+      destPos = writeRunLength(matchRun - RUN_MASK, dest, destPos);
+    }
+    dest[tokenPos] = (byte) ((Math.min(literalLength, RUN_MASK) << 4) | Math.min(matchRun, RUN_MASK));
+    return destPos;
+  }
+
+  @Override
+  int encodeLastLiterals(byte[] src, int literalStart, int literalLength, byte[] dest, int destPos) {
+    dest[destPos] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+    return writeLiterals(src, literalStart, literalLength, dest, destPos + 1);
+  }
+
+  private static int writeLiterals(byte[] src, int literalStart, int literalLength, byte[] dest, int destPos) {
+    if (literalLength >= RUN_MASK) {
+      destPos = writeRunLength(literalLength - RUN_MASK, dest, destPos);
+    }
+    System.arraycopy(src, literalStart, dest, destPos, literalLength);
+    return destPos + literalLength;
+  }
+
+  private static int writeRunLength(int length, byte[] dest, int destPos) {
+    while (length >= 0xFF) {
+      dest[destPos++] = (byte) 0xFF;
+      length -= 0xFF;
+    }
+    dest[destPos++] = (byte) length;
+    return destPos;
+  }
+
+  @Override
+  void decodeSequences(byte[] src, int srcPos, int srcEnd, byte[] dest) throws IOException {
+    int destPos = 0;
+    while (srcPos < srcEnd) {
+      final int token = src[srcPos++] & 0xFF;
+
+      int literalLength = token >>> 4;
+      if (literalLength == RUN_MASK) {
+        int b;
+        do {
+          b = src[srcPos++] & 0xFF;
+          literalLength += b;
+        } while (b == 0xFF);
+      }
+      if (srcPos + literalLength > srcEnd || destPos + literalLength > dest.length) { throw corrupt(); }
+      System.arraycopy(src, srcPos, dest, destPos, literalLength);
+      srcPos += literalLength;
+      destPos += literalLength;
+
+      if (srcPos == srcEnd) {
+        // last literals
+        break;
+      }
+
+      final int offset = (src[srcPos++] & 0xFF) | (src[srcPos++] & 0xFF) << 8;
+      int matchLength = token & RUN_MASK;
+      if (matchLength == RUN_MASK) {
+        int b;
+        do {
+          b = src[srcPos++] & 0xFF;
+          matchLength += b;
+        } while (b == 0xFF);
+      }
+      matchLength += MIN_MATCH;
+      copyMatch(dest, destPos, offset, matchLength);
+      destPos += matchLength;
+    }
+    if (destPos != dest.length) { throw corrupt(); }
+  }
+}
@@ -19,7 +19,18 @@ public interface SerializationStrategy {
   public byte[] serialize(Object serializable, boolean compress) throws NotSerializableRuntimeException;
 
   /**
-   * Deserialize the serialized value returning a new representation.
+   * Serialize the given value into byte array, compressed with the given codec.
+   * 
+   * @param value value to serialize
+   * @param codec codec to compress with, or null to leave the value uncompressed
+   * @return serialized form
+   * @throws NotSerializableRuntimeException if serialization fails
+   */
+  public byte[] serialize(Object serializable, CompressionCodec codec) throws NotSerializableRuntimeException;
+
+  /**
+   * Deserialize the serialized value returning a new representation. Compressed values are recognized by their header
+   * byte, whatever codec they were written with.
    * 
    * @param data serialized form
    * @return a new deserialized value
@@ -17,8 +17,6 @@ import java.io.ObjectStreamClass;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 public class SerializationStrategyImpl implements SerializationStrategy {
 
@@ -29,6 +27,9 @@ public class SerializationStrategyImpl implements SerializationStrategy {
   private static final char              MARKER   = 0xFFFE;
 
   private static final byte              HIGH_BIT = (byte) 0x80;
+
+  private static final CompressionCodec  DEFAULT_CODEC = CompressionCodecs
+                                                           .forName(CompressionCodecs.DEFAULT_COMPRESSION_CODEC);
   private final ObjectStreamClassMapping serializer;
   private final ClassLoader              tccl;
 
@@ -40,11 +41,8 @@ public class SerializationStrategyImpl implements SerializationStrategy {
   @Override
   public Object deserialize(final byte[] data, boolean compression, boolean local) throws IOException,
       ClassNotFoundException {
-    InputStream in = new ByteArrayInputStream(data);
-    if (compression) {
-      in = new GZIPInputStream(in);
-    }
-    return getObjectFromStream(in, local);
+    CompressionCodec codec = CompressionCodecs.forValue(data);
+    return getObjectFromStream(new ByteArrayInputStream(codec == null ? data : codec.decompress(data)), local);
   }
 
   private Object getObjectFromStream(InputStream in, boolean local) throws IOException,
@@ -61,14 +59,15 @@ public class SerializationStrategyImpl implements SerializationStrategy {
 
   @Override
   public byte[] serialize(final Object value, boolean compression) throws NotSerializableRuntimeException {
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    return serialize(value, compression ? DEFAULT_CODEC : null);
+  }
+
+  @Override
+  public byte[] serialize(final Object value, CompressionCodec codec) throws NotSerializableRuntimeException {
+    final SerializedBytesOutputStream baos = new SerializedBytesOutputStream();
     SerializerObjectOutputStream oos = null;
     try {
-      OutputStream out = baos;
-      if (compression) {
-        out = new GZIPOutputStream(out);
-      }
-      oos = new SerializerObjectOutputStream(out, serializer);
+      oos = new SerializerObjectOutputStream(baos, serializer);
       oos.writeObject(value);
     } catch (IOException ioe) {
       throw new NotSerializableRuntimeException(ioe);
@@ -81,7 +80,16 @@ public class SerializationStrategyImpl implements SerializationStrategy {
         throw new NotSerializableRuntimeException(e);
       }
     }
-    return baos.toByteArray();
+    return codec == null ? baos.toByteArray() : codec.compress(baos.getBuffer(), 0, baos.size());
+  }
+
+  /**
+   * Gives the codecs access to the serialized form without copying it first.
+   */
+  private static class SerializedBytesOutputStream extends ByteArrayOutputStream {
+    byte[] getBuffer() {
+      return buf;
+    }
   }
 
   @Override
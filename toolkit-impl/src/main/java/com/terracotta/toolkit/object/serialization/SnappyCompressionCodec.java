@@ -0,0 +1,124 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import java.io.IOException;
+
+/**
+ * Codec using the Snappy element format: literal runs and back references are separate elements, whose low two tag
+ * bits tell a literal from a copy with a one, two or four byte offset.
+ */
+class SnappyCompressionCodec extends AbstractLZCompressionCodec {
+
+  static final String      NAME            = "snappy";
+  static final byte        ID              = 'S';
+
+  private static final int LITERAL         = 0;
+  private static final int COPY_1_BYTE     = 1;
+  private static final int COPY_2_BYTE     = 2;
+  private static final int COPY_4_BYTE     = 3;
+
+  private static final int MAX_COPY_LENGTH = 64;
+
+  SnappyCompressionCodec() {
+    super(NAME, ID);
+  }
+
+  @Override
+  int maxEncodedLength(int length) {
+    return 32 + length + length / 6;
+  }
+
+  @Override
+  int encodeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength, byte[] dest,
+                     int destPos) {
+    if (literalLength > 0) {
+      destPos = encodeLastLiterals(src, literalStart, literalLength, dest, destPos);
+    }
+    // keep the remainder of long matches at least MIN_MATCH long
+    while (matchLength >= MAX_COPY_LENGTH + MIN_MATCH) {
+      destPos = writeCopy2(offset, MAX_COPY_LENGTH, dest, destPos);
+      matchLength -= MAX_COPY_LENGTH;
+    }
+    if (matchLength > MAX_COPY_LENGTH) {
+      destPos = writeCopy2(offset, MAX_COPY_LENGTH - MIN_MATCH, dest, destPos);
+      matchLength -= MAX_COPY_LENGTH - MIN_MATCH;
+    }
+    if (matchLength < 12 && offset < 2048) {
+      dest[destPos++] = (byte) (COPY_1_BYTE | ((matchLength - 4) << 2) | ((offset >>> 8) << 5));
+      dest[destPos++] = (byte) offset;
+      return destPos;
+    }
+    return writeCopy2(offset, matchLength, dest, destPos);
+  }
+
+  private static int writeCopy2(int offset, int length, byte[] dest, int destPos) {
+    dest[destPos++] = (byte) (COPY_2_BYTE | ((length - 1) << 2));
+    dest[destPos++] = (byte) offset;
+    dest[destPos++] = (byte) (offset >>> 8);
+    return destPos;
+  }
+
+  @Override
+  int encodeLastLiterals(byte[] src, int literalStart, int literalLength, byte[] dest, int destPos) {
+    if (literalLength == 0) { return destPos; }
+    final int n = literalLength - 1;
+    if (n < 60) {
+      dest[destPos++] = (byte) (LITERAL | (n << 2));
+    } else {
+      final int bytes = n < (1 << 8) ? 1 : n < (1 << 16) ? 2 : n < (1 << 24) ? 3 : 4;
+      dest[destPos++] = (byte) (LITERAL | ((59 + bytes) << 2));
+      for (int i = 0; i < bytes; i++) {
+        dest[destPos++] = (byte) (n >>> (8 * i));
+      }
+    }
+    System.arraycopy(src, literalStart, dest, destPos, literalLength);
+    return destPos + literalLength;
+  }
+
+  @Override
+  void decodeSequences(byte[] src, int srcPos, int srcEnd, byte[] dest) throws IOException {
+    int destPos = 0;
+    while (srcPos < srcEnd) {
+      final int tag = src[srcPos++] & 0xFF;
+      int length;
+      int offset;
+      switch (tag & 3) {
+        case LITERAL:
+          length = tag >>> 2;
+          if (length >= 60) {
+            final int bytes = length - 59;
+            length = 0;
+            for (int i = 0; i < bytes; i++) {
+              length |= (src[srcPos++] & 0xFF) << (8 * i);
+            }
+          }
+          length++;
+          if (length <= 0 || srcPos + length > srcEnd || destPos + length > dest.length) { throw corrupt(); }
+          System.arraycopy(src, srcPos, dest, destPos, length);
+          srcPos += length;
+          destPos += length;
+          continue;
+        case COPY_1_BYTE:
+          length = ((tag >>> 2) & 0x07) + 4;
+          offset = ((tag >>> 5) << 8) | (src[srcPos++] & 0xFF);
+          break;
+        case COPY_2_BYTE:
+          length = (tag >>> 2) + 1;
+          offset = (src[srcPos++] & 0xFF) | (src[srcPos++] & 0xFF) << 8;
+          break;
+        case COPY_4_BYTE:
+          length = (tag >>> 2) + 1;
+          offset = (src[srcPos++] & 0xFF) | (src[srcPos++] & 0xFF) << 8 | (src[srcPos++] & 0xFF) << 16
+                   | (src[srcPos++] & 0xFF) << 24;
+          break;
+        default:
+          throw new AssertionError(tag);
+      }
+      copyMatch(dest, destPos, offset, length);
+      destPos += length;
+    }
+    if (destPos != dest.length) { throw corrupt(); }
+  }
+}
@@ -8,6 +8,7 @@ import org.terracotta.toolkit.concurrent.locks.ToolkitLock;
 import org.terracotta.toolkit.concurrent.locks.ToolkitLockType;
 import org.terracotta.toolkit.concurrent.locks.ToolkitReadWriteLock;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -19,6 +20,7 @@ class MockToolkitReadWriteLock implements ToolkitReadWriteLock {
   private final ToolkitLock readLock;
   private final ToolkitLock writeLock;
   private final String name;
+  private final AtomicInteger writeLockCount = new AtomicInteger();
 
   MockToolkitReadWriteLock() {
     this("mockToolkitReadWriteLock");
@@ -26,7 +28,7 @@ class MockToolkitReadWriteLock implements ToolkitReadWriteLock {
 
   MockToolkitReadWriteLock(final String name) {
     final ReentrantReadWriteLock targetLock = new ReentrantReadWriteLock();
-    this.writeLock = new MockToolkitWriteLock(targetLock);
+    this.writeLock = new MockToolkitWriteLock(targetLock, writeLockCount);
     this.readLock = new MockToolkitReadLock(targetLock);
     this.name = name;
   }
@@ -46,13 +48,34 @@ class MockToolkitReadWriteLock implements ToolkitReadWriteLock {
     return writeLock;
   }
 
+  /**
+   * @return how many times the write lock was acquired
+   */
+  int getWriteLockCount() {
+    return writeLockCount.get();
+  }
+
   private static class MockToolkitWriteLock extends ReentrantReadWriteLock.WriteLock implements ToolkitLock {
 
-    private final Condition singleCondition;
+    private final Condition     singleCondition;
+    private final AtomicInteger lockCount;
 
-    protected MockToolkitWriteLock(final ReentrantReadWriteLock lock) {
+    protected MockToolkitWriteLock(final ReentrantReadWriteLock lock, final AtomicInteger lockCount) {
       super(lock);
       this.singleCondition = super.newCondition();
+      this.lockCount = lockCount;
+    }
+
+    @Override
+    public void lock() {
+      super.lock();
+      lockCount.incrementAndGet();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      super.lockInterruptibly();
+      lockCount.incrementAndGet();
     }
 
     @Override
@@ -0,0 +1,282 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+
+package com.terracotta.toolkit.collections;
+
+import org.junit.Test;
+import org.terracotta.toolkit.concurrent.locks.ToolkitReadWriteLock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The API compliance test runs against a single stripe queue, which is FIFO. The other tests cover several stripes.
+ */
+public class ToolkitStripedBlockingQueueApiTest extends BlockingQueueApiTest {
+
+  @Override
+  protected <E> BlockingQueue<E> emptyQueue(final int capacity) {
+    return stripedQueue(capacity, 1, new MockToolkitStore<String, E>("testQueue_store"));
+  }
+
+  private static <E> ToolkitStripedBlockingQueue<E> stripedQueue(final int capacity, final int stripes,
+                                                                 final MockToolkitStore<String, E> store) {
+    return stripedQueue(capacity, store, stripeLocks("put", stripes), stripeLocks("take", stripes),
+                        new MockToolkitReadWriteLock("testQueue_lock"));
+  }
+
+  private static <E> ToolkitStripedBlockingQueue<E> stripedQueue(final int capacity,
+                                                                 final MockToolkitStore<String, E> store,
+                                                                 final ToolkitReadWriteLock[] putLocks,
+                                                                 final ToolkitReadWriteLock[] takeLocks,
+                                                                 final ToolkitReadWriteLock waitLock) {
+    return new ToolkitStripedBlockingQueue<E>("testQueue", capacity, store, putLocks, takeLocks, waitLock);
+  }
+
+  private static ToolkitReadWriteLock[] stripeLocks(final String side, final int stripes) {
+    final ToolkitReadWriteLock[] locks = new ToolkitReadWriteLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      locks[i] = new MockToolkitReadWriteLock("testQueue_" + side + "_" + i);
+    }
+    return locks;
+  }
+
+  @Test
+  public void testCapacityIsSplitBetweenStripes() {
+    final ToolkitStripedBlockingQueue<Integer> q = stripedQueue(10, 4, new MockToolkitStore<String, Integer>());
+    for (int i = 0; i < 10; i++) {
+      assertTrue(q.offer(i));
+    }
+    assertFalse(q.offer(10));
+    assertEquals(0, q.remainingCapacity());
+    assertEquals(10, q.size());
+
+    final Set<Integer> drained = new HashSet<Integer>();
+    assertEquals(10, q.drainTo(drained));
+    assertEquals(10, drained.size());
+    assertTrue(q.isEmpty());
+    assertTrue(q.offer(10));
+  }
+
+  @Test
+  public void testOfferAllAndDrainToMoveBatches() {
+    final ToolkitStripedBlockingQueue<Integer> q = stripedQueue(SIZE, 4, new MockToolkitStore<String, Integer>());
+    final List<Integer> elements = new ArrayList<Integer>();
+    for (int i = 0; i < SIZE + 5; i++) {
+      elements.add(i);
+    }
+    assertEquals(SIZE, q.offerAll(elements));
+    assertEquals(0, q.offerAll(elements));
+
+    final List<Integer> drained = new ArrayList<Integer>();
+    assertEquals(7, q.drainTo(drained, 7));
+    assertEquals(SIZE - 7, q.drainTo(drained, SIZE));
+    assertEquals(new HashSet<Integer>(elements.subList(0, SIZE)), new HashSet<Integer>(drained));
+    assertEquals(SIZE, drained.size());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testOfferAllRejectsNullElements() {
+    stripedQueue(SIZE, 4, new MockToolkitStore<String, Integer>()).offerAll(Arrays.asList(1, null, 3));
+  }
+
+  @Test
+  public void testSingleNodeKeepsToItsStripe() throws InterruptedException {
+    final ToolkitStripedBlockingQueue<Integer> q = stripedQueue(Integer.MAX_VALUE, 4,
+                                                                new MockToolkitStore<String, Integer>());
+    for (int i = 0; i < SIZE; i++) {
+      q.put(i);
+    }
+    for (int i = 0; i < SIZE; i++) {
+      assertEquals(i, q.take().intValue());
+    }
+  }
+
+  @Test
+  public void testRemoveSlidesOverTheRestOfTheStripe() {
+    final ToolkitStripedBlockingQueue<Integer> q = stripedQueue(SIZE, 4, new MockToolkitStore<String, Integer>());
+    for (int i = 0; i < SIZE; i++) {
+      q.add(i);
+    }
+    assertTrue(q.remove(Integer.valueOf(3)));
+    assertFalse(q.remove(Integer.valueOf(3)));
+    assertTrue(q.removeAll(Arrays.asList(5, 7)));
+    assertEquals(SIZE - 3, q.size());
+    assertEquals(3, q.remainingCapacity());
+
+    final Set<Integer> drained = new HashSet<Integer>();
+    q.drainTo(drained);
+    assertEquals(SIZE - 3, drained.size());
+    assertFalse(drained.contains(3) || drained.contains(5) || drained.contains(7));
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumers() throws Exception {
+    final ToolkitStripedBlockingQueue<Long> q = stripedQueue(100, 4, new MockToolkitStore<String, Long>());
+    final int threads = 4;
+    final int perThread = 1000;
+    final AtomicLong sum = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(2 * threads);
+    final ExecutorService executor = Executors.newFixedThreadPool(2 * threads);
+    try {
+      for (int t = 0; t < threads; t++) {
+        final long base = t * perThread;
+        executor.execute(new CheckedRunnable() {
+          @Override
+          protected void realRun() throws Throwable {
+            for (long i = base; i < base + perThread; i++) {
+              q.put(i);
+            }
+            done.countDown();
+          }
+        });
+        executor.execute(new CheckedRunnable() {
+          @Override
+          protected void realRun() throws Throwable {
+            for (int i = 0; i < perThread; i++) {
+              sum.addAndGet(q.take());
+            }
+            done.countDown();
+          }
+        });
+      }
+      assertTrue(done.await(LONG_DELAY_MS, MILLISECONDS));
+    } finally {
+      joinPool(executor);
+    }
+    final long n = threads * perThread;
+    assertEquals(n * (n - 1) / 2, sum.get());
+    assertTrue(q.isEmpty());
+  }
+
+  @Test
+  public void testWaitLockIsOnlyTakenWithWaiters() throws Exception {
+    final MockToolkitReadWriteLock waitLock = new MockToolkitReadWriteLock("testQueue_lock");
+    final ToolkitStripedBlockingQueue<Integer> q = stripedQueue(SIZE, new MockToolkitStore<String, Integer>(),
+                                                                stripeLocks("put", 4), stripeLocks("take", 4),
+                                                                waitLock);
+    final int created = waitLock.getWriteLockCount();
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < SIZE; i++) {
+        assertTrue(q.offer(i));
+      }
+      for (int i = 0; i < SIZE; i++) {
+        assertTrue(q.poll() != null);
+      }
+    }
+    assertEquals(created, waitLock.getWriteLockCount());
+
+    // a parked consumer is still woken up by the next offer
+    final CountDownLatch taken = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.execute(new CheckedRunnable() {
+        @Override
+        protected void realRun() throws Throwable {
+          assertEquals(42, q.take().intValue());
+          taken.countDown();
+        }
+      });
+      delay(SHORT_DELAY_MS);
+      assertTrue(q.offer(42));
+      assertTrue(taken.await(LONG_DELAY_MS, MILLISECONDS));
+    } finally {
+      joinPool(executor);
+    }
+  }
+
+  /**
+   * Several nodes, each one a queue instance over the same store and locks, with a producer and a consumer each. Prints
+   * the throughput of the striped queue next to the one of {@link ToolkitMapBlockingQueue}.
+   */
+  @Test
+  public void testMultiNodeThroughputAgainstMapQueue() throws Exception {
+    final int nodes = 4;
+    final int perNode = 20000;
+    final MockToolkitStore<String, Long> stripedStore = new MockToolkitStore<String, Long>();
+    final ToolkitReadWriteLock[] putLocks = stripeLocks("put", nodes);
+    final ToolkitReadWriteLock[] takeLocks = stripeLocks("take", nodes);
+    final MockToolkitReadWriteLock stripedWaitLock = new MockToolkitReadWriteLock("testQueue_lock");
+    final List<BlockingQueue<Long>> striped = new ArrayList<BlockingQueue<Long>>();
+    final MockToolkitStore<String, Long> mapStore = new MockToolkitStore<String, Long>();
+    final MockToolkitReadWriteLock mapLock = new MockToolkitReadWriteLock("testQueue_map_lock");
+    final List<BlockingQueue<Long>> map = new ArrayList<BlockingQueue<Long>>();
+    for (int i = 0; i < nodes; i++) {
+      striped.add(ToolkitStripedBlockingQueueApiTest.<Long> stripedQueue(1000, stripedStore, putLocks, takeLocks,
+                                                                          stripedWaitLock));
+      map.add(new ToolkitMapBlockingQueue<Long>("testQueue", 1000, mapStore, mapLock));
+    }
+
+    final long stripedNanos = moveThrough(striped, perNode);
+    final long mapNanos = moveThrough(map, perNode);
+    System.out.println("Moved " + nodes * perNode + " elements through " + nodes + " nodes: striped queue "
+                       + opsPerSecond(nodes * perNode, stripedNanos) + " ops/s, taking the wait lock "
+                       + stripedWaitLock.getWriteLockCount() + " times, map queue "
+                       + opsPerSecond(nodes * perNode, mapNanos) + " ops/s");
+  }
+
+  private long moveThrough(final List<BlockingQueue<Long>> nodes, final int perNode) throws Exception {
+    final AtomicLong sum = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(2 * nodes.size());
+    final ExecutorService executor = Executors.newFixedThreadPool(2 * nodes.size());
+    final long start = System.nanoTime();
+    try {
+      for (int t = 0; t < nodes.size(); t++) {
+        final BlockingQueue<Long> q = nodes.get(t);
+        final long base = (long) t * perNode;
+        executor.execute(new CheckedRunnable() {
+          @Override
+          protected void realRun() throws Throwable {
+            for (long i = base; i < base + perNode; i++) {
+              q.put(i);
+            }
+            done.countDown();
+          }
+        });
+        executor.execute(new CheckedRunnable() {
+          @Override
+          protected void realRun() throws Throwable {
+            for (int i = 0; i < perNode; i++) {
+              sum.addAndGet(q.take());
+            }
+            done.countDown();
+          }
+        });
+      }
+      assertTrue(done.await(LONG_DELAY_MS * 10, MILLISECONDS));
+    } finally {
+      joinPool(executor);
+    }
+    final long elapsed = System.nanoTime() - start;
+    final long n = (long) nodes.size() * perNode;
+    assertEquals(n * (n - 1) / 2, sum.get());
+    return elapsed;
+  }
+
+  private static long opsPerSecond(final long ops, final long nanos) {
+    return ops * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testExistingQueueWithOtherStripesIsRejected() {
+    final MockToolkitStore<String, Integer> store = new MockToolkitStore<String, Integer>();
+    stripedQueue(SIZE, 4, store);
+    stripedQueue(SIZE, 2, store);
+  }
+
+}
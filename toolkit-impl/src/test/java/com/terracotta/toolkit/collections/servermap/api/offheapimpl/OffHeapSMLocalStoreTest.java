@@ -0,0 +1,203 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.collections.servermap.api.offheapimpl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.tc.object.ObjectID;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStore;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreConfig;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreConfigParameters;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFactory;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreFullException;
+import com.terracotta.toolkit.collections.servermap.api.ServerMapLocalStoreListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class OffHeapSMLocalStoreTest {
+
+  private static final int BLOCK_SIZE = 64;
+
+  private static OffHeapSMLocalStore newStore(long capacity, boolean pinned) {
+    return new OffHeapSMLocalStore(capacity, 1024, BLOCK_SIZE, pinned, OffHeapSMLocalStoreTest.class.getClassLoader());
+  }
+
+  private static String value(int length) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append((char) ('a' + i % 26));
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testPutGetRemove() throws Exception {
+    OffHeapSMLocalStore store = newStore(64 * 1024, false);
+    String big = value(1000);
+    Assert.assertNull(store.put("small", "v1"));
+    Assert.assertNull(store.put("big", big));
+    Assert.assertEquals("v1", store.get("small"));
+    Assert.assertEquals(big, store.get("big"));
+    Assert.assertEquals(2, store.getSize());
+    Assert.assertEquals(2, store.getOffHeapSize());
+    Assert.assertEquals(0, store.getOnHeapSize());
+    Assert.assertTrue(store.containsKeyOffHeap("big"));
+    Assert.assertFalse(store.containsKeyOnHeap("big"));
+
+    Assert.assertEquals("v1", store.put("small", "v2"));
+    Assert.assertEquals("v2", store.get("small"));
+    Assert.assertNull(store.remove("small", "v1"));
+    Assert.assertEquals("v2", store.remove("small", "v2"));
+    Assert.assertEquals(big, store.remove("big"));
+    Assert.assertNull(store.get("big"));
+    Assert.assertEquals(0, store.getSize());
+  }
+
+  @Test
+  public void testSizeInBytes() throws Exception {
+    OffHeapSMLocalStore store = newStore(64 * 1024, false);
+    Assert.assertEquals(0, store.getOffHeapSizeInBytes());
+    Assert.assertEquals(0, store.getOnHeapSizeInBytes());
+
+    store.put("key", value(1000));
+    long offHeap = store.getOffHeapSizeInBytes();
+    Assert.assertTrue(offHeap >= 1000);
+    Assert.assertEquals(0, offHeap % BLOCK_SIZE);
+    Assert.assertEquals(OffHeapSMLocalStore.ENTRY_OVERHEAD + 40 + 2 * "key".length(), store.getOnHeapSizeInBytes());
+
+    // a smaller value frees the blocks it no longer needs
+    store.put("key", "v");
+    Assert.assertEquals(BLOCK_SIZE, store.getOffHeapSizeInBytes());
+
+    store.clear();
+    Assert.assertEquals(0, store.getOffHeapSizeInBytes());
+    Assert.assertEquals(0, store.getOnHeapSizeInBytes());
+    Assert.assertEquals(0, store.getSize());
+  }
+
+  @Test
+  public void testEvictionNotifiesListeners() throws Exception {
+    OffHeapSMLocalStore store = newStore(4 * 1024, false);
+    final List<Object> evicted = new ArrayList<Object>();
+    store.addListener(new ServerMapLocalStoreListener<Object, Object>() {
+      @Override
+      public void notifyElementEvicted(Object key, Object value) {
+        Assert.assertEquals(value(200) + key, value);
+        evicted.add(key);
+      }
+    });
+
+    for (int i = 0; i < 100; i++) {
+      store.put(i, value(200) + i);
+    }
+    Assert.assertFalse(evicted.isEmpty());
+    Assert.assertEquals(100, store.getSize() + evicted.size());
+    Assert.assertTrue(store.getOffHeapSizeInBytes() <= 4 * 1024);
+    for (Object key : evicted) {
+      Assert.assertNull(store.get(key));
+    }
+  }
+
+  @Test
+  public void testRecentlyReadEntriesSurviveEviction() throws Exception {
+    OffHeapSMLocalStore store = newStore(4 * 1024, false);
+    store.put("hot", value(200));
+    for (int i = 0; i < 100; i++) {
+      Assert.assertNotNull(store.get("hot"));
+      store.put(i, value(200));
+    }
+    Assert.assertEquals(value(200), store.get("hot"));
+  }
+
+  @Test
+  public void testIdMappingsAreNotEvicted() throws Exception {
+    OffHeapSMLocalStore store = newStore(4 * 1024, false);
+    final List<Object> evicted = new ArrayList<Object>();
+    store.addListener(new ServerMapLocalStoreListener<Object, Object>() {
+      @Override
+      public void notifyElementEvicted(Object key, Object value) {
+        evicted.add(key);
+      }
+    });
+
+    for (int i = 0; i < 100; i++) {
+      store.put("key" + i, value(200));
+      store.put(new ObjectID(i), "key" + i);
+    }
+    Assert.assertFalse(evicted.isEmpty());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertFalse(evicted.contains(new ObjectID(i)));
+      Assert.assertEquals("key" + i, store.get(new ObjectID(i)));
+      Assert.assertTrue(store.containsKeyOffHeap(new ObjectID(i)));
+    }
+    Assert.assertEquals(200, store.getSize() + evicted.size());
+
+    Assert.assertNull(store.remove(new ObjectID(0), "other"));
+    Assert.assertEquals("key0", store.remove(new ObjectID(0), "key0"));
+    Assert.assertEquals("key1", store.remove(new ObjectID(1)));
+    Assert.assertNull(store.get(new ObjectID(1)));
+
+    store.clear();
+    Assert.assertEquals(0, store.getSize());
+    Assert.assertEquals(0, store.getOnHeapSizeInBytes());
+    Assert.assertNull(store.get(new ObjectID(2)));
+  }
+
+  @Test
+  public void testPinnedStoreDoesNotEvict() throws Exception {
+    OffHeapSMLocalStore store = newStore(4 * 1024, true);
+    ServerMapLocalStoreListener<Object, Object> listener = mock(ServerMapLocalStoreListener.class);
+    store.addListener(listener);
+    Assert.assertTrue(store.isPinned());
+
+    int stored = 0;
+    try {
+      while (true) {
+        store.put(stored, value(200));
+        stored++;
+      }
+    } catch (ServerMapLocalStoreFullException e) {
+      // expected
+    }
+    Assert.assertTrue(stored > 0);
+    Assert.assertEquals(stored, store.getSize());
+    for (int i = 0; i < stored; i++) {
+      Assert.assertEquals(value(200), store.get(i));
+    }
+    verifyZeroInteractions(listener);
+  }
+
+  @Test(expected = ServerMapLocalStoreFullException.class)
+  public void testValueLargerThanStore() throws Exception {
+    newStore(1024, false).put("key", value(2000));
+  }
+
+  @Test
+  public void testFactoryDelegatesOnHeapStores() {
+    ServerMapLocalStoreFactory onHeapFactory = mock(ServerMapLocalStoreFactory.class);
+    OffHeapSMLocalStoreFactory factory = new OffHeapSMLocalStoreFactory(onHeapFactory);
+
+    ServerMapLocalStoreConfig onHeap = new ServerMapLocalStoreConfig(new ServerMapLocalStoreConfigParameters()
+        .localStoreName("onheap").overflowToOffheap(false));
+    factory.getOrCreateServerMapLocalStore(onHeap);
+    verify(onHeapFactory).getOrCreateServerMapLocalStore(onHeap);
+
+    ServerMapLocalStoreConfig offHeap = new ServerMapLocalStoreConfig(new ServerMapLocalStoreConfigParameters()
+        .localStoreName("offheap").overflowToOffheap(true).maxBytesLocalOffheap(1024 * 1024)
+        .pinnedInLocalMemory(true));
+    ServerMapLocalStore<Object, Object> store = factory.getOrCreateServerMapLocalStore(offHeap);
+    Assert.assertTrue(store instanceof OffHeapSMLocalStore);
+    Assert.assertTrue(store.isPinned());
+    Assert.assertSame(store, factory.getOrCreateServerMapLocalStore(offHeap));
+
+    store.dispose();
+    Assert.assertNotSame(store, factory.getOrCreateServerMapLocalStore(offHeap));
+  }
+}
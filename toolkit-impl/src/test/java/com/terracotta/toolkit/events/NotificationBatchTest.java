@@ -0,0 +1,77 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.events;
+
+import org.junit.Test;
+import org.terracotta.toolkit.events.ToolkitNotificationEvent;
+import org.terracotta.toolkit.events.ToolkitNotificationListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class NotificationBatchTest {
+
+  @Test
+  public void testBatchRoundTrip() {
+    List<byte[]> msgs = Arrays.asList(new byte[] { 1, 2, 3 }, new byte[0], new byte[] { -1 });
+    byte[] encoded = NotificationBatch.encode(msgs);
+
+    int size = 4;
+    for (byte[] msg : msgs) {
+      size += NotificationBatch.encodedSize(msg);
+    }
+    assertEquals(size, encoded.length);
+
+    List<byte[]> decoded = NotificationBatch.decode(encoded);
+    assertEquals(msgs.size(), decoded.size());
+    for (int i = 0; i < msgs.size(); i++) {
+      assertArrayEquals(msgs.get(i), decoded.get(i));
+    }
+    assertTrue(NotificationBatch.decode(NotificationBatch.encode(Collections.<byte[]> emptyList())).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedBatchIsRejected() {
+    byte[] encoded = NotificationBatch.encode(Arrays.asList(new byte[] { 1, 2, 3 }));
+    NotificationBatch.decode(Arrays.copyOf(encoded, encoded.length - 1));
+  }
+
+  @Test
+  public void testBatchListenersGetTheWholeBatch() {
+    List<ToolkitNotificationEvent<String>> events = events(3);
+    ToolkitNotificationBatchListener<String> batchListener = mock(ToolkitNotificationBatchListener.class);
+    ToolkitNotifierImpl.notifyListener(batchListener, events);
+    verify(batchListener).onNotifications(events);
+  }
+
+  @Test
+  public void testOtherListenersGetEveryEventDespiteFailures() {
+    final List<ToolkitNotificationEvent<String>> received = new ArrayList<ToolkitNotificationEvent<String>>();
+    List<ToolkitNotificationEvent<String>> events = events(3);
+    ToolkitNotifierImpl.notifyListener(new ToolkitNotificationListener<String>() {
+      @Override
+      public void onNotification(ToolkitNotificationEvent<String> event) {
+        received.add(event);
+        throw new RuntimeException("listener failure");
+      }
+    }, events);
+    assertEquals(events, received);
+  }
+
+  private static List<ToolkitNotificationEvent<String>> events(int count) {
+    List<ToolkitNotificationEvent<String>> events = new ArrayList<ToolkitNotificationEvent<String>>();
+    for (int i = 0; i < count; i++) {
+      events.add(new ToolkitNotificationEventImpl<String>(null, "node", new byte[] { (byte) i }));
+    }
+    return events;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.events;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.object.LogicalOperation;
+import com.tc.object.ObjectID;
+import com.tc.object.TCObject;
+import com.tc.platform.PlatformService;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tcclient.cluster.DsoNode;
+import com.terracotta.toolkit.TerracottaToolkit;
+import com.terracotta.toolkit.factory.impl.ToolkitNotifierFactoryImpl;
+import com.terracotta.toolkit.object.serialization.SerializationStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ToolkitNotifierImplTest {
+
+  private static final int     MAX_BATCH_BYTES = 16;
+
+  private PlatformService      platformService;
+  private ExecutorService      flushService;
+  // sent batches, decoded
+  private final List<List<String>> sent      = Collections.synchronizedList(new ArrayList<List<String>>());
+  private volatile CountDownLatch  sendGate  = new CountDownLatch(0);
+  private volatile RuntimeException sendFailure;
+
+  @Before
+  public void setUp() {
+    flushService = Executors.newSingleThreadExecutor();
+    platformService = mock(PlatformService.class);
+
+    SerializationStrategy strategy = mock(SerializationStrategy.class);
+    when(strategy.serialize(any(), anyBoolean())).thenAnswer(new Answer<byte[]>() {
+      @Override
+      public byte[] answer(InvocationOnMock invocation) {
+        return ((String) invocation.getArguments()[0]).getBytes();
+      }
+    });
+    when(strategy.serializeToString(any())).thenReturn("node");
+    when(platformService.lookupRegisteredObjectByName(TerracottaToolkit.TOOLKIT_SERIALIZER_REGISTRATION_NAME,
+                                                      SerializationStrategy.class)).thenReturn(strategy);
+    when(platformService.lookupRegisteredObjectByName(ToolkitNotifierFactoryImpl.TOOLKIT_NOTIFIER_FLUSH_SERVICE,
+                                                      ExecutorService.class)).thenReturn(flushService);
+    when(platformService.getCurrentNode()).thenReturn(mock(DsoNode.class));
+    TCProperties properties = mock(TCProperties.class);
+    when(properties.getProperty(TCPropertiesConsts.TOOLKIT_NOTIFIER_BATCH_MAX_BYTES, true))
+        .thenReturn(String.valueOf(MAX_BATCH_BYTES));
+    when(platformService.getTCProperties()).thenReturn(properties);
+
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Exception {
+        sendGate.await();
+        RuntimeException failure = sendFailure;
+        if (failure != null) {
+          sendFailure = null;
+          throw failure;
+        }
+        List<String> batch = new ArrayList<String>();
+        for (byte[] msg : NotificationBatch.decode((byte[]) ((Object[]) invocation.getArguments()[2])[0])) {
+          batch.add(new String(msg));
+        }
+        sent.add(batch);
+        return null;
+      }
+    }).when(platformService).logicalInvoke(any(), eq(LogicalOperation.CLUSTERED_NOTIFIER), any(Object[].class));
+  }
+
+  @After
+  public void tearDown() {
+    flushService.shutdownNow();
+  }
+
+  @Test
+  public void testQueuedMessagesAreSentInBatchesInOrder() throws Exception {
+    ToolkitNotifierImpl<String> notifier = newNotifier();
+    sendGate = new CountDownLatch(1);
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 9; i++) {
+      expected.add("m" + i);
+      notifier.notifyListeners("m" + i);
+    }
+    sendGate.countDown();
+    drainFlushes();
+
+    List<String> received = new ArrayList<String>();
+    for (List<String> batch : sent) {
+      received.addAll(batch);
+    }
+    assertEquals(expected, received);
+    // the first message went out alone, the others waited for it and were batched
+    assertTrue(sent.size() < expected.size());
+  }
+
+  @Test
+  public void testProducersWaitWhileTooMuchIsQueued() throws Exception {
+    final ToolkitNotifierImpl<String> notifier = newNotifier();
+    sendGate = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 100; i++) {
+          notifier.notifyListeners("m" + i);
+        }
+        done.countDown();
+      }
+    };
+    producer.start();
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(Thread.State.WAITING, producer.getState());
+    assertEquals(1, done.getCount());
+
+    sendGate.countDown();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    drainFlushes();
+    int received = 0;
+    for (List<String> batch : sent) {
+      received += batch.size();
+    }
+    assertEquals(100, received);
+  }
+
+  @Test
+  public void testFailedBatchStaysQueuedAndTheFailureIsThrown() throws Exception {
+    ToolkitNotifierImpl<String> notifier = newNotifier();
+    RuntimeException failure = new RuntimeException("rejoin in progress");
+    sendFailure = failure;
+    notifier.notifyListeners("a");
+    drainFlushes();
+    assertTrue(sent.isEmpty());
+
+    try {
+      notifier.notifyListeners("b");
+      fail("the failed flush was not reported");
+    } catch (RuntimeException e) {
+      assertSame(failure, e);
+    }
+
+    notifier.notifyListeners("c");
+    drainFlushes();
+    assertEquals(Collections.singletonList(Arrays.asList("a", "c")), sent);
+  }
+
+  private ToolkitNotifierImpl<String> newNotifier() {
+    ToolkitNotifierImpl<String> notifier = new ToolkitNotifierImpl<String>(platformService);
+    TCObject tcObject = mock(TCObject.class);
+    when(tcObject.getObjectID()).thenReturn(new ObjectID(1));
+    notifier.__tc_managed(tcObject);
+    return notifier;
+  }
+
+  /**
+   * Waits for the flushes scheduled so far, a flush reschedules itself behind this task while more is queued.
+   */
+  private void drainFlushes() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      flushService.submit(new Runnable() {
+        @Override
+        public void run() {
+          //
+        }
+      }).get(10, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -19,6 +19,7 @@ import com.tc.object.locks.LockID;
 import com.tc.object.locks.LockLevel;
 import com.tc.object.metadata.MetaDataDescriptor;
 import com.tc.object.tx.TransactionCompleteListener;
+import com.tc.object.tx.TransactionCompletionFuture;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventLevel;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventSubsystem;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventType;
@@ -338,6 +339,11 @@ public class MockPlatformService implements PlatformService {
 
   }
 
+  @Override
+  public TransactionCompletionFuture getCurrentTransactionCompletion() {
+    throw new ImplementMe();
+  }
+
   @Override
   public void addRejoinLifecycleListener(RejoinLifecycleListener listener) {
       MockUtil.logInfo("addRejoinLifeCycleListener " + listener);
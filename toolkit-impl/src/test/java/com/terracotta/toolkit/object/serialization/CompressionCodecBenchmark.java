@@ -0,0 +1,112 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import com.terracotta.toolkit.mockl2.test.MockPlatformService;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput and compression ratio of the registered codecs on serialized cache values. Not run as part of
+ * the build, run its main method with the test classpath.
+ */
+public class CompressionCodecBenchmark {
+
+  private static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+  public static void main(String[] args) throws Exception {
+    SerializationStrategy strategy = new SerializationStrategyImpl(new MockPlatformService(),
+                                                                   new LocalSerializerMap(),
+                                                                   CompressionCodecBenchmark.class.getClassLoader());
+    Random random = new Random(7);
+    Map<String, byte[]> values = new HashMap<String, byte[]>();
+    values.put("session", strategy.serialize(session(random), false));
+    values.put("order", strategy.serialize(order(random), false));
+    byte[] blob = new byte[8 * 1024];
+    random.nextBytes(blob);
+    values.put("random blob", strategy.serialize(blob, false));
+
+    System.out.printf("%-12s %-8s %8s %8s %14s %14s%n", "value", "codec", "size", "ratio", "compress MB/s",
+                      "decompress MB/s");
+    for (Map.Entry<String, byte[]> value : values.entrySet()) {
+      byte[] data = value.getValue();
+      for (String name : CompressionCodecs.getNames()) {
+        CompressionCodec codec = CompressionCodecs.forName(name);
+        byte[] compressed = codec.compress(data, 0, data.length);
+        double compressRate = compressThroughput(codec, data);
+        double decompressRate = decompressThroughput(codec, compressed, data.length);
+        System.out.printf("%-12s %-8s %8d %8.3f %14.1f %14.1f%n", value.getKey(), name, data.length,
+                          (double) compressed.length / data.length, compressRate, decompressRate);
+      }
+    }
+  }
+
+  private static double compressThroughput(CompressionCodec codec, byte[] data) {
+    // warm up
+    long end = System.nanoTime() + RUN_NANOS;
+    while (System.nanoTime() < end) {
+      codec.compress(data, 0, data.length);
+    }
+    long ops = 0;
+    long start = System.nanoTime();
+    end = start + RUN_NANOS;
+    while (System.nanoTime() < end) {
+      codec.compress(data, 0, data.length);
+      ops++;
+    }
+    return megabytesPerSecond(ops * data.length, System.nanoTime() - start);
+  }
+
+  private static double decompressThroughput(CompressionCodec codec, byte[] compressed, int length) throws Exception {
+    long end = System.nanoTime() + RUN_NANOS;
+    while (System.nanoTime() < end) {
+      codec.decompress(compressed);
+    }
+    long ops = 0;
+    long start = System.nanoTime();
+    end = start + RUN_NANOS;
+    while (System.nanoTime() < end) {
+      codec.decompress(compressed);
+      ops++;
+    }
+    return megabytesPerSecond(ops * length, System.nanoTime() - start);
+  }
+
+  private static double megabytesPerSecond(long bytes, long nanos) {
+    return (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+  }
+
+  private static Serializable session(Random random) {
+    HashMap<String, Object> session = new HashMap<String, Object>();
+    session.put("user", "user" + random.nextInt(100000));
+    session.put("created", new Date());
+    session.put("locale", "en_US");
+    List<String> history = new ArrayList<String>();
+    for (int i = 0; i < 40; i++) {
+      history.add("/catalog/category/" + random.nextInt(20) + "/product/" + random.nextInt(500));
+    }
+    session.put("history", history);
+    return session;
+  }
+
+  private static Serializable order(Random random) {
+    ArrayList<HashMap<String, Object>> lines = new ArrayList<HashMap<String, Object>>();
+    for (int i = 0; i < 25; i++) {
+      HashMap<String, Object> line = new HashMap<String, Object>();
+      line.put("sku", "SKU-" + random.nextInt(10000));
+      line.put("quantity", random.nextInt(10));
+      line.put("price", random.nextInt(100000) / 100.0);
+      line.put("currency", "USD");
+      lines.add(line);
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.terracotta.toolkit.mockl2.test.MockPlatformService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class CompressionCodecsTest {
+
+  private SerializationStrategy strategy;
+
+  @Before
+  public void init() {
+    strategy = new SerializationStrategyImpl(new MockPlatformService(), new LocalSerializerMap(), getClass()
+        .getClassLoader());
+  }
+
+  @Test
+  public void testBuiltInCodecsAreRegistered() {
+    assertTrue(CompressionCodecs.getNames().contains(GzipCompressionCodec.NAME));
+    assertTrue(CompressionCodecs.getNames().contains(LZ4CompressionCodec.NAME));
+    assertTrue(CompressionCodecs.getNames().contains(SnappyCompressionCodec.NAME));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownCodecName() {
+    CompressionCodecs.forName("zstd");
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Random random = new Random(42);
+    for (String name : CompressionCodecs.getNames()) {
+      CompressionCodec codec = CompressionCodecs.forName(name);
+      for (byte[] data : samples(random)) {
+        byte[] compressed = codec.compress(data, 0, data.length);
+        assertEquals(codec.getId(), compressed[0]);
+        assertArrayEquals(name, data, codec.decompress(compressed));
+      }
+    }
+  }
+
+  @Test
+  public void testCorruptDataIsRejected() {
+    Random random = new Random(42);
+    for (String name : new String[] { LZ4CompressionCodec.NAME, SnappyCompressionCodec.NAME }) {
+      CompressionCodec codec = CompressionCodecs.forName(name);
+      byte[] data = new byte[64];
+      for (int i = 0; i < 1000; i++) {
+        random.nextBytes(data);
+        data[0] = codec.getId();
+        try {
+          codec.decompress(data);
+        } catch (IOException e) {
+          // expected
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMixedCodecsDeserialize() throws Exception {
+    Map<String, Object> value = new HashMap<String, Object>();
+    for (int i = 0; i < 100; i++) {
+      value.put("key-" + i, "value-" + (i % 10));
+    }
+
+    List<byte[]> serialized = new ArrayList<byte[]>();
+    serialized.add(strategy.serialize(value, false));
+    serialized.add(strategy.serialize(value, true));
+    for (String name : CompressionCodecs.getNames()) {
+      serialized.add(strategy.serialize(value, CompressionCodecs.forName(name)));
+    }
+
+    assertNull(CompressionCodecs.forValue(serialized.get(0)));
+    assertEquals(GzipCompressionCodec.NAME, CompressionCodecs.forValue(serialized.get(1)).getName());
+    for (byte[] bytes : serialized) {
+      // the compression flag passed in no longer matters
+      assertEquals(value, strategy.deserialize(bytes, false, false));
+      assertEquals(value, strategy.deserialize(bytes, true, false));
+    }
+  }
+
+  @Test
+  public void testUnknownHeaderByte() throws Exception {
+    byte[] bytes = strategy.serialize("foo", CompressionCodecs.forName(LZ4CompressionCodec.NAME));
+    bytes[0] = 0x7F;
+    try {
+      strategy.deserialize(bytes, true, false);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  static List<byte[]> samples(Random random) {
+    List<byte[]> samples = new ArrayList<byte[]>();
+    samples.add(new byte[0]);
+    samples.add(new byte[] { 1 });
+    for (int size : new int[] { 13, 100, 1000, 70000 }) {
+      byte[] noise = new byte[size];
+      random.nextBytes(noise);
+      samples.add(noise);
+
+      byte[] runs = new byte[size];
+      for (int i = 0; i < size; i++) {
+        runs[i] = (byte) (i / 100);
+      }
+      samples.add(runs);
+
+      byte[] text = new byte[size];
+      for (int i = 0; i < size; i++) {
+        text[i] = i > 16 && random.nextInt(8) > 0 ? text[i - 1 - random.nextInt(16)] : (byte) ('a' + random.nextInt(26));
+      }
+      samples.add(text);
+    }
+    return samples;
+  }
+}
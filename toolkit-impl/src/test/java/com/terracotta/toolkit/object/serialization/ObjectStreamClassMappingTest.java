@@ -23,6 +23,7 @@ import com.tc.object.locks.LockID;
 import com.tc.object.locks.LockLevel;
 import com.tc.object.metadata.MetaDataDescriptor;
 import com.tc.object.tx.TransactionCompleteListener;
+import com.tc.object.tx.TransactionCompletionFuture;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventLevel;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventSubsystem;
 import com.tc.operatorevent.TerracottaOperatorEvent.EventType;
@@ -233,6 +234,11 @@ public class ObjectStreamClassMappingTest {
       //
     }
 
+    @Override
+    public TransactionCompletionFuture getCurrentTransactionCompletion() {
+      return TransactionCompletionFuture.completed();
+    }
+
     @Override
     public MetaDataDescriptor createMetaDataDescriptor(String category) {
       return null;